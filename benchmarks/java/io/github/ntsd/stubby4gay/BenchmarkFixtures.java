@@ -0,0 +1,171 @@
+package io.github.ntsd.stubby4gay;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates stubs YAML and incoming requests for the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    /**
+     * The kind of stubs, and of the requests matching them
+     */
+    public enum StubMix {
+        LITERAL, REGEX, JSON, XML
+    }
+
+    private BenchmarkFixtures() {
+
+    }
+
+    public static String stubsYaml(final StubMix stubMix, final int stubCount) {
+        final StringBuilder yaml = new StringBuilder(stubCount * 256);
+        for (int idx = 0; idx < stubCount; idx++) {
+            yaml.append("-  request:\n");
+            switch (stubMix) {
+                case LITERAL:
+                    yaml.append("      method: GET\n")
+                            .append("      url: /literal/resource/").append(idx).append('\n');
+                    break;
+                case REGEX:
+                    yaml.append("      method: GET\n")
+                            .append("      url: ^/regex/resource/").append(idx).append("/item/([0-9]+)$\n");
+                    break;
+                case JSON:
+                    yaml.append("      method: POST\n")
+                            .append("      url: /json/resource/").append(idx).append('\n')
+                            .append("      headers:\n")
+                            .append("         content-type: application/json\n")
+                            .append("      post: >\n")
+                            .append("         ").append(jsonBody(idx)).append('\n');
+                    break;
+                case XML:
+                    yaml.append("      method: POST\n")
+                            .append("      url: /xml/resource/").append(idx).append('\n')
+                            .append("      headers:\n")
+                            .append("         content-type: application/xml\n")
+                            .append("      post: >\n")
+                            .append("         ").append(xmlBody(idx)).append('\n');
+                    break;
+            }
+            yaml.append("   response:\n")
+                    .append("      status: 200\n")
+                    .append("      body: Matched stub number ").append(idx).append('\n')
+                    .append("      headers:\n")
+                    .append("         content-type: text/plain\n\n");
+        }
+        return yaml.toString();
+    }
+
+    /**
+     * @param stubIndex index of the stub, which the request should be matched by
+     * @param sequence  varies the parts of the request, which the stub matches by regex
+     */
+    public static HttpServletRequest request(final StubMix stubMix, final int stubIndex, final int sequence) {
+        switch (stubMix) {
+            case LITERAL:
+                return request("GET", "/literal/resource/" + stubIndex, "id=" + sequence, null, null);
+            case REGEX:
+                return request("GET", "/regex/resource/" + stubIndex + "/item/" + sequence, null, null, null);
+            case JSON:
+                return request("POST", "/json/resource/" + stubIndex, null, "application/json", jsonBody(stubIndex));
+            default:
+                return request("POST", "/xml/resource/" + stubIndex, null, "application/xml", xmlBody(stubIndex));
+        }
+    }
+
+    /**
+     * A bare {@link HttpServletRequest}, which answers only what the stubs portal reads from an incoming request
+     */
+    public static HttpServletRequest request(final String method,
+                                             final String pathInfo,
+                                             final String queryString,
+                                             final String contentType,
+                                             final String body) {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("host", "localhost:8882");
+        headers.put("user-agent", "stubby4gay-benchmarks");
+        if (contentType != null) {
+            headers.put("content-type", contentType);
+        }
+        final byte[] bodyBytes = StringUtils.getBytesUtf8(body == null ? "" : body);
+
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                BenchmarkFixtures.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, invokedMethod, args) -> {
+                    switch (invokedMethod.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getPathInfo":
+                        case "getRequestURI":
+                            return pathInfo;
+                        case "getQueryString":
+                            return queryString;
+                        case "getContentType":
+                            return contentType;
+                        case "getHeaderNames":
+                            return Collections.enumeration(headers.keySet());
+                        case "getHeader":
+                            return headers.get(StringUtils.toLower((String) args[0]));
+                        case "getInputStream":
+                            return new BodyInputStream(bodyBytes);
+                        case "toString":
+                            return method + " " + pathInfo;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static String jsonBody(final int idx) {
+        return String.format("{\"id\": %d, \"name\": \"item-%d\", \"tags\": [\"stub\", \"benchmark\"], \"active\": true}", idx, idx);
+    }
+
+    private static String xmlBody(final int idx) {
+        return String.format("<item><id>%d</id><name>item-%d</name><tags><tag>stub</tag><tag>benchmark</tag></tags></item>", idx, idx);
+    }
+
+    private static final class BodyInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream content;
+
+        private BodyInputStream(final byte[] content) {
+            this.content = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            return content.read();
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            return content.read(bytes, offset, length);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return content.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+
+        }
+    }
+}
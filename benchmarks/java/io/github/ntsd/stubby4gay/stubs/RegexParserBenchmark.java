@@ -0,0 +1,60 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regex matching of a stubbed URL, both through {@link RegexParser#match(String, String, String, Map)}, which
+ * compiles the stubbed value on every call, and through the {@link StubValueMatcher} compiled at stub load time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegexParserBenchmark {
+
+    private static final String STUBBED_URL = "^/[a-z]{3}-[a-z]{3}/[0-9]{2}/[A-Z]{2}/([a-z0-9]+)$";
+    private static final String STUBBED_PREFIX_URL = "^/resources/asn/.*$";
+    private static final String ASSERTING_URL = "/abc-efg/12/KM/jhgjkhg234234l2";
+
+    private StubValueMatcher regexMatcher;
+    private StubValueMatcher prefixMatcher;
+
+    @Setup
+    public void setUp() {
+        regexMatcher = StubValueMatcher.compile(STUBBED_URL, "url");
+        prefixMatcher = StubValueMatcher.compile(STUBBED_PREFIX_URL, "url");
+    }
+
+    @Benchmark
+    public boolean regexParserMatch() {
+        final Map<String, String> regexGroups = new HashMap<>();
+        return RegexParser.INSTANCE.match(STUBBED_URL, ASSERTING_URL, "url", regexGroups);
+    }
+
+    @Benchmark
+    public boolean compiledRegexMatch() {
+        final Map<String, String> regexGroups = new HashMap<>();
+        return regexMatcher.matches(ASSERTING_URL, regexGroups);
+    }
+
+    @Benchmark
+    public boolean compiledPrefixMatch() {
+        final Map<String, String> regexGroups = new HashMap<>();
+        return prefixMatcher.matches("/resources/asn/12345", regexGroups);
+    }
+}
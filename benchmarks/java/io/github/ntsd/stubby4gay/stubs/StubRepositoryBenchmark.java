@@ -0,0 +1,75 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.BenchmarkFixtures;
+import io.github.ntsd.stubby4gay.BenchmarkFixtures.StubMix;
+import io.github.ntsd.stubby4gay.yaml.YamlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches incoming requests against the loaded stubs, end to end from the raw {@link HttpServletRequest}.
+ * <p>
+ * The requests are drawn from a fixed pool spread over all of the stubs, so the match cache warms up as it would for
+ * a client repeating the same calls. A cached match is still verified against the stub, which means the regex, JSON
+ * and XML comparisons run on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StubRepositoryBenchmark {
+
+    private static final int REQUEST_POOL_SIZE = 1024;
+
+    @Param({"10", "1000", "50000"})
+    private int stubCount;
+
+    @Param({"LITERAL", "REGEX", "JSON", "XML"})
+    private StubMix stubMix;
+
+    private StubRepository stubRepository;
+    private HttpServletRequest[] requests;
+    private int nextRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final String stubsYaml = BenchmarkFixtures.stubsYaml(stubMix, stubCount);
+        final File configFile = new File(".", "benchmark-stubs.yaml");
+
+        stubRepository = new StubRepository(configFile,
+                CompletableFuture.completedFuture(new YamlParser().parse(configFile.getParent(), stubsYaml)));
+        stubRepository.retrieveLoadedStubs();
+
+        final Random random = new Random(42);
+        requests = new HttpServletRequest[REQUEST_POOL_SIZE];
+        for (int idx = 0; idx < REQUEST_POOL_SIZE; idx++) {
+            requests[idx] = BenchmarkFixtures.request(stubMix, random.nextInt(stubCount), idx);
+        }
+    }
+
+    @Benchmark
+    public StubSearchResult search() throws Exception {
+        final HttpServletRequest request = requests[nextRequest];
+        nextRequest = (nextRequest + 1) % REQUEST_POOL_SIZE;
+
+        return stubRepository.search(request);
+    }
+}
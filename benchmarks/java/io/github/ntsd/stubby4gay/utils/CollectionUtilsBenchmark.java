@@ -0,0 +1,48 @@
+package io.github.ntsd.stubby4gay.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the incoming query string, as done for every incoming request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionUtilsBenchmark {
+
+    @Param({"1", "10"})
+    private int paramCount;
+
+    private String queryString;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder();
+        for (int idx = 0; idx < paramCount; idx++) {
+            builder.append(idx == 0 ? "" : "&").append("param").append(idx).append("=value%20").append(idx);
+        }
+        builder.append("&array=[%22alpha%22,%22beta%22]");
+        queryString = builder.toString();
+    }
+
+    @Benchmark
+    public Map<String, String> constructParamMap() {
+        return CollectionUtils.constructParamMap(queryString);
+    }
+}
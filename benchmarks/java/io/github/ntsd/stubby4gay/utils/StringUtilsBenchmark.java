@@ -0,0 +1,48 @@
+package io.github.ntsd.stubby4gay.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of a tokenized response body, as done for every response with template tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+    private static final String TEMPLATE = "{\"id\": \"<% url.1 %>\", \"query\": \"<% query.type.1 %>\", " +
+            "\"user\": \"<% headers.user-agent.0 %>\", \"unknown\": \"<% post.9 %>\", " +
+            "\"description\": \"a response body with a few template tokens in it\"}";
+
+    private Map<String, String> regexGroups;
+
+    @Setup
+    public void setUp() {
+        regexGroups = new HashMap<>();
+        regexGroups.put("url.0", "/resource/12345");
+        regexGroups.put("url.1", "12345");
+        regexGroups.put("query.type.1", "full");
+        regexGroups.put("headers.user-agent.0", "stubby4gay-benchmarks");
+    }
+
+    @Benchmark
+    public String replaceTokensInString() {
+        return StringUtils.replaceTokensInString(TEMPLATE, regexGroups);
+    }
+}
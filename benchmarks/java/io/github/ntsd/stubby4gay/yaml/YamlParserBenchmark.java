@@ -0,0 +1,47 @@
+package io.github.ntsd.stubby4gay.yaml;
+
+import io.github.ntsd.stubby4gay.BenchmarkFixtures;
+import io.github.ntsd.stubby4gay.BenchmarkFixtures.StubMix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of a stubs YAML config, as done on startup and on every live reload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YamlParserBenchmark {
+
+    @Param({"10", "1000"})
+    private int stubCount;
+
+    @Param({"LITERAL", "REGEX", "JSON", "XML"})
+    private StubMix stubMix;
+
+    private String stubsYaml;
+
+    @Setup
+    public void setUp() {
+        stubsYaml = BenchmarkFixtures.stubsYaml(stubMix, stubCount);
+    }
+
+    @Benchmark
+    public YamlParseResultSet parse() throws Exception {
+        return new YamlParser().parse(".", stubsYaml);
+    }
+}
@@ -54,6 +54,37 @@ public class AdminPortalTest {
         assertThat(adminPortalResponse.getResponseCode()).isEqualTo(HttpStatus.CREATED_201);
     }
 
+    @Test
+    public void should_ExposeStubMetrics_AsPrometheusTextAndJson() throws Exception {
+        final String stubsUrl = String.format("http://localhost:%s/resources/asn/123", STUBS_PORT);
+        final HttpResponse stubsResponse = HttpUtils.constructHttpRequest(HttpMethods.GET, stubsUrl).execute();
+        assertThat(stubsResponse.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+
+        // Responses are recorded once they have been sent, so the client may see the response before its metrics
+        final long deadline = System.currentTimeMillis() + 5000;
+        HttpResponse prometheusResponse = HttpUtils.constructHttpRequest(HttpMethods.GET, String.format("%s/metrics", ADMIN_URL)).execute();
+        String prometheusText = prometheusResponse.parseAsString();
+        while (!prometheusText.contains("stubby_requests_total{") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            prometheusResponse = HttpUtils.constructHttpRequest(HttpMethods.GET, String.format("%s/metrics", ADMIN_URL)).execute();
+            prometheusText = prometheusResponse.parseAsString();
+        }
+
+        assertThat(prometheusResponse.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(prometheusResponse.getContentType()).startsWith("text/plain; version=0.0.4");
+        assertThat(prometheusText).contains("# TYPE stubby_requests_total counter");
+        assertThat(prometheusText).contains("stubby_requests_total{method=\"GET\",matched=\"true\"}");
+        assertThat(prometheusText).contains("stubby_stub_hits_total{stub=\"0\",url=\"^/resources/asn/.*$\"}");
+
+        final HttpResponse jsonResponse = HttpUtils.constructHttpRequest(HttpMethods.GET, String.format("%s/metrics/json", ADMIN_URL)).execute();
+        final String json = jsonResponse.parseAsString();
+
+        assertThat(jsonResponse.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(jsonResponse.getContentType()).startsWith("application/json");
+        assertThat(json).contains("\"requests\":");
+        assertThat(json).contains("\"stubs\":");
+    }
+
     @Test
     public void should_ReturnMethodNotImplemented_WhenSuccessfulOptionsMade_ToAdminPortalRoot() throws Exception {
 
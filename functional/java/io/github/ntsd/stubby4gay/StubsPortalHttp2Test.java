@@ -0,0 +1,108 @@
+package io.github.ntsd.stubby4gay;
+
+import com.google.api.client.http.HttpMethods;
+import com.google.api.client.http.HttpResponse;
+import io.github.ntsd.stubby4gay.cli.ANSITerminal;
+import io.github.ntsd.stubby4gay.client.StubbyClient;
+import io.github.ntsd.stubby4gay.server.JettyTuning;
+import io.github.ntsd.stubby4gay.server.StubsTransport;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubsPortalHttp2Test {
+
+    private static final int STUBS_PORT = 5692;
+    private static final int STUBS_SSL_PORT = 5693;
+    private static final int ADMIN_PORT = 5699;
+
+    private static final String STUBS_URL = String.format("http://localhost:%s", STUBS_PORT);
+    private static final String STUBS_SSL_URL = String.format("https://localhost:%s", STUBS_SSL_PORT);
+    private static final StubbyClient STUBBY_CLIENT = new StubbyClient();
+
+    private static HttpClient http2Client;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+
+        ANSITerminal.muteConsole(true);
+
+        final URL url = StubsPortalHttp2Test.class.getResource("/yaml/stubs.yaml");
+        final StubsTransport stubsTransport = new StubsTransport.Builder()
+                .withHttp2(true)
+                .withHttp2MaxConcurrentStreams(256)
+                .withHttp2InitialStreamRecvWindow(1024 * 1024)
+                .build();
+
+        STUBBY_CLIENT.startJetty(STUBS_PORT, STUBS_SSL_PORT, ADMIN_PORT, "localhost", url.getFile(), JettyTuning.defaults(), stubsTransport);
+
+        http2Client = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()), new SslContextFactory(true));
+        http2Client.start();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        http2Client.stop();
+        STUBBY_CLIENT.stopJetty();
+    }
+
+    @Test
+    public void should_ReturnStubbedResponse_OverCleartextHttp2() throws Exception {
+        final ContentResponse response = http2Client.GET(String.format("%s%s", STUBS_URL, "/resources/asn/123"));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK_200);
+        assertThat(response.getVersion()).isEqualTo(HttpVersion.HTTP_2);
+    }
+
+    @Test
+    public void should_ReturnStubbedResponse_OverAlpnNegotiatedHttp2() throws Exception {
+        final ContentResponse response = http2Client.GET(String.format("%s%s", STUBS_SSL_URL, "/resources/asn/123"));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK_200);
+        assertThat(response.getVersion()).isEqualTo(HttpVersion.HTTP_2);
+    }
+
+    @Test
+    public void should_MultiplexConcurrentRequests_OverOneHttp2Connection() throws Exception {
+        final List<CompletableFuture<Integer>> statuses = new ArrayList<>();
+        for (int idx = 0; idx < 100; idx++) {
+            final CompletableFuture<Integer> status = new CompletableFuture<>();
+            http2Client.newRequest(String.format("%s%s%s", STUBS_URL, "/resources/asn/", idx)).send(result -> {
+                if (result.isFailed()) {
+                    status.completeExceptionally(result.getFailure());
+                } else {
+                    status.complete(result.getResponse().getStatus());
+                }
+            });
+            statuses.add(status);
+        }
+
+        for (final CompletableFuture<Integer> status : statuses) {
+            assertThat(status.get(10, TimeUnit.SECONDS)).isEqualTo(HttpStatus.OK_200);
+        }
+    }
+
+    @Test
+    public void should_ReturnStubbedResponse_OverHttp1_WhenHttp2IsEnabled() throws Exception {
+        final HttpResponse response = HttpUtils.constructHttpRequest(HttpMethods.GET, String.format("%s%s", STUBS_URL, "/resources/asn/123")).execute();
+        final HttpResponse sslResponse = HttpUtils.constructHttpRequest(HttpMethods.GET, String.format("%s%s", STUBS_SSL_URL, "/resources/asn/123")).execute();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(sslResponse.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+    }
+}
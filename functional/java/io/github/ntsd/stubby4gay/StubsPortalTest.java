@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -185,6 +187,82 @@ public class StubsPortalTest {
         assertThat("{\"status\": \"hello world with single quote\"}").isEqualTo(responseContent);
     }
 
+    @Test
+    public void should_ReturnPreCompressedResponse_WhenGzipAccepted() throws Exception {
+        final String requestUrl = String.format("%s%s", STUBS_URL, "/atomfeed/1");
+        final HttpRequest request = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl);
+        request.getHeaders().setAcceptEncoding("gzip");
+
+        final HttpResponse response = request.execute();
+        final String responseContent = response.parseAsString().trim();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(response.getContentEncoding()).isEqualTo("gzip");
+        assertThat(response.getHeaders().getHeaderStringValues("Vary").toString()).contains("Accept-Encoding");
+        assertThat(response.getHeaders().getContentLength()).isLessThan(1024L);
+        assertThat(responseContent).startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?><payment>");
+        assertThat(responseContent).endsWith("</paymentDetails></payment>");
+    }
+
+    @Test
+    public void should_ReturnUncompressedResponse_WhenGzipNotAccepted() throws Exception {
+        final String requestUrl = String.format("%s%s", STUBS_URL, "/atomfeed/1");
+        final HttpRequest request = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl);
+        request.getHeaders().setAcceptEncoding("identity");
+
+        final HttpResponse response = request.execute();
+        final String responseContent = response.parseAsString().trim();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(response.getContentEncoding()).isNull();
+        assertThat(response.getHeaders().getHeaderStringValues("Vary").toString()).contains("Accept-Encoding");
+        assertThat(response.getHeaders().getContentLength()).isEqualTo((long) StringUtils.getBytesUtf8(responseContent).length);
+    }
+
+    @Test
+    public void should_ReturnNotModified_WhenIfNoneMatchHasCurrentETag() throws Exception {
+        final String requestUrl = String.format("%s%s", STUBS_URL, "/atomfeed/1");
+        final HttpResponse response = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl).execute();
+        final String entityTag = response.getHeaders().getETag();
+        response.disconnect();
+
+        final HttpRequest conditionalRequest = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl);
+        conditionalRequest.getHeaders().setIfNoneMatch(entityTag);
+        final HttpResponse conditionalResponse = conditionalRequest.execute();
+
+        assertThat(entityTag).matches("\"[0-9a-f]{32}--gzip\"");
+        assertThat(conditionalResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED_304);
+        assertThat(conditionalResponse.getHeaders().getETag()).isEqualTo(entityTag);
+        assertThat(conditionalResponse.parseAsString()).isEmpty();
+    }
+
+    @Test
+    public void should_ReturnFullResponse_WhenIfNoneMatchHasStaleETag() throws Exception {
+        final String requestUrl = String.format("%s%s", STUBS_URL, "/atomfeed/1");
+        final HttpRequest request = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl);
+        request.getHeaders().setIfNoneMatch("\"0123456789abcdef0123456789abcdef\"");
+
+        final HttpResponse response = request.execute();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK_200);
+        assertThat(response.parseAsString()).contains("<invoiceTypeLookupCode>STANDARD</invoiceTypeLookupCode>");
+    }
+
+    @Test
+    public void should_ReturnNotModified_WhenFileBackedBodyNotModifiedSince() throws Exception {
+        final String requestUrl = String.format("%s%s", STUBS_URL, "/invoice?status=active&type=full");
+        final HttpResponse response = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl).execute();
+        final String lastModified = response.getHeaders().getLastModified();
+        response.disconnect();
+
+        final HttpRequest conditionalRequest = HttpUtils.constructHttpRequest(HttpMethods.GET, requestUrl);
+        conditionalRequest.getHeaders().setIfModifiedSince(lastModified);
+        final HttpResponse conditionalResponse = conditionalRequest.execute();
+
+        assertThat(lastModified).isNotNull();
+        assertThat(conditionalResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED_304);
+    }
+
     @Test
     public void should_MakeSuccessfulRequest_WhenQueryParamValueWithEscapedPlus() throws Exception {
         final String requestUrl = String.format("%s%s", STUBS_URL, "/entity.find.spaces.within?key=stalin%2B%2B%2Band%2B%2Btruman%2Bare%2B%2B%2Bbest%2B%2B%2Bbuddies");
@@ -395,6 +473,11 @@ public class StubsPortalTest {
         assertThat(response.getHeaders()).containsKey("content-type");
         assertThat(response.getHeaders().getContentType()).contains("application/pdf");
         assertThat(response.getHeaders()).containsKey("content-disposition");
+
+        final URL pdfContentUrl = StubsPortalTest.class.getResource("/binary/hello-world.pdf");
+        final ByteArrayOutputStream actualContent = new ByteArrayOutputStream();
+        response.download(actualContent);
+        assertThat(actualContent.toByteArray()).isEqualTo(Files.readAllBytes(Paths.get(pdfContentUrl.toURI())));
     }
 
     @Test
@@ -0,0 +1,105 @@
+package io.github.ntsd.stubby4gay;
+
+import io.github.ntsd.stubby4gay.cli.ANSITerminal;
+import io.github.ntsd.stubby4gay.client.StubbyClient;
+import io.github.ntsd.stubby4gay.server.JettyTuning;
+import io.github.ntsd.stubby4gay.server.StubsTransport;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class StubsPortalUnixSocketTest {
+
+    private static final int STUBS_PORT = 5592;
+    private static final int STUBS_SSL_PORT = 5593;
+    private static final int ADMIN_PORT = 5599;
+
+    private static final StubbyClient STUBBY_CLIENT = new StubbyClient();
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static File unixSocket;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+
+        ANSITerminal.muteConsole(true);
+
+        unixSocket = new File(temporaryFolder.getRoot(), "stubby.sock");
+        final URL url = StubsPortalUnixSocketTest.class.getResource("/yaml/stubs.yaml");
+        final StubsTransport stubsTransport = new StubsTransport.Builder()
+                .withUnixSocket(unixSocket.getAbsolutePath())
+                .build();
+
+        STUBBY_CLIENT.startJetty(STUBS_PORT, STUBS_SSL_PORT, ADMIN_PORT, "localhost", url.getFile(), JettyTuning.defaults(), stubsTransport);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        STUBBY_CLIENT.stopJetty();
+    }
+
+    @Test
+    public void should_ReturnStubbedResponse_OverUnixSocket() throws Exception {
+        final String response = exchange("GET /resources/asn/123 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertThat(response).startsWith("HTTP/1.1 200 OK");
+    }
+
+    @Test
+    public void should_ReturnNotFound_OverUnixSocket_WhenStubIsMissing() throws Exception {
+        final String response = exchange("GET /not/stubbed HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertThat(response).startsWith("HTTP/1.1 404 ");
+    }
+
+    @Test
+    public void should_NotReplaceUnixSocket_WhenAnotherStubbyListensOnIt() throws Exception {
+        final StubbyClient otherStubbyClient = new StubbyClient();
+        final URL url = StubsPortalUnixSocketTest.class.getResource("/yaml/stubs.yaml");
+        final StubsTransport stubsTransport = new StubsTransport.Builder()
+                .withUnixSocket(unixSocket.getAbsolutePath())
+                .build();
+
+        try {
+            otherStubbyClient.startJetty(STUBS_PORT + 10, STUBS_SSL_PORT + 10, ADMIN_PORT + 10, "localhost", url.getFile(), JettyTuning.defaults(), stubsTransport);
+            fail("Stubby should not have started on a unix socket in use");
+        } catch (final IOException ex) {
+            assertThat(ex.getMessage()).contains("is in use by another process");
+        } finally {
+            otherStubbyClient.stopJetty();
+        }
+
+        final String response = exchange("GET /resources/asn/123 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertThat(response).startsWith("HTTP/1.1 200 OK");
+    }
+
+    private static String exchange(final String rawRequest) throws Exception {
+        try (final UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(unixSocket))) {
+            channel.write(ByteBuffer.wrap(StringUtils.getBytesUtf8(rawRequest)));
+
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) > 0) {
+                response.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return new String(response.toByteArray(), StringUtils.charsetUTF8());
+        }
+    }
+}
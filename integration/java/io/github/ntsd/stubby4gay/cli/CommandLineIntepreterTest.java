@@ -32,34 +32,100 @@ public class CommandLineIntepreterTest {
         System.setOut(oldPrintStream);
 
         final String expectedConsoleOutput = "usage:" + BR +
-                "       java -jar stubby4gay-x.x.xx.jar [-a <arg>] [-d <arg>] [-da] [-ds]" + BR +
-                "       [-h] [-k <arg>] [-l <arg>] [-m] [-o] [-p <arg>] [-s <arg>] [-t" + BR +
-                "       <arg>] [-v] [-w]" + BR +
-                " -a,--admin <arg>             Port for admin portal. Defaults to 8889." + BR +
-                " -d,--data <arg>              Data file to pre-load endpoints. Valid YAML" + BR +
-                "                              1.1 expected." + BR +
-                " -da,--disable_admin_portal   Does not start Admin portal" + BR +
-                " -ds,--disable_ssl            Does not enable SSL connections" + BR +
-                " -h,--help                    This help text." + BR +
-                " -k,--keystore <arg>          Keystore file for custom TLS. By default TLS" + BR +
-                "                              is enabled using internal keystore." + BR +
-                " -l,--location <arg>          Hostname at which to bind stubby." + BR +
-                " -m,--mute                    Mute console output." + BR +
-                " -o,--debug                   Dumps raw HTTP request to the console (if" + BR +
-                "                              console is not muted!)." + BR +
-                " -p,--password <arg>          Password for the provided keystore file." + BR +
-                " -s,--stubs <arg>             Port for stub portal. Defaults to 8882." + BR +
-                " -t,--tls <arg>               Port for TLS connection. Defaults to 7443." + BR +
-                " -v,--version                 Prints out to console stubby version." + BR +
-                " -w,--watch                   Periodically scans for changes in last" + BR +
-                "                              modification date of the main YAML and" + BR +
-                "                              referenced external files (if any). The flag" + BR +
-                "                              can accept an optional arg value which is" + BR +
-                "                              the watch scan time in milliseconds. If" + BR +
-                "                              milliseconds is not provided, the watch" + BR +
-                "                              scans every 100ms. If last modification date" + BR +
-                "                              changed since the last scan period, the stub" + BR +
-                "                              configuration is reloaded";
+                "       java -jar stubby4gay-x.x.xx.jar [-a <arg>] [-ac <arg>] [-aq <arg>]" + BR +
+                "       [-at] [-cl <arg>] [-cms <arg>] [-d <arg>] [-da] [-df] [-ds] [-h]" + BR +
+                "       [-h2] [-h2cw <arg>] [-h2s <arg>] [-h2sw <arg>] [-k <arg>] [-l" + BR +
+                "       <arg>] [-m] [-mnt <arg>] [-mxt <arg>] [-o] [-ob <arg>] [-p <arg>]" + BR +
+                "       [-r <arg>] [-ro] [-s <arg>] [-sl <arg>] [-t <arg>] [-tq <arg>] [-us" + BR +
+                "       <arg>] [-v] [-vt] [-w]" + BR +
+                " -a,--admin <arg>                     Port for admin portal. Defaults to" + BR +
+                "                                      8889." + BR +
+                " -ac,--acceptors <arg>                Number of acceptor threads of each" + BR +
+                "                                      stubs portal. Derived from the" + BR +
+                "                                      available cores by Jetty by default." + BR +
+                " -aq,--accept_queue <arg>             Accept backlog of the stubs portals." + BR +
+                "                                      Defaults to the OS backlog." + BR +
+                " -at,--auto_tune                      Sizes server threads, acceptors," + BR +
+                "                                      selectors and accept backlog from" + BR +
+                "                                      the available cores. Explicitly" + BR +
+                "                                      provided sizes take precedence." + BR +
+                " -cl,--compression_level <arg>        Compression level of gzip and" + BR +
+                "                                      deflate encoded responses, from 1" + BR +
+                "                                      (fastest) to 9 (smallest). Defaults" + BR +
+                "                                      to 6." + BR +
+                " -cms,--compression_min_size <arg>    Minimum size in bytes of a response" + BR +
+                "                                      body to compress. Defaults to 1024." + BR +
+                " -d,--data <arg>                      Data file to pre-load endpoints." + BR +
+                "                                      Valid YAML 1.1 expected." + BR +
+                " -da,--disable_admin_portal           Does not start Admin portal" + BR +
+                " -df,--deflate                        Pre-compresses static stubbed" + BR +
+                "                                      response bodies with deflate too," + BR +
+                "                                      besides gzip." + BR +
+                " -ds,--disable_ssl                    Does not enable SSL connections" + BR +
+                " -h,--help                            This help text." + BR +
+                " -h2,--http2                          Enables HTTP/2 on the stubs portals:" + BR +
+                "                                      cleartext (h2c) on the stubs port," + BR +
+                "                                      and negotiated with ALPN (h2) on the" + BR +
+                "                                      TLS port." + BR +
+                " -h2cw,--http2_session_window <arg>   Initial HTTP/2 flow-control receive" + BR +
+                "                                      window of each connection in bytes." + BR +
+                "                                      Defaults to 1048576." + BR +
+                " -h2s,--http2_max_streams <arg>       Maximum number of concurrent HTTP/2" + BR +
+                "                                      streams per connection. Defaults to" + BR +
+                "                                      128." + BR +
+                " -h2sw,--http2_stream_window <arg>    Initial HTTP/2 flow-control receive" + BR +
+                "                                      window of each stream in bytes." + BR +
+                "                                      Defaults to 524288." + BR +
+                " -k,--keystore <arg>                  Keystore file for custom TLS. By" + BR +
+                "                                      default TLS is enabled using" + BR +
+                "                                      internal keystore." + BR +
+                " -l,--location <arg>                  Hostname at which to bind stubby." + BR +
+                " -m,--mute                            Mute console output." + BR +
+                " -mnt,--min_threads <arg>             Minimum number of server threads." + BR +
+                "                                      Defaults to 8." + BR +
+                " -mxt,--max_threads <arg>             Maximum number of server threads." + BR +
+                "                                      Defaults to 200." + BR +
+                " -o,--debug                           Dumps raw HTTP request to the" + BR +
+                "                                      console (if console is not muted!)." + BR +
+                " -ob,--output_buffer <arg>            Response output buffer size in" + BR +
+                "                                      bytes. Defaults to 32768." + BR +
+                " -p,--password <arg>                  Password for the provided keystore" + BR +
+                "                                      file." + BR +
+                " -r,--recordings <arg>                Directory where recorded responses" + BR +
+                "                                      are persisted, and replayed from" + BR +
+                "                                      after a restart." + BR +
+                " -ro,--replay_only                    Replays recorded responses from the" + BR +
+                "                                      recordings directory, without" + BR +
+                "                                      recording the missing ones." + BR +
+                " -s,--stubs <arg>                     Port for stub portal. Defaults to" + BR +
+                "                                      8882." + BR +
+                " -sl,--selectors <arg>                Number of selector threads of each" + BR +
+                "                                      stubs portal. Derived from the" + BR +
+                "                                      available cores by Jetty by default." + BR +
+                " -t,--tls <arg>                       Port for TLS connection. Defaults to" + BR +
+                "                                      7443." + BR +
+                " -tq,--thread_queue <arg>             Maximum number of requests waiting" + BR +
+                "                                      for a server thread. Unbounded by" + BR +
+                "                                      default." + BR +
+                " -us,--unix_socket <arg>              Unix domain socket file at which the" + BR +
+                "                                      stubs portal is also served, for" + BR +
+                "                                      clients on the same host." + BR +
+                " -v,--version                         Prints out to console stubby" + BR +
+                "                                      version." + BR +
+                " -vt,--virtual_threads                Handles stubs portal requests on" + BR +
+                "                                      virtual threads, requires JDK 21 or" + BR +
+                "                                      later." + BR +
+                " -w,--watch                           Periodically scans for changes in" + BR +
+                "                                      last modification date of the main" + BR +
+                "                                      YAML and referenced external files" + BR +
+                "                                      (if any). The flag can accept an" + BR +
+                "                                      optional arg value which is the" + BR +
+                "                                      watch scan time in milliseconds. If" + BR +
+                "                                      milliseconds is not provided, the" + BR +
+                "                                      watch scans every 100ms. If last" + BR +
+                "                                      modification date changed since the" + BR +
+                "                                      last scan period, the stub" + BR +
+                "                                      configuration is reloaded";
 
         final String actualConsoleOutput = consoleCaptor.toString(StringUtils.UTF_8).trim();
 
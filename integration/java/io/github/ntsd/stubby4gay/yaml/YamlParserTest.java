@@ -889,6 +889,33 @@ public class YamlParserTest {
         }
     }
 
+    @Test
+    public void shouldUnmarshall_WhenYAMLValid_WithQueryNamesSharedAcrossStubs() throws Exception {
+
+        final String cycleOne = yamlBuilder.newStubbedRequest()
+                .withMethodGet()
+                .withUrl("/some/uri/1")
+                .withQuery("paramName", "paramValue1")
+                .newStubbedResponse()
+                .withStatus("200")
+                .build();
+
+        final String cycleTwo = yamlBuilder.newStubbedRequest()
+                .withMethodGet()
+                .withUrl("/some/uri/2")
+                .withQuery("paramName", "paramValue2")
+                .newStubbedResponse()
+                .withStatus("200")
+                .build();
+
+        final List<StubHttpLifecycle> loadedHttpCycles = unmarshall(String.format("%s%s%s", cycleOne, BR, cycleTwo)).getStubs();
+        final String queryNameOne = loadedHttpCycles.get(0).getRequest().getQuery().keySet().iterator().next();
+        final String queryNameTwo = loadedHttpCycles.get(1).getRequest().getQuery().keySet().iterator().next();
+
+        assertThat(queryNameOne).isSameAs(queryNameTwo);
+        assertThat(loadedHttpCycles.get(0).getRequest().getMethod()).isSameAs(loadedHttpCycles.get(1).getRequest().getMethod());
+    }
+
     private YamlParseResultSet unmarshall(final String yaml) throws Exception {
         return new YamlParser().parse(".", yaml);
     }
@@ -1,6 +1,7 @@
 package io.github.ntsd.stubby4gay.caching;
 
 
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
 import org.ehcache.UserManagedCache;
 
 import java.util.Optional;
@@ -8,12 +9,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public interface Cache<K, V> {
 
-    static Cache stubHttpLifecycleCache(final long cacheEntryLifetimeSeconds) {
-        return new StubHttpLifecycleCache(cacheEntryLifetimeSeconds);
+    static Cache<String, Integer> stubMatchesCache(final long cacheEntryLifetimeSeconds, final long maxEntries) {
+        return new StubMatchesCache(cacheEntryLifetimeSeconds, maxEntries);
     }
 
-    static Cache regexPatternCache(final long cacheEntryLifetimeSeconds) {
-        return new RegexPatternCache(cacheEntryLifetimeSeconds);
+    static Cache<String, StubbyResponse> recordedResponsesCache(final long cacheEntryLifetimeSeconds, final long maxEntries) {
+        return new RecordedResponsesCache(cacheEntryLifetimeSeconds, maxEntries);
     }
 
     default Optional<V> get(final K key) {
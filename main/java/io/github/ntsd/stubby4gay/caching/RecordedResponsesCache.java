@@ -1,7 +1,7 @@
 package io.github.ntsd.stubby4gay.caching;
 
 
-import io.github.ntsd.stubby4gay.stubs.StubHttpLifecycle;
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
 import org.ehcache.UserManagedCache;
 import org.ehcache.config.builders.ExpiryPolicyBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
@@ -10,17 +10,17 @@ import org.ehcache.config.builders.UserManagedCacheBuilder;
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class StubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
+class RecordedResponsesCache implements Cache<String, StubbyResponse> {
 
     private final AtomicInteger size;
-    private final UserManagedCache<String, StubHttpLifecycle> cache;
+    private final UserManagedCache<String, StubbyResponse> cache;
 
-    StubHttpLifecycleCache(final long cacheEntryLifetimeSeconds) {
+    RecordedResponsesCache(final long cacheEntryLifetimeSeconds, final long maxEntries) {
         final Duration timeToLiveExpiration = Duration.ofSeconds(cacheEntryLifetimeSeconds);
 
         this.cache = UserManagedCacheBuilder
-                .newUserManagedCacheBuilder(String.class, StubHttpLifecycle.class)
-                .withResourcePools(ResourcePoolsBuilder.heap(500L))
+                .newUserManagedCacheBuilder(String.class, StubbyResponse.class)
+                .withResourcePools(ResourcePoolsBuilder.heap(maxEntries))
                 .identifier(this.getClass().getSimpleName())
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLiveExpiration))
                 .build(true);
@@ -29,7 +29,7 @@ class StubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
     }
 
     @Override
-    public UserManagedCache<String, StubHttpLifecycle> cache() {
+    public UserManagedCache<String, StubbyResponse> cache() {
         return cache;
     }
 
@@ -8,19 +8,18 @@ import org.ehcache.config.builders.UserManagedCacheBuilder;
 
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
 
-class RegexPatternCache implements Cache<Integer, Pattern> {
+class StubMatchesCache implements Cache<String, Integer> {
 
     private final AtomicInteger size;
-    private final UserManagedCache<Integer, Pattern> cache;
+    private final UserManagedCache<String, Integer> cache;
 
-    RegexPatternCache(final long cacheEntryLifetimeSeconds) {
+    StubMatchesCache(final long cacheEntryLifetimeSeconds, final long maxEntries) {
         final Duration timeToLiveExpiration = Duration.ofSeconds(cacheEntryLifetimeSeconds);
 
         this.cache = UserManagedCacheBuilder
-                .newUserManagedCacheBuilder(Integer.class, Pattern.class)
-                .withResourcePools(ResourcePoolsBuilder.heap(500L))
+                .newUserManagedCacheBuilder(String.class, Integer.class)
+                .withResourcePools(ResourcePoolsBuilder.heap(maxEntries))
                 .identifier(this.getClass().getSimpleName())
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLiveExpiration))
                 .build(true);
@@ -29,7 +28,7 @@ class RegexPatternCache implements Cache<Integer, Pattern> {
     }
 
     @Override
-    public UserManagedCache<Integer, Pattern> cache() {
+    public UserManagedCache<String, Integer> cache() {
         return cache;
     }
 
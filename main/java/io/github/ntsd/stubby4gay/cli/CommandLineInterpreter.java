@@ -57,6 +57,25 @@ public final class CommandLineInterpreter {
     public static final String OPTION_DEBUG = "debug";
     public static final String OPTION_DISABLE_ADMIN = "disable_admin_portal";
     public static final String OPTION_DISABLE_SSL = "disable_ssl";
+    public static final String OPTION_RECORDINGS = "recordings";
+    public static final String OPTION_REPLAY_ONLY = "replay_only";
+    public static final String OPTION_MIN_THREADS = "min_threads";
+    public static final String OPTION_MAX_THREADS = "max_threads";
+    public static final String OPTION_THREAD_QUEUE = "thread_queue";
+    public static final String OPTION_ACCEPTORS = "acceptors";
+    public static final String OPTION_SELECTORS = "selectors";
+    public static final String OPTION_ACCEPT_QUEUE = "accept_queue";
+    public static final String OPTION_OUTPUT_BUFFER = "output_buffer";
+    public static final String OPTION_AUTO_TUNE = "auto_tune";
+    public static final String OPTION_VIRTUAL_THREADS = "virtual_threads";
+    public static final String OPTION_HTTP2 = "http2";
+    public static final String OPTION_HTTP2_MAX_STREAMS = "http2_max_streams";
+    public static final String OPTION_HTTP2_STREAM_WINDOW = "http2_stream_window";
+    public static final String OPTION_HTTP2_SESSION_WINDOW = "http2_session_window";
+    public static final String OPTION_UNIX_SOCKET = "unix_socket";
+    public static final String OPTION_COMPRESSION_MIN_SIZE = "compression_min_size";
+    public static final String OPTION_COMPRESSION_LEVEL = "compression_level";
+    public static final String OPTION_DEFLATE = "deflate";
 
     private static final CommandLineParser POSIX_PARSER = new PosixParser();
     private static final Options OPTIONS = new Options();
@@ -75,6 +94,25 @@ public final class CommandLineInterpreter {
         OPTIONS.addOption("o", OPTION_DEBUG, false, "Dumps raw HTTP request to the console (if console is not muted!).");
         OPTIONS.addOption("da", OPTION_DISABLE_ADMIN, false, "Does not start Admin portal");
         OPTIONS.addOption("ds", OPTION_DISABLE_SSL, false, "Does not enable SSL connections");
+        OPTIONS.addOption("r", OPTION_RECORDINGS, true, "Directory where recorded responses are persisted, and replayed from after a restart.");
+        OPTIONS.addOption("ro", OPTION_REPLAY_ONLY, false, "Replays recorded responses from the recordings directory, without recording the missing ones.");
+        OPTIONS.addOption("mnt", OPTION_MIN_THREADS, true, "Minimum number of server threads. Defaults to 8.");
+        OPTIONS.addOption("mxt", OPTION_MAX_THREADS, true, "Maximum number of server threads. Defaults to 200.");
+        OPTIONS.addOption("tq", OPTION_THREAD_QUEUE, true, "Maximum number of requests waiting for a server thread. Unbounded by default.");
+        OPTIONS.addOption("ac", OPTION_ACCEPTORS, true, "Number of acceptor threads of each stubs portal. Derived from the available cores by Jetty by default.");
+        OPTIONS.addOption("sl", OPTION_SELECTORS, true, "Number of selector threads of each stubs portal. Derived from the available cores by Jetty by default.");
+        OPTIONS.addOption("aq", OPTION_ACCEPT_QUEUE, true, "Accept backlog of the stubs portals. Defaults to the OS backlog.");
+        OPTIONS.addOption("ob", OPTION_OUTPUT_BUFFER, true, "Response output buffer size in bytes. Defaults to 32768.");
+        OPTIONS.addOption("at", OPTION_AUTO_TUNE, false, "Sizes server threads, acceptors, selectors and accept backlog from the available cores. Explicitly provided sizes take precedence.");
+        OPTIONS.addOption("vt", OPTION_VIRTUAL_THREADS, false, "Handles stubs portal requests on virtual threads, requires JDK 21 or later.");
+        OPTIONS.addOption("h2", OPTION_HTTP2, false, "Enables HTTP/2 on the stubs portals: cleartext (h2c) on the stubs port, and negotiated with ALPN (h2) on the TLS port.");
+        OPTIONS.addOption("h2s", OPTION_HTTP2_MAX_STREAMS, true, "Maximum number of concurrent HTTP/2 streams per connection. Defaults to 128.");
+        OPTIONS.addOption("h2sw", OPTION_HTTP2_STREAM_WINDOW, true, "Initial HTTP/2 flow-control receive window of each stream in bytes. Defaults to 524288.");
+        OPTIONS.addOption("h2cw", OPTION_HTTP2_SESSION_WINDOW, true, "Initial HTTP/2 flow-control receive window of each connection in bytes. Defaults to 1048576.");
+        OPTIONS.addOption("us", OPTION_UNIX_SOCKET, true, "Unix domain socket file at which the stubs portal is also served, for clients on the same host.");
+        OPTIONS.addOption("cms", OPTION_COMPRESSION_MIN_SIZE, true, "Minimum size in bytes of a response body to compress. Defaults to 1024.");
+        OPTIONS.addOption("cl", OPTION_COMPRESSION_LEVEL, true, "Compression level of gzip and deflate encoded responses, from 1 (fastest) to 9 (smallest). Defaults to 6.");
+        OPTIONS.addOption("df", OPTION_DEFLATE, false, "Pre-compresses static stubbed response bodies with deflate too, besides gzip.");
         @SuppressWarnings("static-access")
         Option watch =
                 OptionBuilder
@@ -175,4 +213,27 @@ public final class CommandLineInterpreter {
             }
         }};
     }
+
+    /**
+     * Reads an integer valued option from the parsed command line arguments
+     *
+     * @param commandLineArgs parsed command line arguments, as returned by {@link #getCommandlineParams()}
+     * @param option          long name of the option
+     * @param defaultValue    value to use when the option was not provided
+     * @return the option value, or the default value if the option was not provided
+     * @throws IllegalArgumentException if the option value is not an integer
+     */
+    public static int getIntOption(final Map<String, String> commandLineArgs, final String option, final int defaultValue) {
+        if (!commandLineArgs.containsKey(option)) {
+            return defaultValue;
+        }
+        final String value = commandLineArgs.get(option);
+        try {
+            return Integer.parseInt(value);
+        } catch (final NumberFormatException ex) {
+            final String msg = String.format("Invalid value '%s' of command line option '--%s', an integer is expected", value, option);
+
+            throw new IllegalArgumentException(msg, ex);
+        }
+    }
 }
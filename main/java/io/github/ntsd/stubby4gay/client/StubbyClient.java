@@ -23,6 +23,8 @@ import io.github.ntsd.stubby4gay.annotations.CoberturaIgnore;
 import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
 import io.github.ntsd.stubby4gay.http.StubbyHttpTransport;
 import io.github.ntsd.stubby4gay.server.JettyFactory;
+import io.github.ntsd.stubby4gay.server.JettyTuning;
+import io.github.ntsd.stubby4gay.server.StubsTransport;
 import io.github.ntsd.stubby4gay.server.StubbyManager;
 import io.github.ntsd.stubby4gay.server.StubbyManagerFactory;
 import io.github.ntsd.stubby4gay.utils.ObjectUtils;
@@ -35,7 +37,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -127,7 +132,40 @@ public final class StubbyClient {
      */
     @CoberturaIgnore
     public void startJetty(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind, final String yamlConfigurationFilename) throws Exception {
-        final String[] args = new String[]{"-m", "-l", addressToBind, "-s", String.valueOf(stubsPort), "-a", String.valueOf(adminPort), "-t", String.valueOf(tlsPort)};
+        startJetty(stubsPort, tlsPort, adminPort, addressToBind, yamlConfigurationFilename, JettyTuning.defaults());
+    }
+
+    /**
+     * Starts stubby using given Stubs, TlsStubs, Admin portals ports, host address and server tuning.
+     *
+     * @param stubsPort                 Stubs portal port
+     * @param tlsPort                   TLS Stubs portal port
+     * @param adminPort                 Admin portal port
+     * @param addressToBind             Address to bind Jetty
+     * @param yamlConfigurationFilename an absolute or relative file path for YAML stubs configuration file.
+     * @param jettyTuning               thread pool and connectors sizing, i.e.: {@link JettyTuning#auto(int)}
+     * @throws Exception
+     */
+    @CoberturaIgnore
+    public void startJetty(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind, final String yamlConfigurationFilename, final JettyTuning jettyTuning) throws Exception {
+        startJetty(stubsPort, tlsPort, adminPort, addressToBind, yamlConfigurationFilename, jettyTuning, StubsTransport.defaults());
+    }
+
+    /**
+     * Starts stubby using given Stubs, TlsStubs, Admin portals ports, host address, server tuning and stubs transport.
+     *
+     * @param stubsPort                 Stubs portal port
+     * @param tlsPort                   TLS Stubs portal port
+     * @param adminPort                 Admin portal port
+     * @param addressToBind             Address to bind Jetty
+     * @param yamlConfigurationFilename an absolute or relative file path for YAML stubs configuration file.
+     * @param jettyTuning               thread pool and connectors sizing, i.e.: {@link JettyTuning#auto(int)}
+     * @param stubsTransport            protocols and transports of the stubs portals, i.e.: HTTP/2
+     * @throws Exception
+     */
+    @CoberturaIgnore
+    public void startJetty(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind, final String yamlConfigurationFilename, final JettyTuning jettyTuning, final StubsTransport stubsTransport) throws Exception {
+        final String[] args = buildCommandLineArgs(stubsPort, tlsPort, adminPort, addressToBind, jettyTuning, stubsTransport);
         final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
         commandLineInterpreter.parseCommandLine(args);
 
@@ -156,7 +194,23 @@ public final class StubbyClient {
      */
     @CoberturaIgnore
     public void startJettyYamless(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind) throws Exception {
-        final String[] args = new String[]{"-m", "-l", addressToBind, "-s", String.valueOf(stubsPort), "-a", String.valueOf(adminPort), "-t", String.valueOf(tlsPort)};
+        startJettyYamless(stubsPort, tlsPort, adminPort, addressToBind, JettyTuning.defaults());
+    }
+
+    /**
+     * Starts stubby using given Stubs, TlsStubs, Admin portals ports, host address and server tuning without YAML
+     * configuration file.
+     *
+     * @param stubsPort     Stubs portal port
+     * @param tlsPort       TLS Stubs portal port
+     * @param adminPort     Admin portal port
+     * @param addressToBind Address to bind Jetty
+     * @param jettyTuning   thread pool and connectors sizing, i.e.: {@link JettyTuning#auto(int)}
+     * @throws Exception
+     */
+    @CoberturaIgnore
+    public void startJettyYamless(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind, final JettyTuning jettyTuning) throws Exception {
+        final String[] args = buildCommandLineArgs(stubsPort, tlsPort, adminPort, addressToBind, jettyTuning, StubsTransport.defaults());
         final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
         commandLineInterpreter.parseCommandLine(args);
         final URL url = StubbyClient.class.getResource("/yaml/empty-stub.yaml");
@@ -175,6 +229,14 @@ public final class StubbyClient {
         stubbyManager.startJetty();
     }
 
+    private static String[] buildCommandLineArgs(final int stubsPort, final int tlsPort, final int adminPort, final String addressToBind, final JettyTuning jettyTuning, final StubsTransport stubsTransport) {
+        final List<String> args = new ArrayList<>(Arrays.asList("-m", "-l", addressToBind, "-s", String.valueOf(stubsPort), "-a", String.valueOf(adminPort), "-t", String.valueOf(tlsPort)));
+        args.addAll(jettyTuning.toCommandLineArgs());
+        args.addAll(stubsTransport.toCommandLineArgs());
+
+        return args.toArray(new String[args.size()]);
+    }
+
     /**
      * Stops Jetty if it is up
      *
@@ -0,0 +1,51 @@
+package io.github.ntsd.stubby4gay.handlers;
+
+import io.github.ntsd.stubby4gay.metrics.StubMetrics;
+import io.github.ntsd.stubby4gay.utils.ConsoleUtils;
+import io.github.ntsd.stubby4gay.utils.HandlerUtils;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Exposes the {@link StubMetrics} on the admin portal: '/metrics' in the Prometheus text format, which can be scraped
+ * directly, and '/metrics/json' as JSON.
+ */
+public class MetricsHandler extends AbstractHandler {
+
+    private final StubMetrics metrics;
+
+    public MetricsHandler(final StubMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (response.isCommitted() || baseRequest.isHandled()) {
+            ConsoleUtils.logIncomingRequestError(request, "metrics", "HTTP response was committed or base request was handled, aborting..");
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+        response.setStatus(HttpStatus.OK_200);
+
+        try {
+            if (request.getRequestURI().endsWith("/json")) {
+                response.setContentType(MimeTypes.Type.APPLICATION_JSON_UTF_8.asString());
+                response.getWriter().print(metrics.toJson());
+            } else {
+                response.setContentType(StubMetrics.PROMETHEUS_CONTENT_TYPE);
+                response.getWriter().print(metrics.toPrometheusText());
+            }
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+}
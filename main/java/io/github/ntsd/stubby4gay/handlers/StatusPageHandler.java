@@ -126,6 +126,7 @@ public final class StatusPageHandler extends AbstractHandler {
         final String ajaxLinkToRequestAsYaml = String.format(TEMPLATE_AJAX_TO_RESOURCE_HYPERLINK, resourceId, ConfigurableYAMLProperty.HTTPLIFECYCLE, "requestAsYAML");
         final StringBuilder requestTableBuilder = buildStubHtmlTableBody(resourceId, REQUEST.toString(), ReflectionUtils.getProperties(stubHttpLifecycle.getRequest()));
         requestTableBuilder.append(interpolateHtmlTableRowTemplate("RAW YAML", ajaxLinkToRequestAsYaml));
+        requestTableBuilder.append(interpolateHtmlTableRowTemplate("RETAINED SIZE", formatRetainedSize(stubHttpLifecycle.estimateRetainedSize())));
 
         return String.format(templateHtmlTable, REQUEST, requestTableBuilder.toString());
     }
@@ -188,6 +189,7 @@ public final class StatusPageHandler extends AbstractHandler {
         builder.append(interpolateHtmlTableRowTemplate("UPTIME", HandlerUtils.calculateStubbyUpTime(RUNTIME_MX_BEAN.getUptime())));
         builder.append(interpolateHtmlTableRowTemplate("INPUT ARGS", CommandLineInterpreter.PROVIDED_OPTIONS));
         builder.append(interpolateHtmlTableRowTemplate("STUBBED ENDPOINTS", stubRepository.getStubs().size()));
+        builder.append(interpolateHtmlTableRowTemplate("STUBS RETAINED SIZE", formatRetainedSize(calculateStubsRetainedSize())));
         builder.append(interpolateHtmlTableRowTemplate("LOADED YAML", buildLoadedFileMetadata(stubRepository.getYamlConfig())));
 
         if (!stubRepository.getExternalFiles().isEmpty()) {
@@ -202,6 +204,18 @@ public final class StatusPageHandler extends AbstractHandler {
         return String.format(templateHtmlTable, "stubby4gay parameters", builder.toString());
     }
 
+    private long calculateStubsRetainedSize() {
+        long retainedSize = 0;
+        for (final StubHttpLifecycle stubHttpLifecycle : stubRepository.getStubs()) {
+            retainedSize += stubHttpLifecycle.estimateRetainedSize();
+        }
+        return retainedSize;
+    }
+
+    private String formatRetainedSize(final long retainedSize) {
+        return String.format("%,d bytes (estimated)", retainedSize);
+    }
+
     private String buildEndpointStatsHtmlTable(final String templateHtmlTable) throws Exception {
 
         final StringBuilder builder = new StringBuilder();
@@ -20,27 +20,72 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 package io.github.ntsd.stubby4gay.handlers;
 
 import io.github.ntsd.stubby4gay.handlers.strategy.stubs.StubResponseHandlingStrategy;
+import io.github.ntsd.stubby4gay.metrics.StubMetrics;
 import io.github.ntsd.stubby4gay.stubs.StubRepository;
+import io.github.ntsd.stubby4gay.stubs.StubResponse;
 import io.github.ntsd.stubby4gay.stubs.StubSearchResult;
 import io.github.ntsd.stubby4gay.utils.ConsoleUtils;
 import io.github.ntsd.stubby4gay.utils.HandlerUtils;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static io.github.ntsd.stubby4gay.handlers.strategy.stubs.StubsResponseHandlingStrategyFactory.getStrategy;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
 
 public class StubsPortalHandler extends AbstractHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubsPortalHandler.class);
+
+    private static final String LATENCY_TIMER_THREAD_NAME = "stubby-latency-timer";
+
     private final StubRepository stubRepository;
+    private final StubMetrics metrics;
+
+    // Simulated latency does not hold a Jetty thread: the request is suspended and this timer
+    // resumes it once the latency has elapsed. The timer is created every time the handler starts
+    private volatile ScheduledExecutorService latencyTimer;
+
+    // Suspended requests, which are completed with an error if the handler stops before their latency elapses
+    private final Set<DelayedResponse> delayedResponses = ConcurrentHashMap.newKeySet();
+
+    // When set, i.e.: to virtual threads, the requests are suspended and handled by an executor from start to end,
+    // so the blocking stages (simulated latency, recording, writing the response) do not hold Jetty threads.
+    // A new executor is created every time the handler starts
+    private final Supplier<ExecutorService> handlingExecutorSupplier;
+    private volatile ExecutorService handlingExecutor;
 
     public StubsPortalHandler(final StubRepository stubRepository) {
+        this(stubRepository, null);
+    }
+
+    /**
+     * @param stubRepository           stubs to handle the requests with
+     * @param handlingExecutorSupplier creates the executor to handle the requests on instead of the Jetty threads,
+     *                                 on every start of this handler, which shuts it down on stop, or null
+     */
+    public StubsPortalHandler(final StubRepository stubRepository, final Supplier<ExecutorService> handlingExecutorSupplier) {
         this.stubRepository = stubRepository;
+        this.metrics = stubRepository.getMetrics();
+        this.handlingExecutorSupplier = handlingExecutorSupplier;
     }
 
     @Override
@@ -48,6 +93,7 @@ public class StubsPortalHandler extends AbstractHandler {
                        final Request baseRequest,
                        final HttpServletRequest request,
                        final HttpServletResponse response) throws IOException, ServletException {
+        final long handlingStart = System.nanoTime();
         ConsoleUtils.logIncomingRequest(request);
         if (response.isCommitted() || baseRequest.isHandled()) {
             ConsoleUtils.logIncomingRequestError(request, "stubs", "HTTP response was committed or base request was handled, aborting..");
@@ -55,14 +101,194 @@ public class StubsPortalHandler extends AbstractHandler {
         }
         baseRequest.setHandled(true);
 
+        if (isNotNull(handlingExecutor) && request.isAsyncSupported()) {
+            handleOnExecutor(request, response, handlingStart);
+            return;
+        }
+
+        handleStub(request, response, handlingStart, false);
+    }
+
+    private void handleOnExecutor(final HttpServletRequest request,
+                                  final HttpServletResponse response,
+                                  final long handlingStart) throws IOException {
+        final AsyncContext asyncContext = request.startAsync();
+        // The response is always completed by the executor, the container must not time it out before
+        asyncContext.setTimeout(0L);
+
+        try {
+            handlingExecutor.execute(() -> {
+                try {
+                    handleStub(request, response, handlingStart, true);
+                } catch (final IOException ex) {
+                    LOGGER.error("Could not send error response.", ex);
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            // The handler is stopping
+            HandlerUtils.configureErrorResponse(response, HttpStatus.SERVICE_UNAVAILABLE_503, ex.toString());
+            recordHandled(request, response, null, handlingStart);
+            asyncContext.complete();
+        }
+    }
+
+    private void handleStub(final HttpServletRequest request,
+                            final HttpServletResponse response,
+                            final long handlingStart,
+                            final boolean blockingAllowed) throws IOException {
         try {
             final StubSearchResult stubSearchResult = stubRepository.search(request);
-            final StubResponseHandlingStrategy strategyStubResponse = getStrategy(stubSearchResult.getMatch());
+            final StubResponse foundStubResponse = stubSearchResult.getMatch();
+            final StubResponseHandlingStrategy strategyStubResponse = getStrategy(foundStubResponse);
+
+            final long latency = isSet(foundStubResponse.getLatency()) ? Long.parseLong(foundStubResponse.getLatency()) : 0L;
+            if (latency > 0L) {
+                // A virtual thread of the handling executor sleeps instead, which is cheaper than suspending again
+                if (!blockingAllowed && request.isAsyncSupported()) {
+                    respondAfterLatency(request, response, strategyStubResponse, stubSearchResult, latency, handlingStart);
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(latency);
+            }
 
-            strategyStubResponse.handle(response, stubSearchResult.getInvariant());
-            ConsoleUtils.logOutgoingResponse(stubSearchResult.getInvariant().getUrl(), response);
+            respond(response, strategyStubResponse, stubSearchResult);
+            recordHandled(request, response, stubSearchResult.getResourceId(), handlingStart);
         } catch (final Exception ex) {
             HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+            recordHandled(request, response, null, handlingStart);
+        }
+    }
+
+    private void respondAfterLatency(final HttpServletRequest request,
+                                     final HttpServletResponse response,
+                                     final StubResponseHandlingStrategy strategyStubResponse,
+                                     final StubSearchResult stubSearchResult,
+                                     final long latency,
+                                     final long handlingStart) {
+        final AsyncContext asyncContext = request.startAsync();
+        // The response is always completed by the timer, or when the handler stops, the container must not time
+        // it out before
+        asyncContext.setTimeout(0L);
+
+        final DelayedResponse delayedResponse =
+                new DelayedResponse(request, response, asyncContext, strategyStubResponse, stubSearchResult, handlingStart);
+        delayedResponses.add(delayedResponse);
+        try {
+            latencyTimer.schedule(delayedResponse, latency, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ex) {
+            // The handler is stopping
+            delayedResponse.abort(ex.toString());
+        }
+    }
+
+    private void respond(final HttpServletResponse response,
+                         final StubResponseHandlingStrategy strategyStubResponse,
+                         final StubSearchResult stubSearchResult) throws Exception {
+        strategyStubResponse.handle(response, stubSearchResult.getInvariant());
+        ConsoleUtils.logOutgoingResponse(stubSearchResult.getInvariant().getUrl(), response);
+    }
+
+    private void recordHandled(final HttpServletRequest request,
+                               final HttpServletResponse response,
+                               final String resourceId,
+                               final long handlingStart) {
+        metrics.recordResponse(resourceId, request.getMethod(), response.getStatus(), System.nanoTime() - handlingStart);
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        final ScheduledThreadPoolExecutor latencyTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, LATENCY_TIMER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        latencyTimer.setRemoveOnCancelPolicy(true);
+        this.latencyTimer = latencyTimer;
+        this.handlingExecutor = isNull(handlingExecutorSupplier) ? null : handlingExecutorSupplier.get();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        latencyTimer.shutdownNow();
+        for (final DelayedResponse delayedResponse : delayedResponses) {
+            delayedResponse.abort("Server is stopping");
+        }
+        if (isNotNull(handlingExecutor)) {
+            handlingExecutor.shutdownNow();
+        }
+        super.doStop();
+    }
+
+    /**
+     * A suspended request, which is either resumed by the latency timer, or aborted when the handler stops,
+     * whichever comes first
+     */
+    private final class DelayedResponse implements Runnable {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final AsyncContext asyncContext;
+        private final StubResponseHandlingStrategy strategyStubResponse;
+        private final StubSearchResult stubSearchResult;
+        private final long handlingStart;
+
+        private DelayedResponse(final HttpServletRequest request,
+                                final HttpServletResponse response,
+                                final AsyncContext asyncContext,
+                                final StubResponseHandlingStrategy strategyStubResponse,
+                                final StubSearchResult stubSearchResult,
+                                final long handlingStart) {
+            this.request = request;
+            this.response = response;
+            this.asyncContext = asyncContext;
+            this.strategyStubResponse = strategyStubResponse;
+            this.stubSearchResult = stubSearchResult;
+            this.handlingStart = handlingStart;
+        }
+
+        @Override
+        public void run() {
+            if (!delayedResponses.remove(this)) {
+                return;
+            }
+
+            // The timer thread only hands the response over to the container thread pool,
+            // so a slow client can never delay the other scheduled responses
+            asyncContext.start(() -> {
+                try {
+                    respond(response, strategyStubResponse, stubSearchResult);
+                } catch (final Exception ex) {
+                    sendError(HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+                } finally {
+                    // The response is recycled by the container once completed, its status must be read before
+                    recordHandled(request, response, stubSearchResult.getResourceId(), handlingStart);
+                    asyncContext.complete();
+                }
+            });
+        }
+
+        private void abort(final String reason) {
+            if (!delayedResponses.remove(this)) {
+                return;
+            }
+
+            try {
+                sendError(HttpStatus.SERVICE_UNAVAILABLE_503, reason);
+            } finally {
+                recordHandled(request, response, null, handlingStart);
+                asyncContext.complete();
+            }
+        }
+
+        private void sendError(final int httpStatus, final String message) {
+            try {
+                HandlerUtils.configureErrorResponse(response, httpStatus, message);
+            } catch (final IOException ex) {
+                LOGGER.error("Could not send error response after simulated latency.", ex);
+            }
         }
     }
 }
@@ -21,25 +21,31 @@ package io.github.ntsd.stubby4gay.handlers.strategy.stubs;
 
 import io.github.ntsd.stubby4gay.stubs.StubRequest;
 import io.github.ntsd.stubby4gay.stubs.StubResponse;
-import io.github.ntsd.stubby4gay.utils.StringUtils;
+import io.github.ntsd.stubby4gay.stubs.StubResponseHead;
+import io.github.ntsd.stubby4gay.stubs.StubResponseTemplate;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import static io.github.ntsd.stubby4gay.utils.FileUtils.fileToBytes;
 import static io.github.ntsd.stubby4gay.utils.HandlerUtils.setResponseMainHeaders;
-import static io.github.ntsd.stubby4gay.utils.StringUtils.getBytesUtf8;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isTokenized;
-import static io.github.ntsd.stubby4gay.utils.StringUtils.replaceTokens;
-import static io.github.ntsd.stubby4gay.utils.StringUtils.replaceTokensInString;
 
 public final class DefaultResponseHandlingStrategy implements StubResponseHandlingStrategy {
 
+    private static final int CONTENT_CHUNK_SIZE = 8192;
+
     private final StubResponse stubbedResponse;
 
     DefaultResponseHandlingStrategy(final StubResponse stubbedResponse) {
@@ -48,43 +54,118 @@ public final class DefaultResponseHandlingStrategy implements StubResponseHandli
 
     @Override
     public void handle(final HttpServletResponse response, final StubRequest assertionStubRequest) throws Exception {
+        final StubResponseHead responseHead = stubbedResponse.getResponseHead();
+        if (isNotNull(responseHead)) {
+            final String encoding = responseHead.negotiateEncoding(assertionStubRequest.getHeader(HttpHeader.ACCEPT_ENCODING.asString()));
+            if (isConditionalRequestApplicable(assertionStubRequest) && responseHead.isNotModified(
+                    assertionStubRequest.getHeader(HttpHeader.IF_NONE_MATCH.asString()),
+                    assertionStubRequest.getHeader(HttpHeader.IF_MODIFIED_SINCE.asString()))) {
+                response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                responseHead.applyNotModified(response, encoding);
+                return;
+            }
+            response.setStatus(stubbedResponse.getHttpStatusCode().getCode());
+            responseHead.apply(response, encoding);
+            writeOutputStream(response, responseHead, encoding);
+            return;
+        }
+
         final Map<String, String> regexGroups = assertionStubRequest.getRegexGroups();
 
         setResponseMainHeaders(response);
         setResponseStubbedHeaders(response, stubbedResponse, regexGroups);
 
-        if (StringUtils.isSet(stubbedResponse.getLatency())) {
-            final long latency = Long.parseLong(stubbedResponse.getLatency());
-            TimeUnit.MILLISECONDS.sleep(latency);
-        }
         response.setStatus(stubbedResponse.getHttpStatusCode().getCode());
 
-        final byte[] responseBody = stubbedResponse.getResponseBodyAsBytes();
         if (stubbedResponse.isFilePathContainsTemplateTokens()) {
-            final String resolvedPath = replaceTokensInString(stubbedResponse.getRawFileAbsolutePath(), regexGroups);
+            final String resolvedPath = StubResponseTemplate.compile(stubbedResponse.getRawFileAbsolutePath()).renderToString(regexGroups);
             final File resolvedFile = new File(resolvedPath);
             if (resolvedFile.exists()) {
-                writeOutputStream(response, getBytesUtf8(replaceTokens(fileToBytes(resolvedFile), regexGroups)));
+                writeOutputStream(response, StubResponseTemplate.compile(fileToBytes(resolvedFile)), regexGroups);
             } else {
                 response.setStatus(HttpStatus.NOT_FOUND_404);
             }
         } else if (stubbedResponse.isBodyContainsTemplateTokens()) {
-            writeOutputStream(response, getBytesUtf8(replaceTokens(responseBody, regexGroups)));
+            writeOutputStream(response, stubbedResponse.getResponseBodyTemplate(), regexGroups);
         } else {
-            writeOutputStream(response, responseBody);
+            final ByteBuffer mappedFileContent = stubbedResponse.getMappedFileContent();
+            if (isNotNull(mappedFileContent)) {
+                writeOutputStream(response, mappedFileContent);
+            } else {
+                writeOutputStream(response, stubbedResponse.getResponseBodyAsBytes());
+            }
         }
     }
 
+    // A 304 stands in for a successful GET or HEAD only, as per RFC 7232
+    private boolean isConditionalRequestApplicable(final StubRequest assertionStubRequest) {
+        final List<String> method = assertionStubRequest.getMethod();
+        return HttpStatus.isSuccess(stubbedResponse.getHttpStatusCode().getCode()) &&
+                (method.contains(HttpMethod.GET.asString()) || method.contains(HttpMethod.HEAD.asString()));
+    }
+
     private void setResponseStubbedHeaders(final HttpServletResponse response, final StubResponse stubResponse, final Map<String, String> regexGroups) {
+        if (stubResponse.isCacheControlStubbed()) {
+            // Same as the pre-rendered responses, see StubResponseHead#isCacheControlStubbed
+            response.setHeader(HttpHeader.PRAGMA.asString(), null);
+            response.setHeader(HttpHeader.EXPIRES.asString(), null);
+        }
         for (final Map.Entry<String, String> headerPair : stubResponse.getHeaders().entrySet()) {
             String responseHeaderValue = headerPair.getValue();
             if (isTokenized(responseHeaderValue)) {
-                responseHeaderValue = replaceTokensInString(headerPair.getValue(), regexGroups);
+                responseHeaderValue = StubResponseTemplate.compile(headerPair.getValue()).renderToString(regexGroups);
             }
             response.setHeader(headerPair.getKey(), responseHeaderValue);
         }
     }
 
+    private void writeOutputStream(final HttpServletResponse response,
+                                   final StubResponseTemplate responseBodyTemplate,
+                                   final Map<String, String> regexGroups) throws IOException {
+        try (final OutputStream outputStream = response.getOutputStream()) {
+            responseBodyTemplate.render(outputStream, regexGroups);
+            outputStream.flush();
+        }
+    }
+
+    private void writeOutputStream(final HttpServletResponse response,
+                                   final StubResponseHead responseHead,
+                                   final String encoding) throws IOException {
+        final byte[] responseBody = responseHead.getBody(encoding);
+        if (isNotNull(responseBody)) {
+            writeOutputStream(response, responseBody);
+            return;
+        }
+
+        final ByteBuffer mappedFileContent = stubbedResponse.getMappedFileContent();
+        if (isNull(mappedFileContent)) {
+            // The head was taken right before the mapped file changed, its Content-Length can no longer be honoured
+            throw new IOException(String.format("Stubbed file %s changed while being served", stubbedResponse.getRawFileAbsolutePath()));
+        }
+        writeOutputStream(response, mappedFileContent);
+    }
+
+    private void writeOutputStream(final HttpServletResponse response, final ByteBuffer content) throws IOException {
+        try (final OutputStream outputStream = response.getOutputStream()) {
+            if (outputStream instanceof HttpOutput) {
+                // Jetty writes the mapped content straight to the channel and completes the response
+                ((HttpOutput) outputStream).sendContent(content);
+                return;
+            }
+
+            final byte[] chunk = new byte[Math.min(CONTENT_CHUNK_SIZE, content.remaining())];
+            while (content.hasRemaining()) {
+                final int length = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, length);
+                outputStream.write(chunk, 0, length);
+            }
+            outputStream.flush();
+        } catch (final InternalError e) {
+            // Reading the mapping past the end of a file truncated meanwhile faults, which only aborts this response
+            throw new IOException(String.format("Stubbed file %s was truncated while being served", stubbedResponse.getRawFileAbsolutePath()), e);
+        }
+    }
+
     private void writeOutputStream(final HttpServletResponse response, final byte[] responseBody) throws IOException {
         try (final OutputStream outputStream = response.getOutputStream()) {
             outputStream.write(responseBody);
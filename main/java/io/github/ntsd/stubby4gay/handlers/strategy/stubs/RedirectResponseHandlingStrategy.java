@@ -21,16 +21,14 @@ package io.github.ntsd.stubby4gay.handlers.strategy.stubs;
 
 import io.github.ntsd.stubby4gay.stubs.StubRequest;
 import io.github.ntsd.stubby4gay.stubs.StubResponse;
+import io.github.ntsd.stubby4gay.stubs.StubResponseTemplate;
 import io.github.ntsd.stubby4gay.utils.HandlerUtils;
-import io.github.ntsd.stubby4gay.utils.StringUtils;
 import org.eclipse.jetty.http.HttpHeader;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isTokenized;
-import static io.github.ntsd.stubby4gay.utils.StringUtils.replaceTokensInString;
 
 public class RedirectResponseHandlingStrategy implements StubResponseHandlingStrategy {
 
@@ -45,14 +43,9 @@ public class RedirectResponseHandlingStrategy implements StubResponseHandlingStr
         HandlerUtils.setResponseMainHeaders(response);
         final Map<String, String> regexGroups = assertionStubRequest.getRegexGroups();
 
-        if (StringUtils.isSet(foundStubResponse.getLatency())) {
-            final long latency = Long.parseLong(foundStubResponse.getLatency());
-            TimeUnit.MILLISECONDS.sleep(latency);
-        }
-
         final String headerLocation = foundStubResponse.getHeaders().get("location");
         if (isTokenized(headerLocation)) {
-            response.setHeader(HttpHeader.LOCATION.asString(), replaceTokensInString(headerLocation, regexGroups));
+            response.setHeader(HttpHeader.LOCATION.asString(), StubResponseTemplate.compile(headerLocation).renderToString(regexGroups));
         } else {
             response.setHeader(HttpHeader.LOCATION.asString(), headerLocation);
         }
@@ -33,7 +33,7 @@ public final class StubsResponseHandlingStrategyFactory {
         final HttpStatus.Code httpStatusCode = foundStubResponse.getHttpStatusCode();
         switch (httpStatusCode) {
             case NOT_FOUND:
-                if (foundStubResponse.getResponseBodyAsBytes().length == 0) {
+                if (foundStubResponse.isResponseBodyEmpty()) {
                     return new NotFoundResponseHandlingStrategy();
                 }
                 break;
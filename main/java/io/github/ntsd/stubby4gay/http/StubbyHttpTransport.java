@@ -90,6 +90,11 @@ public class StubbyHttpTransport {
         return buildStubbyResponse(connection);
     }
 
+    /**
+     * The connection is not disconnected: once the response was read to the end and closed, the underlying socket
+     * goes back to the keep-alive cache of the JDK, and is reused by the next call to the same host and port. The
+     * number of idle connections kept per destination is set by the "http.maxConnections" system property.
+     */
     private StubbyResponse buildStubbyResponse(final HttpURLConnection connection) throws IOException {
         try {
             connection.connect();
@@ -101,9 +106,25 @@ public class StubbyHttpTransport {
                     return new StubbyResponse(responseCode, responseContent);
                 }
             }
-            return new StubbyResponse(responseCode, connection.getResponseMessage());
-        } finally {
+            final String responseMessage = connection.getResponseMessage();
+            drainResponseBody(connection, responseCode);
+
+            return new StubbyResponse(responseCode, responseMessage);
+        } catch (final IOException e) {
+            // A connection in an unknown state must not be reused
             connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static void drainResponseBody(final HttpURLConnection connection, final int responseCode) throws IOException {
+        try (final InputStream inputStream = responseCode >= HttpStatus.BAD_REQUEST_400 ? connection.getErrorStream() : connection.getInputStream()) {
+            if (inputStream != null) {
+                final byte[] buffer = new byte[4096];
+                while (inputStream.read(buffer) != -1) {
+                    // Discarding the unused body
+                }
+            }
         }
     }
 
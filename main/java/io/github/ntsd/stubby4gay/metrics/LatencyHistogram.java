@@ -0,0 +1,76 @@
+package io.github.ntsd.stubby4gay.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed bucket bounds, which spread from the microseconds it takes to match a request, up to
+ * the seconds of simulated latency.
+ * <p>
+ * Every bucket is a {@link LongAdder}, so concurrent recordings do not contend on a single counter. The counts are not
+ * cumulative, they are accumulated only when the histogram is exported.
+ */
+final class LatencyHistogram {
+
+    /**
+     * Upper bounds of the buckets, inclusive, in nanoseconds. Values above the last bound fall into the overflow bucket
+     */
+    static final long[] BUCKET_BOUNDS_NANOS = {
+            TimeUnit.MICROSECONDS.toNanos(10),
+            TimeUnit.MICROSECONDS.toNanos(50),
+            TimeUnit.MICROSECONDS.toNanos(100),
+            TimeUnit.MICROSECONDS.toNanos(500),
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10)
+    };
+
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos;
+
+    LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+        for (int idx = 0; idx < buckets.length; idx++) {
+            buckets[idx] = new LongAdder();
+        }
+        this.sumNanos = new LongAdder();
+    }
+
+    void record(final long nanos) {
+        final long boundedNanos = Math.max(0L, nanos);
+        buckets[bucketOf(boundedNanos)].increment();
+        sumNanos.add(boundedNanos);
+    }
+
+    /**
+     * @return the cumulative counts of the buckets, the last one being the overflow bucket, i.e.: the total count
+     */
+    long[] cumulativeCounts() {
+        final long[] counts = new long[buckets.length];
+        long cumulative = 0L;
+        for (int idx = 0; idx < buckets.length; idx++) {
+            cumulative += buckets[idx].sum();
+            counts[idx] = cumulative;
+        }
+        return counts;
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    private static int bucketOf(final long nanos) {
+        for (int idx = 0; idx < BUCKET_BOUNDS_NANOS.length; idx++) {
+            if (nanos <= BUCKET_BOUNDS_NANOS[idx]) {
+                return idx;
+            }
+        }
+        return BUCKET_BOUNDS_NANOS.length;
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.ntsd.stubby4gay.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one scope, i.e.: of all requests, or of the requests that matched one stub.
+ */
+final class ScopeMetrics {
+
+    private final LongAdder hits;
+    private final ConcurrentMap<Integer, LongAdder> responsesByStatus;
+    private final LatencyHistogram matchTime;
+    private final LatencyHistogram handlingTime;
+
+    ScopeMetrics() {
+        this.hits = new LongAdder();
+        this.responsesByStatus = new ConcurrentHashMap<>();
+        this.matchTime = new LatencyHistogram();
+        this.handlingTime = new LatencyHistogram();
+    }
+
+    void recordMatch(final long matchNanos) {
+        hits.increment();
+        matchTime.record(matchNanos);
+    }
+
+    void recordResponse(final int status, final long handlingNanos) {
+        // The adder is looked up before it is computed, which spares the locking of computeIfAbsent on Java 8
+        LongAdder responses = responsesByStatus.get(status);
+        if (responses == null) {
+            responses = responsesByStatus.computeIfAbsent(status, key -> new LongAdder());
+        }
+        responses.increment();
+        handlingTime.record(handlingNanos);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return response counts by status code, in ascending order of status codes
+     */
+    Map<Integer, Long> getResponsesByStatus() {
+        final Map<Integer, Long> snapshot = new TreeMap<>();
+        for (final Map.Entry<Integer, LongAdder> entry : responsesByStatus.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    LatencyHistogram getMatchTime() {
+        return matchTime;
+    }
+
+    LatencyHistogram getHandlingTime() {
+        return handlingTime;
+    }
+}
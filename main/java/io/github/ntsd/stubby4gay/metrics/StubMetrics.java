@@ -0,0 +1,280 @@
+package io.github.ntsd.stubby4gay.metrics;
+
+import io.github.ntsd.stubby4gay.utils.ObjectUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit and latency metrics of the stubs portal, kept globally and per stub.
+ * <p>
+ * The match time is recorded by the {@link io.github.ntsd.stubby4gay.stubs.StubRepository} once an incoming request
+ * was matched, or not, against the stubs. The total handling time, which includes any simulated latency, and the
+ * response status are recorded by the stubs portal once the response was written. Stubs are identified by their
+ * resource ID, which is their position in the loaded YAML.
+ * <p>
+ * All the counters are {@link LongAdder}s, so request threads never contend on a shared counter or take a lock once
+ * the counters of a stub were created. The metrics are exported in the Prometheus text format, and as JSON.
+ */
+public final class StubMetrics {
+
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE", "CONNECT", "OTHER"};
+    private static final int OTHER_METHOD = METHODS.length - 1;
+    private static final int UNMATCHED = 0;
+    private static final int MATCHED = 1;
+
+    // Resource IDs are positions, they are ordered by length first so that "10" follows "9"
+    private static final Comparator<String> RESOURCE_ID_ORDER = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    private final ScopeMetrics global;
+    private final LongAdder[][] requestsByMethod;
+    private final ConcurrentMap<String, StubScope> stubs;
+
+    public StubMetrics() {
+        this.global = new ScopeMetrics();
+        this.requestsByMethod = new LongAdder[METHODS.length][2];
+        for (final LongAdder[] requests : requestsByMethod) {
+            requests[UNMATCHED] = new LongAdder();
+            requests[MATCHED] = new LongAdder();
+        }
+        this.stubs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param resourceId resource ID of the matched stub, or null when no stub matched
+     * @param url        stubbed URL of the matched stub, or null when no stub matched
+     * @param matchNanos time it took to match the request
+     */
+    public void recordMatch(final String resourceId, final String url, final long matchNanos) {
+        global.recordMatch(matchNanos);
+        if (ObjectUtils.isNotNull(resourceId)) {
+            final StubScope stubScope = stubScope(resourceId);
+            // Stubs can be reloaded, so the resource ID is labelled with the URL of the stub that was matched last
+            if (stubScope.url != url) {
+                stubScope.url = url;
+            }
+            stubScope.metrics.recordMatch(matchNanos);
+        }
+    }
+
+    /**
+     * @param resourceId    resource ID of the matched stub, or null when no stub matched
+     * @param method        method of the incoming request
+     * @param status        status code of the response
+     * @param handlingNanos time it took to handle the request, from the moment it was received
+     */
+    public void recordResponse(final String resourceId, final String method, final int status, final long handlingNanos) {
+        final boolean matched = ObjectUtils.isNotNull(resourceId);
+        requestsByMethod[methodIndex(method)][matched ? MATCHED : UNMATCHED].increment();
+        global.recordResponse(status, handlingNanos);
+        if (matched) {
+            stubScope(resourceId).metrics.recordResponse(status, handlingNanos);
+        }
+    }
+
+    /**
+     * @return number of matches by resource ID, in ascending order of resource IDs
+     */
+    public Map<String, Long> getStubHits() {
+        final Map<String, Long> stubHits = new LinkedHashMap<>();
+        for (final Map.Entry<String, StubScope> entry : sortedStubs().entrySet()) {
+            stubHits.put(entry.getKey(), entry.getValue().metrics.getHits());
+        }
+        return stubHits;
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format, version 0.0.4
+     */
+    public String toPrometheusText() {
+        final StringBuilder text = new StringBuilder(4096);
+
+        appendHeader(text, "stubby_requests_total", "counter", "Requests handled by the stubs portal, by method and by whether a stub matched.");
+        for (int methodIdx = 0; methodIdx < METHODS.length; methodIdx++) {
+            for (final int matched : new int[]{MATCHED, UNMATCHED}) {
+                final long requests = requestsByMethod[methodIdx][matched].sum();
+                if (requests > 0) {
+                    text.append("stubby_requests_total{method=\"").append(METHODS[methodIdx])
+                            .append("\",matched=\"").append(matched == MATCHED).append("\"} ")
+                            .append(requests).append('\n');
+                }
+            }
+        }
+
+        appendHeader(text, "stubby_responses_total", "counter", "Responses sent by the stubs portal, by status code.");
+        appendResponses(text, "stubby_responses_total", "", global);
+
+        appendHeader(text, "stubby_match_duration_seconds", "histogram", "Time it took to match the requests against the stubs.");
+        appendHistogram(text, "stubby_match_duration_seconds", "", global.getMatchTime());
+
+        appendHeader(text, "stubby_handling_duration_seconds", "histogram", "Time it took to handle the requests, including any simulated latency.");
+        appendHistogram(text, "stubby_handling_duration_seconds", "", global.getHandlingTime());
+
+        final Map<String, StubScope> sortedStubs = sortedStubs();
+        appendHeader(text, "stubby_stub_hits_total", "counter", "Requests matched by each stub.");
+        for (final Map.Entry<String, StubScope> entry : sortedStubs.entrySet()) {
+            text.append("stubby_stub_hits_total{").append(stubLabels(entry.getKey(), entry.getValue()))
+                    .append("} ").append(entry.getValue().metrics.getHits()).append('\n');
+        }
+
+        appendHeader(text, "stubby_stub_responses_total", "counter", "Responses sent for each stub, by status code.");
+        for (final Map.Entry<String, StubScope> entry : sortedStubs.entrySet()) {
+            appendResponses(text, "stubby_stub_responses_total", stubLabels(entry.getKey(), entry.getValue()) + ",", entry.getValue().metrics);
+        }
+
+        appendHeader(text, "stubby_stub_match_duration_seconds", "histogram", "Time it took to match the requests of each stub.");
+        for (final Map.Entry<String, StubScope> entry : sortedStubs.entrySet()) {
+            appendHistogram(text, "stubby_stub_match_duration_seconds", stubLabels(entry.getKey(), entry.getValue()) + ",", entry.getValue().metrics.getMatchTime());
+        }
+
+        appendHeader(text, "stubby_stub_handling_duration_seconds", "histogram", "Time it took to handle the requests of each stub, including any simulated latency.");
+        for (final Map.Entry<String, StubScope> entry : sortedStubs.entrySet()) {
+            appendHistogram(text, "stubby_stub_handling_duration_seconds", stubLabels(entry.getKey(), entry.getValue()) + ",", entry.getValue().metrics.getHandlingTime());
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * @return the metrics as a JSON document
+     */
+    public String toJson() throws JSONException {
+        long matchedRequests = 0L;
+        long unmatchedRequests = 0L;
+        final JSONObject requestsByMethodJson = new JSONObject();
+        for (int methodIdx = 0; methodIdx < METHODS.length; methodIdx++) {
+            final long matched = requestsByMethod[methodIdx][MATCHED].sum();
+            final long unmatched = requestsByMethod[methodIdx][UNMATCHED].sum();
+            if (matched + unmatched > 0) {
+                requestsByMethodJson.put(METHODS[methodIdx], new JSONObject().put("matched", matched).put("unmatched", unmatched));
+            }
+            matchedRequests += matched;
+            unmatchedRequests += unmatched;
+        }
+
+        final JSONObject requestsJson = new JSONObject()
+                .put("total", matchedRequests + unmatchedRequests)
+                .put("matched", matchedRequests)
+                .put("unmatched", unmatchedRequests)
+                .put("byMethod", requestsByMethodJson);
+
+        final JSONArray stubsJson = new JSONArray();
+        for (final Map.Entry<String, StubScope> entry : sortedStubs().entrySet()) {
+            final ScopeMetrics stubMetrics = entry.getValue().metrics;
+            stubsJson.put(new JSONObject()
+                    .put("resourceId", entry.getKey())
+                    .put("url", entry.getValue().url)
+                    .put("hits", stubMetrics.getHits())
+                    .put("responses", responsesJson(stubMetrics))
+                    .put("matchTime", histogramJson(stubMetrics.getMatchTime()))
+                    .put("handlingTime", histogramJson(stubMetrics.getHandlingTime())));
+        }
+
+        return new JSONObject()
+                .put("requests", requestsJson)
+                .put("responses", responsesJson(global))
+                .put("matchTime", histogramJson(global.getMatchTime()))
+                .put("handlingTime", histogramJson(global.getHandlingTime()))
+                .put("stubs", stubsJson)
+                .toString();
+    }
+
+    private StubScope stubScope(final String resourceId) {
+        final StubScope stubScope = stubs.get(resourceId);
+        if (stubScope != null) {
+            return stubScope;
+        }
+        return stubs.computeIfAbsent(resourceId, key -> new StubScope());
+    }
+
+    private Map<String, StubScope> sortedStubs() {
+        final Map<String, StubScope> sortedStubs = new TreeMap<>(RESOURCE_ID_ORDER);
+        sortedStubs.putAll(stubs);
+        return sortedStubs;
+    }
+
+    private static int methodIndex(final String method) {
+        for (int idx = 0; idx < OTHER_METHOD; idx++) {
+            if (METHODS[idx].equalsIgnoreCase(method)) {
+                return idx;
+            }
+        }
+        return OTHER_METHOD;
+    }
+
+    private static void appendHeader(final StringBuilder text, final String name, final String type, final String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendResponses(final StringBuilder text, final String name, final String labels, final ScopeMetrics scope) {
+        for (final Map.Entry<Integer, Long> entry : scope.getResponsesByStatus().entrySet()) {
+            text.append(name).append('{').append(labels).append("status=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+    }
+
+    private static void appendHistogram(final StringBuilder text, final String name, final String labels, final LatencyHistogram histogram) {
+        final long[] cumulativeCounts = histogram.cumulativeCounts();
+        for (int idx = 0; idx < cumulativeCounts.length; idx++) {
+            final String upperBound = idx < LatencyHistogram.BUCKET_BOUNDS_NANOS.length ?
+                    toSeconds(LatencyHistogram.BUCKET_BOUNDS_NANOS[idx]) : "+Inf";
+            text.append(name).append("_bucket{").append(labels).append("le=\"").append(upperBound).append("\"} ")
+                    .append(cumulativeCounts[idx]).append('\n');
+        }
+        final String labelSet = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        text.append(name).append("_sum").append(labelSet).append(' ').append(toSeconds(histogram.sumNanos())).append('\n');
+        text.append(name).append("_count").append(labelSet).append(' ').append(cumulativeCounts[cumulativeCounts.length - 1]).append('\n');
+    }
+
+    private static String stubLabels(final String resourceId, final StubScope stubScope) {
+        final String url = ObjectUtils.isNull(stubScope.url) ? "" : stubScope.url;
+        return "stub=\"" + escapeLabelValue(resourceId) + "\",url=\"" + escapeLabelValue(url) + "\"";
+    }
+
+    private static String escapeLabelValue(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static JSONObject responsesJson(final ScopeMetrics scope) throws JSONException {
+        final JSONObject responsesJson = new JSONObject();
+        for (final Map.Entry<Integer, Long> entry : scope.getResponsesByStatus().entrySet()) {
+            responsesJson.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return responsesJson;
+    }
+
+    private static JSONObject histogramJson(final LatencyHistogram histogram) throws JSONException {
+        final long[] cumulativeCounts = histogram.cumulativeCounts();
+        final JSONArray bucketsJson = new JSONArray();
+        for (int idx = 0; idx < cumulativeCounts.length; idx++) {
+            final String upperBound = idx < LatencyHistogram.BUCKET_BOUNDS_NANOS.length ?
+                    toSeconds(LatencyHistogram.BUCKET_BOUNDS_NANOS[idx]) : "+Inf";
+            bucketsJson.put(new JSONObject().put("le", upperBound).put("count", cumulativeCounts[idx]));
+        }
+        return new JSONObject()
+                .put("count", cumulativeCounts[cumulativeCounts.length - 1])
+                .put("sumSeconds", new BigDecimal(toSeconds(histogram.sumNanos())))
+                .put("buckets", bucketsJson);
+    }
+
+    private static String toSeconds(final long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    private static final class StubScope {
+        private final ScopeMetrics metrics = new ScopeMetrics();
+        private volatile String url;
+    }
+}
@@ -25,14 +25,25 @@ import io.github.ntsd.stubby4gay.handlers.AjaxEndpointStatsHandler;
 import io.github.ntsd.stubby4gay.handlers.AjaxResourceContentHandler;
 import io.github.ntsd.stubby4gay.handlers.FaviconHandler;
 import io.github.ntsd.stubby4gay.handlers.JsonErrorHandler;
+import io.github.ntsd.stubby4gay.handlers.MetricsHandler;
 import io.github.ntsd.stubby4gay.handlers.StatusPageHandler;
 import io.github.ntsd.stubby4gay.handlers.StubDataRefreshActionHandler;
 import io.github.ntsd.stubby4gay.handlers.StubsPortalHandler;
 import io.github.ntsd.stubby4gay.stubs.StubRepository;
+import io.github.ntsd.stubby4gay.stubs.StubResponseCompression;
 import io.github.ntsd.stubby4gay.utils.ObjectUtils;
 import io.github.ntsd.stubby4gay.utils.StringUtils;
+import io.github.ntsd.stubby4gay.utils.VirtualThreadUtils;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -46,11 +57,19 @@ import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -65,18 +84,26 @@ import java.util.Map;
 @SuppressWarnings("serial")
 public final class JettyFactory {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JettyFactory.class);
+
     public static final int DEFAULT_ADMIN_PORT = 8889;
     public static final int DEFAULT_STUBS_PORT = 8882;
     public static final int DEFAULT_SSL_PORT = 7443;
     public static final String DEFAULT_HOST = "localhost";
     private static final int SERVER_CONNECTOR_IDLETIME_MILLIS = 45000;
+    private static final int SERVER_THREAD_IDLETIME_MILLIS = 60000;
     private static final String PROTOCOL_HTTP_1_1 = "HTTP/1.1";
+    private static final String ALPN_PROTOCOL_HTTP_1_1 = "http/1.1";
+    private static final String ALPN_PROTOCOL_HTTP_2 = "h2";
     private static final String ADMIN_CONNECTOR_NAME = "AdminConnector";
     private static final String STUBS_CONNECTOR_NAME = "StubsConnector";
     private static final String SSL_CONNECTOR_NAME = "SslStubsConnector";
+    private static final String UNIX_SOCKET_CONNECTOR_NAME = "UnixSocketStubsConnector";
     private static final String ROOT_PATH_INFO = "/";
     private final Map<String, String> commandLineArgs;
     private final StubRepository stubRepository;
+    private final JettyTuning jettyTuning;
+    private final StubsTransport stubsTransport;
     private final List<String> statuses;
     private String currentHost;
     private int currentStubsPort;
@@ -86,11 +113,13 @@ public final class JettyFactory {
     JettyFactory(final Map<String, String> commandLineArgs, final StubRepository stubRepository) {
         this.commandLineArgs = commandLineArgs;
         this.stubRepository = stubRepository;
+        this.jettyTuning = JettyTuning.fromCommandLineArgs(commandLineArgs);
+        this.stubsTransport = StubsTransport.fromCommandLineArgs(commandLineArgs);
         this.statuses = new LinkedList<>();
     }
 
     Server construct() throws IOException {
-        final Server server = new Server();
+        final Server server = new Server(constructThreadPool());
         server.setDumpAfterStart(false);
         server.setDumpBeforeStop(false);
         server.setStopAtShutdown(true);
@@ -98,37 +127,65 @@ public final class JettyFactory {
         server.setConnectors(buildConnectors(server));
         server.setHandler(constructHandlers());
 
+        statuses.add(String.format("Server tuned with %s", jettyTuning));
+        statuses.add(String.format("Stubs portals serve %s", stubsTransport));
+
         return server;
     }
 
+    private QueuedThreadPool constructThreadPool() {
+        // Without a queue, Jetty creates its default unbounded one
+        final BlockingArrayQueue<Runnable> jobsQueue = jettyTuning.getThreadQueueCapacity() == JettyTuning.JETTY_DEFAULT ?
+                null :
+                new BlockingArrayQueue<>(jettyTuning.getThreadQueueCapacity());
+
+        return new QueuedThreadPool(jettyTuning.getMaxThreads(), jettyTuning.getMinThreads(), SERVER_THREAD_IDLETIME_MILLIS, jobsQueue);
+    }
+
     private ContextHandlerCollection constructHandlers() {
 
         final JettyContext jettyContext = new JettyContext(currentHost, currentStubsPort, currentStubsSslPort, currentAdminPort);
-        final ContextHandlerCollection handlers = new ContextHandlerCollection();
-        handlers.setHandlers(new Handler[]
-                {
-                        constructHandler(STUBS_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())),
-                        constructHandler(STUBS_CONNECTOR_NAME, ROOT_PATH_INFO, gzipHandler(new StubsPortalHandler(stubRepository))),
-
-                        constructHandler(SSL_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())),
-                        constructHandler(SSL_CONNECTOR_NAME, ROOT_PATH_INFO, gzipHandler(new StubsPortalHandler(stubRepository))),
-
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/status", gzipHandler(new StatusPageHandler(jettyContext, stubRepository))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/refresh", new StubDataRefreshActionHandler(stubRepository)),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/js/highlight", gzipHandler(staticResourceHandler("ui/js/highlight/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/js/minified", gzipHandler(staticResourceHandler("ui/js/minified/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/js/d3", gzipHandler(staticResourceHandler("ui/js/d3/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/js", gzipHandler(staticResourceHandler("ui/js/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/css", gzipHandler(staticResourceHandler("ui/css/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/images", gzipHandler(staticResourceHandler("ui/images/"))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/resource", gzipHandler(new AjaxResourceContentHandler(stubRepository))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/stats", gzipHandler(new AjaxEndpointStatsHandler(stubRepository))),
-                        constructHandler(ADMIN_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())),
-                        constructHandler(ADMIN_CONNECTOR_NAME, ROOT_PATH_INFO, gzipHandler(new AdminPortalHandler(stubRepository)))
-                }
-        );
-
-        return handlers;
+        final List<Handler> handlers = new ArrayList<>();
+        handlers.add(constructHandler(STUBS_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())));
+        handlers.add(constructHandler(STUBS_CONNECTOR_NAME, ROOT_PATH_INFO, stubsPortalGzipHandler(constructStubsPortalHandler())));
+
+        handlers.add(constructHandler(SSL_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())));
+        handlers.add(constructHandler(SSL_CONNECTOR_NAME, ROOT_PATH_INFO, stubsPortalGzipHandler(constructStubsPortalHandler())));
+
+        if (ObjectUtils.isNotNull(stubsTransport.getUnixSocket())) {
+            handlers.add(constructHandler(UNIX_SOCKET_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())));
+            handlers.add(constructHandler(UNIX_SOCKET_CONNECTOR_NAME, ROOT_PATH_INFO, stubsPortalGzipHandler(constructStubsPortalHandler())));
+        }
+
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/status", gzipHandler(new StatusPageHandler(jettyContext, stubRepository))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/refresh", new StubDataRefreshActionHandler(stubRepository)));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/js/highlight", gzipHandler(staticResourceHandler("ui/js/highlight/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/js/minified", gzipHandler(staticResourceHandler("ui/js/minified/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/js/d3", gzipHandler(staticResourceHandler("ui/js/d3/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/js", gzipHandler(staticResourceHandler("ui/js/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/css", gzipHandler(staticResourceHandler("ui/css/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/images", gzipHandler(staticResourceHandler("ui/images/"))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/resource", gzipHandler(new AjaxResourceContentHandler(stubRepository))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/stats", gzipHandler(new AjaxEndpointStatsHandler(stubRepository))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/metrics", gzipHandler(new MetricsHandler(stubRepository.getMetrics()))));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())));
+        handlers.add(constructHandler(ADMIN_CONNECTOR_NAME, ROOT_PATH_INFO, gzipHandler(new AdminPortalHandler(stubRepository))));
+
+        final ContextHandlerCollection handlerCollection = new ContextHandlerCollection();
+        handlerCollection.setHandlers(handlers.toArray(new Handler[handlers.size()]));
+
+        return handlerCollection;
+    }
+
+    private StubsPortalHandler constructStubsPortalHandler() {
+        if (!jettyTuning.isVirtualThreads()) {
+            return new StubsPortalHandler(stubRepository);
+        }
+        if (!VirtualThreadUtils.isSupported()) {
+            throw new IllegalArgumentException(String.format("--%s requires JDK 21 or later, running on %s",
+                    CommandLineInterpreter.OPTION_VIRTUAL_THREADS, System.getProperty("java.version")));
+        }
+        return new StubsPortalHandler(stubRepository, VirtualThreadUtils::newVirtualThreadPerTaskExecutor);
     }
 
     private ResourceHandler staticResourceHandler(final String classPathResource) {
@@ -144,25 +201,42 @@ public final class JettyFactory {
 
         final GzipHandler gzipHandler = new GzipHandler();
         gzipHandler.addIncludedMimeTypes(
-                "text/html,",
-                "text/plain,",
-                "text/xml,",
-                "application/xhtml,xml,",
-                "application/json,",
-                "text/css,",
-                "application/javascript,",
-                "application/x-javascript,",
-                "image/svg,xml,",
-                "image/x-icon,",
-                "image/gif,",
-                "image/jpg,",
-                "image/jpeg,",
+                "text/html",
+                "text/plain",
+                "text/xml",
+                "application/xhtml+xml",
+                "application/json",
+                "text/css",
+                "application/javascript",
+                "application/x-javascript",
+                "image/svg+xml",
+                "image/x-icon",
+                "image/gif",
+                "image/jpg",
+                "image/jpeg",
                 "image/png");
         gzipHandler.setHandler(abstractHandler);
 
         return gzipHandler;
     }
 
+    /**
+     * The static stubbed response bodies are pre-compressed by the {@link StubRepository}, and sent with their
+     * Content-Encoding, which Jetty does not compress again. Only the templated and recorded bodies are compressed
+     * on every request, as per the same {@link StubResponseCompression}.
+     */
+    private GzipHandler stubsPortalGzipHandler(final AbstractHandler abstractHandler) {
+
+        final StubResponseCompression stubResponseCompression = stubRepository.getStubResponseCompression();
+        final GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.addIncludedMimeTypes(stubResponseCompression.getCompressibleMimeTypes());
+        gzipHandler.setMinGzipSize(stubResponseCompression.getMinSize());
+        gzipHandler.setCompressionLevel(stubResponseCompression.getLevel());
+        gzipHandler.setHandler(abstractHandler);
+
+        return gzipHandler;
+    }
+
     private ContextHandler constructHandler(final String connectorName, final String pathInfo, final Handler handler) {
 
         final ContextHandler contextHandler = new ContextHandler();
@@ -193,6 +267,9 @@ public final class JettyFactory {
         if (!commandLineArgs.containsKey(CommandLineInterpreter.OPTION_DISABLE_SSL)) {
             connectors.add(buildStubsSslConnector(server));
         }
+        if (ObjectUtils.isNotNull(stubsTransport.getUnixSocket())) {
+            connectors.add(buildStubsUnixSocketConnector(server));
+        }
         return connectors.toArray(new Connector[connectors.size()]);
     }
 
@@ -216,6 +293,9 @@ public final class JettyFactory {
         final String status = String.format("Admin portal status enabled at http://%s:%s/status",
                 adminChannel.getHost(), adminChannel.getPort());
         statuses.add(status);
+        final String metrics = String.format("Admin portal metrics enabled at http://%s:%s/metrics",
+                adminChannel.getHost(), adminChannel.getPort());
+        statuses.add(metrics);
 
         currentHost = adminChannel.getHost();
         currentAdminPort = adminChannel.getPort();
@@ -226,8 +306,10 @@ public final class JettyFactory {
     private ServerConnector buildStubsConnector(final Server server) {
 
         final HttpConfiguration httpConfiguration = constructHttpConfiguration();
-        final ServerConnector stubsChannel = new ServerConnector(server, new HttpConnectionFactory(httpConfiguration));
+        final ServerConnector stubsChannel = new ServerConnector(server, jettyTuning.getAcceptors(), jettyTuning.getSelectors(),
+                constructCleartextConnectionFactories(httpConfiguration));
         stubsChannel.setPort(getStubsPort(commandLineArgs));
+        tuneStubsConnector(stubsChannel);
 
         stubsChannel.setName(STUBS_CONNECTOR_NAME);
         stubsChannel.setHost(DEFAULT_HOST);
@@ -237,8 +319,8 @@ public final class JettyFactory {
             stubsChannel.setHost(commandLineArgs.get(CommandLineInterpreter.OPTION_ADDRESS));
         }
 
-        final String status = String.format("Stubs portal configured at http://%s:%s",
-                stubsChannel.getHost(), stubsChannel.getPort());
+        final String status = String.format("Stubs portal configured at http://%s:%s%s",
+                stubsChannel.getHost(), stubsChannel.getPort(), stubsTransport.isHttp2() ? " with HTTP/2 (h2c)" : "");
         statuses.add(status);
 
         currentStubsPort = stubsChannel.getPort();
@@ -246,6 +328,59 @@ public final class JettyFactory {
         return stubsChannel;
     }
 
+    private UnixSocketConnector buildStubsUnixSocketConnector(final Server server) throws IOException {
+
+        final HttpConfiguration httpConfiguration = constructHttpConfiguration();
+        final UnixSocketConnector unixSocketChannel = new UnixSocketConnector(server, jettyTuning.getSelectors(),
+                constructCleartextConnectionFactories(httpConfiguration));
+
+        final Path unixSocket = Paths.get(stubsTransport.getUnixSocket()).toAbsolutePath();
+        deleteStaleUnixSocket(unixSocket);
+        unixSocketChannel.setUnixSocket(unixSocket.toString());
+
+        unixSocketChannel.setName(UNIX_SOCKET_CONNECTOR_NAME);
+        unixSocketChannel.setIdleTimeout(SERVER_CONNECTOR_IDLETIME_MILLIS);
+        if (jettyTuning.getAcceptQueueSize() != JettyTuning.JETTY_DEFAULT) {
+            unixSocketChannel.setAcceptQueueSize(jettyTuning.getAcceptQueueSize());
+        }
+
+        final String status = String.format("Stubs portal configured at unix:%s%s",
+                unixSocketChannel.getUnixSocket(), stubsTransport.isHttp2() ? " with HTTP/2 (h2c)" : "");
+        statuses.add(status);
+
+        return unixSocketChannel;
+    }
+
+    // A socket left behind by a previous run that was killed would fail the bind, so it is replaced. A socket that
+    // another process still accepts connections on is not, and neither are other files
+    private static void deleteStaleUnixSocket(final Path unixSocket) throws IOException {
+        if (!Files.exists(unixSocket) || Files.isRegularFile(unixSocket) || Files.isDirectory(unixSocket)) {
+            return;
+        }
+        if (isUnixSocketListening(unixSocket)) {
+            throw new IOException(String.format("Unix socket %s is in use by another process", unixSocket));
+        }
+        Files.delete(unixSocket);
+    }
+
+    private static boolean isUnixSocketListening(final Path unixSocket) {
+        try (final UnixSocketChannel unixSocketChannel = UnixSocketChannel.open(new UnixSocketAddress(unixSocket.toFile()))) {
+            return unixSocketChannel.isConnected();
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private ConnectionFactory[] constructCleartextConnectionFactories(final HttpConfiguration httpConfiguration) {
+        final List<ConnectionFactory> connectionFactories = new ArrayList<>();
+        connectionFactories.add(new HttpConnectionFactory(httpConfiguration));
+        if (stubsTransport.isHttp2()) {
+            // Accepts both the HTTP/1.1 upgrade to h2c, and h2c with prior knowledge
+            connectionFactories.add(tuneHttp2(new HTTP2CServerConnectionFactory(httpConfiguration)));
+        }
+        return connectionFactories.toArray(new ConnectionFactory[connectionFactories.size()]);
+    }
+
     private ServerConnector buildStubsSslConnector(final Server server) throws IOException {
 
         String keystorePath = null;
@@ -262,11 +397,25 @@ public final class JettyFactory {
         httpConfiguration.addCustomizer(new SecureRequestCustomizer());
 
         final SslContextFactory sslContextFactory = constructSslContextFactory(password, keystorePath);
+        final ALPNServerConnectionFactory alpnConnectionFactory = stubsTransport.isHttp2() ? constructAlpnConnectionFactory() : null;
+
+        final List<ConnectionFactory> connectionFactories = new ArrayList<>();
+        if (ObjectUtils.isNull(alpnConnectionFactory)) {
+            connectionFactories.add(new SslConnectionFactory(sslContextFactory, PROTOCOL_HTTP_1_1));
+        } else {
+            // HTTP/2 forbids a number of TLS 1.2 ciphers, which must thus be sorted after the ones it allows
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+            sslContextFactory.setUseCipherSuitesOrder(true);
+            connectionFactories.add(new SslConnectionFactory(sslContextFactory, alpnConnectionFactory.getProtocol()));
+            connectionFactories.add(alpnConnectionFactory);
+            connectionFactories.add(tuneHttp2(new HTTP2ServerConnectionFactory(httpConfiguration)));
+        }
+        connectionFactories.add(new HttpConnectionFactory(httpConfiguration));
 
-        ServerConnector sslConnector = new ServerConnector(server,
-                new SslConnectionFactory(sslContextFactory, PROTOCOL_HTTP_1_1),
-                new HttpConnectionFactory(httpConfiguration));
+        ServerConnector sslConnector = new ServerConnector(server, jettyTuning.getAcceptors(), jettyTuning.getSelectors(),
+                connectionFactories.toArray(new ConnectionFactory[connectionFactories.size()]));
         sslConnector.setPort(getStubsSslPort(commandLineArgs));
+        tuneStubsConnector(sslConnector);
 
         sslConnector.setHost(DEFAULT_HOST);
         sslConnector.setName(SSL_CONNECTOR_NAME);
@@ -276,8 +425,9 @@ public final class JettyFactory {
             sslConnector.setHost(commandLineArgs.get(CommandLineInterpreter.OPTION_ADDRESS));
         }
 
-        final String status = String.format("Stubs portal configured with TLS at https://%s:%s using %s keystore",
-                sslConnector.getHost(), sslConnector.getPort(), (ObjectUtils.isNull(keystorePath) ? "internal" : "provided " + keystorePath));
+        final String status = String.format("Stubs portal configured with TLS at https://%s:%s using %s keystore%s",
+                sslConnector.getHost(), sslConnector.getPort(), (ObjectUtils.isNull(keystorePath) ? "internal" : "provided " + keystorePath),
+                (ObjectUtils.isNull(alpnConnectionFactory) ? "" : " with HTTP/2 (h2)"));
         statuses.add(status);
 
         currentStubsSslPort = sslConnector.getPort();
@@ -285,6 +435,44 @@ public final class JettyFactory {
         return sslConnector;
     }
 
+    private ALPNServerConnectionFactory constructAlpnConnectionFactory() {
+        try {
+            final ALPNServerConnectionFactory alpnConnectionFactory = new ALPNServerConnectionFactory(ALPN_PROTOCOL_HTTP_2, ALPN_PROTOCOL_HTTP_1_1);
+            // Clients that do not negotiate a protocol get HTTP/1.1
+            alpnConnectionFactory.setDefaultProtocol(ALPN_PROTOCOL_HTTP_1_1);
+
+            return alpnConnectionFactory;
+        } catch (final IllegalStateException ex) {
+            // Without ALPN support in the JVM, i.e.: JDK 8 without the ALPN boot jar, the TLS port stays on HTTP/1.1
+            final String status = String.format("HTTP/2 (h2) is not available on the TLS port, the JVM does not support ALPN: %s", ex.getMessage());
+            statuses.add(status);
+            LOGGER.warn(status, ex);
+
+            return null;
+        }
+    }
+
+    private AbstractHTTP2ServerConnectionFactory tuneHttp2(final AbstractHTTP2ServerConnectionFactory http2ConnectionFactory) {
+        if (stubsTransport.getHttp2MaxConcurrentStreams() != StubsTransport.JETTY_DEFAULT) {
+            http2ConnectionFactory.setMaxConcurrentStreams(stubsTransport.getHttp2MaxConcurrentStreams());
+        }
+        if (stubsTransport.getHttp2InitialStreamRecvWindow() != StubsTransport.JETTY_DEFAULT) {
+            http2ConnectionFactory.setInitialStreamRecvWindow(stubsTransport.getHttp2InitialStreamRecvWindow());
+        }
+        if (stubsTransport.getHttp2InitialSessionRecvWindow() != StubsTransport.JETTY_DEFAULT) {
+            http2ConnectionFactory.setInitialSessionRecvWindow(stubsTransport.getHttp2InitialSessionRecvWindow());
+        }
+        return http2ConnectionFactory;
+    }
+
+    private void tuneStubsConnector(final ServerConnector stubsConnector) {
+        // Restarted load tests must be able to rebind while the connections of the previous run are in TIME_WAIT
+        stubsConnector.setReuseAddress(true);
+        if (jettyTuning.getAcceptQueueSize() != JettyTuning.JETTY_DEFAULT) {
+            stubsConnector.setAcceptQueueSize(jettyTuning.getAcceptQueueSize());
+        }
+    }
+
     private SslContextFactory constructSslContextFactory(final String password, final String keystorePath) throws IOException {
 
         final SslContextFactory sslFactory = new SslContextFactory();
@@ -318,7 +506,7 @@ public final class JettyFactory {
         final HttpConfiguration httpConfiguration = new HttpConfiguration();
         httpConfiguration.setSendServerVersion(true);
         httpConfiguration.setSendXPoweredBy(true);
-        httpConfiguration.setOutputBufferSize(32768);
+        httpConfiguration.setOutputBufferSize(jettyTuning.getOutputBufferSize());
         httpConfiguration.setRequestHeaderSize(8192);
         httpConfiguration.setResponseHeaderSize(8192);
 
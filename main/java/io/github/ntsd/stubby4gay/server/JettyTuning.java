@@ -0,0 +1,264 @@
+package io.github.ntsd.stubby4gay.server;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.cli.CommandLineInterpreter.getIntOption;
+
+/**
+ * Sizing of the Jetty thread pool and of the stubs connectors, and the kind of threads the stubs portals handle the
+ * requests on.
+ * <p>
+ * By default, stubby keeps the Jetty defaults: a thread pool of 8 to 200 threads with an unbounded queue, acceptor and
+ * selector counts derived by Jetty from the available cores, and the accept backlog of the OS. The auto profile sizes
+ * these from the available cores instead, for load testing boxes with many cores. Explicitly configured values always
+ * take precedence over the profile.
+ * <p>
+ * A value of {@link #JETTY_DEFAULT} leaves the choice to Jetty, or to the OS for the accept backlog.
+ * <p>
+ * On JDK 21 or later, the stubs portals can also handle the requests on virtual threads, in which case the thread pool
+ * only runs the connectors and dispatches the requests. This is never enabled by the auto profile.
+ * <p>
+ * The protocols and transports the stubs portals are served over are configured by {@link StubsTransport}.
+ */
+public final class JettyTuning {
+
+    public static final int JETTY_DEFAULT = -1;
+
+    static final int DEFAULT_MIN_THREADS = 8;
+    static final int DEFAULT_MAX_THREADS = 200;
+    static final int DEFAULT_OUTPUT_BUFFER_SIZE = 32768;
+
+    // The admin connector keeps the Jetty defaults, which never take more than 4 acceptors and 4 selectors
+    private static final int ADMIN_CONNECTOR_THREADS = 8;
+    private static final int STUBS_CONNECTORS = 2;
+    private static final int AUTO_WORKER_THREADS_PER_CORE = 16;
+    private static final int AUTO_ACCEPT_QUEUE_SIZE = 1024;
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final int threadQueueCapacity;
+    private final int acceptors;
+    private final int selectors;
+    private final int acceptQueueSize;
+    private final int outputBufferSize;
+    private final boolean virtualThreads;
+
+    private JettyTuning(final Builder builder) {
+        this.minThreads = builder.minThreads;
+        this.maxThreads = builder.maxThreads;
+        this.threadQueueCapacity = builder.threadQueueCapacity;
+        this.acceptors = builder.acceptors;
+        this.selectors = builder.selectors;
+        this.acceptQueueSize = builder.acceptQueueSize;
+        this.outputBufferSize = builder.outputBufferSize;
+        this.virtualThreads = builder.virtualThreads;
+    }
+
+    public static JettyTuning defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * Every stubs connector gets an acceptor per 8 cores, up to 8, and a selector per 2 cores. The worker threads,
+     * 16 per core but no less than the Jetty default, come on top of the threads taken by the acceptors and the
+     * selectors of all the connectors.
+     *
+     * @param cores number of available cores
+     */
+    public static JettyTuning auto(final int cores) {
+        final int acceptors = Math.max(1, Math.min(8, cores / 8));
+        final int selectors = Math.max(1, cores / 2);
+        final int workerThreads = Math.max(DEFAULT_MAX_THREADS, cores * AUTO_WORKER_THREADS_PER_CORE);
+        final int connectorThreads = STUBS_CONNECTORS * (acceptors + selectors) + ADMIN_CONNECTOR_THREADS;
+
+        return new Builder()
+                .withMinThreads(Math.max(DEFAULT_MIN_THREADS, cores) + connectorThreads)
+                .withMaxThreads(workerThreads + connectorThreads)
+                .withAcceptors(acceptors)
+                .withSelectors(selectors)
+                .withAcceptQueueSize(AUTO_ACCEPT_QUEUE_SIZE)
+                .build();
+    }
+
+    /**
+     * @param commandLineArgs parsed command line arguments
+     * @return the auto profile when requested, or the defaults, overridden by the explicitly configured values
+     */
+    public static JettyTuning fromCommandLineArgs(final Map<String, String> commandLineArgs) {
+        final JettyTuning profile = commandLineArgs.containsKey(CommandLineInterpreter.OPTION_AUTO_TUNE) ?
+                auto(Runtime.getRuntime().availableProcessors()) :
+                defaults();
+
+        return new Builder()
+                .withMinThreads(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_MIN_THREADS, profile.minThreads))
+                .withMaxThreads(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_MAX_THREADS, profile.maxThreads))
+                .withThreadQueueCapacity(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_THREAD_QUEUE, profile.threadQueueCapacity))
+                .withAcceptors(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_ACCEPTORS, profile.acceptors))
+                .withSelectors(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_SELECTORS, profile.selectors))
+                .withAcceptQueueSize(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_ACCEPT_QUEUE, profile.acceptQueueSize))
+                .withOutputBufferSize(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_OUTPUT_BUFFER, profile.outputBufferSize))
+                .withVirtualThreads(commandLineArgs.containsKey(CommandLineInterpreter.OPTION_VIRTUAL_THREADS))
+                .build();
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return maximum number of requests waiting for a thread, or {@link #JETTY_DEFAULT} when the queue is unbounded
+     */
+    public int getThreadQueueCapacity() {
+        return threadQueueCapacity;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public int getAcceptQueueSize() {
+        return acceptQueueSize;
+    }
+
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    /**
+     * @return true when the stubs portals handle the requests on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return the command line arguments that configure this tuning, i.e.: to pass the tuning of
+     * {@link io.github.ntsd.stubby4gay.client.StubbyClient} through to the {@link StubbyManagerFactory}
+     */
+    public List<String> toCommandLineArgs() {
+        final List<String> args = new ArrayList<>();
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_MIN_THREADS, minThreads);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_MAX_THREADS, maxThreads);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_THREAD_QUEUE, threadQueueCapacity);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_ACCEPTORS, acceptors);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_SELECTORS, selectors);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_ACCEPT_QUEUE, acceptQueueSize);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_OUTPUT_BUFFER, outputBufferSize);
+        if (virtualThreads) {
+            args.add("--" + CommandLineInterpreter.OPTION_VIRTUAL_THREADS);
+        }
+
+        return args;
+    }
+
+    // Values left to Jetty are the defaults of the options, so they are not passed on
+    private static void addCommandLineArg(final List<String> args, final String option, final int value) {
+        if (value != JETTY_DEFAULT) {
+            args.add("--" + option);
+            args.add(String.valueOf(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("threads %s-%s, thread queue %s, acceptors %s, selectors %s, accept queue %s, output buffer %s bytes%s",
+                minThreads, maxThreads, describe(threadQueueCapacity, "unbounded"), describe(acceptors, "default"),
+                describe(selectors, "default"), describe(acceptQueueSize, "default"), outputBufferSize,
+                virtualThreads ? ", virtual threads" : "");
+    }
+
+    private static String describe(final int value, final String defaultDescription) {
+        return value == JETTY_DEFAULT ? defaultDescription : String.valueOf(value);
+    }
+
+    public static final class Builder {
+
+        private int minThreads;
+        private int maxThreads;
+        private int threadQueueCapacity;
+        private int acceptors;
+        private int selectors;
+        private int acceptQueueSize;
+        private int outputBufferSize;
+        private boolean virtualThreads;
+
+        public Builder() {
+            this.minThreads = DEFAULT_MIN_THREADS;
+            this.maxThreads = DEFAULT_MAX_THREADS;
+            this.threadQueueCapacity = JETTY_DEFAULT;
+            this.acceptors = JETTY_DEFAULT;
+            this.selectors = JETTY_DEFAULT;
+            this.acceptQueueSize = JETTY_DEFAULT;
+            this.outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+            this.virtualThreads = false;
+        }
+
+        public Builder withMinThreads(final int minThreads) {
+            this.minThreads = minThreads;
+            return this;
+        }
+
+        public Builder withMaxThreads(final int maxThreads) {
+            this.maxThreads = maxThreads;
+            return this;
+        }
+
+        public Builder withThreadQueueCapacity(final int threadQueueCapacity) {
+            this.threadQueueCapacity = threadQueueCapacity;
+            return this;
+        }
+
+        public Builder withAcceptors(final int acceptors) {
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        public Builder withSelectors(final int selectors) {
+            this.selectors = selectors;
+            return this;
+        }
+
+        public Builder withAcceptQueueSize(final int acceptQueueSize) {
+            this.acceptQueueSize = acceptQueueSize;
+            return this;
+        }
+
+        public Builder withOutputBufferSize(final int outputBufferSize) {
+            this.outputBufferSize = outputBufferSize;
+            return this;
+        }
+
+        public Builder withVirtualThreads(final boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        public JettyTuning build() {
+            if (minThreads < 1 || maxThreads < minThreads) {
+                throw new IllegalArgumentException(String.format("Invalid thread pool size %s-%s", minThreads, maxThreads));
+            }
+            if (threadQueueCapacity == 0 || threadQueueCapacity < JETTY_DEFAULT) {
+                throw new IllegalArgumentException(String.format("Invalid thread queue capacity %s", threadQueueCapacity));
+            }
+            if (acceptors == 0 || acceptors < JETTY_DEFAULT || selectors == 0 || selectors < JETTY_DEFAULT) {
+                throw new IllegalArgumentException(String.format("Invalid acceptors %s or selectors %s", acceptors, selectors));
+            }
+            if (acceptQueueSize < JETTY_DEFAULT || outputBufferSize < 1) {
+                throw new IllegalArgumentException(String.format("Invalid accept queue %s or output buffer %s", acceptQueueSize, outputBufferSize));
+            }
+            return new JettyTuning(this);
+        }
+    }
+}
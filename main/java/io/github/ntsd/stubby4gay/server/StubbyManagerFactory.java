@@ -24,13 +24,16 @@ import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
 import io.github.ntsd.stubby4gay.cli.EmptyLogger;
 import io.github.ntsd.stubby4gay.filesystem.ExternalFilesScanner;
 import io.github.ntsd.stubby4gay.filesystem.MainYamlScanner;
+import io.github.ntsd.stubby4gay.stubs.StubRecordingStore;
 import io.github.ntsd.stubby4gay.stubs.StubRepository;
+import io.github.ntsd.stubby4gay.stubs.StubResponseCompression;
 import io.github.ntsd.stubby4gay.utils.ObjectUtils;
 import io.github.ntsd.stubby4gay.yaml.YamlParseResultSet;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.log.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -47,7 +50,8 @@ public class StubbyManagerFactory {
         // Commenting out the following line will configure Jetty for StdErrLog DEBUG level logging
         Log.setLog(new EmptyLogger());
 
-        final StubRepository stubRepository = new StubRepository(configFile, stubLoadComputation);
+        final StubRepository stubRepository = new StubRepository(configFile, stubLoadComputation,
+                openRecordingStore(commandLineArgs), StubResponseCompression.fromCommandLineArgs(commandLineArgs));
         final JettyFactory jettyFactory = new JettyFactory(commandLineArgs, stubRepository);
         final Server server = jettyFactory.construct();
 
@@ -64,6 +68,20 @@ public class StubbyManagerFactory {
         return new StubbyManager(server, jettyFactory, stubRepository);
     }
 
+    private StubRecordingStore openRecordingStore(final Map<String, String> commandLineArgs) throws IOException {
+        final boolean replayOnly = commandLineArgs.containsKey(CommandLineInterpreter.OPTION_REPLAY_ONLY);
+        if (!commandLineArgs.containsKey(CommandLineInterpreter.OPTION_RECORDINGS)) {
+            if (replayOnly) {
+                throw new IllegalArgumentException(String.format("--%s requires --%s",
+                        CommandLineInterpreter.OPTION_REPLAY_ONLY, CommandLineInterpreter.OPTION_RECORDINGS));
+            }
+            return StubRecordingStore.disabled();
+        }
+
+        final File recordingsDirectory = new File(commandLineArgs.get(CommandLineInterpreter.OPTION_RECORDINGS));
+        return StubRecordingStore.open(recordingsDirectory, replayOnly);
+    }
+
     private void watchDataStore(final StubRepository stubRepository, final long sleepTime) {
 
         final MainYamlScanner mainYamlScanner = new MainYamlScanner(stubRepository, sleepTime);
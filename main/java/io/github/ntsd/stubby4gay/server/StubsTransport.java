@@ -0,0 +1,180 @@
+package io.github.ntsd.stubby4gay.server;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.cli.CommandLineInterpreter.getIntOption;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
+
+/**
+ * Protocols and transports the stubs portals are served over.
+ * <p>
+ * By default, the stubs portals only speak HTTP/1.1 over TCP. HTTP/2 is opt-in, its maximum concurrent streams and
+ * flow-control windows only apply when it is enabled. A value of {@link #JETTY_DEFAULT} leaves the choice
+ * to Jetty.
+ * <p>
+ * Clients on the same host can also reach the stubs portal through an optional Unix domain socket, bypassing TCP.
+ */
+public final class StubsTransport {
+
+    public static final int JETTY_DEFAULT = -1;
+
+    private final boolean http2;
+    private final int http2MaxConcurrentStreams;
+    private final int http2InitialStreamRecvWindow;
+    private final int http2InitialSessionRecvWindow;
+    private final String unixSocket;
+
+    private StubsTransport(final Builder builder) {
+        this.http2 = builder.http2;
+        this.http2MaxConcurrentStreams = builder.http2MaxConcurrentStreams;
+        this.http2InitialStreamRecvWindow = builder.http2InitialStreamRecvWindow;
+        this.http2InitialSessionRecvWindow = builder.http2InitialSessionRecvWindow;
+        this.unixSocket = builder.unixSocket;
+    }
+
+    public static StubsTransport defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * @param commandLineArgs parsed command line arguments
+     * @return the defaults, overridden by the explicitly configured values
+     */
+    public static StubsTransport fromCommandLineArgs(final Map<String, String> commandLineArgs) {
+        return new Builder()
+                .withHttp2(commandLineArgs.containsKey(CommandLineInterpreter.OPTION_HTTP2))
+                .withHttp2MaxConcurrentStreams(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_HTTP2_MAX_STREAMS, JETTY_DEFAULT))
+                .withHttp2InitialStreamRecvWindow(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_HTTP2_STREAM_WINDOW, JETTY_DEFAULT))
+                .withHttp2InitialSessionRecvWindow(getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_HTTP2_SESSION_WINDOW, JETTY_DEFAULT))
+                .withUnixSocket(commandLineArgs.get(CommandLineInterpreter.OPTION_UNIX_SOCKET))
+                .build();
+    }
+
+    /**
+     * @return true when the stubs portals accept HTTP/2 besides HTTP/1.1
+     */
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public int getHttp2InitialStreamRecvWindow() {
+        return http2InitialStreamRecvWindow;
+    }
+
+    public int getHttp2InitialSessionRecvWindow() {
+        return http2InitialSessionRecvWindow;
+    }
+
+    /**
+     * @return path of the Unix domain socket the stubs portal is also served at, or null
+     */
+    public String getUnixSocket() {
+        return unixSocket;
+    }
+
+    /**
+     * @return the command line arguments that configure this transport, i.e.: to pass the transport of
+     * {@link io.github.ntsd.stubby4gay.client.StubbyClient} through to the {@link StubbyManagerFactory}
+     */
+    public List<String> toCommandLineArgs() {
+        final List<String> args = new ArrayList<>();
+        if (http2) {
+            args.add("--" + CommandLineInterpreter.OPTION_HTTP2);
+        }
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_HTTP2_MAX_STREAMS, http2MaxConcurrentStreams);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_HTTP2_STREAM_WINDOW, http2InitialStreamRecvWindow);
+        addCommandLineArg(args, CommandLineInterpreter.OPTION_HTTP2_SESSION_WINDOW, http2InitialSessionRecvWindow);
+        if (isNotNull(unixSocket)) {
+            args.add("--" + CommandLineInterpreter.OPTION_UNIX_SOCKET);
+            args.add(unixSocket);
+        }
+
+        return args;
+    }
+
+    // Values left to Jetty are the defaults of the options, so they are not passed on
+    private static void addCommandLineArg(final List<String> args, final String option, final int value) {
+        if (value != JETTY_DEFAULT) {
+            args.add("--" + option);
+            args.add(String.valueOf(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final String protocols = http2 ?
+                String.format("HTTP/1.1 and HTTP/2 with max streams %s, stream window %s, session window %s",
+                        describe(http2MaxConcurrentStreams), describe(http2InitialStreamRecvWindow),
+                        describe(http2InitialSessionRecvWindow)) :
+                "HTTP/1.1";
+
+        return isNotNull(unixSocket) ? String.format("%s, also on unix socket %s", protocols, unixSocket) : protocols;
+    }
+
+    private static String describe(final int value) {
+        return value == JETTY_DEFAULT ? "default" : String.valueOf(value);
+    }
+
+    public static final class Builder {
+
+        private boolean http2;
+        private int http2MaxConcurrentStreams;
+        private int http2InitialStreamRecvWindow;
+        private int http2InitialSessionRecvWindow;
+        private String unixSocket;
+
+        public Builder() {
+            this.http2 = false;
+            this.http2MaxConcurrentStreams = JETTY_DEFAULT;
+            this.http2InitialStreamRecvWindow = JETTY_DEFAULT;
+            this.http2InitialSessionRecvWindow = JETTY_DEFAULT;
+            this.unixSocket = null;
+        }
+
+        public Builder withHttp2(final boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        public Builder withHttp2MaxConcurrentStreams(final int http2MaxConcurrentStreams) {
+            this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+            return this;
+        }
+
+        public Builder withHttp2InitialStreamRecvWindow(final int http2InitialStreamRecvWindow) {
+            this.http2InitialStreamRecvWindow = http2InitialStreamRecvWindow;
+            return this;
+        }
+
+        public Builder withHttp2InitialSessionRecvWindow(final int http2InitialSessionRecvWindow) {
+            this.http2InitialSessionRecvWindow = http2InitialSessionRecvWindow;
+            return this;
+        }
+
+        public Builder withUnixSocket(final String unixSocket) {
+            this.unixSocket = unixSocket;
+            return this;
+        }
+
+        public StubsTransport build() {
+            if (!isPositiveOrDefault(http2MaxConcurrentStreams) || !isPositiveOrDefault(http2InitialStreamRecvWindow)
+                    || !isPositiveOrDefault(http2InitialSessionRecvWindow)) {
+                throw new IllegalArgumentException(String.format("Invalid HTTP/2 max streams %s, stream window %s or session window %s",
+                        http2MaxConcurrentStreams, http2InitialStreamRecvWindow, http2InitialSessionRecvWindow));
+            }
+            return new StubsTransport(this);
+        }
+
+        private static boolean isPositiveOrDefault(final int value) {
+            return value > 0 || value == JETTY_DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The YAML source of a stub, i.e.: the complete YAML, the request YAML and the response YAML, kept together as one
+ * deflated blob.
+ * <p>
+ * The YAML is only ever read by the admin portal, so it is inflated on every read and never cached.
+ */
+final class CompressedYaml {
+
+    private static final int NOT_SET = -1;
+
+    static final CompressedYaml EMPTY = new CompressedYaml(new byte[0], NOT_SET, NOT_SET, NOT_SET);
+
+    private final byte[] deflated;
+    private final int completeLength;
+    private final int requestLength;
+    private final int responseLength;
+
+    private CompressedYaml(final byte[] deflated, final int completeLength, final int requestLength, final int responseLength) {
+        this.deflated = deflated;
+        this.completeLength = completeLength;
+        this.requestLength = requestLength;
+        this.responseLength = responseLength;
+    }
+
+    static CompressedYaml of(final String completeYAML, final String requestAsYAML, final String responseAsYAML) {
+        if (completeYAML == null && requestAsYAML == null && responseAsYAML == null) {
+            return EMPTY;
+        }
+
+        final byte[] completeBytes = toBytes(completeYAML);
+        final byte[] requestBytes = toBytes(requestAsYAML);
+        final byte[] responseBytes = toBytes(responseAsYAML);
+
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream(completeBytes.length + requestBytes.length + responseBytes.length);
+        inflated.write(completeBytes, 0, completeBytes.length);
+        inflated.write(requestBytes, 0, requestBytes.length);
+        inflated.write(responseBytes, 0, responseBytes.length);
+
+        return new CompressedYaml(deflate(inflated.toByteArray()),
+                lengthOf(completeYAML, completeBytes),
+                lengthOf(requestAsYAML, requestBytes),
+                lengthOf(responseAsYAML, responseBytes));
+    }
+
+    String getCompleteYAML() {
+        return slice(0, completeLength);
+    }
+
+    String getRequestAsYAML() {
+        return slice(Math.max(completeLength, 0), requestLength);
+    }
+
+    String getResponseAsYAML() {
+        return slice(Math.max(completeLength, 0) + Math.max(requestLength, 0), responseLength);
+    }
+
+    int getDeflatedLength() {
+        return deflated.length;
+    }
+
+    private String slice(final int offset, final int length) {
+        if (length == NOT_SET) {
+            return null;
+        }
+        final byte[] inflated = inflate();
+        return new String(inflated, offset, length, StringUtils.charsetUTF8());
+    }
+
+    private byte[] inflate() {
+        final int inflatedLength = Math.max(completeLength, 0) + Math.max(requestLength, 0) + Math.max(responseLength, 0);
+        final byte[] inflated = new byte[inflatedLength];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            int offset = 0;
+            while (offset < inflatedLength && !inflater.finished()) {
+                offset += inflater.inflate(inflated, offset, inflatedLength - offset);
+            }
+            return inflated;
+        } catch (final DataFormatException e) {
+            throw new IllegalStateException("Could not inflate the stubbed YAML", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(final byte[] inflated) {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(inflated);
+            deflater.finish();
+            final ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(64, inflated.length / 4));
+            final byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                deflated.write(buffer, 0, length);
+            }
+            return deflated.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] toBytes(final String yaml) {
+        return yaml == null ? new byte[0] : StringUtils.getBytesUtf8(yaml);
+    }
+
+    private static int lengthOf(final String yaml, final byte[] bytes) {
+        return yaml == null ? NOT_SET : bytes.length;
+    }
+}
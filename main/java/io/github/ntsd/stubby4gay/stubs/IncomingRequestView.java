@@ -0,0 +1,113 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.FileUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.utils.CollectionUtils.constructParamMap;
+import static io.github.ntsd.stubby4gay.utils.HandlerUtils.extractPostRequestBody;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.toLower;
+
+/**
+ * A view of an incoming {@link HttpServletRequest}, which materialises the headers, the query params and the POST body
+ * only when they are first needed, i.e.: when a candidate stub has them stubbed. Incoming requests that no stub can
+ * match by URL and method are therefore never fully read.
+ * <p>
+ * The view is confined to the thread that handles the request, and must not be used once the request was handled.
+ */
+final class IncomingRequestView {
+
+    private static final String SOURCE = "stubs";
+
+    private final HttpServletRequest request;
+    private Map<String, String> headers;
+    private Map<String, String> query;
+    private boolean postBodyRead;
+    private String post;
+    private String postBody;
+    private long postBodyHash;
+
+    IncomingRequestView(final HttpServletRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * @return the value of the given header, which is read straight from the raw request
+     */
+    String getHeader(final String name) {
+        return request.getHeader(name);
+    }
+
+    /**
+     * @return the headers, with lower cased names
+     */
+    Map<String, String> getHeaders() {
+        if (isNull(headers)) {
+            final Enumeration<String> headerNames = request.getHeaderNames();
+            if (isNull(headerNames) || !headerNames.hasMoreElements()) {
+                headers = Collections.emptyMap();
+            } else {
+                final Map<String, String> lowerCased = new LinkedHashMap<>();
+                while (headerNames.hasMoreElements()) {
+                    final String headerName = headerNames.nextElement();
+                    lowerCased.put(toLower(headerName), request.getHeader(headerName));
+                }
+                headers = Collections.unmodifiableMap(lowerCased);
+            }
+        }
+        return headers;
+    }
+
+    Map<String, String> getQuery() {
+        if (isNull(query)) {
+            final Map<String, String> params = constructParamMap(request.getQueryString());
+            query = params.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(params);
+        }
+        return query;
+    }
+
+    /**
+     * @return the POST body as it was sent
+     */
+    String getPost() {
+        readPostBody();
+        return post;
+    }
+
+    /**
+     * @see StubRequest#getPostBody()
+     */
+    String getPostBody() {
+        readPostBody();
+        return postBody;
+    }
+
+    /**
+     * @see StubRequest#getPostBodyHash()
+     */
+    long getPostBodyHash() {
+        readPostBody();
+        return postBodyHash;
+    }
+
+    private void readPostBody() {
+        if (!postBodyRead) {
+            postBodyRead = true;
+            try {
+                post = extractPostRequestBody(request, SOURCE);
+            } catch (final IOException ex) {
+                // Not expected, read errors are logged and reported as a missing body by extractPostRequestBody
+                post = null;
+            }
+            postBody = FileUtils.enforceSystemLineSeparator(post);
+            postBodyHash = isSet(postBody) ? StubRequest.hashPostBody(postBody) : 0L;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.skyscreamer.jsonassert.JSONCompare;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.skyscreamer.jsonassert.JSONCompareResult;
+import org.skyscreamer.jsonassert.JSONParser;
+import org.skyscreamer.jsonassert.ValueMatcherException;
+import org.skyscreamer.jsonassert.comparator.DefaultComparator;
+import org.skyscreamer.jsonassert.comparator.JSONComparator;
+
+import static io.github.ntsd.stubby4gay.utils.StringUtils.escapeSpecialRegexCharacters;
+
+/**
+ * Matches a stubbed JSON POST body against asserting JSON bodies, with the {@link JSONCompareMode#NON_EXTENSIBLE}
+ * semantics of {@link JSONCompare}: objects must have exactly the stubbed fields, while arrays may list their elements
+ * in any order.
+ * <p>
+ * The stubbed JSON is parsed into a tree once, when the stub is loaded. The asserting JSON is parsed once per incoming
+ * request, see {@link StubRequest#getPostBodyJsonTree()}, and the same tree is compared against every candidate stub.
+ * The comparison stops on the first mismatch, without describing the differences.
+ */
+final class JsonTreeMatcher {
+
+    /**
+     * The tree of a body that could not be parsed as JSON
+     */
+    static final Object UNPARSABLE = new Object();
+
+    private static final JSONComparator NON_EXTENSIBLE_COMPARATOR = new DefaultComparator(JSONCompareMode.NON_EXTENSIBLE);
+    private static final Mismatch MISMATCH = new Mismatch();
+
+    private final Object stubbedTree;
+    // The stubbed JSON with the special regex characters escaped, which parses only when it is a JSON string or number
+    private final Object escapedStubbedTree;
+
+    private JsonTreeMatcher(final Object stubbedTree, final Object escapedStubbedTree) {
+        this.stubbedTree = stubbedTree;
+        this.escapedStubbedTree = escapedStubbedTree;
+    }
+
+    static JsonTreeMatcher compile(final String stubbedJson) {
+        return new JsonTreeMatcher(parse(stubbedJson), parse(escapeSpecialRegexCharacters(stubbedJson)));
+    }
+
+    /**
+     * @return the JSON tree, or {@link #UNPARSABLE} when the given body is not JSON
+     */
+    static Object parse(final String json) {
+        try {
+            return JSONParser.parseJSON(json);
+        } catch (final JSONException e) {
+            return UNPARSABLE;
+        }
+    }
+
+    boolean isStubbedJson() {
+        return stubbedTree != UNPARSABLE;
+    }
+
+    /**
+     * @param assertingTree JSON tree of the incoming request body, which must not be {@link #UNPARSABLE}
+     * @return {@code null} when the stubbed JSON must be matched as a regex instead, as {@link JSONCompare} would have
+     * failed to parse it
+     */
+    Boolean matches(final Object assertingTree) {
+        try {
+            if (treesMatch(stubbedTree, assertingTree)) {
+                return Boolean.TRUE;
+            } else if (escapedStubbedTree == UNPARSABLE) {
+                return null;
+            }
+            return treesMatch(escapedStubbedTree, assertingTree);
+        } catch (final JSONException e) {
+            return null;
+        }
+    }
+
+    private static boolean treesMatch(final Object stubbedTree, final Object assertingTree) throws JSONException {
+        try {
+            if (stubbedTree instanceof JSONObject && assertingTree instanceof JSONObject) {
+                NON_EXTENSIBLE_COMPARATOR.compareJSON("", (JSONObject) stubbedTree, (JSONObject) assertingTree, new FailFastResult());
+                return true;
+            } else if (stubbedTree instanceof JSONArray && assertingTree instanceof JSONArray) {
+                NON_EXTENSIBLE_COMPARATOR.compareJSONArray("", (JSONArray) stubbedTree, (JSONArray) assertingTree, new FailFastResult());
+                return true;
+            } else if (stubbedTree instanceof JSONString && assertingTree instanceof JSONString) {
+                return JSONCompare.compareJson((JSONString) stubbedTree, (JSONString) assertingTree).passed();
+            }
+            return false;
+        } catch (final Mismatch mismatch) {
+            return false;
+        }
+    }
+
+    /**
+     * Aborts the comparison on the first reported difference
+     */
+    private static final class FailFastResult extends JSONCompareResult {
+
+        @Override
+        public void fail(final String message) {
+            throw MISMATCH;
+        }
+
+        @Override
+        public JSONCompareResult fail(final String field, final Object expected, final Object actual) {
+            throw MISMATCH;
+        }
+
+        @Override
+        public JSONCompareResult fail(final String field, final ValueMatcherException exception) {
+            throw MISMATCH;
+        }
+
+        @Override
+        public JSONCompareResult missing(final String field, final Object expected) {
+            throw MISMATCH;
+        }
+
+        @Override
+        public JSONCompareResult unexpected(final String field, final Object actual) {
+            throw MISMATCH;
+        }
+    }
+
+    private static final class Mismatch extends RuntimeException {
+
+        private Mismatch() {
+            super("JSON mismatch", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+/**
+ * Builds string keys, such as the match cache fingerprints and the XML canonical forms, out of several values. Every
+ * value is length-prefixed, so that no value can be mistaken for a separator.
+ */
+final class LengthPrefixedKeys {
+
+    private LengthPrefixedKeys() {
+
+    }
+
+    /**
+     * Appends the value as its length, a colon, the value and a semicolon, or a marker that no value has when null
+     */
+    static void appendValue(final StringBuilder key, final String value) {
+        if (value == null) {
+            key.append("~;");
+        } else {
+            key.append(value.length()).append(':').append(value).append(';');
+        }
+    }
+}
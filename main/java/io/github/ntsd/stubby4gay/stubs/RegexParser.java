@@ -2,7 +2,6 @@ package io.github.ntsd.stubby4gay.stubs;
 
 
 import io.github.ntsd.stubby4gay.annotations.VisibleForTesting;
-import io.github.ntsd.stubby4gay.caching.Cache;
 
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -10,6 +9,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import static io.github.ntsd.stubby4gay.utils.StringUtils.buildToken;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isNotSet;
 
 enum RegexParser {
 
@@ -25,12 +25,6 @@ enum RegexParser {
     // It is achievable by using symbol '\s+', which covers both \r (carriage return) and \n (linefeed).
     static final int[] REGEX_FLAGS = new int[]{Pattern.MULTILINE, Pattern.DOTALL};
 
-    // 7200 secs => 2 hours
-    private static final long CACHE_ENTRY_LIFETIME_SECONDS = 7200L;
-
-    @VisibleForTesting
-    static final Cache<Integer, Pattern> REGEX_PATTERN_CACHE = Cache.regexPatternCache(CACHE_ENTRY_LIFETIME_SECONDS);
-
     /**
      * ASCII character decimal values
      * '$'    - 36
@@ -52,6 +46,9 @@ enum RegexParser {
 
     private static final boolean[] SPECIAL_CHARS;
 
+    // The complete set of characters that have a special meaning in java.util.regex outside of a character class
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
     static {
         SPECIAL_CHARS = new boolean[127];
         for (final char c : REGEX_CHARS) {
@@ -59,32 +56,36 @@ enum RegexParser {
         }
     }
 
-    void compilePatternAndCache(final String value) {
+    /**
+     * Compiles the given value once for every cumulative combination of {@link #REGEX_FLAGS}, in the order in which
+     * the patterns must be tried when matching.
+     *
+     * @param value stubbed value, which may or may not be a regex
+     * @return compiled patterns. If the value does not compile as a regex, a single {@link Pattern#LITERAL} pattern
+     */
+    Pattern[] compile(final String value) {
+        final Pattern[] patterns = new Pattern[REGEX_FLAGS.length];
         int currentFlags = 0;
-        for (int flag : REGEX_FLAGS) {
-            compilePatternAndCache(value, currentFlags |= flag);
-        }
-    }
-
-    private void compilePatternAndCache(final String value, final int flags) {
-        try {
-            if (potentialRegex(value)) {
-                final int patternHashCodeRegexFlagKey = value.hashCode() + flags;
-                final Pattern computedPattern = Pattern.compile(value, flags);
-
-                REGEX_PATTERN_CACHE.putIfAbsent(patternHashCodeRegexFlagKey, computedPattern);
+        for (int idx = 0; idx < REGEX_FLAGS.length; idx++) {
+            try {
+                patterns[idx] = Pattern.compile(value, currentFlags |= REGEX_FLAGS[idx]);
+            } catch (final PatternSyntaxException e) {
+                // We could not compile the pattern, probably because of some unescaped
+                // characters that are special for regex, i.e.: JSON string literal
+                return new Pattern[]{Pattern.compile(value, Pattern.LITERAL)};
             }
-        } catch (final PatternSyntaxException e) {
-            // We could not compile the pattern, probably because of some unescaped
-            // characters that are special for regex, i.e.: JSON string literal
-            compilePatternAndCache(value, Pattern.LITERAL);
         }
+        return patterns;
     }
 
+    /**
+     * Compiles and matches in one go. Stubbed values are matched using their precompiled {@link StubValueMatcher}
+     * instead, this method is meant for one-off matching only.
+     */
+    @VisibleForTesting
     boolean match(final String patternCandidate, final String subject, final String templateTokenName, final Map<String, String> regexGroups) {
-        int currentFlags = 0;
-        for (int flag : REGEX_FLAGS) {
-            if (match(patternCandidate, subject, templateTokenName, regexGroups, currentFlags |= flag)) {
+        for (final Pattern pattern : compile(patternCandidate)) {
+            if (match(pattern.matcher(subject), templateTokenName, regexGroups)) {
                 return true;
             }
         }
@@ -134,33 +135,85 @@ enum RegexParser {
         return threshold == 0;
     }
 
-    private boolean match(final String patternCandidate, final String subject, final String templateTokenName, final Map<String, String> regexGroups, final int flags) {
+    /**
+     * Extracts the literal head of a stubbed value, i.e.: the part that every subject matched by the value must start
+     * with. An empty string is returned when the head cannot be determined, for example when the value uses
+     * alternation, or starts with a group or a character class. A value that does not compile as a regex is
+     * matched literally, therefore it is the head in its entirety
+     *
+     * @param pattern stubbed value, which may or may not be a regex
+     */
+    static String literalPrefix(final String pattern) {
+        if (isNotSet(pattern)) {
+            return "";
+        }
+
         try {
-            final int patternHashCodeRegexFlagKey = patternCandidate.hashCode() + flags;
-            final Pattern computedPattern = Pattern.compile(patternCandidate, flags);
-
-            REGEX_PATTERN_CACHE.putIfAbsent(patternHashCodeRegexFlagKey, computedPattern);
-
-            final Matcher matcher = computedPattern.matcher(subject);
-            final boolean isMatch = matcher.matches();
-            if (isMatch) {
-                // group(0) holds the full regex matchStubByIndex
-                regexGroups.put(buildToken(templateTokenName, 0), matcher.group(0));
-
-                //Matcher.groupCount() returns the number of explicitly defined capturing groups in the pattern regardless
-                // of whether the capturing groups actually participated in the matchStubByIndex. It does not include matcher.group(0)
-                final int groupCount = matcher.groupCount();
-                if (groupCount > 0) {
-                    for (int idx = 1; idx <= groupCount; idx++) {
-                        regexGroups.put(buildToken(templateTokenName, idx), matcher.group(idx));
-                    }
+            Pattern.compile(pattern, REGEX_FLAGS[0]);
+        } catch (final PatternSyntaxException e) {
+            return pattern;
+        }
+
+        if (pattern.indexOf('|') >= 0) {
+            return "";
+        }
+
+        final int start = pattern.charAt(0) == '^' ? 1 : 0;
+        int end = start;
+        while (end < pattern.length() && !isMetaCharacter(pattern.charAt(end))) {
+            end++;
+        }
+
+        // The last literal character is optional (or repeated) when the pattern quantifies it, i.e.: '/items?'
+        if (end < pattern.length() && end > start && isQuantifier(pattern.charAt(end))) {
+            end--;
+        }
+
+        return pattern.substring(start, end);
+    }
+
+    /**
+     * @param candidate string to test
+     * @return true when the string has no characters, which have a special meaning in a regex outside of a
+     * character class. Such string matches as a regex exactly the same subjects as it does by {@link String#equals}
+     */
+    static boolean isLiteral(final String candidate) {
+        for (int idx = 0; idx < candidate.length(); idx++) {
+            if (isMetaCharacter(candidate.charAt(idx))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMetaCharacter(final char candidate) {
+        return REGEX_META_CHARS.indexOf(candidate) >= 0;
+    }
+
+    private static boolean isQuantifier(final char candidate) {
+        return candidate == '?' || candidate == '*' || candidate == '+' || candidate == '{';
+    }
+
+    /**
+     * Runs the given matcher over its whole input, capturing the matched groups as template tokens on success
+     *
+     * @param matcher a {@link Matcher} that was reset with the subject to match
+     */
+    boolean match(final Matcher matcher, final String templateTokenName, final Map<String, String> regexGroups) {
+        final boolean isMatch = matcher.matches();
+        if (isMatch) {
+            // group(0) holds the full regex matchStubByIndex
+            regexGroups.put(buildToken(templateTokenName, 0), matcher.group(0));
+
+            //Matcher.groupCount() returns the number of explicitly defined capturing groups in the pattern regardless
+            // of whether the capturing groups actually participated in the matchStubByIndex. It does not include matcher.group(0)
+            final int groupCount = matcher.groupCount();
+            if (groupCount > 0) {
+                for (int idx = 1; idx <= groupCount; idx++) {
+                    regexGroups.put(buildToken(templateTokenName, idx), matcher.group(idx));
                 }
             }
-            return isMatch;
-        } catch (final PatternSyntaxException e) {
-            // We could not compile the pattern, probably because of some unescaped
-            // characters that are special for regex, i.e.: JSON string literal
-            return match(patternCandidate, subject, templateTokenName, regexGroups, Pattern.LITERAL);
         }
+        return isMatch;
     }
 }
@@ -0,0 +1,100 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Estimates the retained heap size of the stubbed data, assuming a 64-bit JVM with compressed references and compact
+ * strings.
+ * <p>
+ * Instances shared across stubs, i.e.: the {@link StringUtils#internName(String) interned} header and query param
+ * names and empty collections, are not retained by any one stub and are not counted. Neither are the compiled matchers
+ * and templates, which are derived from the stubbed data.
+ */
+final class StubFootprint {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int STRING_SHALLOW = 24;
+    private static final int UNMODIFIABLE_WRAPPER = 16;
+    private static final int LIST_SHALLOW = 24;
+    private static final int LINKED_HASH_MAP_SHALLOW = 56;
+    private static final int LINKED_HASH_MAP_ENTRY = 40;
+
+    private StubFootprint() {
+
+    }
+
+    /**
+     * @param references number of reference fields
+     * @param primitives total size of the primitive fields in bytes
+     * @return the shallow size of an object
+     */
+    static long ofObject(final int references, final int primitives) {
+        return align(OBJECT_HEADER + (long) REFERENCE * references + primitives);
+    }
+
+    static long ofString(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        return STRING_SHALLOW + ofByteArray(isLatin1(value) ? value.length() : value.length() * 2);
+    }
+
+    static long ofByteArray(final int length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    static long ofBytes(final byte[] bytes) {
+        return bytes == null ? 0 : ofByteArray(bytes.length);
+    }
+
+    /**
+     * @return the size of an unmodifiable {@link java.util.ArrayList}, without its elements
+     */
+    static long ofListContainer(final int elements) {
+        return UNMODIFIABLE_WRAPPER + LIST_SHALLOW + align(ARRAY_HEADER + (long) REFERENCE * elements);
+    }
+
+    /**
+     * @param mappings unmodifiable header or query param mappings, backed by a {@link java.util.LinkedHashMap}
+     */
+    static long ofMappings(final Map<String, String> mappings) {
+        if (mappings.isEmpty()) {
+            return 0;
+        }
+
+        long size = UNMODIFIABLE_WRAPPER + LINKED_HASH_MAP_SHALLOW + align(ARRAY_HEADER + (long) REFERENCE * tableCapacity(mappings.size()));
+        for (final Map.Entry<String, String> entry : mappings.entrySet()) {
+            size += LINKED_HASH_MAP_ENTRY;
+            if (!StringUtils.isInternedName(entry.getKey())) {
+                size += ofString(entry.getKey());
+            }
+            size += ofString(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static int tableCapacity(final int entries) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < entries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static boolean isLatin1(final String value) {
+        for (int idx = 0; idx < value.length(); idx++) {
+            if (value.charAt(idx) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
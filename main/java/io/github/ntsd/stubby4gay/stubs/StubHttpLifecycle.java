@@ -3,6 +3,7 @@ package io.github.ntsd.stubby4gay.stubs;
 
 import io.github.ntsd.stubby4gay.annotations.CoberturaIgnore;
 import io.github.ntsd.stubby4gay.annotations.VisibleForTesting;
+import io.github.ntsd.stubby4gay.utils.ObjectUtils;
 import io.github.ntsd.stubby4gay.utils.ReflectionUtils;
 import io.github.ntsd.stubby4gay.utils.StringUtils;
 
@@ -18,29 +19,25 @@ import static io.github.ntsd.stubby4gay.stubs.StubResponse.okResponse;
 
 public class StubHttpLifecycle implements ReflectableStub {
 
-    private final AtomicInteger responseSequencedIdCounter = new AtomicInteger(0);
+    private final AtomicInteger responseSequencedIdCounter;
 
-    private final String completeYAML;
     private final StubRequest request;
     private final Object response;
-    private final String requestAsYAML;
-    private final String responseAsYAML;
+    private final CompressedYaml yamlSource;
     private final String description;
     private final String uuid;
 
     private StubHttpLifecycle(
+            final AtomicInteger responseSequencedIdCounter,
             final StubRequest request,
             final Object response,
-            final String requestAsYAML,
-            final String responseAsYAML,
-            final String completeYAML,
+            final CompressedYaml yamlSource,
             final String description,
             final String uuid) {
+        this.responseSequencedIdCounter = responseSequencedIdCounter;
         this.request = request;
         this.response = response;
-        this.requestAsYAML = requestAsYAML;
-        this.responseAsYAML = responseAsYAML;
-        this.completeYAML = completeYAML;
+        this.yamlSource = yamlSource;
         this.description = description;
         this.uuid = uuid;
     }
@@ -103,8 +100,40 @@ public class StubHttpLifecycle implements ReflectableStub {
         return getResponses().get(0).getResourceIDHeader();
     }
 
-    void setResourceId(final int resourceId) {
-        getResponses().forEach(response -> response.addResourceIDHeader(resourceId));
+    boolean hasResourceId(final int resourceId) {
+        final String resourceIdHeader = String.valueOf(resourceId);
+        return getResponses().stream().allMatch(response -> resourceIdHeader.equals(response.getResourceIDHeader()));
+    }
+
+    /**
+     * @return a copy of this stub, whose responses carry the given resource ID. The copy keeps serving the sequenced
+     * responses where this stub is at
+     * @see StubResponse#withResourceId(int)
+     */
+    StubHttpLifecycle withResourceId(final int resourceId) {
+        final Object responses;
+        if (response instanceof StubResponse) {
+            responses = ((StubResponse) response).withResourceId(resourceId);
+        } else {
+            final List<StubResponse> sequencedResponses = new LinkedList<>();
+            asCheckedLinkedList(this.response, StubResponse.class).forEach(response -> sequencedResponses.add(response.withResourceId(resourceId)));
+            responses = sequencedResponses;
+        }
+
+        return new StubHttpLifecycle(responseSequencedIdCounter, request, responses, yamlSource, description, uuid);
+    }
+
+    /**
+     * Modifies the responses, so it is only meant for a stub that is not published yet
+     *
+     * @see StubResponse#compressResponseHead(StubResponseCompression)
+     */
+    void compressResponses(final StubResponseCompression compression) {
+        if (response instanceof StubResponse) {
+            ((StubResponse) response).compressResponseHead(compression);
+            return;
+        }
+        asCheckedLinkedList(this.response, StubResponse.class).forEach(response -> response.compressResponseHead(compression));
     }
 
     /**
@@ -127,7 +156,7 @@ public class StubHttpLifecycle implements ReflectableStub {
      * It is used by {@link ReflectionUtils} at runtime when fetching content for Ajax response
      */
     public String getCompleteYaml() {
-        return completeYAML;
+        return yamlSource.getCompleteYAML();
     }
 
     /**
@@ -135,7 +164,7 @@ public class StubHttpLifecycle implements ReflectableStub {
      * It is used by {@link ReflectionUtils} at runtime when fetching content for Ajax response
      */
     public String getRequestAsYAML() {
-        return requestAsYAML;
+        return yamlSource.getRequestAsYAML();
     }
 
     /**
@@ -143,7 +172,30 @@ public class StubHttpLifecycle implements ReflectableStub {
      * It is used by {@link ReflectionUtils} at runtime when fetching content for Ajax response
      */
     public String getResponseAsYAML() {
-        return responseAsYAML;
+        return yamlSource.getResponseAsYAML();
+    }
+
+    /**
+     * Estimates the heap retained by this stub, i.e.: its request, responses and the compressed YAML source, so that
+     * the memory held by the loaded stubs can be reported by the admin portal
+     *
+     * @return estimated retained size in bytes
+     */
+    public long estimateRetainedSize() {
+        long size = StubFootprint.ofObject(6, 0)
+                + StubFootprint.ofObject(0, 4)
+                + StubFootprint.ofObject(1, 12) + StubFootprint.ofByteArray(yamlSource.getDeflatedLength())
+                + StubFootprint.ofString(description)
+                + StubFootprint.ofString(uuid);
+
+        if (ObjectUtils.isNotNull(request)) {
+            size += request.estimateRetainedSize();
+        }
+        for (final StubResponse stubResponse : getResponses()) {
+            size += stubResponse.estimateRetainedSize();
+        }
+
+        return size;
     }
 
     public String getAjaxResponseContent(final StubTypes stubType, final String propertyName) throws Exception {
@@ -259,11 +311,10 @@ public class StubHttpLifecycle implements ReflectableStub {
         public StubHttpLifecycle build() {
             final StubHttpLifecycle stubHttpLifecycle =
                     new StubHttpLifecycle(
+                            new AtomicInteger(0),
                             request,
                             response,
-                            requestAsYAML,
-                            responseAsYAML,
-                            completeYAML,
+                            CompressedYaml.of(completeYAML, requestAsYAML, responseAsYAML),
                             description,
                             uuid);
 
@@ -0,0 +1,79 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the stubbed headers or query params against the mappings of incoming requests.
+ * <p>
+ * The stubbed names and their compiled {@link StubValueMatcher value matchers} are kept in parallel arrays, which are
+ * walked in declaration order without allocating anything. Header names must already be lower cased on both sides.
+ */
+final class StubMappingsMatcher {
+
+    private static final StubMappingsMatcher EMPTY = new StubMappingsMatcher(new String[0], new StubValueMatcher[0]);
+
+    private final String[] names;
+    private final StubValueMatcher[] matchers;
+
+    private StubMappingsMatcher(final String[] names, final StubValueMatcher[] matchers) {
+        this.names = names;
+        this.matchers = matchers;
+    }
+
+    /**
+     * @param stubbedMappings stubbed names and values
+     * @param mapName         name of the mappings in template tokens, i.e.: headers, query
+     */
+    static StubMappingsMatcher compile(final Map<String, String> stubbedMappings, final String mapName) {
+        if (stubbedMappings.isEmpty()) {
+            return EMPTY;
+        }
+
+        final String[] names = new String[stubbedMappings.size()];
+        final StubValueMatcher[] matchers = new StubValueMatcher[stubbedMappings.size()];
+        int idx = 0;
+        for (final Map.Entry<String, String> stubbedMappingEntry : stubbedMappings.entrySet()) {
+            final String templateTokenName = String.format("%s.%s", mapName, stubbedMappingEntry.getKey());
+            names[idx] = stubbedMappingEntry.getKey();
+            matchers[idx] = StubValueMatcher.compile(stubbedMappingEntry.getValue(), templateTokenName);
+            idx++;
+        }
+
+        return new StubMappingsMatcher(names, matchers);
+    }
+
+    List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /**
+     * @param assertingMappings mappings of the incoming request
+     * @param regexGroups       regex groups of the incoming request, populated upon successful regex match
+     * @return true when every stubbed name is present in the incoming mappings, with a matching value
+     */
+    boolean matches(final Map<String, String> assertingMappings, final Map<String, String> regexGroups) {
+        if (names.length == 0) {
+            return true;
+        } else if (assertingMappings.isEmpty()) {
+            return false;
+        }
+
+        for (int idx = 0; idx < names.length; idx++) {
+            final String assertingValue = assertingMappings.get(names[idx]);
+            if (assertingValue == null && !assertingMappings.containsKey(names[idx])) {
+                return false;
+            } else if (!matchers[idx].matches(assertingValue, regexGroups)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -3,9 +3,6 @@ package io.github.ntsd.stubby4gay.stubs;
 
 import io.github.ntsd.stubby4gay.annotations.VisibleForTesting;
 import io.github.ntsd.stubby4gay.cli.ANSITerminal;
-import org.json.JSONException;
-import org.skyscreamer.jsonassert.JSONCompare;
-import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlunit.builder.DiffBuilder;
@@ -15,20 +12,14 @@ import org.xmlunit.diff.DefaultNodeMatcher;
 import org.xmlunit.diff.Diff;
 import org.xmlunit.diff.ElementSelectors;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static io.github.ntsd.stubby4gay.utils.StringUtils.escapeSpecialRegexCharacters;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.getBytesUtf8;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isNotSet;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
-import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.HEADERS;
-import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.POST;
-import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.QUERY;
-import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.URL;
 import static org.xmlunit.builder.Input.fromByteArray;
 
 class StubMatcher {
@@ -43,135 +34,135 @@ class StubMatcher {
     }
 
     boolean matches(final StubRequest stubbedRequest, final StubRequest assertingRequest) {
-        if (!urlsMatch(stubbedRequest.getUri(), assertingRequest.getUri())) {
-            ANSITerminal.error(String.format("Failed to match on URL [%s] WITH [%s]", stubbedRequest.getUri(), assertingRequest.getUri()));
-            LOGGER.error("Failed to match on URL [{}] WITH [{}].", stubbedRequest.getUri(), assertingRequest.getUri());
+        final StubMatcherPlan plan = stubbedRequest.getMatcherPlan();
+
+        if (!plan.getUrl().matches(assertingRequest.getUri(), regexGroups)) {
+            logMismatch("URL", stubbedRequest.getUri(), assertingRequest.getUri());
             return false;
         }
-        ANSITerminal.info(String.format("Matched on URL [%s] WITH [%s]", stubbedRequest.getUri(), assertingRequest.getUri()));
-        LOGGER.info("Matched on URL [%s] WITH [%s].", stubbedRequest.getUri(), assertingRequest.getUri());
+        logMatch("URL", stubbedRequest.getUri(), assertingRequest.getUri());
 
-        if (!listsIntersect(stubbedRequest.getMethod(), assertingRequest.getMethod())) {
-            ANSITerminal.error(String.format("Failed to match on METHOD [%s] WITH [%s]", stubbedRequest.getMethod(), assertingRequest.getMethod()));
-            LOGGER.error("Failed to match on METHOD [{}] WITH [{}].", stubbedRequest.getMethod(), assertingRequest.getMethod());
+        if (!methodsIntersect(stubbedRequest, assertingRequest)) {
+            logMismatch("METHOD", stubbedRequest.getMethod(), assertingRequest.getMethod());
             return false;
         }
-        ANSITerminal.info(String.format("Matched on METHOD [%s] WITH [%s]", stubbedRequest.getMethod(), assertingRequest.getMethod()));
-        LOGGER.info("Matched on METHOD [{}] WITH [{}]", stubbedRequest.getMethod(), assertingRequest.getMethod());
+        logMatch("METHOD", stubbedRequest.getMethod(), assertingRequest.getMethod());
 
-        if (!postBodiesMatch(stubbedRequest.isRequestBodyStubbed(), stubbedRequest.getPostBody(), assertingRequest)) {
-            ANSITerminal.error(String.format("Failed to match on POST BODY [%s] WITH [%s]", stubbedRequest.getPostBody(), assertingRequest.getPostBody()));
-            LOGGER.error("Failed to match on POST BODY [{}] WITH [{}].", stubbedRequest.getPostBody(), assertingRequest.getPostBody());
-            return false;
+        // Only the properties the stub has are compared and logged, so that the incoming request reads no more
+        // of its headers, query params and POST body than the candidate stubs need
+        if (plan.isPostBodyStubbed()) {
+            if (!postBodiesMatch(plan, assertingRequest)) {
+                logMismatch("POST BODY", stubbedRequest.getPostBody(), assertingRequest.getPostBody());
+                return false;
+            }
+            logMatch("POST BODY", stubbedRequest.getPostBody(), assertingRequest.getPostBody());
         }
-        ANSITerminal.info(String.format("Matched on POST BODY [%s] WITH [%s]", stubbedRequest.getPostBody(), assertingRequest.getPostBody()));
-        LOGGER.info("Matched on POST BODY [{}] WITH [{}].", stubbedRequest.getPostBody(), assertingRequest.getPostBody());
 
-        if (!headersMatch(stubbedRequest.getHeaders(), assertingRequest.getHeaders())) {
-            ANSITerminal.error(String.format("Failed to match on HEADERS [%s] WITH [%s]", stubbedRequest.getHeaders(), assertingRequest.getHeaders()));
-            LOGGER.error("Failed to match on HEADERS [{}] WITH [{}].", stubbedRequest.getHeaders(), assertingRequest.getHeaders());
-            return false;
+        if (!plan.getHeaders().isEmpty()) {
+            if (!plan.getHeaders().matches(assertingRequest.getHeaders(), regexGroups)) {
+                logMismatch("HEADERS", stubbedRequest.getHeaders(), assertingRequest.getHeaders());
+                return false;
+            }
+            logMatch("HEADERS", stubbedRequest.getHeaders(), assertingRequest.getHeaders());
         }
-        ANSITerminal.info(String.format("Matched on HEADERS [%s] WITH [%s]", stubbedRequest.getHeaders(), assertingRequest.getHeaders()));
-        LOGGER.info("Matched on HEADERS [{}] WITH [{}].", stubbedRequest.getHeaders(), assertingRequest.getHeaders());
 
-        if (!queriesMatch(stubbedRequest.getQuery(), assertingRequest.getQuery())) {
-            ANSITerminal.error(String.format("Failed to match on QUERY [%s] WITH [%s]", stubbedRequest.getQuery(), assertingRequest.getQuery()));
-            LOGGER.error("Failed to match on QUERY [{}] WITH [{}].", stubbedRequest.getQuery(), assertingRequest.getQuery());
-            return false;
+        if (!plan.getQuery().isEmpty()) {
+            if (!plan.getQuery().matches(assertingRequest.getQuery(), regexGroups)) {
+                logMismatch("QUERY", stubbedRequest.getQuery(), assertingRequest.getQuery());
+                return false;
+            }
+            logMatch("QUERY", stubbedRequest.getQuery(), assertingRequest.getQuery());
         }
-        ANSITerminal.info(String.format("Matched on QUERY [%s] WITH [%s]", stubbedRequest.getQuery(), assertingRequest.getQuery()));
-        LOGGER.info("Matched on QUERY [{}] WITH [{}].", stubbedRequest.getQuery(), assertingRequest.getQuery());
 
         return true;
     }
 
-    private boolean urlsMatch(final String stubbedUrl, final String assertingUrl) {
-        return stringsMatch(stubbedUrl, assertingUrl, URL.toString());
+    // Messages are only formatted when they are going to be printed, as every candidate stub is logged
+    private static void logMatch(final String property, final Object stubbedValue, final Object assertingValue) {
+        if (!ANSITerminal.isMute()) {
+            ANSITerminal.info(String.format("Matched on %s [%s] WITH [%s]", property, stubbedValue, assertingValue));
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Matched on {} [{}] WITH [{}].", property, stubbedValue, assertingValue);
+        }
+    }
+
+    private static void logMismatch(final String property, final Object stubbedValue, final Object assertingValue) {
+        if (!ANSITerminal.isMute()) {
+            ANSITerminal.error(String.format("Failed to match on %s [%s] WITH [%s]", property, stubbedValue, assertingValue));
+        }
+        if (LOGGER.isErrorEnabled()) {
+            LOGGER.error("Failed to match on {} [{}] WITH [{}].", property, stubbedValue, assertingValue);
+        }
     }
 
     @VisibleForTesting
     boolean postBodiesMatch(final boolean isPostStubbed, final String stubbedPostBody, final StubRequest assertingRequest) {
-        if (isPostStubbed) {
+        return !isPostStubbed || postBodiesMatch(StubMatcherPlan.ofPostBody(stubbedPostBody), assertingRequest);
+    }
+
+    private boolean postBodiesMatch(final StubMatcherPlan plan, final StubRequest assertingRequest) {
+        if (plan.isPostBodyStubbed()) {
             final String assertingPostBody = assertingRequest.getPostBody();
             if (isNotSet(assertingPostBody)) {
                 return false;
             }
 
-            final String assertingContentType = assertingRequest.getHeaders().get("content-type");
-
-            if (isSet(assertingContentType)) {
-                final Matcher matcher = SUB_TYPE_PATTERN.matcher(assertingContentType);
-                if (matcher.find()) {
-                    final String subType = matcher.group(1);
-
-                    if ("json".equals(subType)) {
-                        return jsonMatch(stubbedPostBody, assertingPostBody);
-                    } else if ("xml".equals(subType)) {
-                        return xmlMatch(stubbedPostBody, assertingPostBody);
-                    }
-                }
+            final String subType = postBodySubType(assertingRequest);
+            if ("json".equals(subType)) {
+                return jsonMatch(plan, assertingRequest, assertingPostBody);
+            } else if ("xml".equals(subType)) {
+                return xmlMatch(plan, assertingRequest, assertingPostBody);
             }
 
-            return stringsMatch(stubbedPostBody, assertingPostBody, POST.toString());
+            return plan.getPost().matches(assertingPostBody, regexGroups);
         }
 
         return true;
     }
 
-    private boolean queriesMatch(final Map<String, String> stubbedQuery, final Map<String, String> assertingQuery) {
-        return mapsMatch(stubbedQuery, assertingQuery, QUERY.toString());
+    /**
+     * @return true when the stubbed POST bodies are matched against the POST body of the given request as
+     * literals or regexes, rather than as JSON or XML documents
+     */
+    static boolean isPostBodyMatchedLiterally(final StubRequest assertingRequest) {
+        final String subType = postBodySubType(assertingRequest);
+        return !"json".equals(subType) && !"xml".equals(subType);
     }
 
-    private boolean headersMatch(final Map<String, String> stubbedHeaders, final Map<String, String> assertingHeaders) {
-        final Map<String, String> stubbedHeadersCopy = new HashMap<>(stubbedHeaders);
-        for (final StubbableAuthorizationType authorizationType : StubbableAuthorizationType.values()) {
-            // auth header is dealt with in StubRepository after request is matched
-            stubbedHeadersCopy.remove(authorizationType.asYAMLProp());
+    private static String postBodySubType(final StubRequest assertingRequest) {
+        final String assertingContentType = assertingRequest.getHeaders().get("content-type");
+        if (isSet(assertingContentType)) {
+            final Matcher matcher = SUB_TYPE_PATTERN.matcher(assertingContentType);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
         }
-        return mapsMatch(stubbedHeadersCopy, assertingHeaders, HEADERS.toString());
+        return null;
     }
 
     @VisibleForTesting
     boolean mapsMatch(final Map<String, String> stubbedMappings, final Map<String, String> assertingMappings, final String mapName) {
-        if (stubbedMappings.isEmpty()) {
-            return true;
-        } else if (assertingMappings.isEmpty()) {
-            return false;
-        }
-
-        final Map<String, String> stubbedMappingsCopy = new HashMap<>(stubbedMappings);
-        final Map<String, String> assertingMappingsCopy = new HashMap<>(assertingMappings);
-
-        for (final Map.Entry<String, String> stubbedMappingEntry : stubbedMappingsCopy.entrySet()) {
-            final boolean containsRequiredParam = assertingMappingsCopy.containsKey(stubbedMappingEntry.getKey());
-            if (!containsRequiredParam) {
-                return false;
-            } else {
-                final String assertingValue = assertingMappingsCopy.get(stubbedMappingEntry.getKey());
-                final String templateTokenName = String.format("%s.%s", mapName, stubbedMappingEntry.getKey());
-
-                if (!stringsMatch(stubbedMappingEntry.getValue(), assertingValue, templateTokenName)) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
+        return StubMappingsMatcher.compile(stubbedMappings, mapName).matches(assertingMappings, regexGroups);
     }
 
     @VisibleForTesting
     boolean stringsMatch(final String stubbedValue, final String assertingValue, final String templateTokenName) {
-        if (isNotSet(stubbedValue)) {
-            return true;
-        } else if (isNotSet(assertingValue)) {
-            return false;
-        }
-        return regexMatch(stubbedValue, assertingValue, templateTokenName) || stubbedValue.equals(assertingValue);
+        return StubValueMatcher.compile(stubbedValue, templateTokenName).matches(assertingValue, regexGroups);
     }
 
-    private boolean regexMatch(final String stubbedValue, final String assertingValue, final String templateTokenName) {
-        return RegexParser.INSTANCE.match(stubbedValue, assertingValue, templateTokenName, regexGroups);
+    // Known methods are compared as bits, only methods outside of the known ones are compared as strings
+    private boolean methodsIntersect(final StubRequest stubbedRequest, final StubRequest assertingRequest) {
+        final int stubbedMask = stubbedRequest.getMethodMask();
+        final int assertingMask = assertingRequest.getMethodMask();
+        if (stubbedMask == 0) {
+            return true;
+        } else if ((stubbedMask & assertingMask & ~StubRequest.UNKNOWN_METHOD_BIT) != 0) {
+            return true;
+        } else if ((stubbedMask & assertingMask & StubRequest.UNKNOWN_METHOD_BIT) != 0) {
+            return listsIntersect(stubbedRequest.getMethod(), assertingRequest.getMethod());
+        }
+        return false;
     }
 
     @VisibleForTesting
@@ -188,22 +179,29 @@ class StubMatcher {
         return false;
     }
 
-    private boolean jsonMatch(final String stubbedJson, final String assertingJson) {
-        try {
-            boolean passed = JSONCompare.compareJSON(stubbedJson, assertingJson, JSONCompareMode.NON_EXTENSIBLE).passed();
-            if (passed) {
-                return true;
-            } else {
-                final String escapedStubbedPostBody = escapeSpecialRegexCharacters(stubbedJson);
-                return JSONCompare.compareJSON(escapedStubbedPostBody, assertingJson, JSONCompareMode.NON_EXTENSIBLE).passed();
+    private boolean jsonMatch(final StubMatcherPlan plan, final StubRequest assertingRequest, final String assertingJson) {
+        final JsonTreeMatcher jsonPost = plan.getJsonPost();
+        final Object assertingTree = assertingRequest.getPostBodyJsonTree();
+        if (jsonPost.isStubbedJson() && assertingTree != JsonTreeMatcher.UNPARSABLE) {
+            final Boolean matched = jsonPost.matches(assertingTree);
+            if (matched != null) {
+                return matched;
             }
-        } catch (final JSONException e) {
-            final String escapedStubbedPostBody = escapeSpecialRegexCharacters(stubbedJson);
-            return stringsMatch(escapedStubbedPostBody, assertingJson, POST.toString());
         }
+
+        return plan.getEscapedPost().matches(assertingJson, regexGroups);
     }
 
-    private boolean xmlMatch(final String stubbedXml, final String assertingXml) {
+    private boolean xmlMatch(final StubMatcherPlan plan, final StubRequest assertingRequest, final String assertingXml) {
+        final XmlCanonicalForm xmlPost = plan.getXmlPost();
+        final XmlCanonicalForm assertingForm = assertingRequest.getPostBodyXmlForm();
+        if (!xmlPost.isParsed() || !assertingForm.isParsed()) {
+            return plan.getPost().matches(assertingXml, regexGroups);
+        } else if (xmlPost.isIdenticalTo(assertingForm)) {
+            return true;
+        }
+
+        final String stubbedXml = plan.getPostBody();
         try {
 
             final Input.Builder control = fromByteArray(getBytesUtf8(stubbedXml));
@@ -221,7 +219,7 @@ class StubMatcher {
 
             return !diff.hasDifferences();
         } catch (Exception e) {
-            return stringsMatch(stubbedXml, assertingXml, POST.toString());
+            return plan.getPost().matches(assertingXml, regexGroups);
         }
     }
 }
@@ -0,0 +1,118 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.utils.StringUtils.escapeSpecialRegexCharacters;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.HEADERS;
+import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.POST;
+import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.QUERY;
+import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.URL;
+
+/**
+ * Everything the {@link StubMatcher} needs to match a stubbed request, compiled once when the stub is loaded.
+ */
+final class StubMatcherPlan {
+
+    private final StubValueMatcher url;
+    private final boolean postBodyStubbed;
+    private final String postBody;
+    private final StubValueMatcher post;
+    private final StubValueMatcher escapedPost;
+    private final JsonTreeMatcher jsonPost;
+    private final XmlCanonicalForm xmlPost;
+    private final StubMappingsMatcher headers;
+    private final StubMappingsMatcher query;
+
+    private StubMatcherPlan(final StubValueMatcher url,
+                            final boolean postBodyStubbed,
+                            final String postBody,
+                            final StubMappingsMatcher headers,
+                            final StubMappingsMatcher query) {
+        this.url = url;
+        this.postBodyStubbed = postBodyStubbed;
+        this.postBody = postBody;
+        this.post = StubValueMatcher.compile(postBody, POST.toString());
+        this.escapedPost = isSet(postBody) ?
+                StubValueMatcher.compile(escapeSpecialRegexCharacters(postBody), POST.toString()) : post;
+        this.jsonPost = isSet(postBody) ? JsonTreeMatcher.compile(postBody) : null;
+        this.xmlPost = isSet(postBody) ? XmlCanonicalForm.of(postBody) : null;
+        this.headers = headers;
+        this.query = query;
+    }
+
+    static StubMatcherPlan of(final StubRequest stubbedRequest) {
+        final boolean postBodyStubbed = stubbedRequest.isRequestBodyStubbed();
+
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>(stubbedRequest.getHeaders());
+        for (final StubbableAuthorizationType authorizationType : StubbableAuthorizationType.values()) {
+            // auth header is dealt with in StubRepository after request is matched
+            stubbedHeaders.remove(authorizationType.asYAMLProp());
+        }
+
+        return new StubMatcherPlan(
+                StubValueMatcher.compile(stubbedRequest.getUri(), URL.toString()),
+                postBodyStubbed,
+                postBodyStubbed ? stubbedRequest.getPostBody() : null,
+                StubMappingsMatcher.compile(stubbedHeaders, HEADERS.toString()),
+                StubMappingsMatcher.compile(stubbedRequest.getQuery(), QUERY.toString()));
+    }
+
+    /**
+     * @return a plan that matches any request on everything, but the given stubbed POST body
+     */
+    static StubMatcherPlan ofPostBody(final String stubbedPostBody) {
+        return new StubMatcherPlan(StubValueMatcher.compile(null, URL.toString()),
+                true,
+                stubbedPostBody,
+                StubMappingsMatcher.compile(Collections.emptyMap(), HEADERS.toString()),
+                StubMappingsMatcher.compile(Collections.emptyMap(), QUERY.toString()));
+    }
+
+    StubValueMatcher getUrl() {
+        return url;
+    }
+
+    boolean isPostBodyStubbed() {
+        return postBodyStubbed;
+    }
+
+    String getPostBody() {
+        return postBody;
+    }
+
+    StubValueMatcher getPost() {
+        return post;
+    }
+
+    StubValueMatcher getEscapedPost() {
+        return escapedPost;
+    }
+
+    /**
+     * @return the stubbed POST body parsed as JSON, or null when the POST body is not stubbed
+     */
+    JsonTreeMatcher getJsonPost() {
+        return jsonPost;
+    }
+
+    /**
+     * @return the stubbed POST body canonicalized as XML, or null when the POST body is not stubbed
+     */
+    XmlCanonicalForm getXmlPost() {
+        return xmlPost;
+    }
+
+    /**
+     * @return the stubbed headers, without the authorization pseudo-headers
+     */
+    StubMappingsMatcher getHeaders() {
+        return headers;
+    }
+
+    StubMappingsMatcher getQuery() {
+        return query;
+    }
+}
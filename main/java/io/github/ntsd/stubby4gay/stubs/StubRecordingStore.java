@@ -0,0 +1,213 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.cli.ANSITerminal;
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import io.github.ntsd.stubby4gay.yaml.SnakeYaml;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+
+/**
+ * An on-disk store of the recorded responses, which outlives the in-memory recordings of the
+ * {@link StubResponseRecorder}, so that a restarted or another stubby4gay instance can replay them without contacting
+ * the recording sources.
+ * <p>
+ * The store is a directory of body files, one per recorded upstream call, together with a generated
+ * {@value #INDEX_FILE_NAME} that maps the recording fingerprints to the response status codes and the body files.
+ * The index is loaded when the store is opened, while the bodies are only read when a recording is first replayed.
+ * Every recording appends its entry to the index, so a call recorded again has several entries, of which the last
+ * one wins. Such superseded entries are compacted away the next time the store is opened.
+ * <p>
+ * In the replay-only mode, calls that were not recorded beforehand are never made: they fail, and the stubbed
+ * recording URL is served instead, as with any other failed recording.
+ */
+public final class StubRecordingStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubRecordingStore.class);
+
+    static final String INDEX_FILE_NAME = "recordings.yaml";
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String SOURCE = "source";
+    private static final String STATUS = "status";
+    private static final String FILE = "file";
+    private static final String BODY_FILE_EXTENSION = ".body";
+
+    private static final StubRecordingStore DISABLED = new StubRecordingStore(null, false, new LinkedHashMap<>());
+
+    private final File directory;
+    private final boolean replayOnly;
+    private final Map<String, Map<String, String>> index;
+
+    private StubRecordingStore(final File directory, final boolean replayOnly, final Map<String, Map<String, String>> index) {
+        this.directory = directory;
+        this.replayOnly = replayOnly;
+        this.index = new ConcurrentHashMap<>(index);
+    }
+
+    /**
+     * @return a store that does not persist anything, recordings are only kept in memory
+     */
+    public static StubRecordingStore disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @param directory  directory of the store, which is created if it does not exist
+     * @param replayOnly true when missing recordings must not be recorded
+     * @return the store, with the previously recorded responses
+     */
+    public static StubRecordingStore open(final File directory, final boolean replayOnly) throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        final Map<String, Map<String, String>> index = new LinkedHashMap<>();
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        int loadedEntries = 0;
+        if (indexFile.isFile()) {
+            try (final InputStream inputStream = Files.newInputStream(indexFile.toPath())) {
+                final Object loadedIndex = SnakeYaml.INSTANCE.getSnakeYaml().load(inputStream);
+                if (loadedIndex instanceof List) {
+                    for (final Object loadedEntry : (List<?>) loadedIndex) {
+                        final Map<String, String> entry = toEntry(loadedEntry);
+                        index.put(entry.get(FINGERPRINT), entry);
+                        loadedEntries++;
+                    }
+                }
+            }
+        }
+
+        final StubRecordingStore stubRecordingStore = new StubRecordingStore(directory, replayOnly, index);
+        if (loadedEntries > index.size() && !replayOnly) {
+            stubRecordingStore.writeAtomically(INDEX_FILE_NAME, StringUtils.getBytesUtf8(indexYaml().dump(new ArrayList<>(index.values()))));
+        }
+
+        if (!ANSITerminal.isMute()) {
+            ANSITerminal.loaded(String.format("Loaded %s recorded responses from %s", index.size(), directory.getAbsolutePath()));
+        }
+        LOGGER.debug("Loaded {} recorded responses from {}.", index.size(), directory.getAbsolutePath());
+
+        return stubRecordingStore;
+    }
+
+    public boolean isReplayOnly() {
+        return replayOnly;
+    }
+
+    /**
+     * @return true when recorded responses are persisted
+     */
+    public boolean isEnabled() {
+        return !isNull(directory);
+    }
+
+    /**
+     * @param fingerprint fingerprint of the recorded upstream call
+     * @return the persisted response, or an empty {@link Optional} when the call was not recorded
+     */
+    Optional<StubbyResponse> load(final String fingerprint) throws IOException {
+        final Map<String, String> entry = index.get(fingerprint);
+        if (isNull(entry)) {
+            return Optional.empty();
+        }
+
+        final byte[] body = Files.readAllBytes(new File(directory, entry.get(FILE)).toPath());
+        return Optional.of(new StubbyResponse(Integer.parseInt(entry.get(STATUS)), new String(body, StringUtils.charsetUTF8())));
+    }
+
+    /**
+     * Writes the body file into a temporary file that atomically replaces the previous one, and only then appends
+     * the entry to the index, so an entry never refers to a body that is not fully written. Appending keeps the cost
+     * of a recording independent of the number of recordings already in the store.
+     *
+     * @param fingerprint     fingerprint of the recorded upstream call
+     * @param recordingSource URL the response was recorded from, kept in the index for reference
+     * @param response        recorded response
+     */
+    synchronized void save(final String fingerprint, final String recordingSource, final StubbyResponse response) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final String bodyFileName = bodyFileName(fingerprint);
+        final String content = isNull(response.getContent()) ? "" : response.getContent();
+        writeAtomically(bodyFileName, StringUtils.getBytesUtf8(content));
+
+        final Map<String, String> entry = new LinkedHashMap<>();
+        entry.put(FINGERPRINT, fingerprint);
+        entry.put(SOURCE, recordingSource);
+        entry.put(STATUS, String.valueOf(response.getResponseCode()));
+        entry.put(FILE, bodyFileName);
+        index.put(fingerprint, entry);
+
+        // A block sequence of one entry, appended to the block sequence in the index, is still one block sequence
+        final byte[] indexEntry = StringUtils.getBytesUtf8(indexYaml().dump(Collections.singletonList(entry)));
+        Files.write(new File(directory, INDEX_FILE_NAME).toPath(), indexEntry, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void writeAtomically(final String fileName, final byte[] content) throws IOException {
+        final Path target = new File(directory, fileName).toPath();
+        final Path temporary = Files.createTempFile(directory.toPath(), fileName, ".tmp");
+        try {
+            Files.write(temporary, content);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Yaml indexYaml() {
+        final DumperOptions dumperOptions = new DumperOptions();
+        dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return new Yaml(dumperOptions);
+    }
+
+    private static Map<String, String> toEntry(final Object loadedEntry) throws IOException {
+        if (!(loadedEntry instanceof Map)) {
+            throw new IOException(String.format("Malformed recording in %s: %s", INDEX_FILE_NAME, loadedEntry));
+        }
+
+        final Map<String, String> entry = new LinkedHashMap<>();
+        for (final Map.Entry<?, ?> property : ((Map<?, ?>) loadedEntry).entrySet()) {
+            entry.put(String.valueOf(property.getKey()), String.valueOf(property.getValue()));
+        }
+        if (!entry.containsKey(FINGERPRINT) || !entry.containsKey(STATUS) || !entry.containsKey(FILE)) {
+            throw new IOException(String.format("Malformed recording in %s: %s", INDEX_FILE_NAME, loadedEntry));
+        }
+        return entry;
+    }
+
+    // File names are derived from the fingerprint, so the same call recorded again overwrites its own body file
+    private static String bodyFileName(final String fingerprint) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(StringUtils.getBytesUtf8(fingerprint));
+            final StringBuilder fileName = new StringBuilder(digest.length * 2 + BODY_FILE_EXTENSION.length());
+            for (final byte digestByte : digest) {
+                fileName.append(String.format("%02x", digestByte));
+            }
+            return fileName.append(BODY_FILE_EXTENSION).toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    }
+}
@@ -5,9 +5,9 @@ import io.github.ntsd.stubby4gay.caching.Cache;
 import io.github.ntsd.stubby4gay.cli.ANSITerminal;
 import io.github.ntsd.stubby4gay.client.StubbyResponse;
 import io.github.ntsd.stubby4gay.http.StubbyHttpTransport;
+import io.github.ntsd.stubby4gay.metrics.StubMetrics;
 import io.github.ntsd.stubby4gay.utils.FileUtils;
 import io.github.ntsd.stubby4gay.utils.ObjectUtils;
-import io.github.ntsd.stubby4gay.utils.StringUtils;
 import io.github.ntsd.stubby4gay.yaml.YamlParseResultSet;
 import io.github.ntsd.stubby4gay.yaml.YamlParser;
 import org.slf4j.Logger;
@@ -16,105 +16,104 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static io.github.ntsd.stubby4gay.stubs.StubResponse.notFoundResponse;
+import static io.github.ntsd.stubby4gay.stubs.StubResponse.recordedResponse;
 import static io.github.ntsd.stubby4gay.stubs.StubResponse.redirectResponse;
 import static io.github.ntsd.stubby4gay.stubs.StubResponse.unauthorizedResponse;
-import static io.github.ntsd.stubby4gay.utils.CollectionUtils.constructParamMap;
 import static io.github.ntsd.stubby4gay.utils.ConsoleUtils.logAssertingRequest;
-import static io.github.ntsd.stubby4gay.utils.HandlerUtils.extractPostRequestBody;
-import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
-import static io.github.ntsd.stubby4gay.utils.ReflectionUtils.injectObjectFields;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
-import static io.github.ntsd.stubby4gay.utils.StringUtils.toLower;
-import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.BODY;
-import static java.util.Collections.list;
 
 public class StubRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(StubRepository.class);
 
-    // 7200 secs => 2 hours
-    private static final long CACHE_ENTRY_LIFETIME_SECONDS = 7200L;
-
     private final File configFile;
 
-    private final List<StubHttpLifecycle> stubs;
-    private final Cache<String, StubHttpLifecycle> stubMatchesCache;
+    // Request threads read the current snapshot without locking, admin writes are serialized
+    // on the repository monitor and publish a new snapshot once it has been fully built
+    private final AtomicReference<StubRepositorySnapshot> snapshot;
 
-    private final ConcurrentHashMap<String, AtomicLong> resourceStats;
-    private final ConcurrentHashMap<String, StubHttpLifecycle> uuidToStub;
+    private final StubMetrics metrics;
 
     private final CompletableFuture<YamlParseResultSet> stubLoadComputation;
-    private final StubbyHttpTransport stubbyHttpTransport;
+    private final StubResponseRecorder stubResponseRecorder;
+    private final StubResponseCompression stubResponseCompression;
 
     public StubRepository(final File configFile, final CompletableFuture<YamlParseResultSet> stubLoadComputation) {
-        this.stubs = new ArrayList<>();
-        this.uuidToStub = new ConcurrentHashMap<>();
+        this(configFile, stubLoadComputation, StubRecordingStore.disabled());
+    }
+
+    /**
+     * @param stubRecordingStore on-disk store, which the responses of recordable stubs are replayed from and
+     *                           recorded to
+     */
+    public StubRepository(final File configFile,
+                          final CompletableFuture<YamlParseResultSet> stubLoadComputation,
+                          final StubRecordingStore stubRecordingStore) {
+        this(configFile, stubLoadComputation, stubRecordingStore, StubResponseCompression.defaults());
+    }
+
+    /**
+     * @param stubResponseCompression compression of the stubbed response bodies, which do not depend on the
+     *                                incoming request, applied once when the stubs are published
+     */
+    public StubRepository(final File configFile,
+                          final CompletableFuture<YamlParseResultSet> stubLoadComputation,
+                          final StubRecordingStore stubRecordingStore,
+                          final StubResponseCompression stubResponseCompression) {
+        this.snapshot = new AtomicReference<>(StubRepositorySnapshot.empty());
         this.configFile = configFile;
         this.stubLoadComputation = stubLoadComputation;
-        this.stubbyHttpTransport = new StubbyHttpTransport();
-        this.resourceStats = new ConcurrentHashMap<>();
-        this.stubMatchesCache = Cache.stubHttpLifecycleCache(CACHE_ENTRY_LIFETIME_SECONDS);
+        this.stubResponseRecorder = new StubResponseRecorder(new StubbyHttpTransport(), stubRecordingStore);
+        this.metrics = new StubMetrics();
+        this.stubResponseCompression = stubResponseCompression;
     }
 
     public StubSearchResult search(final HttpServletRequest incomingRequest) throws IOException {
         final StubRequest assertionStubRequest = this.toStubRequest(incomingRequest);
         logAssertingRequest(assertionStubRequest);
 
-        final StubResponse match = findMatch(new StubHttpLifecycle.Builder().withRequest(assertionStubRequest).build());
+        final StubHttpLifecycle incomingStub = new StubHttpLifecycle.Builder().withRequest(assertionStubRequest).build();
 
-        return new StubSearchResult(assertionStubRequest, match);
+        final long matchStart = System.nanoTime();
+        final Optional<StubHttpLifecycle> matchedStubOptional = matchStub(incomingStub);
+        final long matchNanos = System.nanoTime() - matchStart;
+
+        if (!matchedStubOptional.isPresent()) {
+            metrics.recordMatch(null, null, matchNanos);
+            return new StubSearchResult(assertionStubRequest, notFoundResponse(), null);
+        }
+
+        final StubHttpLifecycle matchedStub = matchedStubOptional.get();
+        metrics.recordMatch(matchedStub.getResourceId(), matchedStub.getUrl(), matchNanos);
+
+        return new StubSearchResult(assertionStubRequest, findMatch(incomingStub, matchedStub), matchedStub.getResourceId());
     }
 
     /**
      * That's where the raw {@link HttpServletRequest request} is converted to a {@link StubHttpLifecycle},
-     * which will be matched to the in-memory stubs
+     * which will be matched to the in-memory stubs. The headers, query params and POST body of the raw request
+     * are only read when a candidate stub needs them, see {@link IncomingRequestView}
      *
      * @param request raw {@link HttpServletRequest request}
      */
     public StubRequest toStubRequest(final HttpServletRequest request) throws IOException {
-        final StubRequest.Builder builder = new StubRequest.Builder();
-        builder.withUrl(request.getPathInfo())
-                .withPost(extractPostRequestBody(request, "stubs"))
-                .withMethod(request.getMethod());
-
-        final Enumeration<String> headerNamesEnumeration = request.getHeaderNames();
-        final List<String> headerNames = isNotNull(headerNamesEnumeration) ? list(request.getHeaderNames()) : new LinkedList<>();
-        for (final String headerName : headerNames) {
-            final String headerValue = request.getHeader(headerName);
-
-            builder.withHeader(toLower(headerName), headerValue);
-        }
-
-        return builder.withQuery(constructParamMap(request.getQueryString())).build();
+        return StubRequest.ofIncomingRequest(request);
     }
 
-    private StubResponse findMatch(final StubHttpLifecycle incomingRequest) {
-
-        final Optional<StubHttpLifecycle> matchedStubOptional = matchStub(incomingRequest);
-
-        if (!matchedStubOptional.isPresent()) {
-            return notFoundResponse();
-        }
-
-        final StubHttpLifecycle matchedStub = matchedStubOptional.get();
-        final String resourceId = matchedStub.getResourceId();
-        resourceStats.putIfAbsent(resourceId, new AtomicLong(0));
-        resourceStats.get(resourceId).incrementAndGet();
-
+    private StubResponse findMatch(final StubHttpLifecycle incomingRequest, final StubHttpLifecycle matchedStub) {
         final StubResponse matchedStubResponse = matchedStub.getResponse(true);
         if (matchedStub.isAuthorizationRequired() && matchedStub.isIncomingRequestUnauthorized(incomingRequest)) {
             return unauthorizedResponse();
@@ -127,8 +126,8 @@ public class StubRepository {
         if (matchedStubResponse.isRecordingRequired()) {
             final String recordingSource = String.format("%s%s", matchedStubResponse.getBody(), incomingRequest.getUrl());
             try {
-                final StubbyResponse stubbyResponse = stubbyHttpTransport.fetchRecordableHTTPResponse(matchedStub.getRequest(), recordingSource);
-                injectObjectFields(matchedStubResponse, BODY.toString(), stubbyResponse.getContent());
+                final StubbyResponse stubbyResponse = stubResponseRecorder.record(matchedStub.getRequest(), recordingSource);
+                return recordedResponse(matchedStubResponse, stubbyResponse.getContent());
             } catch (Exception e) {
                 ANSITerminal.error(String.format("Could not record from %s: %s", recordingSource, e.toString()));
                 LOGGER.error("Could not record from {}.", e);
@@ -141,17 +140,21 @@ public class StubRepository {
      * That's the point where the incoming {@link StubHttpLifecycle} that was created from the incoming
      * raw {@link HttpServletRequest request} is matched to the in-memory stubs.
      * <p>
-     * First, the local cache holding previously matched stubs is checked to see if there is a match for the incoming
-     * {@link StubHttpLifecycle request} URI. If the incoming {@link StubHttpLifecycle} URI found in the cache, then the
-     * cached match and the incoming {@link StubHttpLifecycle} are compared to each other to determine a complete
-     * equality based on the {@link StubRequest#equals(Object)}.
+     * First, the local cache holding previous match outcomes is checked using a fingerprint of the incoming
+     * {@link StubHttpLifecycle request}, see {@link StubRequestFingerprinter}. The cache remembers both the position of
+     * the matched stub and the fact that nothing matched, the latter only when the fingerprint cannot be shared by
+     * another request, see {@link StubRequestFingerprinter#isComplete(StubRequest)}. A cached match and the incoming {@link StubHttpLifecycle}
+     * are still compared to each other to determine a complete equality based on the {@link StubRequest#equals(Object)},
+     * which also captures the regex groups of the incoming request.
      * <p>
-     * If a complete equality with the cached {@link StubHttpLifecycle match} was not achieved, the incoming
-     * {@link StubHttpLifecycle request} is compared to every {@link StubHttpLifecycle element} in the list of loaded
-     * stubs.
+     * If there was no cached outcome, or a complete equality with the cached {@link StubHttpLifecycle match} was not
+     * achieved, the incoming {@link StubHttpLifecycle request} is compared to every {@link StubHttpLifecycle element}
+     * in the list of loaded stubs, whose URL can possibly match the incoming URI according to the {@link StubUrlIndex},
+     * and whose literal POST body, if any, can possibly match according to the {@link StubRequestBodyIndex}.
      * <p>
-     * The {@link List<StubHttpLifecycle>#indexOf(Object)} implicitly invokes {@link StubHttpLifecycle#equals(Object)},
-     * which invokes the {@link StubRequest#equals(Object)}.
+     * Matching does not take any locks: the stubs and the match cache are read from the {@link StubRepositorySnapshot}
+     * that was current when the matching started, even if an admin write publishes a new snapshot in the meantime.
+     * Since every snapshot has its own match cache, publishing a new snapshot invalidates all cached outcomes at once.
      *
      * @param incomingStub {@link StubHttpLifecycle}
      * @return an {@link Optional} describing {@link StubHttpLifecycle} match, or an empty {@link Optional} if there was no match.
@@ -160,18 +163,29 @@ public class StubRepository {
      * @see StubRequest#equals(Object)
      * @see StubMatcher#matches(StubRequest, StubRequest)
      */
-    private synchronized Optional<StubHttpLifecycle> matchStub(final StubHttpLifecycle incomingStub) {
+    private Optional<StubHttpLifecycle> matchStub(final StubHttpLifecycle incomingStub) {
 
         final long initialStart = System.currentTimeMillis();
         final String incomingRequestUrl = incomingStub.getUrl();
 
-        final Optional<StubHttpLifecycle> cachedMatchCandidateOptional = stubMatchesCache.get(incomingRequestUrl);
+        final StubRepositorySnapshot currentSnapshot = snapshot.get();
+        final String fingerprint = currentSnapshot.fingerprint(incomingStub.getRequest());
+        final Cache<String, Integer> stubMatchesCache = currentSnapshot.getStubMatchesCache();
+        final Optional<Integer> cachedPositionOptional = stubMatchesCache.get(fingerprint);
+
+        if (cachedPositionOptional.isPresent()) {
+            final int cachedPosition = cachedPositionOptional.get();
+            if (cachedPosition == StubRepositorySnapshot.NO_MATCH) {
+                ANSITerminal.loaded(String.format("Local cache contains no match for the URL [%s]", incomingRequestUrl));
+                LOGGER.debug("Local cache contains no match for the URL [{}].", incomingRequestUrl);
 
-        return cachedMatchCandidateOptional.map(cachedMatchCandidate -> {
+                return Optional.empty();
+            }
 
             ANSITerminal.loaded(String.format("Local cache contains potential match for the URL [%s]", incomingRequestUrl));
             LOGGER.debug("Local cache contains potential match for the URL [{}].", incomingRequestUrl);
 
+            final StubHttpLifecycle cachedMatchCandidate = currentSnapshot.getStubs().get(cachedPosition);
             // The order(?) in which equality is determined is important here (what object is "equal to" the other one)
             if (incomingStub.equals(cachedMatchCandidate)) {
                 final long elapsed = System.currentTimeMillis() - initialStart;
@@ -185,28 +199,37 @@ public class StubRepository {
             ANSITerminal.warn(String.format("Cached match for the URL [%s] failed to match fully, invalidating match cache..", incomingRequestUrl));
             LOGGER.warn("Cached match for the URL [{}] failed to match fully, invalidating match cache.", incomingRequestUrl);
 
-            stubMatchesCache.clearByKey(incomingRequestUrl);
-
-            // Since we did not find match with cached match candidate, then:
-            return matchAll(incomingStub, initialStart, incomingRequestUrl);
+            stubMatchesCache.clearByKey(fingerprint);
+        }
 
-        }).orElseGet(() -> matchAll(incomingStub, initialStart, incomingRequestUrl));
+        return matchAll(currentSnapshot, incomingStub, initialStart, incomingRequestUrl, fingerprint);
     }
 
-    private Optional<StubHttpLifecycle> matchAll(final StubHttpLifecycle incomingStub, final long initialStart, final String incomingRequestUrl) {
-        for (final StubHttpLifecycle stubbed : stubs) {
+    private Optional<StubHttpLifecycle> matchAll(final StubRepositorySnapshot currentSnapshot,
+                                                 final StubHttpLifecycle incomingStub,
+                                                 final long initialStart,
+                                                 final String incomingRequestUrl,
+                                                 final String fingerprint) {
+        final List<StubHttpLifecycle> stubs = currentSnapshot.getStubs();
+        for (final int position : currentSnapshot.getMatchCandidatePositions(incomingStub.getRequest())) {
+            final StubHttpLifecycle stubbed = stubs.get(position);
             if (incomingStub.equals(stubbed)) {
                 final long elapsed = System.currentTimeMillis() - initialStart;
                 logMatch(elapsed, stubbed);
 
                 ANSITerminal.status(String.format("Caching the found match for URL [%s]", incomingRequestUrl));
                 LOGGER.debug("Caching the found match for URL [{}].", incomingRequestUrl);
-                stubMatchesCache.putIfAbsent(incomingRequestUrl, stubbed);
+                currentSnapshot.getStubMatchesCache().putIfAbsent(fingerprint, position);
 
                 return Optional.of(stubbed);
             }
         }
 
+        // A cached miss is trusted as it is, so it must not be shared with requests that could match
+        if (currentSnapshot.isFingerprintComplete(incomingStub.getRequest())) {
+            currentSnapshot.getStubMatchesCache().putIfAbsent(fingerprint, StubRepositorySnapshot.NO_MATCH);
+        }
+
         return Optional.empty();
     }
 
@@ -228,25 +251,19 @@ public class StubRepository {
         LOGGER.debug("{}", message);
     }
 
-    public synchronized Optional<StubHttpLifecycle> matchStubByIndex(final int index) {
-        if (!canMatchStubByIndex(index)) {
+    public Optional<StubHttpLifecycle> matchStubByIndex(final int index) {
+        final List<StubHttpLifecycle> stubs = snapshot.get().getStubs();
+        if (stubs.size() - 1 < index) {
             return Optional.empty();
         }
         return Optional.of(stubs.get(index));
     }
 
     synchronized boolean resetStubsCache(final YamlParseResultSet yamlParseResultSet) {
-        this.stubMatchesCache.clear();
-        this.stubs.clear();
-        this.uuidToStub.clear();
-
-        final boolean added = this.stubs.addAll(yamlParseResultSet.getStubs());
-        if (added) {
-            this.stubMatchesCache.clear();
-            updateResourceIDHeaders();
-            this.uuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
-        }
-        return added;
+        final List<StubHttpLifecycle> newStubs = yamlParseResultSet.getStubs();
+        publish(newStubs);
+
+        return !newStubs.isEmpty();
     }
 
     public synchronized void refreshStubsFromYamlConfig(final YamlParser yamlParser) throws Exception {
@@ -275,32 +292,46 @@ public class StubRepository {
 
     // Just a shallow copy that protects collection from modification, the points themselves are not copied
     public List<StubHttpLifecycle> getStubs() {
-        return new LinkedList<>(stubs);
+        return new LinkedList<>(snapshot.get().getStubs());
     }
 
-    // Just a shallow copy that protects collection from modification, the points themselves are not copied
-    public ConcurrentHashMap<String, AtomicLong> getResourceStats() {
-        return new ConcurrentHashMap<>(resourceStats);
+    /**
+     * @return number of matches by resource ID
+     * @see StubMetrics#getStubHits()
+     */
+    public Map<String, Long> getResourceStats() {
+        return metrics.getStubHits();
     }
 
     @CoberturaIgnore
     public String getResourceStatsAsCsv() {
-        final String csvNoHeader = resourceStats.toString().replaceAll("\\{|\\}", "").replaceAll(", ", FileUtils.BR).replaceAll("=", ",");
-        return String.format("resourceId,hits%s%s", FileUtils.BR, csvNoHeader);
+        final StringBuilder csv = new StringBuilder("resourceId,hits");
+        for (final Map.Entry<String, Long> resourceStat : metrics.getStubHits().entrySet()) {
+            csv.append(FileUtils.BR).append(resourceStat.getKey()).append(',').append(resourceStat.getValue());
+        }
+        return csv.toString();
     }
 
-    public synchronized String getOnlyStubRequestUrl() {
-        return stubs.get(0).getUrl();
+    public StubResponseCompression getStubResponseCompression() {
+        return stubResponseCompression;
+    }
+
+    public StubMetrics getMetrics() {
+        return metrics;
+    }
+
+    public String getOnlyStubRequestUrl() {
+        return snapshot.get().getStubs().get(0).getUrl();
     }
 
     public File getYamlConfig() {
         return configFile;
     }
 
-    public synchronized Map<File, Long> getExternalFiles() {
+    public Map<File, Long> getExternalFiles() {
         final Set<String> escrow = new HashSet<>();
         final Map<File, Long> externalFiles = new HashMap<>();
-        for (final StubHttpLifecycle stub : stubs) {
+        for (final StubHttpLifecycle stub : snapshot.get().getStubs()) {
             cacheExternalFile(escrow, externalFiles, stub.getRequest().getRawFile());
 
             final List<StubResponse> responses = stub.getResponses();
@@ -328,88 +359,87 @@ public class StubRepository {
         }
     }
 
-    public synchronized String getStubYaml() {
+    public String getStubYaml() {
         final StringBuilder builder = new StringBuilder();
-        for (final StubHttpLifecycle stub : stubs) {
+        for (final StubHttpLifecycle stub : snapshot.get().getStubs()) {
             builder.append(stub.getCompleteYaml()).append(FileUtils.BR).append(FileUtils.BR);
         }
 
         return builder.toString();
     }
 
-    public synchronized String getStubYamlByIndex(final int index) {
-        return stubs.get(index).getCompleteYaml();
+    public String getStubYamlByIndex(final int index) {
+        return snapshot.get().getStubs().get(index).getCompleteYaml();
     }
 
-    public synchronized String getStubYamlByUuid(final String uuid) {
-        return uuidToStub.get(uuid).getCompleteYaml();
+    public String getStubYamlByUuid(final String uuid) {
+        return snapshot.get().getUuidToStub().get(uuid).getCompleteYaml();
     }
 
-    public synchronized boolean canMatchStubByIndex(final int index) {
-        return stubs.size() - 1 >= index;
+    public boolean canMatchStubByIndex(final int index) {
+        return snapshot.get().getStubs().size() - 1 >= index;
     }
 
-    public synchronized boolean canMatchStubByUuid(final String uuid) {
-        return uuidToStub.containsKey(uuid);
+    public boolean canMatchStubByUuid(final String uuid) {
+        return snapshot.get().getUuidToStub().containsKey(uuid);
     }
 
     synchronized void updateStubByIndex(final int index, final StubHttpLifecycle newStub) {
-        final StubHttpLifecycle deletedStub = deleteStubByIndex(index);
-        stubs.add(index, newStub);
-        updateResourceIDHeaders();
-
-        if (StringUtils.isSet(deletedStub.getUUID())) {
-            uuidToStub.remove(deletedStub.getUUID());
-        }
-
-        if (StringUtils.isSet(newStub.getUUID())) {
-            uuidToStub.put(newStub.getUUID(), newStub);
-        }
+        final List<StubHttpLifecycle> newStubs = snapshot.get().copyStubs();
+        newStubs.set(index, newStub);
+        publish(newStubs);
     }
 
     synchronized void updateStubByUuid(final String uuid, final StubHttpLifecycle newStub) {
-        final StubHttpLifecycle obsolete = uuidToStub.get(uuid);
+        final StubHttpLifecycle obsolete = snapshot.get().getUuidToStub().get(uuid);
         final int resourceId = Integer.parseInt(obsolete.getResourceId());
 
         updateStubByIndex(resourceId, newStub);
     }
 
     public synchronized StubHttpLifecycle deleteStubByIndex(final int index) {
-        final StubHttpLifecycle removedStub = stubs.remove(index);
-        updateResourceIDHeaders();
-
-        if (StringUtils.isSet(removedStub.getUUID())) {
-            uuidToStub.remove(removedStub.getUUID());
-        }
+        final List<StubHttpLifecycle> newStubs = snapshot.get().copyStubs();
+        final StubHttpLifecycle removedStub = newStubs.remove(index);
+        publish(newStubs);
 
         return removedStub;
     }
 
     public synchronized StubHttpLifecycle deleteStubByUuid(final String uuid) {
-        final StubHttpLifecycle toBeRemoved = uuidToStub.get(uuid);
+        final StubHttpLifecycle toBeRemoved = snapshot.get().getUuidToStub().get(uuid);
         final int resourceId = Integer.parseInt(toBeRemoved.getResourceId());
 
         return deleteStubByIndex(resourceId);
     }
 
-    public synchronized void deleteAllStubs() {
-        this.stubMatchesCache.clear();
-        this.stubs.clear();
-        this.uuidToStub.clear();
+    // Only the stubs, which the current snapshot does not serve, are compressed before they are published, since the
+    // published stubs are never modified. In-memory recordings are made on behalf of the published stubs, so they are
+    // discarded together with their generation. Persisted recordings are kept, they are meant to outlive any generation
+    private void publish(final List<StubHttpLifecycle> newStubs) {
+        final Set<StubHttpLifecycle> publishedStubs = Collections.newSetFromMap(new IdentityHashMap<>());
+        publishedStubs.addAll(snapshot.get().getStubs());
+        for (final StubHttpLifecycle stub : newStubs) {
+            if (!publishedStubs.contains(stub)) {
+                stub.compressResponses(stubResponseCompression);
+            }
+        }
+        snapshot.set(StubRepositorySnapshot.of(newStubs));
+        stubResponseRecorder.clear();
     }
 
-    private void updateResourceIDHeaders() {
-        for (int index = 0; index < stubs.size(); index++) {
-            stubs.get(index).setResourceId(index);
-        }
+    public synchronized void deleteAllStubs() {
+        publish(Collections.emptyList());
     }
 
     @CoberturaIgnore
     public void retrieveLoadedStubs() {
         try {
             final YamlParseResultSet yamlParseResultSet = stubLoadComputation.get();
-            stubs.addAll(yamlParseResultSet.getStubs());
-            uuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
+            synchronized (this) {
+                final List<StubHttpLifecycle> newStubs = snapshot.get().copyStubs();
+                newStubs.addAll(yamlParseResultSet.getStubs());
+                publish(newStubs);
+            }
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
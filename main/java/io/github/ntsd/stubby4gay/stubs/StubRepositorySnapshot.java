@@ -0,0 +1,122 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.caching.Cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+
+/**
+ * An immutable view of the loaded stubs, which is published by the {@link StubRepository} as a whole.
+ * <p>
+ * The stubs list, the UUID lookup, the {@link StubUrlIndex}, the {@link StubRequestBodyIndex}, the
+ * {@link StubRequestFingerprinter} and the match cache always belong to the same generation of stubs, so a request
+ * thread that obtained a snapshot can match against it without any locking. Admin writes never modify a published
+ * snapshot, instead they build a new one and swap it in, which also discards the match cache of the
+ * old generation. Neither do they modify the published stubs: a stub that changes its position, and so its resource
+ * ID, is copied into the new snapshot.
+ */
+final class StubRepositorySnapshot {
+
+    /**
+     * Match cache value for requests that did not match any stub
+     */
+    static final int NO_MATCH = -1;
+
+    // 7200 secs => 2 hours
+    private static final long CACHE_ENTRY_LIFETIME_SECONDS = 7200L;
+    private static final long CACHE_MAX_ENTRIES = 5000L;
+
+    private final List<StubHttpLifecycle> stubs;
+    private final Map<String, StubHttpLifecycle> uuidToStub;
+    private final Cache<String, Integer> stubMatchesCache;
+    private final StubUrlIndex urlIndex;
+    private final StubRequestBodyIndex bodyIndex;
+    private final StubRequestFingerprinter fingerprinter;
+
+    private StubRepositorySnapshot(final List<StubHttpLifecycle> stubs) {
+        final Map<String, StubHttpLifecycle> uuidToStub = new HashMap<>();
+        for (int index = 0; index < stubs.size(); index++) {
+            StubHttpLifecycle stub = stubs.get(index);
+            if (!stub.hasResourceId(index)) {
+                stub = stub.withResourceId(index);
+                stubs.set(index, stub);
+            }
+
+            if (isSet(stub.getUUID())) {
+                uuidToStub.put(stub.getUUID(), stub);
+            }
+        }
+
+        this.stubs = Collections.unmodifiableList(stubs);
+        this.uuidToStub = Collections.unmodifiableMap(uuidToStub);
+        this.stubMatchesCache = Cache.stubMatchesCache(CACHE_ENTRY_LIFETIME_SECONDS, CACHE_MAX_ENTRIES);
+        this.urlIndex = new StubUrlIndex(this.stubs);
+        this.bodyIndex = new StubRequestBodyIndex(this.stubs);
+        this.fingerprinter = new StubRequestFingerprinter(this.stubs);
+    }
+
+    static StubRepositorySnapshot empty() {
+        return new StubRepositorySnapshot(new ArrayList<>());
+    }
+
+    static StubRepositorySnapshot of(final List<StubHttpLifecycle> stubs) {
+        return new StubRepositorySnapshot(new ArrayList<>(stubs));
+    }
+
+    List<StubHttpLifecycle> getStubs() {
+        return stubs;
+    }
+
+    Map<String, StubHttpLifecycle> getUuidToStub() {
+        return uuidToStub;
+    }
+
+    /**
+     * @return match cache of this generation, which maps request fingerprints to stub positions, or to
+     * {@link #NO_MATCH} when nothing matched
+     */
+    Cache<String, Integer> getStubMatchesCache() {
+        return stubMatchesCache;
+    }
+
+    /**
+     * @param assertingRequest incoming request
+     * @return match cache key of the incoming request
+     * @see StubRequestFingerprinter
+     */
+    String fingerprint(final StubRequest assertingRequest) {
+        return fingerprinter.fingerprint(assertingRequest);
+    }
+
+    /**
+     * @param assertingRequest incoming request
+     * @return true when a miss of the given request can be cached under its fingerprint
+     * @see StubRequestFingerprinter#isComplete(StubRequest)
+     */
+    boolean isFingerprintComplete(final StubRequest assertingRequest) {
+        return fingerprinter.isComplete(assertingRequest);
+    }
+
+    /**
+     * @param assertingRequest incoming request
+     * @return positions of the stubs whose URL, method and POST body can possibly match the given request, in the
+     * order they were declared. The returned array must not be modified
+     * @see StubUrlIndex
+     * @see StubRequestBodyIndex
+     */
+    int[] getMatchCandidatePositions(final StubRequest assertingRequest) {
+        return bodyIndex.filter(urlIndex.candidates(assertingRequest.getUri()), assertingRequest);
+    }
+
+    /**
+     * @return a mutable copy of the stubs, which can be modified and published as a new snapshot
+     */
+    List<StubHttpLifecycle> copyStubs() {
+        return new ArrayList<>(stubs);
+    }
+}
@@ -6,16 +6,16 @@ import io.github.ntsd.stubby4gay.common.Common;
 import io.github.ntsd.stubby4gay.utils.CollectionUtils;
 import io.github.ntsd.stubby4gay.utils.FileUtils;
 import io.github.ntsd.stubby4gay.utils.ObjectUtils;
-import io.github.ntsd.stubby4gay.utils.StringUtils;
 import org.eclipse.jetty.http.HttpMethod;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 import static io.github.azagniotov.generics.TypeSafeConverter.asCheckedArrayList;
@@ -24,9 +24,11 @@ import static io.github.ntsd.stubby4gay.stubs.StubbableAuthorizationType.BASIC;
 import static io.github.ntsd.stubby4gay.stubs.StubbableAuthorizationType.BEARER;
 import static io.github.ntsd.stubby4gay.stubs.StubbableAuthorizationType.CUSTOM;
 import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.newStringUtf8;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.toLower;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.toUpper;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.FILE;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.HEADERS;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.METHOD;
@@ -34,40 +36,116 @@ import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.POST;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.QUERY;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.URL;
 import static java.lang.String.valueOf;
-import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 
 
 public class StubRequest implements ReflectableStub {
 
     static final String HTTP_HEADER_AUTHORIZATION = "authorization";
 
+    // The position of a method in this list is its bit in the method mask, any other method sets the UNKNOWN_METHOD_BIT
+    private static final List<String> KNOWN_METHODS = Collections.unmodifiableList(Arrays.asList(
+            "GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE", "CONNECT"));
+    private static final List<List<String>> SINGLE_KNOWN_METHODS = KNOWN_METHODS.stream()
+            .map(Collections::singletonList)
+            .collect(toList());
+    static final int UNKNOWN_METHOD_BIT = 1 << KNOWN_METHODS.size();
+    private static final int REQUEST_BODY_METHODS_MASK = methodMask(Arrays.asList("POST", "PUT", "PATCH"));
+
     private final String url;
     private final String post;
     private final File file;
     private final byte[] fileBytes;
+    private final String normalizedPostBody;
+    private final long postBodyHash;
     private final List<String> method;
+    private final int methodMask;
     private final Map<String, String> headers;
+    private final StubbableAuthorizationType authorizationType;
     private final Map<String, String> query;
     private final Map<String, String> regexGroups;
+    private final IncomingRequestView incomingRequest;
+    private volatile StubMatcherPlan matcherPlan;
+    private volatile Object postBodyJsonTree;
+    private volatile XmlCanonicalForm postBodyXmlForm;
 
     private StubRequest(final String url,
                         final String post,
                         final File file,
                         final List<String> method,
                         final Map<String, String> headers,
-                        final Map<String, String> query) {
+                        final Map<String, String> query,
+                        final IncomingRequestView incomingRequest) {
         this.url = url;
         this.post = post;
         this.file = file;
         this.fileBytes = ObjectUtils.isNull(file) ? new byte[]{} : getFileBytes();
-        this.method = method;
-        this.headers = headers;
-        this.query = query;
+        this.normalizedPostBody = fileBytes.length == 0 ?
+                sameInstanceIfEqual(FileUtils.enforceSystemLineSeparator(post), post) :
+                FileUtils.enforceSystemLineSeparator(newStringUtf8(fileBytes));
+        this.postBodyHash = isSet(normalizedPostBody) ? hashPostBody(normalizedPostBody) : 0L;
+        this.method = upperCaseMethods(method);
+        this.methodMask = methodMask(this.method);
+        this.headers = lowerCaseHeaderNames(headers);
+        this.authorizationType = resolveAuthorizationType(this.headers);
+        this.query = query.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(query);
         this.regexGroups = new TreeMap<>();
+        this.incomingRequest = incomingRequest;
+    }
+
+    /**
+     * Converts the raw {@link HttpServletRequest request} to a {@link StubRequest}, whose headers, query params and
+     * POST body are only read from the raw request when they are first needed
+     *
+     * @see IncomingRequestView
+     */
+    static StubRequest ofIncomingRequest(final HttpServletRequest request) {
+        final List<String> method = isSet(request.getMethod()) ? Collections.singletonList(request.getMethod()) : Collections.emptyList();
+        return new StubRequest(request.getPathInfo(), null, null, method,
+                Collections.emptyMap(), Collections.emptyMap(), new IncomingRequestView(request));
+    }
+
+    /**
+     * @return the upper cased methods, which cannot be modified
+     */
+    public final List<String> getMethod() {
+        return method;
     }
 
-    public final ArrayList<String> getMethod() {
-        return method.stream().map(StringUtils::toUpper).collect(toCollection(ArrayList::new));
+    /**
+     * @return a bit per known method as per {@link #KNOWN_METHODS}, with the {@link #UNKNOWN_METHOD_BIT} set when
+     * any other method is present, or zero when there are no methods
+     */
+    int getMethodMask() {
+        return methodMask;
+    }
+
+    // Methods are upper cased once, and the common case of a single known method shares one immutable list across stubs
+    private static List<String> upperCaseMethods(final List<String> methods) {
+        if (methods.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<String> upperCased = new ArrayList<>(methods.size());
+        for (final String method : methods) {
+            final String upperCasedMethod = toUpper(method);
+            final int knownMethodIdx = KNOWN_METHODS.indexOf(upperCasedMethod);
+            upperCased.add(knownMethodIdx < 0 ? upperCasedMethod : KNOWN_METHODS.get(knownMethodIdx));
+        }
+
+        if (upperCased.size() == 1 && KNOWN_METHODS.contains(upperCased.get(0))) {
+            return SINGLE_KNOWN_METHODS.get(KNOWN_METHODS.indexOf(upperCased.get(0)));
+        }
+        return Collections.unmodifiableList(upperCased);
+    }
+
+    private static int methodMask(final List<String> upperCasedMethods) {
+        int mask = 0;
+        for (final String method : upperCasedMethods) {
+            final int knownMethodIdx = KNOWN_METHODS.indexOf(method);
+            mask |= knownMethodIdx < 0 ? UNKNOWN_METHOD_BIT : 1 << knownMethodIdx;
+        }
+        return mask;
     }
 
     public String getUri() {
@@ -84,7 +162,7 @@ public class StubRequest implements ReflectableStub {
             return url;
         }
 
-        final String queryString = CollectionUtils.constructQueryString(query);
+        final String queryString = CollectionUtils.constructQueryString(getQuery());
 
         return String.format("%s?%s", url, queryString);
     }
@@ -98,31 +176,75 @@ public class StubRequest implements ReflectableStub {
     }
 
     public String getPostBody() {
-        if (fileBytes.length == 0) {
-            return FileUtils.enforceSystemLineSeparator(post);
+        return isNull(incomingRequest) ? normalizedPostBody : incomingRequest.getPostBody();
+    }
+
+    /**
+     * @return hash of the POST body, as returned by {@link #getPostBody()}, or zero when the body is not set
+     */
+    long getPostBodyHash() {
+        return isNull(incomingRequest) ? postBodyHash : incomingRequest.getPostBodyHash();
+    }
+
+    // Most stubbed bodies have no line separators to normalise, they do not need a second copy
+    private static String sameInstanceIfEqual(final String normalized, final String original) {
+        return normalized.equals(original) ? original : normalized;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars
+    static long hashPostBody(final String postBody) {
+        long hash = 0xcbf29ce484222325L;
+        for (int idx = 0; idx < postBody.length(); idx++) {
+            hash ^= postBody.charAt(idx);
+            hash *= 0x100000001b3L;
         }
-        final String utf8FileContent = newStringUtf8(fileBytes);
-        return FileUtils.enforceSystemLineSeparator(utf8FileContent);
+        return hash;
     }
 
     //Used by reflection when populating stubby admin page with stubbed information
     public String getPost() {
-        return post;
+        return isNull(incomingRequest) ? post : incomingRequest.getPost();
     }
 
     public final Map<String, String> getHeaders() {
-        final Map<String, String> headersCopy = new LinkedHashMap<>(headers);
-        final Set<Map.Entry<String, String>> entrySet = headersCopy.entrySet();
-        this.headers.clear();
-        for (final Map.Entry<String, String> entry : entrySet) {
-            this.headers.put(toLower(entry.getKey()), entry.getValue());
+        return isNull(incomingRequest) ? headers : incomingRequest.getHeaders();
+    }
+
+    /**
+     * @return the value of the given header, which does not require all the headers of an incoming request to be read
+     */
+    public String getHeader(final String name) {
+        return isNull(incomingRequest) ? headers.get(toLower(name)) : incomingRequest.getHeader(name);
+    }
+
+    // Header names are normalised once, so that the stubbed request is never modified while it is being matched
+    private static Map<String, String> lowerCaseHeaderNames(final Map<String, String> headers) {
+        if (headers.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> lowerCased = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : headers.entrySet()) {
+            lowerCased.put(toLower(entry.getKey()), entry.getValue());
         }
 
-        return headers;
+        return Collections.unmodifiableMap(lowerCased);
+    }
+
+    // The stubbed authorization pseudo-headers are resolved once, they are never matched as regular headers
+    private static StubbableAuthorizationType resolveAuthorizationType(final Map<String, String> headers) {
+        if (headers.containsKey(BASIC.asYAMLProp())) {
+            return BASIC;
+        } else if (headers.containsKey(BEARER.asYAMLProp())) {
+            return BEARER;
+        } else if (headers.containsKey(CUSTOM.asYAMLProp())) {
+            return CUSTOM;
+        }
+        return null;
     }
 
     public Map<String, String> getQuery() {
-        return query;
+        return isNull(incomingRequest) ? query : incomingRequest.getQuery();
     }
 
     public byte[] getFile() {
@@ -151,24 +273,16 @@ public class StubRequest implements ReflectableStub {
     }
 
     boolean isSecured() {
-        return getHeaders().containsKey(BASIC.asYAMLProp()) ||
-                getHeaders().containsKey(BEARER.asYAMLProp()) ||
-                getHeaders().containsKey(CUSTOM.asYAMLProp());
+        return isNotNull(authorizationType);
     }
 
     @VisibleForTesting
     StubbableAuthorizationType getStubbedAuthorizationType() {
-        if (getHeaders().containsKey(BASIC.asYAMLProp())) {
-            return BASIC;
-        } else if (getHeaders().containsKey(BEARER.asYAMLProp())) {
-            return BEARER;
-        } else {
-            return CUSTOM;
-        }
+        return isNotNull(authorizationType) ? authorizationType : CUSTOM;
     }
 
     String getStubbedHeaderAuthorization(final StubbableAuthorizationType stubbableAuthorizationType) {
-        return getHeaders().get(stubbableAuthorizationType.asYAMLProp());
+        return headers.get(stubbableAuthorizationType.asYAMLProp());
     }
 
     public String getRawHeaderAuthorization() {
@@ -177,22 +291,83 @@ public class StubRequest implements ReflectableStub {
 
     @VisibleForTesting
     boolean isRequestBodyStubbed() {
-        return isSet(this.getPostBody()) &&
-                (getMethod().contains("POST") ||
-                        getMethod().contains("PUT") ||
-                        getMethod().contains("PATCH"));
+        return isSet(this.getPostBody()) && (methodMask & REQUEST_BODY_METHODS_MASK) != 0;
     }
 
-    public void compileRegexPatternsAndCache() {
-        if (isSet(this.url)) {
-            RegexParser.INSTANCE.compilePatternAndCache(this.url);
+    /**
+     * Compiles the stubbed URL, POST body, header and query values into a {@link StubMatcherPlan}, so that matching
+     * incoming requests against this stub does not compile any regex
+     */
+    public void compileMatcherPlan() {
+        this.matcherPlan = StubMatcherPlan.of(this);
+    }
+
+    StubMatcherPlan getMatcherPlan() {
+        StubMatcherPlan currentPlan = matcherPlan;
+        if (currentPlan == null) {
+            // Stubs that were not loaded by the YamlParser, i.e.: built in tests, are compiled on first match.
+            // Compiling twice in a race is harmless, both plans are equivalent
+            currentPlan = StubMatcherPlan.of(this);
+            matcherPlan = currentPlan;
         }
-        if (isRequestBodyStubbed()) {
-            RegexParser.INSTANCE.compilePatternAndCache(getPostBody());
+        return currentPlan;
+    }
+
+    /**
+     * The POST body of an incoming request is parsed as JSON at most once, no matter how many stubbed JSON bodies it
+     * is compared against
+     *
+     * @return the JSON tree of the POST body, or {@link JsonTreeMatcher#UNPARSABLE} when the body is not JSON
+     */
+    Object getPostBodyJsonTree() {
+        Object currentTree = postBodyJsonTree;
+        if (currentTree == null) {
+            final String postBody = getPostBody();
+            currentTree = isSet(postBody) ? JsonTreeMatcher.parse(postBody) : JsonTreeMatcher.UNPARSABLE;
+            postBodyJsonTree = currentTree;
+        }
+        return currentTree;
+    }
+
+    /**
+     * The POST body of an incoming request is canonicalized as XML at most once, no matter how many stubbed XML
+     * bodies it is compared against
+     *
+     * @return the canonical form of the POST body, or {@link XmlCanonicalForm#UNPARSABLE} when the body is not XML
+     */
+    XmlCanonicalForm getPostBodyXmlForm() {
+        XmlCanonicalForm currentForm = postBodyXmlForm;
+        if (currentForm == null) {
+            currentForm = XmlCanonicalForm.of(getPostBody());
+            postBodyXmlForm = currentForm;
+        }
+        return currentForm;
+    }
+
+    /**
+     * @return estimated retained size in bytes
+     * @see StubHttpLifecycle#estimateRetainedSize()
+     */
+    long estimateRetainedSize() {
+        long size = StubFootprint.ofObject(14, 12)
+                + StubFootprint.ofObject(5, 8)
+                + StubFootprint.ofString(url)
+                + StubFootprint.ofString(post)
+                + StubFootprint.ofBytes(fileBytes)
+                + StubFootprint.ofMappings(headers)
+                + StubFootprint.ofMappings(query);
+
+        if (normalizedPostBody != post) {
+            size += StubFootprint.ofString(normalizedPostBody);
+        }
+        if (!method.isEmpty() && !SINGLE_KNOWN_METHODS.contains(method)) {
+            size += StubFootprint.ofListContainer(method.size());
+            for (final String upperCasedMethod : method) {
+                size += KNOWN_METHODS.contains(upperCasedMethod) ? 0 : StubFootprint.ofString(upperCasedMethod);
+            }
         }
 
-        this.getQuery().values().forEach(RegexParser.INSTANCE::compilePatternAndCache);
-        this.getHeaders().values().forEach(RegexParser.INSTANCE::compilePatternAndCache);
+        return size;
     }
 
     @Override
@@ -216,10 +391,10 @@ public class StubRequest implements ReflectableStub {
     public int hashCode() {
         int result = (isNotNull(url) ? url.hashCode() : 0);
         result = 31 * result + method.hashCode();
-        result = 31 * result + (isNotNull(post) ? post.hashCode() : 0);
+        result = 31 * result + (isNotNull(getPost()) ? getPost().hashCode() : 0);
         result = 31 * result + (isNotNull(fileBytes) && fileBytes.length != 0 ? Arrays.hashCode(fileBytes) : 0);
-        result = 31 * result + headers.hashCode();
-        result = 31 * result + query.hashCode();
+        result = 31 * result + getHeaders().hashCode();
+        result = 31 * result + getQuery().hashCode();
 
         return result;
     }
@@ -232,10 +407,10 @@ public class StubRequest implements ReflectableStub {
         sb.append("{url=").append(url);
         sb.append(", method=").append(method);
 
-        if (!ObjectUtils.isNull(post)) {
-            sb.append(", post=").append(post);
+        if (!ObjectUtils.isNull(getPost())) {
+            sb.append(", post=").append(getPost());
         }
-        sb.append(", query=").append(query);
+        sb.append(", query=").append(getQuery());
         sb.append(", headers=").append(getHeaders());
         sb.append('}');
 
@@ -392,7 +567,7 @@ public class StubRequest implements ReflectableStub {
             this.headers = asCheckedLinkedHashMap(getStaged(Map.class, HEADERS, headers), String.class, String.class);
             this.query = asCheckedLinkedHashMap(getStaged(Map.class, QUERY, query), String.class, String.class);
 
-            final StubRequest stubRequest = new StubRequest(url, post, file, method, headers, query);
+            final StubRequest stubRequest = new StubRequest(url, post, file, method, headers, query, null);
 
             this.url = null;
             this.method = new ArrayList<>();
@@ -0,0 +1,130 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.ntsd.stubby4gay.stubs.LengthPrefixedKeys.appendValue;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+
+/**
+ * A load-time index of the stubs that match on a literal URL and a literal POST body.
+ * <p>
+ * Such stubs are placed into buckets keyed by method, URL and the hash of the POST body (see
+ * {@link StubRequest#getPostBodyHash()}). When the POST body of an incoming request is going to be matched
+ * literally, the indexed stubs outside of its bucket cannot match and are dropped from the candidates, while the
+ * stubs that are not indexed are always kept.
+ * <p>
+ * Like the {@link StubUrlIndex}, this index only prunes: a candidate must still be fully evaluated by the
+ * {@link StubMatcher}, which also takes care of hash collisions.
+ */
+final class StubRequestBodyIndex {
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    private final BitSet indexedPositions;
+    private final Map<String, int[]> buckets;
+
+    StubRequestBodyIndex(final List<StubHttpLifecycle> stubs) {
+        final BitSet indexedPositions = new BitSet(stubs.size());
+        final Map<String, List<Integer>> pendingBuckets = new HashMap<>();
+
+        for (int index = 0; index < stubs.size(); index++) {
+            final StubRequest stubbedRequest = stubs.get(index).getRequest();
+            final StubMatcherPlan plan = stubbedRequest.getMatcherPlan();
+            final List<String> methods = stubbedRequest.getMethod();
+            if (!isIndexable(plan) || methods.isEmpty()) {
+                continue;
+            }
+
+            indexedPositions.set(index);
+            for (final String method : methods) {
+                for (final String url : literalValues(plan.getUrl())) {
+                    for (final String postBody : literalValues(plan.getPost())) {
+                        final String key = key(method, url, StubRequest.hashPostBody(postBody));
+                        pendingBuckets.computeIfAbsent(key, k -> new ArrayList<>()).add(index);
+                    }
+                }
+            }
+        }
+
+        final Map<String, int[]> buckets = new HashMap<>();
+        for (final Map.Entry<String, List<Integer>> pendingBucket : pendingBuckets.entrySet()) {
+            final int[] bucket = pendingBucket.getValue().stream().mapToInt(Integer::intValue).distinct().toArray();
+            buckets.put(pendingBucket.getKey(), bucket);
+        }
+
+        this.indexedPositions = indexedPositions;
+        this.buckets = buckets;
+    }
+
+    /**
+     * @param candidates       positions of the candidate stubs in declaration order, which are not modified
+     * @param assertingRequest incoming request
+     * @return the given candidates without the indexed stubs, whose method, URL or POST body cannot match
+     */
+    int[] filter(final int[] candidates, final StubRequest assertingRequest) {
+        // The incoming request is not looked at unless some candidate is indexed, so its body is not read needlessly
+        if (!hasIndexedCandidate(candidates) || !StubMatcher.isPostBodyMatchedLiterally(assertingRequest)) {
+            return candidates;
+        }
+
+        final List<String> assertingMethods = assertingRequest.getMethod();
+        if (assertingMethods.size() != 1) {
+            return candidates;
+        }
+
+        final String postBody = assertingRequest.getPostBody();
+        final int[] bucket = isSet(postBody) ?
+                buckets.getOrDefault(key(assertingMethods.get(0), assertingRequest.getUri(), assertingRequest.getPostBodyHash()), NO_CANDIDATES) :
+                NO_CANDIDATES;
+
+        final int[] filtered = new int[candidates.length];
+        int size = 0;
+        for (final int position : candidates) {
+            if (!indexedPositions.get(position) || Arrays.binarySearch(bucket, position) >= 0) {
+                filtered[size++] = position;
+            }
+        }
+
+        return size == candidates.length ? candidates : Arrays.copyOf(filtered, size);
+    }
+
+    private boolean hasIndexedCandidate(final int[] candidates) {
+        if (!indexedPositions.isEmpty()) {
+            for (final int position : candidates) {
+                if (indexedPositions.get(position)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIndexable(final StubMatcherPlan plan) {
+        return plan.isPostBodyStubbed() &&
+                plan.getUrl().getKind() == StubValueMatcher.Kind.LITERAL &&
+                plan.getPost().getKind() == StubValueMatcher.Kind.LITERAL;
+    }
+
+    // A literal matcher accepts its literal, as well as the stubbed value as is, i.e.: '^/invoice$' and '/invoice'
+    private static Set<String> literalValues(final StubValueMatcher matcher) {
+        final Set<String> values = new LinkedHashSet<>();
+        values.add(matcher.getLiteral());
+        values.add(matcher.getValue());
+        return values;
+    }
+
+    private static String key(final String method, final String url, final long postBodyHash) {
+        final StringBuilder key = new StringBuilder(64)
+                .append(method)
+                .append(' ');
+        appendValue(key, url);
+        return key.append(Long.toHexString(postBodyHash)).toString();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static io.github.ntsd.stubby4gay.stubs.LengthPrefixedKeys.appendValue;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+
+/**
+ * Builds match cache keys for incoming requests.
+ * <p>
+ * A fingerprint covers everything the {@link StubMatcher} may look at when matching against the given stubs: the
+ * method, the URI, the values of the query params and headers that are referenced by at least one stub, and the
+ * POST body when at least one stub has a POST body. Two incoming requests with the same fingerprint are therefore
+ * matched by the same stub, or by none. Whatever no stub looks at is not read from the incoming request either.
+ * Short bodies are part of the fingerprint as they are. Longer ones are represented by their length and a 64-bit
+ * hash, which another body may collide with, so such a fingerprint is not {@link #isComplete(StubRequest) complete}.
+ */
+final class StubRequestFingerprinter {
+
+    private static final String HEADER_CONTENT_TYPE = "content-type";
+
+    // Longer bodies are hashed, so that the match cache keys stay small
+    static final int MAX_KEYED_POST_BODY_LENGTH = 1024;
+
+    private final String[] queryNames;
+    private final String[] headerNames;
+    private final boolean postBodyStubbed;
+
+    StubRequestFingerprinter(final List<StubHttpLifecycle> stubs) {
+        final TreeSet<String> queryNames = new TreeSet<>();
+        final TreeSet<String> headerNames = new TreeSet<>();
+        boolean postBodyStubbed = false;
+
+        for (final StubHttpLifecycle stub : stubs) {
+            final StubMatcherPlan plan = stub.getRequest().getMatcherPlan();
+            queryNames.addAll(plan.getQuery().getNames());
+            headerNames.addAll(plan.getHeaders().getNames());
+            postBodyStubbed |= plan.isPostBodyStubbed();
+        }
+
+        // Body matching depends on the asserting content type, even when no stub references it
+        if (postBodyStubbed) {
+            headerNames.add(HEADER_CONTENT_TYPE);
+        }
+
+        this.queryNames = queryNames.toArray(new String[0]);
+        this.headerNames = headerNames.toArray(new String[0]);
+        this.postBodyStubbed = postBodyStubbed;
+    }
+
+    String fingerprint(final StubRequest assertingRequest) {
+        final StringBuilder fingerprint = new StringBuilder(128)
+                .append(assertingRequest.getMethod())
+                .append(' ');
+        appendValue(fingerprint, assertingRequest.getUri());
+
+        fingerprint.append('Q');
+        if (queryNames.length != 0) {
+            appendMappings(fingerprint, queryNames, assertingRequest.getQuery());
+        }
+        fingerprint.append('H');
+        if (headerNames.length != 0) {
+            appendMappings(fingerprint, headerNames, assertingRequest.getHeaders());
+        }
+
+        fingerprint.append('B');
+        if (postBodyStubbed) {
+            final String postBody = assertingRequest.getPostBody();
+            if (isSet(postBody) && postBody.length() <= MAX_KEYED_POST_BODY_LENGTH) {
+                appendValue(fingerprint, postBody);
+            } else if (isSet(postBody)) {
+                fingerprint.append('#').append(postBody.length()).append(':').append(Long.toHexString(assertingRequest.getPostBodyHash()));
+            }
+        }
+
+        return fingerprint.toString();
+    }
+
+    /**
+     * @param assertingRequest incoming request
+     * @return true when the fingerprint of the given request stands for that request only, so that a miss can be
+     * cached under it. Otherwise another request, whose body has the same length and hash, shares the fingerprint
+     */
+    boolean isComplete(final StubRequest assertingRequest) {
+        if (!postBodyStubbed) {
+            return true;
+        }
+        final String postBody = assertingRequest.getPostBody();
+        return !isSet(postBody) || postBody.length() <= MAX_KEYED_POST_BODY_LENGTH;
+    }
+
+    private static void appendMappings(final StringBuilder fingerprint,
+                                       final String[] names,
+                                       final Map<String, String> assertingMappings) {
+        for (final String name : names) {
+            // Presence matters even when the value is not set, so absent names are marked as such
+            if (assertingMappings.containsKey(name)) {
+                fingerprint.append('+');
+                appendValue(fingerprint, assertingMappings.get(name));
+            } else {
+                fingerprint.append('-');
+            }
+        }
+    }
+}
@@ -7,13 +7,19 @@ import io.github.ntsd.stubby4gay.utils.StringUtils;
 import org.eclipse.jetty.http.HttpStatus.Code;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
 import static io.github.azagniotov.generics.TypeSafeConverter.asCheckedLinkedHashMap;
+import static io.github.ntsd.stubby4gay.utils.FileUtils.binaryFileToMappedBuffer;
 import static io.github.ntsd.stubby4gay.utils.FileUtils.fileToBytes;
 import static io.github.ntsd.stubby4gay.utils.FileUtils.isFilePathContainTemplateTokens;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
 import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.BODY;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.FILE;
@@ -28,12 +34,28 @@ public class StubResponse implements ReflectableStub {
 
     public static final String STUBBY_RESOURCE_ID_HEADER = "x-stubby-resource-id";
 
+    // Sent as they are to unmatched, unauthorized and unresolvable redirect requests, so they are built only once
+    private static final StubResponse NOT_FOUND_RESPONSE = statusResponse(Code.NOT_FOUND);
+    private static final StubResponse UNAUTHORIZED_RESPONSE = statusResponse(Code.UNAUTHORIZED);
+    private static final StubResponse MOVED_PERMANENTLY_RESPONSE = statusResponse(Code.MOVED_PERMANENTLY);
+
+    // Smaller binary files are cheaper to copy into the heap than to map, and are immune to changes on disk
+    @VisibleForTesting
+    static final long MIN_MAPPED_FILE_SIZE = 1024 * 1024;
+
     private final Code httpStatusCode;
     private final String body;
     private final File file;
+    private final ByteBuffer fileContent;
+    private final long fileContentLastModified;
     private final byte[] fileBytes;
     private final String latency;
     private final Map<String, String> headers;
+    private final StubResponseTemplate responseBodyTemplate;
+    private final boolean filePathTemplated;
+    private final String entityTag;
+    private final long lastModified;
+    private volatile StubResponseHead responseHead;
 
     private StubResponse(final Code httpStatusCode,
                          final String body,
@@ -43,9 +65,44 @@ public class StubResponse implements ReflectableStub {
         this.httpStatusCode = httpStatusCode;
         this.body = body;
         this.file = file;
-        this.fileBytes = isNull(file) ? new byte[]{} : getFileBytes();
+        this.filePathTemplated = isNotNull(file) && isFilePathContainTemplateTokens(file);
+        // Taken before mapping, so that any later change to the file tells the mapping is stale
+        this.fileContentLastModified = isNull(file) ? -1 : file.lastModified();
+        this.fileContent = mapBinaryFile();
+        this.fileBytes = isNull(file) || isNotNull(fileContent) ? new byte[]{} : getFileBytes();
         this.latency = latency;
         this.headers = isNull(headers) ? new LinkedHashMap<>() : headers;
+        this.responseBodyTemplate = compileResponseBodyTemplate();
+        this.entityTag = computeEntityTag();
+        this.lastModified = isNull(file) || filePathTemplated ? -1 : file.lastModified();
+        this.responseHead = prerenderResponseHead();
+    }
+
+    /**
+     * Copies made on every request share the file content of their source, which was mapped or read when it was
+     * loaded. Nothing else is derived from the body of a copy, its validators and head are either the ones of its
+     * source, or none at all
+     */
+    private StubResponse(final StubResponse source,
+                         final String body,
+                         final Map<String, String> headers,
+                         final StubResponseTemplate responseBodyTemplate,
+                         final String entityTag,
+                         final long lastModified,
+                         final StubResponseHead responseHead) {
+        this.httpStatusCode = source.httpStatusCode;
+        this.body = body;
+        this.file = source.file;
+        this.filePathTemplated = source.filePathTemplated;
+        this.fileContent = source.fileContent;
+        this.fileContentLastModified = source.fileContentLastModified;
+        this.fileBytes = source.fileBytes;
+        this.latency = source.latency;
+        this.headers = headers;
+        this.responseBodyTemplate = responseBodyTemplate;
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+        this.responseHead = responseHead;
     }
 
     public static StubResponse okResponse() {
@@ -53,24 +110,50 @@ public class StubResponse implements ReflectableStub {
     }
 
     public static StubResponse notFoundResponse() {
-        return new StubResponse.Builder().withHttpStatusCode(Code.NOT_FOUND).build();
+        return NOT_FOUND_RESPONSE;
     }
 
     public static StubResponse unauthorizedResponse() {
-        return new StubResponse.Builder().withHttpStatusCode(Code.UNAUTHORIZED).build();
+        return UNAUTHORIZED_RESPONSE;
     }
 
     public static StubResponse redirectResponse(final Optional<StubResponse> stubResponseOptional) {
         if (!stubResponseOptional.isPresent()) {
-            return new StubResponse.Builder().withHttpStatusCode(Code.MOVED_PERMANENTLY).build();
+            return MOVED_PERMANENTLY_RESPONSE;
         }
         final StubResponse foundStubResponse = stubResponseOptional.get();
         return new StubResponse(
-                foundStubResponse.getHttpStatusCode(),
-                foundStubResponse.getBody(),
-                foundStubResponse.getRawFile(),
-                foundStubResponse.getLatency(),
-                foundStubResponse.getHeaders());
+                foundStubResponse,
+                foundStubResponse.body,
+                foundStubResponse.headers,
+                foundStubResponse.responseBodyTemplate,
+                foundStubResponse.entityTag,
+                foundStubResponse.lastModified,
+                foundStubResponse.responseHead);
+    }
+
+    /**
+     * @param stubbedResponse response of the matched stub, which is not modified
+     * @param recordedBody    body recorded from the URL in the stubbed response body
+     * @return a copy of the stubbed response, which serves the recorded body
+     * @see StubResponseRecorder
+     */
+    static StubResponse recordedResponse(final StubResponse stubbedResponse, final String recordedBody) {
+        // The recorded body changes with every recording, it has neither validators nor a pre-rendered head
+        return new StubResponse(stubbedResponse, recordedBody, stubbedResponse.headers,
+                recordedBodyTemplate(stubbedResponse, recordedBody), null, -1, null);
+    }
+
+    private static StubResponse statusResponse(final Code httpStatusCode) {
+        return new StubResponse(httpStatusCode, null, null, null, Collections.<String, String>emptyMap());
+    }
+
+    // The stubbed file, if any, takes precedence over the recorded body, same as over the stubbed one
+    private static StubResponseTemplate recordedBodyTemplate(final StubResponse stubbedResponse, final String recordedBody) {
+        if (isNotNull(stubbedResponse.fileContent) || stubbedResponse.fileBytes.length > 0) {
+            return stubbedResponse.responseBodyTemplate;
+        }
+        return StubResponseTemplate.compile(StringUtils.isSet(recordedBody) ? recordedBody : "");
     }
 
     public Code getHttpStatusCode() {
@@ -98,7 +181,10 @@ public class StubResponse implements ReflectableStub {
      * Used by reflection when populating stubby admin page with stubbed information
      */
     public byte[] getFile() {
-        return fileBytes;
+        if (isNull(fileContent)) {
+            return fileBytes;
+        }
+        return isFileMappingStale() ? getFileBytes() : copyFileContent();
     }
 
     public File getRawFile() {
@@ -111,31 +197,179 @@ public class StubResponse implements ReflectableStub {
 
     public byte[] getResponseBodyAsBytes() {
 
+        if (isNotNull(fileContent)) {
+            return isFileMappingStale() ? getFileBytes() : copyFileContent();
+        }
         if (fileBytes.length == 0) {
             return StringUtils.getBytesUtf8(getBody());
         }
         return fileBytes;
     }
 
+    public boolean isResponseBodyEmpty() {
+        return isNull(fileContent) && fileBytes.length == 0 && getBody().isEmpty();
+    }
+
+    /**
+     * Binary files of at least {@link #MIN_MAPPED_FILE_SIZE} bytes are not loaded into the heap. Their content is
+     * memory mapped when the stub is loaded, and served straight from the mapping, which spares the copying of large
+     * payloads on every request. Smaller binary files are read into the heap when the stub is loaded.
+     * <p>
+     * The mapping follows the file on disk, so it is only served while the size and the modification time of the
+     * file are the ones it was mapped with. Once the file is edited, truncated or deleted, the mapping is stale: the
+     * pre-rendered head, its ETag and Content-Length included, is no longer used and the file is read from disk on
+     * every request, until the stubs are reloaded. A file truncated while being served aborts that one response.
+     *
+     * @return a read-only view of the mapped binary file content, or null when the response body is not backed by
+     * a mapped binary file, or the mapping is stale
+     */
+    public ByteBuffer getMappedFileContent() {
+        return isNull(fileContent) || isFileMappingStale() ? null : fileContent.duplicate();
+    }
+
     public boolean isBodyContainsTemplateTokens() {
-        final boolean isFileTemplate = fileBytes.length != 0 && isTemplateFile();
-        return isFileTemplate || StringUtils.isTokenized(getBody());
+        return responseBodyTemplate.isTokenized();
+    }
+
+    /**
+     * @return the response body, or the character file content, parsed into a template when the stub was loaded
+     */
+    public StubResponseTemplate getResponseBodyTemplate() {
+        return responseBodyTemplate;
     }
 
     public boolean isFilePathContainsTemplateTokens() {
+        return filePathTemplated;
+    }
+
+    /**
+     * Memory mapped file content lives outside of the heap, it is not counted
+     *
+     * @return estimated retained size in bytes
+     * @see StubHttpLifecycle#estimateRetainedSize()
+     */
+    long estimateRetainedSize() {
+        final StubResponseHead responseHead = this.responseHead;
+        return StubFootprint.ofObject(10, 9)
+                + StubFootprint.ofString(body)
+                + StubFootprint.ofString(entityTag)
+                + StubFootprint.ofBytes(fileBytes)
+                + StubFootprint.ofString(latency)
+                + StubFootprint.ofMappings(headers)
+                + (isNull(responseHead) ? 0 : responseHead.estimateRetainedSize());
+    }
+
+    /**
+     * @return a strong entity tag, which is derived from the response body when the stub is loaded, or null when the
+     * body depends on the incoming request
+     */
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * @return true when the stub sets its own Cache-Control, which then replaces the no-cache policy of stubby
+     */
+    public boolean isCacheControlStubbed() {
+        return StubResponseHead.isCacheControlStubbed(headers);
+    }
+
+    /**
+     * @return the headers and the body rendered when the stub was loaded, or null when the response depends on the
+     * incoming request, i.e.: it contains template tokens or has to be recorded
+     */
+    public StubResponseHead getResponseHead() {
+        if (isNotNull(fileContent) && isFileMappingStale()) {
+            return null;
+        }
+        return responseHead;
+    }
+
+    private boolean isFileMappingStale() {
+        return file.length() != fileContent.capacity() || file.lastModified() != fileContentLastModified;
+    }
+
+    private StubResponseTemplate compileResponseBodyTemplate() {
+        if (isNotNull(fileContent)) {
+            return StubResponseTemplate.literal(new byte[]{});
+        }
+        if (fileBytes.length == 0) {
+            return StubResponseTemplate.compile(getBody());
+        }
+        return isCharacterFile() ? StubResponseTemplate.compile(fileBytes) : StubResponseTemplate.literal(fileBytes);
+    }
+
+    @CoberturaIgnore
+    private boolean isCharacterFile() {
         try {
-            return isFilePathContainTemplateTokens(file);
+            return FileUtils.isCharacterFile(file);
         } catch (Exception e) {
             return false;
         }
     }
 
+    private StubResponseHead prerenderResponseHead() {
+        if (filePathTemplated || responseBodyTemplate.isTokenized() || isRecordingRequired()) {
+            return null;
+        }
+        for (final String headerValue : headers.values()) {
+            if (StringUtils.isTokenized(headerValue)) {
+                return null;
+            }
+        }
+
+        if (isNotNull(fileContent)) {
+            return StubResponseHead.of(headers, null, fileContent.remaining(), entityTag, lastModified);
+        }
+        final byte[] responseBody = getResponseBodyAsBytes();
+        return StubResponseHead.of(headers, responseBody, responseBody.length, entityTag, lastModified);
+    }
+
+    // The mapped file content is digested in place, without copying it to the heap
+    private String computeEntityTag() {
+        if (filePathTemplated || responseBodyTemplate.isTokenized() || isRecordingRequired()) {
+            return null;
+        }
+
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+        if (isNotNull(fileContent)) {
+            messageDigest.update(fileContent.duplicate());
+        } else {
+            messageDigest.update(getResponseBodyAsBytes());
+        }
+
+        // Half of the digest is plenty to tell the versions of a stubbed body apart
+        final byte[] digest = messageDigest.digest();
+        final StringBuilder entityTag = new StringBuilder(digest.length + 2).append('"');
+        for (int idx = 0; idx < digest.length / 2; idx++) {
+            entityTag.append(String.format("%02x", digest[idx]));
+        }
+        return entityTag.append('"').toString();
+    }
+
+    private byte[] copyFileContent() {
+        final ByteBuffer content = fileContent.duplicate();
+        final byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+
+        return bytes;
+    }
+
     @CoberturaIgnore
-    private boolean isTemplateFile() {
+    private ByteBuffer mapBinaryFile() {
+        if (isNull(file) || filePathTemplated || isCharacterFile() || file.length() < MIN_MAPPED_FILE_SIZE) {
+            return null;
+        }
         try {
-            return FileUtils.isTemplateFile(file);
+            final ByteBuffer mappedContent = binaryFileToMappedBuffer(file);
+            return mappedContent;
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 
@@ -154,6 +388,37 @@ public class StubResponse implements ReflectableStub {
 
     void addResourceIDHeader(final int resourceIndex) {
         getHeaders().put(STUBBY_RESOURCE_ID_HEADER, String.valueOf(resourceIndex));
+        this.responseHead = prerenderResponseHead();
+    }
+
+    /**
+     * @return a copy of this response, which carries the given resource ID, and whose pre-rendered body is compressed
+     * the same way. This response is not modified, since it may still be served from a published
+     * {@link StubRepositorySnapshot}
+     */
+    StubResponse withResourceId(final int resourceIndex) {
+        final Map<String, String> headers = new LinkedHashMap<>(this.headers);
+        headers.put(STUBBY_RESOURCE_ID_HEADER, String.valueOf(resourceIndex));
+
+        final StubResponse stubResponse = new StubResponse(this, body, headers, responseBodyTemplate, entityTag, lastModified, null);
+        final StubResponseHead responseHead = stubResponse.prerenderResponseHead();
+        final StubResponseCompression compression = isNull(this.responseHead) ? null : this.responseHead.getCompression();
+        stubResponse.responseHead = isNull(responseHead) || isNull(compression) ? responseHead : responseHead.compress(compression);
+
+        return stubResponse;
+    }
+
+    /**
+     * Compresses the pre-rendered body, unless it has already been compressed the same way. This response is modified,
+     * so it must not be published yet
+     *
+     * @see StubResponseHead#compress(StubResponseCompression)
+     */
+    void compressResponseHead(final StubResponseCompression compression) {
+        final StubResponseHead responseHead = this.responseHead;
+        if (isNotNull(responseHead) && responseHead.getCompression() != compression) {
+            this.responseHead = responseHead.compress(compression);
+        }
     }
 
     String getResourceIDHeader() {
@@ -0,0 +1,151 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static io.github.ntsd.stubby4gay.cli.CommandLineInterpreter.getIntOption;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+
+/**
+ * Which stubbed response bodies are compressed, and how.
+ * <p>
+ * Bodies that do not depend on the incoming request are compressed once, when the stubs are published by the
+ * {@link StubRepository}, and the encoded variants are kept in the {@link StubResponseHead} next to the raw body.
+ * Only the templated and recorded bodies are left to be compressed on every request, by Jetty.
+ */
+public final class StubResponseCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final int DEFAULT_LEVEL = 6;
+
+    // Images, audio, video and archives are already compressed
+    private static final Set<String> COMPRESSIBLE_MIME_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "text/html",
+            "text/plain",
+            "text/xml",
+            "text/css",
+            "text/csv",
+            "text/javascript",
+            "application/json",
+            "application/xml",
+            "application/xhtml+xml",
+            "application/javascript",
+            "application/x-javascript",
+            "image/svg+xml")));
+
+    private final int minSize;
+    private final int level;
+    private final boolean deflate;
+
+    private StubResponseCompression(final int minSize, final int level, final boolean deflate) {
+        if (minSize < 0 || level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Invalid compression min size %s or level %s", minSize, level));
+        }
+        this.minSize = minSize;
+        this.level = level;
+        this.deflate = deflate;
+    }
+
+    public static StubResponseCompression defaults() {
+        return new StubResponseCompression(DEFAULT_MIN_SIZE, DEFAULT_LEVEL, false);
+    }
+
+    public static StubResponseCompression of(final int minSize, final int level, final boolean deflate) {
+        return new StubResponseCompression(minSize, level, deflate);
+    }
+
+    public static StubResponseCompression fromCommandLineArgs(final Map<String, String> commandLineArgs) {
+        return new StubResponseCompression(
+                getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_COMPRESSION_MIN_SIZE, DEFAULT_MIN_SIZE),
+                getIntOption(commandLineArgs, CommandLineInterpreter.OPTION_COMPRESSION_LEVEL, DEFAULT_LEVEL),
+                commandLineArgs.containsKey(CommandLineInterpreter.OPTION_DEFLATE));
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isDeflate() {
+        return deflate;
+    }
+
+    /**
+     * @return the mime types, which are worth compressing
+     */
+    public String[] getCompressibleMimeTypes() {
+        return COMPRESSIBLE_MIME_TYPES.toArray(new String[0]);
+    }
+
+    /**
+     * @param contentType content type of the response, which may carry parameters, i.e.: a charset
+     * @param length      the number of bytes in the response body
+     */
+    public boolean isCompressible(final String contentType, final long length) {
+        if (isNull(contentType) || length == 0 || length < minSize) {
+            return false;
+        }
+        final int paramsStart = contentType.indexOf(';');
+        final String mimeType = paramsStart < 0 ? contentType : contentType.substring(0, paramsStart);
+
+        return COMPRESSIBLE_MIME_TYPES.contains(StringUtils.toLower(mimeType.trim()));
+    }
+
+    byte[] gzip(final byte[] body) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (final GZIPOutputStream gzipOutputStream = new LevelledGZIPOutputStream(compressed, level)) {
+            gzipOutputStream.write(body);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return the body in the zlib format, which is what the 'deflate' content coding stands for
+     */
+    byte[] deflate(final byte[] body) {
+        final Deflater deflater = new Deflater(level);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(compressed, deflater)) {
+            deflaterOutputStream.write(body);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("minSize=%s, level=%s, deflate=%s", minSize, level, deflate);
+    }
+
+    private static final class LevelledGZIPOutputStream extends GZIPOutputStream {
+
+        LevelledGZIPOutputStream(final ByteArrayOutputStream outputStream, final int level) throws IOException {
+            super(outputStream);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.DateTimeUtils;
+import io.github.ntsd.stubby4gay.utils.HandlerUtils;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedQualityCSV;
+import org.eclipse.jetty.server.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNotNull;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+
+/**
+ * The headers and the body of a stubbed response, which do not depend on the incoming request, rendered once when
+ * the stub is loaded.
+ * <p>
+ * The main headers and the stubbed headers are merged the same way consecutive {@link HttpServletResponse#setHeader}
+ * calls would merge them, and the well known ones are pre-encoded, so that Jetty copies them to the response in bulk.
+ * Content-Type and Content-Length still go through the servlet API, as Jetty tracks them apart from the other fields.
+ * The Date header comes from a value that is formatted once per second, unless the stub sets its own.
+ * <p>
+ * A body held by the head may also be held pre-compressed, see {@link StubResponseCompression}. The variant is then
+ * picked according to the Accept-Encoding of the incoming request, and Vary: Accept-Encoding is sent either way.
+ * <p>
+ * The ETag derived from the body, and the Last-Modified of a file-backed body, are rendered along with the other
+ * headers, unless the stub sets its own. A compressed variant gets its own ETag, with the same suffix Jetty uses.
+ */
+public final class StubResponseHead {
+
+    private static final String CONTENT_TYPE = StringUtils.toLower(HttpHeader.CONTENT_TYPE.asString());
+    private static final String CONTENT_LENGTH = StringUtils.toLower(HttpHeader.CONTENT_LENGTH.asString());
+    private static final String DATE = StringUtils.toLower(HttpHeader.DATE.asString());
+    private static final String CONTENT_ENCODING = StringUtils.toLower(HttpHeader.CONTENT_ENCODING.asString());
+    private static final String VARY = StringUtils.toLower(HttpHeader.VARY.asString());
+    private static final String ETAG = StringUtils.toLower(HttpHeader.ETAG.asString());
+    private static final String LAST_MODIFIED = StringUtils.toLower(HttpHeader.LAST_MODIFIED.asString());
+    private static final String CACHE_CONTROL = StringUtils.toLower(HttpHeader.CACHE_CONTROL.asString());
+    private static final String PRAGMA = StringUtils.toLower(HttpHeader.PRAGMA.asString());
+    private static final String EXPIRES = StringUtils.toLower(HttpHeader.EXPIRES.asString());
+    private static final HttpField GZIP_CONTENT_ENCODING = new PreEncodedHttpField(HttpHeader.CONTENT_ENCODING, StubResponseCompression.GZIP);
+    private static final HttpField DEFLATE_CONTENT_ENCODING = new PreEncodedHttpField(HttpHeader.CONTENT_ENCODING, StubResponseCompression.DEFLATE);
+
+    private final String contentType;
+    private final String stubbedContentLength;
+    private final String stubbedDate;
+    private final HttpField[] fields;
+    private final long bodyLength;
+    private final byte[] body;
+    private final String entityTag;
+    private final HttpField entityTagField;
+    private final HttpField gzipEntityTagField;
+    private final HttpField deflateEntityTagField;
+    private final long lastModified;
+    private final StubResponseCompression compression;
+    private final byte[] gzipBody;
+    private final byte[] deflateBody;
+
+    private StubResponseHead(final Map<String, HttpField> mergedFields,
+                             final long bodyLength,
+                             final byte[] body,
+                             final boolean entityTagDerived) {
+        // The main headers always set a Content-Type, which may have been stubbed
+        final HttpField contentTypeField = mergedFields.remove(CONTENT_TYPE);
+        final HttpField contentLengthField = mergedFields.remove(CONTENT_LENGTH);
+        final HttpField entityTagField = mergedFields.remove(ETAG);
+        final HttpField lastModifiedField = mergedFields.get(LAST_MODIFIED);
+        final HttpField dateField = mergedFields.get(DATE);
+
+        this.contentType = contentTypeField.getValue();
+        this.stubbedContentLength = isNull(contentLengthField) ? null : contentLengthField.getValue();
+        this.stubbedDate = isNull(dateField) ? null : dateField.getValue();
+        this.fields = mergedFields.values().toArray(new HttpField[0]);
+        this.bodyLength = bodyLength;
+        this.body = body;
+        this.entityTag = isNull(entityTagField) ? null : entityTagField.getValue();
+        this.entityTagField = entityTagField;
+        // A stubbed ETag is sent as is, whatever the content coding
+        this.gzipEntityTagField = entityTagDerived ? encodedEntityTagField(entityTag, StubResponseCompression.GZIP) : entityTagField;
+        this.deflateEntityTagField = entityTagDerived ? encodedEntityTagField(entityTag, StubResponseCompression.DEFLATE) : entityTagField;
+        this.lastModified = isNull(lastModifiedField) ? -1 : DateParser.parseDate(lastModifiedField.getValue());
+        this.compression = null;
+        this.gzipBody = null;
+        this.deflateBody = null;
+    }
+
+    private StubResponseHead(final StubResponseHead responseHead,
+                             final HttpField[] fields,
+                             final StubResponseCompression compression,
+                             final byte[] gzipBody,
+                             final byte[] deflateBody) {
+        this.contentType = responseHead.contentType;
+        this.stubbedContentLength = responseHead.stubbedContentLength;
+        this.stubbedDate = responseHead.stubbedDate;
+        this.fields = fields;
+        this.bodyLength = responseHead.bodyLength;
+        this.body = responseHead.body;
+        this.entityTag = responseHead.entityTag;
+        this.entityTagField = responseHead.entityTagField;
+        this.gzipEntityTagField = responseHead.gzipEntityTagField;
+        this.deflateEntityTagField = responseHead.deflateEntityTagField;
+        this.lastModified = responseHead.lastModified;
+        this.compression = compression;
+        this.gzipBody = gzipBody;
+        this.deflateBody = deflateBody;
+    }
+
+    /**
+     * @param stubbedHeaders headers of the stubbed response, which must not contain template tokens
+     * @param body           the response body, or null when the body is served from elsewhere, i.e.: a mapped file
+     * @param bodyLength     the number of bytes in the response body
+     */
+    static StubResponseHead of(final Map<String, String> stubbedHeaders, final byte[] body, final long bodyLength) {
+        return of(stubbedHeaders, body, bodyLength, null, -1);
+    }
+
+    /**
+     * @param entityTag    strong entity tag derived from the response body, or null
+     * @param lastModified modification time of the file the response body comes from, or a negative value
+     * @see #of(Map, byte[], long)
+     */
+    static StubResponseHead of(final Map<String, String> stubbedHeaders,
+                               final byte[] body,
+                               final long bodyLength,
+                               final String entityTag,
+                               final long lastModified) {
+        final Map<String, HttpField> mergedFields = new LinkedHashMap<>();
+        mergeHeaders(mergedFields, HandlerUtils.constructStaticMainHeaders());
+        if (isCacheControlStubbed(stubbedHeaders)) {
+            mergedFields.remove(PRAGMA);
+            mergedFields.remove(EXPIRES);
+        }
+
+        final Map<String, String> validators = new LinkedHashMap<>();
+        if (isNotNull(entityTag)) {
+            validators.put(HttpHeader.ETAG.asString(), entityTag);
+        }
+        if (lastModified >= 0) {
+            validators.put(HttpHeader.LAST_MODIFIED.asString(), DateGenerator.formatDate(lastModified));
+        }
+        mergeHeaders(mergedFields, validators);
+        mergeHeaders(mergedFields, stubbedHeaders);
+
+        final boolean entityTagDerived = isNotNull(entityTag) && entityTag.equals(valueOf(mergedFields.get(ETAG)));
+        return new StubResponseHead(mergedFields, bodyLength, body, entityTagDerived);
+    }
+
+    /**
+     * The stubbed Cache-Control replaces the no-cache policy of stubby as a whole, so the Pragma and Expires that
+     * come with that policy are dropped too, unless they are stubbed as well
+     *
+     * @return true when the given stubbed headers set a Cache-Control
+     */
+    static boolean isCacheControlStubbed(final Map<String, String> stubbedHeaders) {
+        for (final Map.Entry<String, String> header : stubbedHeaders.entrySet()) {
+            if (isNotNull(header.getValue()) && StringUtils.toLower(header.getKey()).equals(CACHE_CONTROL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of this head, which also holds the body compressed as per the given compression, if the body
+     * is held by the head and is worth compressing. A stubbed Content-Encoding or Content-Length means that the
+     * body is served as is
+     */
+    StubResponseHead compress(final StubResponseCompression compression) {
+        if (isNull(body) || isNotNull(stubbedContentLength) || hasField(CONTENT_ENCODING) ||
+                !compression.isCompressible(contentType, body.length)) {
+            return new StubResponseHead(this, fields, compression, null, null);
+        }
+
+        // A variant, which is not smaller than the raw body, is not worth sending
+        final byte[] gzipBody = compression.gzip(body);
+        final byte[] deflateBody = compression.isDeflate() ? compression.deflate(body) : null;
+        final byte[] smallerGzipBody = gzipBody.length < body.length ? gzipBody : null;
+        final byte[] smallerDeflateBody = isNotNull(deflateBody) && deflateBody.length < body.length ? deflateBody : null;
+        if (isNull(smallerGzipBody) && isNull(smallerDeflateBody)) {
+            return new StubResponseHead(this, fields, compression, null, null);
+        }
+
+        return new StubResponseHead(this, varyByAcceptEncoding(), compression, smallerGzipBody, smallerDeflateBody);
+    }
+
+    /**
+     * @return the compression, which the head was compressed with, or null
+     */
+    StubResponseCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return the pre-rendered body, or null when the body is not held by the head
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @param encoding content coding returned by {@link #negotiateEncoding(String)}
+     * @return the pre-rendered body in the given content coding, or null when the body is not held by the head
+     */
+    public byte[] getBody(final String encoding) {
+        if (StubResponseCompression.GZIP.equals(encoding)) {
+            return gzipBody;
+        }
+        if (StubResponseCompression.DEFLATE.equals(encoding)) {
+            return deflateBody;
+        }
+        return body;
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header of the incoming request, or null
+     * @return the content coding of the pre-compressed body, which the client prefers, or null when the body has
+     * to be sent as is
+     */
+    public String negotiateEncoding(final String acceptEncoding) {
+        if (isNull(acceptEncoding) || (isNull(gzipBody) && isNull(deflateBody))) {
+            return null;
+        }
+
+        // Sorted by preference, without the codings refused with q=0
+        final QuotedQualityCSV acceptedEncodings = new QuotedQualityCSV();
+        acceptedEncodings.addValue(acceptEncoding);
+        // The wildcard only stands for the codings, which are not listed
+        final String lowerCaseAcceptEncoding = StringUtils.toLower(acceptEncoding);
+        for (final String acceptedEncoding : acceptedEncodings) {
+            final String encoding = StringUtils.toLower(acceptedEncoding);
+            final boolean wildcard = encoding.equals("*");
+            if (encoding.equals("identity")) {
+                return null;
+            }
+            if (isNotNull(gzipBody) && (encoding.equals(StubResponseCompression.GZIP) || encoding.equals("x-gzip") ||
+                    (wildcard && !lowerCaseAcceptEncoding.contains(StubResponseCompression.GZIP)))) {
+                return StubResponseCompression.GZIP;
+            }
+            if (isNotNull(deflateBody) && (encoding.equals(StubResponseCompression.DEFLATE) ||
+                    (wildcard && !lowerCaseAcceptEncoding.contains(StubResponseCompression.DEFLATE)))) {
+                return StubResponseCompression.DEFLATE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Evaluates the conditional request headers, as per RFC 7232: If-Modified-Since is only considered when there is
+     * no If-None-Match
+     *
+     * @param ifNoneMatch     If-None-Match header of the incoming request, or null
+     * @param ifModifiedSince If-Modified-Since header of the incoming request, or null
+     * @return true when the client already holds the current response body
+     */
+    public boolean isNotModified(final String ifNoneMatch, final String ifModifiedSince) {
+        if (isNotNull(ifNoneMatch)) {
+            return isNotNull(entityTag) && matchesEntityTag(ifNoneMatch);
+        }
+        if (isNull(ifModifiedSince) || lastModified < 0) {
+            return false;
+        }
+        final long modifiedSince = DateParser.parseDate(ifModifiedSince);
+
+        // HTTP dates have a one second precision
+        return modifiedSince >= 0 && lastModified / 1000 <= modifiedSince / 1000;
+    }
+
+    /**
+     * Applies the headers of a 304 (Not Modified) response, which does not have a body
+     *
+     * @param encoding content coding returned by {@link #negotiateEncoding(String)}
+     */
+    public void applyNotModified(final HttpServletResponse response, final String encoding) {
+        if (isNull(stubbedDate)) {
+            response.setHeader(HttpHeader.DATE.asString(), DateTimeUtils.cachedSystemDefault());
+        }
+        applyFields(response, entityTagField(encoding), null);
+    }
+
+    /**
+     * Footprint of the pre-compressed bodies, the raw body is accounted for by the {@link StubResponse}
+     *
+     * @return estimated retained size in bytes
+     */
+    long estimateRetainedSize() {
+        return StubFootprint.ofBytes(gzipBody) + StubFootprint.ofBytes(deflateBody);
+    }
+
+    public void apply(final HttpServletResponse response) {
+        apply(response, null);
+    }
+
+    /**
+     * @param encoding content coding returned by {@link #negotiateEncoding(String)}
+     */
+    public void apply(final HttpServletResponse response, final String encoding) {
+        response.setCharacterEncoding(StringUtils.UTF_8);
+        response.setHeader(HttpHeader.CONTENT_TYPE.asString(), contentType);
+        if (isNull(stubbedDate)) {
+            response.setHeader(HttpHeader.DATE.asString(), DateTimeUtils.cachedSystemDefault());
+        }
+
+        final HttpField contentEncoding = isNull(encoding) ? null :
+                encoding.equals(StubResponseCompression.GZIP) ? GZIP_CONTENT_ENCODING : DEFLATE_CONTENT_ENCODING;
+        applyFields(response, entityTagField(encoding), contentEncoding);
+
+        if (isNotNull(contentEncoding)) {
+            response.setContentLengthLong(getBody(encoding).length);
+        } else if (isNull(stubbedContentLength)) {
+            response.setContentLengthLong(bodyLength);
+        } else {
+            response.setHeader(HttpHeader.CONTENT_LENGTH.asString(), stubbedContentLength);
+        }
+    }
+
+    private void applyFields(final HttpServletResponse response,
+                             final HttpField entityTagField,
+                             final HttpField contentEncodingField) {
+        if (response instanceof Response) {
+            final HttpFields httpFields = ((Response) response).getHttpFields();
+            for (final HttpField field : fields) {
+                httpFields.put(field);
+            }
+            if (isNotNull(entityTagField)) {
+                httpFields.put(entityTagField);
+            }
+            if (isNotNull(contentEncodingField)) {
+                httpFields.put(contentEncodingField);
+            }
+        } else {
+            for (final HttpField field : fields) {
+                response.setHeader(field.getName(), field.getValue());
+            }
+            if (isNotNull(entityTagField)) {
+                response.setHeader(entityTagField.getName(), entityTagField.getValue());
+            }
+            if (isNotNull(contentEncodingField)) {
+                response.setHeader(contentEncodingField.getName(), contentEncodingField.getValue());
+            }
+        }
+    }
+
+    private HttpField entityTagField(final String encoding) {
+        if (StubResponseCompression.GZIP.equals(encoding)) {
+            return gzipEntityTagField;
+        }
+        if (StubResponseCompression.DEFLATE.equals(encoding)) {
+            return deflateEntityTagField;
+        }
+        return entityTagField;
+    }
+
+    // Weak comparison, as per RFC 7232, which also matches the ETags of the compressed variants
+    private boolean matchesEntityTag(final String ifNoneMatch) {
+        final String opaqueTag = opaqueTag(entityTag);
+        for (final String candidate : new QuotedCSV(true, ifNoneMatch)) {
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(final String entityTag) {
+        final String strongTag = entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+        for (final String encoding : new String[]{StubResponseCompression.GZIP, StubResponseCompression.DEFLATE}) {
+            final String suffix = String.format("--%s\"", encoding);
+            if (strongTag.endsWith(suffix)) {
+                return String.format("%s\"", strongTag.substring(0, strongTag.length() - suffix.length()));
+            }
+        }
+        return strongTag;
+    }
+
+    private static HttpField encodedEntityTagField(final String entityTag, final String encoding) {
+        final String encodedEntityTag = String.format("%s--%s\"", entityTag.substring(0, entityTag.length() - 1), encoding);
+        return new PreEncodedHttpField(HttpHeader.ETAG, encodedEntityTag);
+    }
+
+    private static String valueOf(final HttpField field) {
+        return isNull(field) ? null : field.getValue();
+    }
+
+    private boolean hasField(final String lowerCaseName) {
+        for (final HttpField field : fields) {
+            if (StringUtils.toLower(field.getName()).equals(lowerCaseName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Caches must not serve an encoded variant to a client, which has not asked for it, and vice versa
+    private HttpField[] varyByAcceptEncoding() {
+        final HttpField[] varyFields = Arrays.copyOf(fields, fields.length + 1);
+        for (int idx = 0; idx < fields.length; idx++) {
+            if (StringUtils.toLower(fields[idx].getName()).equals(VARY)) {
+                final String stubbedVary = fields[idx].getValue();
+                varyFields[idx] = new HttpField(fields[idx].getName(), stubbedVary.contains("*") ?
+                        stubbedVary :
+                        String.format("%s, %s", stubbedVary, HttpHeader.ACCEPT_ENCODING.asString()));
+                return Arrays.copyOf(varyFields, fields.length);
+            }
+        }
+        varyFields[fields.length] = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
+
+        return varyFields;
+    }
+
+    private static void mergeHeaders(final Map<String, HttpField> mergedFields, final Map<String, String> headers) {
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            final String name = header.getKey();
+            final String lowerCaseName = StringUtils.toLower(name);
+            // Same as setHeader(name, null), which removes the header
+            if (isNull(header.getValue())) {
+                if (lowerCaseName.equals(CONTENT_TYPE)) {
+                    mergedFields.put(lowerCaseName, new HttpField(name, (String) null));
+                } else {
+                    mergedFields.remove(lowerCaseName);
+                }
+                continue;
+            }
+
+            // Re-inserted, so that the field keeps the name, as it was last set
+            mergedFields.remove(lowerCaseName);
+            // Only the well known headers can be pre-encoded by Jetty
+            final HttpHeader httpHeader = HttpHeader.CACHE.get(name);
+            mergedFields.put(lowerCaseName, isNull(httpHeader) ?
+                    new HttpField(name, header.getValue()) :
+                    new PreEncodedHttpField(httpHeader, name, header.getValue()));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.caching.Cache;
+import io.github.ntsd.stubby4gay.cli.ANSITerminal;
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
+import io.github.ntsd.stubby4gay.http.StubbyHttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static io.github.ntsd.stubby4gay.stubs.LengthPrefixedKeys.appendValue;
+
+/**
+ * Records the responses of stubs whose response body is a URL, see {@link StubResponse#isRecordingRequired()}.
+ * <p>
+ * Recorded responses are kept in a TTL cache keyed by the fingerprint of the upstream call, i.e.: the method, the
+ * recording URL, the POST body and the headers, so the stubbed {@link StubResponse} is never modified. Concurrent
+ * identical calls are collapsed: the first request thread contacts the upstream, while the others wait for its outcome
+ * instead of opening their own connections. Failed calls are not cached, the next request tries again.
+ * <p>
+ * Responses missing from the cache are first looked up in the {@link StubRecordingStore}, and newly recorded responses
+ * are persisted there. In the replay-only mode, responses missing from the store are not recorded at all.
+ */
+final class StubResponseRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubResponseRecorder.class);
+
+    // 3600 secs => 1 hour
+    private static final long CACHE_ENTRY_LIFETIME_SECONDS = 3600L;
+    private static final long CACHE_MAX_ENTRIES = 1000L;
+
+    private final StubbyHttpTransport stubbyHttpTransport;
+    private final Cache<String, StubbyResponse> recordedResponsesCache;
+    private final StubRecordingStore stubRecordingStore;
+    private final ConcurrentMap<String, CompletableFuture<StubbyResponse>> inFlight;
+
+    StubResponseRecorder(final StubbyHttpTransport stubbyHttpTransport) {
+        this(stubbyHttpTransport, StubRecordingStore.disabled());
+    }
+
+    StubResponseRecorder(final StubbyHttpTransport stubbyHttpTransport, final StubRecordingStore stubRecordingStore) {
+        this.stubbyHttpTransport = stubbyHttpTransport;
+        this.recordedResponsesCache = Cache.recordedResponsesCache(CACHE_ENTRY_LIFETIME_SECONDS, CACHE_MAX_ENTRIES);
+        this.stubRecordingStore = stubRecordingStore;
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param stubbedRequest  request of the matched stub, whose method, POST body and headers are sent upstream
+     * @param recordingSource URL to record from
+     * @return the cached response, or the response of the upstream call made by this or a concurrent request thread
+     */
+    StubbyResponse record(final StubRequest stubbedRequest, final String recordingSource) throws IOException {
+        final String fingerprint = fingerprint(stubbedRequest, recordingSource);
+        final Optional<StubbyResponse> cachedResponse = recordedResponsesCache.get(fingerprint);
+        if (cachedResponse.isPresent()) {
+            return cachedResponse.get();
+        }
+
+        final CompletableFuture<StubbyResponse> call = new CompletableFuture<>();
+        final CompletableFuture<StubbyResponse> pendingCall = inFlight.putIfAbsent(fingerprint, call);
+        if (pendingCall != null) {
+            return awaitPendingCall(pendingCall);
+        }
+
+        try {
+            // The response may have been cached by a call that completed after the cache lookup above
+            final Optional<StubbyResponse> recordedResponse = recordedResponsesCache.get(fingerprint);
+            final StubbyResponse response = recordedResponse.isPresent() ?
+                    recordedResponse.get() :
+                    replayOrFetch(stubbedRequest, recordingSource, fingerprint);
+            recordedResponsesCache.putIfAbsent(fingerprint, response);
+            call.complete(response);
+
+            return response;
+        } catch (final IOException | RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(fingerprint, call);
+        }
+    }
+
+    private StubbyResponse replayOrFetch(final StubRequest stubbedRequest, final String recordingSource, final String fingerprint) throws IOException {
+        final Optional<StubbyResponse> persistedResponse = stubRecordingStore.load(fingerprint);
+        if (persistedResponse.isPresent()) {
+            return persistedResponse.get();
+        }
+        if (stubRecordingStore.isReplayOnly()) {
+            throw new IOException(String.format("No recorded response for %s in the replay-only mode", recordingSource));
+        }
+
+        final StubbyResponse response = stubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, recordingSource);
+        try {
+            stubRecordingStore.save(fingerprint, recordingSource, response);
+        } catch (final IOException e) {
+            // The response is still served and cached in memory, only its replay after a restart is lost
+            ANSITerminal.error(String.format("Could not persist the response recorded from %s: %s", recordingSource, e.toString()));
+            LOGGER.error("Could not persist the response recorded from {}.", recordingSource, e);
+        }
+        return response;
+    }
+
+    void clear() {
+        recordedResponsesCache.clear();
+    }
+
+    private static StubbyResponse awaitPendingCall(final CompletableFuture<StubbyResponse> pendingCall) throws IOException {
+        try {
+            return pendingCall.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a concurrent recording", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String fingerprint(final StubRequest stubbedRequest, final String recordingSource) {
+        final StringBuilder fingerprint = new StringBuilder(128)
+                .append(stubbedRequest.getMethod().get(0))
+                .append(' ');
+        appendValue(fingerprint, recordingSource);
+        appendValue(fingerprint, stubbedRequest.getPostBody());
+        for (final Map.Entry<String, String> header : stubbedRequest.getHeaders().entrySet()) {
+            appendValue(fingerprint, header.getKey());
+            appendValue(fingerprint, header.getValue());
+        }
+        return fingerprint.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response body, or any other stubbed content, parsed into literal byte chunks and template token references,
+ * i.e.: &lt;% url.1 %&gt;.
+ * <p>
+ * The content is parsed once. Rendering writes the literal chunks and the values of the referenced regex groups
+ * straight to the given output in a single pass. A token without a captured value is rendered as is.
+ */
+public final class StubResponseTemplate {
+
+    private static final byte TOKEN_OPEN = '<';
+    private static final byte TOKEN_MARK = '%';
+    private static final byte TOKEN_CLOSE = '>';
+
+    private final byte[] source;
+    // Segment N spans source bytes [segmentStarts[N], segmentEnds[N]), it is a token when tokenNames[N] is not null
+    private final int[] segmentStarts;
+    private final int[] segmentEnds;
+    private final String[] tokenNames;
+    private final boolean tokenized;
+
+    private StubResponseTemplate(final byte[] source, final List<int[]> segments, final List<String> tokenNames) {
+        this.source = source;
+        this.segmentStarts = new int[segments.size()];
+        this.segmentEnds = new int[segments.size()];
+        this.tokenNames = tokenNames.toArray(new String[0]);
+
+        boolean tokenized = false;
+        for (int idx = 0; idx < segments.size(); idx++) {
+            segmentStarts[idx] = segments.get(idx)[0];
+            segmentEnds[idx] = segments.get(idx)[1];
+            tokenized |= this.tokenNames[idx] != null;
+        }
+        this.tokenized = tokenized;
+    }
+
+    /**
+     * @param source UTF-8 encoded content. The array is not copied and must not be modified afterwards
+     */
+    public static StubResponseTemplate compile(final byte[] source) {
+        final List<int[]> segments = new ArrayList<>();
+        final List<String> tokenNames = new ArrayList<>();
+
+        int literalStart = 0;
+        int tokenStart = indexOfTokenOpening(source, 0);
+        while (tokenStart >= 0) {
+            final int contentStart = tokenStart + 2;
+            final int nextTokenStart = indexOfTokenOpening(source, contentStart);
+            final int tokenEnd = indexOfTokenClosing(source, contentStart);
+            if (tokenEnd < 0) {
+                break;
+            }
+
+            // In '<% <% url.1 %>' only the innermost opening belongs to the token
+            if (nextTokenStart >= 0 && nextTokenStart < tokenEnd) {
+                tokenStart = nextTokenStart;
+                continue;
+            }
+
+            if (tokenStart > literalStart) {
+                segments.add(new int[]{literalStart, tokenStart});
+                tokenNames.add(null);
+            }
+            segments.add(new int[]{tokenStart, tokenEnd + 2});
+            tokenNames.add(StringUtils.newStringUtf8(Arrays.copyOfRange(source, contentStart, tokenEnd)).trim());
+
+            literalStart = tokenEnd + 2;
+            tokenStart = indexOfTokenOpening(source, literalStart);
+        }
+
+        if (source.length > literalStart) {
+            segments.add(new int[]{literalStart, source.length});
+            tokenNames.add(null);
+        }
+
+        return new StubResponseTemplate(source, segments, tokenNames);
+    }
+
+    public static StubResponseTemplate compile(final String source) {
+        return compile(StringUtils.getBytesUtf8(source));
+    }
+
+    /**
+     * @param source content that must be rendered as is, i.e.: a binary file
+     */
+    public static StubResponseTemplate literal(final byte[] source) {
+        final List<int[]> segments = new ArrayList<>();
+        final List<String> tokenNames = new ArrayList<>();
+        if (source.length > 0) {
+            segments.add(new int[]{0, source.length});
+            tokenNames.add(null);
+        }
+
+        return new StubResponseTemplate(source, segments, tokenNames);
+    }
+
+    /**
+     * @return true when the content references at least one template token
+     */
+    public boolean isTokenized() {
+        return tokenized;
+    }
+
+    public void render(final OutputStream outputStream, final Map<String, String> regexGroups) throws IOException {
+        for (int idx = 0; idx < tokenNames.length; idx++) {
+            final String tokenName = tokenNames[idx];
+            if (tokenName != null && regexGroups.containsKey(tokenName)) {
+                final String value = regexGroups.get(tokenName);
+                if (value != null) {
+                    outputStream.write(StringUtils.getBytesUtf8(value));
+                }
+            } else {
+                outputStream.write(source, segmentStarts[idx], segmentEnds[idx] - segmentStarts[idx]);
+            }
+        }
+    }
+
+    public String renderToString(final Map<String, String> regexGroups) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(source.length);
+        try {
+            render(outputStream, regexGroups);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return StringUtils.newStringUtf8(outputStream.toByteArray());
+    }
+
+    private static int indexOfTokenOpening(final byte[] source, final int from) {
+        for (int idx = from; idx < source.length - 1; idx++) {
+            if (source[idx] == TOKEN_OPEN && source[idx + 1] == TOKEN_MARK) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfTokenClosing(final byte[] source, final int from) {
+        for (int idx = from; idx < source.length - 1; idx++) {
+            if (source[idx] == TOKEN_MARK && source[idx + 1] == TOKEN_CLOSE) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+}
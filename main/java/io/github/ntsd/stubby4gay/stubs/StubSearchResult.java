@@ -5,10 +5,12 @@ public class StubSearchResult {
 
     private final StubRequest invariant;
     private final StubResponse match;
+    private final String resourceId;
 
-    StubSearchResult(final StubRequest invariant, final StubResponse match) {
+    StubSearchResult(final StubRequest invariant, final StubResponse match, final String resourceId) {
         this.invariant = invariant;
         this.match = match;
+        this.resourceId = resourceId;
     }
 
     public StubRequest getInvariant() {
@@ -18,4 +20,11 @@ public class StubSearchResult {
     public StubResponse getMatch() {
         return match;
     }
+
+    /**
+     * @return resource ID of the matched stub, or null when no stub matched
+     */
+    public String getResourceId() {
+        return resourceId;
+    }
 }
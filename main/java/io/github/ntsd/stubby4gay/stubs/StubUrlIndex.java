@@ -0,0 +1,173 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isSet;
+
+/**
+ * A load-time index that narrows down the stubs that can possibly match an incoming request URI.
+ * <p>
+ * Every stub is placed into a radix trie under the literal prefix of its stubbed URL (see
+ * {@link RegexParser#literalPrefix(String)}). Stubs without such prefix (no URL at all, or a regex that does
+ * not start with a literal) go into a fallback bucket, which is always part of the candidates.
+ * <p>
+ * The index only prunes: a candidate must still be fully evaluated by the {@link StubMatcher}. Candidates are
+ * returned as positions in the indexed stubs list, in ascending order, so that the first stub declared in the
+ * YAML config still wins.
+ */
+final class StubUrlIndex {
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    private final Node root;
+    private final int[] fallbackBucket;
+
+    StubUrlIndex(final List<StubHttpLifecycle> stubs) {
+        this.root = new Node("");
+
+        final List<Integer> fallbackBucket = new ArrayList<>();
+        for (int index = 0; index < stubs.size(); index++) {
+            final StubRequest stubbedRequest = stubs.get(index).getRequest();
+            final String literalPrefix = RegexParser.literalPrefix(stubbedRequest.getUri());
+
+            if (literalPrefix.isEmpty()) {
+                fallbackBucket.add(index);
+            } else {
+                root.insert(literalPrefix, index);
+            }
+        }
+
+        this.fallbackBucket = toIntArray(fallbackBucket);
+        this.root.freeze();
+    }
+
+    /**
+     * @param uri incoming request URI
+     * @return positions of the stubs, whose URL can possibly match the given URI, in declaration order.
+     * The returned array may be shared with the index and must not be modified
+     */
+    int[] candidates(final String uri) {
+        final List<int[]> buckets = new ArrayList<>();
+        if (isSet(uri)) {
+            root.collect(uri, 0, buckets);
+        }
+
+        if (buckets.isEmpty()) {
+            return fallbackBucket;
+        } else if (buckets.size() == 1 && fallbackBucket.length == 0) {
+            return buckets.get(0);
+        }
+
+        int total = fallbackBucket.length;
+        for (final int[] bucket : buckets) {
+            total += bucket.length;
+        }
+
+        final int[] candidates = Arrays.copyOf(fallbackBucket, total);
+        int offset = fallbackBucket.length;
+        for (final int[] bucket : buckets) {
+            System.arraycopy(bucket, 0, candidates, offset, bucket.length);
+            offset += bucket.length;
+        }
+
+        // Each bucket is sorted, but the buckets interleave in terms of declaration order
+        Arrays.sort(candidates);
+
+        return candidates;
+    }
+
+    private static int[] toIntArray(final List<Integer> values) {
+        if (values.isEmpty()) {
+            return NO_CANDIDATES;
+        }
+
+        final int[] array = new int[values.size()];
+        for (int idx = 0; idx < array.length; idx++) {
+            array[idx] = values.get(idx);
+        }
+        return array;
+    }
+
+    private static final class Node {
+        private String label;
+        private Map<Character, Node> children;
+        private List<Integer> pendingStubIndexes;
+        private int[] stubIndexes;
+
+        private Node(final String label) {
+            this.label = label;
+            this.children = new HashMap<>();
+            this.pendingStubIndexes = new ArrayList<>();
+            this.stubIndexes = NO_CANDIDATES;
+        }
+
+        private void insert(final String key, final int stubIndex) {
+            if (key.isEmpty()) {
+                pendingStubIndexes.add(stubIndex);
+                return;
+            }
+
+            final Node child = children.get(key.charAt(0));
+            if (child == null) {
+                final Node leaf = new Node(key);
+                leaf.pendingStubIndexes.add(stubIndex);
+                children.put(key.charAt(0), leaf);
+                return;
+            }
+
+            final int common = commonPrefixLength(child.label, key);
+            if (common < child.label.length()) {
+                child.split(common);
+            }
+            child.insert(key.substring(common), stubIndex);
+        }
+
+        // Moves the tail of this node's label, together with its stubs and children, into a new child node
+        private void split(final int at) {
+            final Node tail = new Node(label.substring(at));
+            tail.children = children;
+            tail.pendingStubIndexes = pendingStubIndexes;
+
+            this.label = label.substring(0, at);
+            this.children = new HashMap<>();
+            this.pendingStubIndexes = new ArrayList<>();
+            this.children.put(tail.label.charAt(0), tail);
+        }
+
+        private void freeze() {
+            stubIndexes = toIntArray(pendingStubIndexes);
+            pendingStubIndexes = null;
+            for (final Node child : children.values()) {
+                child.freeze();
+            }
+        }
+
+        private void collect(final String uri, final int offset, final List<int[]> buckets) {
+            if (stubIndexes.length > 0) {
+                buckets.add(stubIndexes);
+            }
+
+            if (offset >= uri.length()) {
+                return;
+            }
+
+            final Node child = children.get(uri.charAt(offset));
+            if (child != null && uri.startsWith(child.label, offset)) {
+                child.collect(uri, offset + child.label.length(), buckets);
+            }
+        }
+
+        private static int commonPrefixLength(final String one, final String two) {
+            final int limit = Math.min(one.length(), two.length());
+            int idx = 0;
+            while (idx < limit && one.charAt(idx) == two.charAt(idx)) {
+                idx++;
+            }
+            return idx;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.github.ntsd.stubby4gay.utils.StringUtils.buildToken;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.isNotSet;
+
+/**
+ * Matches a single stubbed value (URL, POST body, header or query param value) against asserting values.
+ * <p>
+ * The stubbed value is classified once, when the stub is loaded. Values that are plain literals, or literals wrapped
+ * into '.*' wildcards and optional '^' and '$' anchors, are matched using {@link String} operations, which accept
+ * exactly the same subjects as the equivalent regex does with the flags tried by the {@link RegexParser}. Only the
+ * remaining values are compiled into {@link Pattern patterns}, for every flag combination. A {@link Matcher} is kept
+ * per pattern and reused by the next request, unless it is currently in use by a concurrent request, in which case a
+ * new one is created.
+ */
+final class StubValueMatcher {
+
+    enum Kind {
+        ANY, LITERAL, PREFIX, SUFFIX, CONTAINS, REGEX
+    }
+
+    private static final String WILDCARD = ".*";
+    private static final Pattern[] NO_PATTERNS = new Pattern[0];
+    private static final StubValueMatcher ANY = new StubValueMatcher(Kind.ANY, null, null, null, NO_PATTERNS);
+
+    private final Kind kind;
+    private final String value;
+    private final String literal;
+    private final String templateTokenName;
+    private final Pattern[] patterns;
+    private final AtomicReferenceArray<Matcher> idleMatchers;
+
+    private StubValueMatcher(final Kind kind,
+                             final String value,
+                             final String literal,
+                             final String templateTokenName,
+                             final Pattern[] patterns) {
+        this.kind = kind;
+        this.value = value;
+        this.literal = literal;
+        this.templateTokenName = templateTokenName;
+        this.patterns = patterns;
+        this.idleMatchers = new AtomicReferenceArray<>(patterns.length);
+    }
+
+    /**
+     * @param value             stubbed value. When the value is not set, the returned matcher matches anything
+     * @param templateTokenName name of the token, under which the regex groups are captured, i.e.: url, query.name
+     */
+    static StubValueMatcher compile(final String value, final String templateTokenName) {
+        if (isNotSet(value)) {
+            return ANY;
+        }
+
+        if (RegexParser.isLiteral(value)) {
+            return new StubValueMatcher(Kind.LITERAL, value, value, templateTokenName, NO_PATTERNS);
+        }
+
+        String body = value;
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$")) {
+            body = body.substring(0, body.length() - 1);
+        }
+
+        final boolean leadingWildcard = body.startsWith(WILDCARD);
+        if (leadingWildcard) {
+            body = body.substring(WILDCARD.length());
+        }
+        final boolean trailingWildcard = body.endsWith(WILDCARD);
+        if (trailingWildcard) {
+            body = body.substring(0, body.length() - WILDCARD.length());
+        }
+
+        if (!RegexParser.isLiteral(body)) {
+            return new StubValueMatcher(Kind.REGEX, value, null, templateTokenName, RegexParser.INSTANCE.compile(value));
+        }
+
+        final Kind kind;
+        if (leadingWildcard && trailingWildcard) {
+            kind = Kind.CONTAINS;
+        } else if (leadingWildcard) {
+            kind = Kind.SUFFIX;
+        } else if (trailingWildcard) {
+            kind = Kind.PREFIX;
+        } else {
+            kind = Kind.LITERAL;
+        }
+
+        return new StubValueMatcher(kind, value, body, templateTokenName, NO_PATTERNS);
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the literal that is matched using {@link String} operations, or null when the value is a regex
+     */
+    String getLiteral() {
+        return literal;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    boolean matchesAny() {
+        return this == ANY;
+    }
+
+    /**
+     * @param assertingValue value of the incoming request
+     * @param regexGroups    regex groups of the incoming request, populated upon successful regex match
+     */
+    boolean matches(final String assertingValue, final Map<String, String> regexGroups) {
+        if (matchesAny()) {
+            return true;
+        } else if (isNotSet(assertingValue)) {
+            return false;
+        }
+
+        if (kind == Kind.REGEX) {
+            for (int idx = 0; idx < patterns.length; idx++) {
+                if (regexMatch(idx, assertingValue, regexGroups)) {
+                    return true;
+                }
+            }
+        } else if (literalMatch(assertingValue)) {
+            // Same as a successful regex match without explicit capturing groups: group(0) holds the whole subject
+            regexGroups.put(buildToken(templateTokenName, 0), assertingValue);
+            return true;
+        }
+
+        return value.equals(assertingValue);
+    }
+
+    private boolean literalMatch(final String assertingValue) {
+        switch (kind) {
+            case PREFIX:
+                return assertingValue.startsWith(literal);
+            case SUFFIX:
+                return assertingValue.endsWith(literal);
+            case CONTAINS:
+                return assertingValue.contains(literal);
+            default:
+                return assertingValue.equals(literal);
+        }
+    }
+
+    private boolean regexMatch(final int idx, final String assertingValue, final Map<String, String> regexGroups) {
+        Matcher matcher = idleMatchers.getAndSet(idx, null);
+        if (matcher == null) {
+            matcher = patterns[idx].matcher(assertingValue);
+        } else {
+            matcher.reset(assertingValue);
+        }
+
+        try {
+            return RegexParser.INSTANCE.match(matcher, templateTokenName, regexGroups);
+        } finally {
+            // Do not hold on to the asserting value while the matcher is idle
+            matcher.reset("");
+            idleMatchers.lazySet(idx, matcher);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
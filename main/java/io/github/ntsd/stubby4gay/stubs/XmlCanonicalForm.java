@@ -0,0 +1,242 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.ntsd.stubby4gay.stubs.LengthPrefixedKeys.appendValue;
+
+/**
+ * An XML body, parsed once and reduced to a canonical string, which lets the identical bodies skip XMLUnit.
+ * <p>
+ * The form normalizes whitespace and drops comments in the same order as XMLUnit does for {@link StubMatcher}, tells
+ * CDATA apart from text no more than XMLUnit does, and keeps the document as it is otherwise. Two bodies with the same
+ * form are always similar to XMLUnit. Bodies with different forms may still be similar, i.e.: with reordered siblings,
+ * so they need a full XMLUnit comparison.
+ */
+final class XmlCanonicalForm {
+
+    /**
+     * The form of a body that could not be parsed as XML
+     */
+    static final XmlCanonicalForm UNPARSABLE = new XmlCanonicalForm(null);
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(XmlCanonicalForm::newDocumentBuilder);
+
+    private final String exactForm;
+    private final int exactFormHash;
+
+    private XmlCanonicalForm(final String exactForm) {
+        this.exactForm = exactForm;
+        this.exactFormHash = exactForm == null ? 0 : exactForm.hashCode();
+    }
+
+    /**
+     * @return the canonical form, or {@link #UNPARSABLE} when the given body is not XML
+     */
+    static XmlCanonicalForm of(final String xml) {
+        if (!StringUtils.isSet(xml) || !xml.trim().startsWith("<")) {
+            return UNPARSABLE;
+        }
+
+        final Document document;
+        try {
+            final DocumentBuilder documentBuilder = DOCUMENT_BUILDER.get();
+            documentBuilder.reset();
+            documentBuilder.setErrorHandler(QuietErrorHandler.INSTANCE);
+            document = documentBuilder.parse(new ByteArrayInputStream(StringUtils.getBytesUtf8(xml)));
+        } catch (final Exception e) {
+            return UNPARSABLE;
+        }
+
+        return new XmlCanonicalForm(exactForm(document));
+    }
+
+    boolean isParsed() {
+        return this != UNPARSABLE;
+    }
+
+    /**
+     * @return true when both bodies are known to be similar to XMLUnit
+     */
+    boolean isIdenticalTo(final XmlCanonicalForm that) {
+        return exactFormHash == that.exactFormHash && exactForm.equals(that.exactForm);
+    }
+
+    private static String exactForm(final Document document) {
+        final StringBuilder form = new StringBuilder(256)
+                .append('V');
+        appendValue(form, document.getXmlVersion());
+        form.append(document.getXmlStandalone() ? 'S' : 's');
+
+        final DocumentType doctype = document.getDoctype();
+        if (doctype != null) {
+            form.append('D');
+            appendValue(form, doctype.getName());
+            appendValue(form, doctype.getPublicId());
+            appendValue(form, doctype.getSystemId());
+            appendValue(form, doctype.getInternalSubset());
+        }
+
+        appendExactChildren(form, document);
+        return form.toString();
+    }
+
+    private static void appendExactChildren(final StringBuilder form, final Node parent) {
+        final TextRun text = new TextRun();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.TEXT_NODE:
+                    text.appendText(child.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    text.appendCdata(child.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    text.endTextNode();
+                    break;
+                case Node.ELEMENT_NODE:
+                    appendExactText(form, text);
+                    appendExactElement(form, child);
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    appendExactText(form, text);
+                    form.append('P');
+                    appendValue(form, ((ProcessingInstruction) child).getTarget());
+                    appendValue(form, normalize(((ProcessingInstruction) child).getData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        appendExactText(form, text);
+    }
+
+    private static void appendExactElement(final StringBuilder form, final Node element) {
+        form.append('E');
+        appendValue(form, element.getNamespaceURI());
+        appendValue(form, element.getNodeName());
+
+        final List<String> attributes = new ArrayList<>();
+        final NamedNodeMap attributeNodes = element.getAttributes();
+        for (int idx = 0; idx < attributeNodes.getLength(); idx++) {
+            final Attr attribute = (Attr) attributeNodes.item(idx);
+            final StringBuilder attributeForm = new StringBuilder();
+            appendValue(attributeForm, attribute.getName());
+            appendValue(attributeForm, normalize(attribute.getValue()));
+            attributes.add(attributeForm.toString());
+        }
+        Collections.sort(attributes);
+        for (final String attribute : attributes) {
+            form.append('A').append(attribute);
+        }
+
+        form.append('(');
+        appendExactChildren(form, element);
+        form.append(')');
+    }
+
+    private static void appendExactText(final StringBuilder form, final TextRun text) {
+        final String normalizedText = text.take();
+        if (!normalizedText.isEmpty()) {
+            form.append('T');
+            appendValue(form, normalizedText);
+        }
+    }
+
+    // Trims the value and collapses every whitespace run into a single space, as XMLUnit normalizes whitespace
+    private static String normalize(final String value) {
+        final String trimmed = value.trim();
+        final StringBuilder normalized = new StringBuilder(trimmed.length());
+        boolean inWhitespace = false;
+        for (int idx = 0; idx < trimmed.length(); idx++) {
+            final char character = trimmed.charAt(idx);
+            if (Character.isWhitespace(character)) {
+                if (!inWhitespace) {
+                    normalized.append(' ');
+                }
+                inWhitespace = true;
+            } else {
+                normalized.append(character);
+                inWhitespace = false;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static DocumentBuilder newDocumentBuilder() {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newDocumentBuilder();
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The text between two elements, as XMLUnit sees it: every text node and every CDATA section has its whitespace
+     * normalized on its own, then they are merged as if the comments between them were not there
+     */
+    private static final class TextRun {
+
+        private final StringBuilder adjacentText = new StringBuilder();
+        private final StringBuilder normalizedText = new StringBuilder();
+
+        private void appendText(final String value) {
+            adjacentText.append(value);
+        }
+
+        private void appendCdata(final String value) {
+            endTextNode();
+            normalizedText.append(normalize(value));
+        }
+
+        private void endTextNode() {
+            normalizedText.append(normalize(adjacentText.toString()));
+            adjacentText.setLength(0);
+        }
+
+        private String take() {
+            endTextNode();
+            final String text = normalizedText.toString();
+            normalizedText.setLength(0);
+            return text;
+        }
+    }
+
+    /**
+     * Unparsable bodies are expected, they are matched as regexes instead
+     */
+    private static final class QuietErrorHandler implements ErrorHandler {
+
+        private static final QuietErrorHandler INSTANCE = new QuietErrorHandler();
+
+        @Override
+        public void warning(final SAXParseException exception) {
+        }
+
+        @Override
+        public void error(final SAXParseException exception) {
+        }
+
+        @Override
+        public void fatalError(final SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    }
+}
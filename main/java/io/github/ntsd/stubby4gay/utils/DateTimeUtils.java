@@ -10,11 +10,37 @@ public class DateTimeUtils {
             .ofPattern("yyyy-MM-dd HH:mm:ssZ")
             .withZone(ZoneOffset.systemDefault());
 
+    private static volatile FormattedSecond currentSecond = new FormattedSecond(Instant.now().getEpochSecond());
+
     public static String systemDefault() {
         return DATE_TIME_FORMATTER.format(Instant.now());
     }
 
+    /**
+     * Same as {@link #systemDefault()}, but the value is formatted at most once per second and shared by the callers
+     * within that second, i.e.: by the response Date headers
+     */
+    public static String cachedSystemDefault() {
+        final long epochSecond = System.currentTimeMillis() / 1000;
+        FormattedSecond formattedSecond = currentSecond;
+        if (formattedSecond.epochSecond != epochSecond) {
+            formattedSecond = new FormattedSecond(epochSecond);
+            currentSecond = formattedSecond;
+        }
+        return formattedSecond.formatted;
+    }
+
     public static String systemDefault(final long epochMilli) {
         return DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(epochMilli));
     }
+
+    private static final class FormattedSecond {
+        private final long epochSecond;
+        private final String formatted;
+
+        private FormattedSecond(final long epochSecond) {
+            this.epochSecond = epochSecond;
+            this.formatted = DATE_TIME_FORMATTER.format(Instant.ofEpochSecond(epochSecond));
+        }
+    }
 }
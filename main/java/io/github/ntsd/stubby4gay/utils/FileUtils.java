@@ -28,8 +28,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -137,6 +140,18 @@ public final class FileUtils {
     }
 
 
+    /**
+     * Maps the file content into memory as a read-only buffer, which lives outside of the heap and is backed by the
+     * OS page cache. The mapping stays valid after the underlying channel is closed.
+     */
+    @CoberturaIgnore
+    public static ByteBuffer binaryFileToMappedBuffer(final File file) throws IOException {
+        try (final FileChannel fileChannel = FileChannel.open(Paths.get(file.toURI()), StandardOpenOption.READ)) {
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        }
+    }
+
+
     public static String enforceSystemLineSeparator(final String loadedContent) {
         if (!StringUtils.isSet(loadedContent)) {
             return "";
@@ -174,7 +189,7 @@ public final class FileUtils {
         return StringUtils.getBytesUtf8(loadedContent);
     }
 
-    private static boolean isCharacterFile(final File file) throws IOException {
+    public static boolean isCharacterFile(final File file) throws IOException {
         return ASCII_TYPES.contains(StringUtils.extractFilenameExtension(file.getName()));
     }
 }
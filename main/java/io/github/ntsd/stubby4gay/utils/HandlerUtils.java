@@ -21,12 +21,16 @@ package io.github.ntsd.stubby4gay.utils;
 
 import io.github.ntsd.stubby4gay.annotations.CoberturaIgnore;
 import io.github.ntsd.stubby4gay.common.Common;
+import org.eclipse.jetty.http.DateGenerator;
 import org.eclipse.jetty.http.HttpHeader;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static io.github.ntsd.stubby4gay.utils.StringUtils.pluralize;
 import static java.util.concurrent.TimeUnit.DAYS;
@@ -41,6 +45,13 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 @SuppressWarnings("serial")
 public final class HandlerUtils {
 
+    private static final String HEADER_SERVER_NAME = resolveHeaderServerName();
+    private static final String HEADER_CONTENT_TYPE = "text/html;charset=UTF-8";
+    private static final String HEADER_CACHE_CONTROL = "no-cache, no-stage, must-revalidate";
+    private static final String HEADER_PRAGMA = "no-cache";
+    private static final int INITIAL_BODY_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_INITIAL_BODY_BUFFER_SIZE = 64 * 1024;
+
     private HandlerUtils() {
 
     }
@@ -60,8 +71,12 @@ public final class HandlerUtils {
         return StringUtils.inputStreamToString(inputStream);
     }
 
-    @CoberturaIgnore
     public static String constructHeaderServerName() {
+        return HEADER_SERVER_NAME;
+    }
+
+    @CoberturaIgnore
+    private static String resolveHeaderServerName() {
         final Package pkg = HandlerUtils.class.getPackage();
         final String implementationVersion = StringUtils.isSet(pkg.getImplementationVersion()) ?
                 pkg.getImplementationVersion() : "x.x.xx";
@@ -72,13 +87,28 @@ public final class HandlerUtils {
     public static void setResponseMainHeaders(final HttpServletResponse response) {
         response.setCharacterEncoding(StringUtils.UTF_8);
         response.setHeader(HttpHeader.SERVER.asString(), HandlerUtils.constructHeaderServerName());
-        response.setHeader(HttpHeader.DATE.asString(), DateTimeUtils.systemDefault());
-        response.setHeader(HttpHeader.CONTENT_TYPE.asString(), "text/html;charset=UTF-8");
-        response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "no-cache, no-stage, must-revalidate"); // HTTP 1.1.
-        response.setHeader(HttpHeader.PRAGMA.asString(), "no-cache"); // HTTP 1.0.
+        response.setHeader(HttpHeader.DATE.asString(), DateTimeUtils.cachedSystemDefault());
+        response.setHeader(HttpHeader.CONTENT_TYPE.asString(), HEADER_CONTENT_TYPE);
+        response.setHeader(HttpHeader.CACHE_CONTROL.asString(), HEADER_CACHE_CONTROL); // HTTP 1.1.
+        response.setHeader(HttpHeader.PRAGMA.asString(), HEADER_PRAGMA); // HTTP 1.0.
         response.setDateHeader(HttpHeader.EXPIRES.asString(), 0);
     }
 
+    /**
+     * @return the headers set by {@link #setResponseMainHeaders(HttpServletResponse)} in the same order, apart from
+     * the Date header, which changes every second
+     */
+    public static Map<String, String> constructStaticMainHeaders() {
+        final Map<String, String> mainHeaders = new LinkedHashMap<>();
+        mainHeaders.put(HttpHeader.SERVER.asString(), HEADER_SERVER_NAME);
+        mainHeaders.put(HttpHeader.CONTENT_TYPE.asString(), HEADER_CONTENT_TYPE);
+        mainHeaders.put(HttpHeader.CACHE_CONTROL.asString(), HEADER_CACHE_CONTROL);
+        mainHeaders.put(HttpHeader.PRAGMA.asString(), HEADER_PRAGMA);
+        mainHeaders.put(HttpHeader.EXPIRES.asString(), DateGenerator.formatDate(0));
+
+        return mainHeaders;
+    }
+
     public static String linkifyRequestUrl(final String scheme, final Object uri, final String host, final int port) {
         final String fullUrl = String.format("%s://%s:%s%s", scheme.toLowerCase(), host, port, uri);
         final String href = StringUtils.encodeSingleQuotes(fullUrl);
@@ -95,9 +125,9 @@ public final class HandlerUtils {
         }
 
         try {
-            final String requestContent = StringUtils.inputStreamToString(request.getInputStream());
+            final String requestContent = readRequestBody(request).trim();
 
-            return requestContent.replaceAll("\\\\/", "/"); //https://code.google.com/p/snakeyaml/issues/detail?id=93
+            return requestContent.replace("\\/", "/"); //https://code.google.com/p/snakeyaml/issues/detail?id=93
         } catch (final Exception ex) {
             final String err = String.format("Error when extracting POST body: %s, returning null..", ex.toString());
             ConsoleUtils.logIncomingRequestError(request, source, err);
@@ -105,6 +135,35 @@ public final class HandlerUtils {
         }
     }
 
+    // The Content-Length is only trusted to size the buffer up to a limit, the buffer then grows with the bytes received
+    private static String readRequestBody(final HttpServletRequest request) throws IOException {
+        final InputStream inputStream = request.getInputStream();
+        final int contentLength = request.getContentLength();
+        byte[] buffer = new byte[contentLength < 0 ? INITIAL_BODY_BUFFER_SIZE : Math.min(contentLength, MAX_INITIAL_BODY_BUFFER_SIZE)];
+
+        int length = 0;
+        while (contentLength < 0 || length < contentLength) {
+            if (length == buffer.length) {
+                // Probes for the end of a body of unknown length before growing the buffer
+                final int next = inputStream.read();
+                if (next == -1) {
+                    break;
+                }
+                final int grownLength = buffer.length * 2;
+                buffer = Arrays.copyOf(buffer, contentLength < 0 ? grownLength : Math.min(grownLength, contentLength));
+                buffer[length++] = (byte) next;
+                continue;
+            }
+            final int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+
+        return new String(buffer, 0, length, StringUtils.charsetUTF8());
+    }
+
     public static String calculateStubbyUpTime(final long timestamp) {
         final long days = MILLISECONDS.toDays(timestamp);
         final long hours = MILLISECONDS.toHours(timestamp) - DAYS.toHours(MILLISECONDS.toDays(timestamp));
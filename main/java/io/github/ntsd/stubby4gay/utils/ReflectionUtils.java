@@ -37,7 +37,9 @@ import java.util.Map;
 public final class ReflectionUtils {
 
     private static List<String> skipableProperties =
-            Collections.unmodifiableList(Arrays.asList("STUBBY_RESOURCE_ID_HEADER", "regexGroups", "fileBytes"));
+            Collections.unmodifiableList(Arrays.asList("STUBBY_RESOURCE_ID_HEADER", "regexGroups", "fileContent", "fileBytes", "matcherPlan",
+                    "responseBodyTemplate", "filePathTemplated", "responseHead", "entityTag", "lastModified",
+                    "postBodyJsonTree", "postBodyXmlForm", "postBodyHash", "methodMask"));
 
     private ReflectionUtils() {
 
@@ -31,6 +31,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 /**
@@ -49,6 +51,7 @@ public final class StringUtils {
     private static final String TEMPLATE_TOKEN_LEFT = "<%";
     private static final String TEMPLATE_TOKEN_RIGHT = "%>";
     private static final Base64.Encoder BASE_64_ENCODER = Base64.getEncoder();
+    private static final ConcurrentMap<String, String> SHARED_NAMES = new ConcurrentHashMap<>();
 
     private StringUtils() {
 
@@ -80,6 +83,30 @@ public final class StringUtils {
         return toLower.toLowerCase(Locale.US);
     }
 
+    /**
+     * Returns the shared instance of the given header or query param name, so that all stubs hold a single copy of
+     * every name. The dictionary never shrinks, therefore it is only meant for names that come from the stubbed YAML
+     * and never for names of incoming requests.
+     *
+     * @param name header or query param name
+     * @return the shared instance of the name
+     */
+    public static String internName(final String name) {
+        if (ObjectUtils.isNull(name)) {
+            return null;
+        }
+        final String sharedName = SHARED_NAMES.putIfAbsent(name, name);
+
+        return ObjectUtils.isNull(sharedName) ? name : sharedName;
+    }
+
+    /**
+     * @return true when the given instance is the shared instance of the name, as returned by {@link #internName(String)}
+     */
+    public static boolean isInternedName(final String name) {
+        return ObjectUtils.isNotNull(name) && SHARED_NAMES.get(name) == name;
+    }
+
     public static Charset charsetUTF8() {
         return Charset.forName(StringUtils.UTF_8);
     }
@@ -0,0 +1,59 @@
+package io.github.ntsd.stubby4gay.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of JDK 21 or later, looked up at runtime so that stubby4gay still compiles to and
+ * runs on Java 8.
+ */
+public final class VirtualThreadUtils {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookupVirtualThreadPerTaskExecutor();
+
+    private VirtualThreadUtils() {
+
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return ObjectUtils.isNotNull(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(String.format("Virtual threads require JDK 21 or later, running on %s",
+                    System.getProperty("java.version")));
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable throwable) {
+            throw new IllegalStateException("Could not create virtual thread executor", throwable);
+        }
+    }
+
+    private static MethodHandle lookupVirtualThreadPerTaskExecutor() {
+        try {
+            // On JDK 19 and 20 the method exists, but fails unless preview features are enabled
+            final MethodHandle methodHandle = MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            ((ExecutorService) methodHandle.invoke()).shutdown();
+
+            return methodHandle;
+        } catch (final Throwable throwable) {
+            return null;
+        }
+    }
+}
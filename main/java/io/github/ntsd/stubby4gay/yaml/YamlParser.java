@@ -54,10 +54,13 @@ import static io.github.ntsd.stubby4gay.utils.FileUtils.constructInputStream;
 import static io.github.ntsd.stubby4gay.utils.FileUtils.isFilePathContainTemplateTokens;
 import static io.github.ntsd.stubby4gay.utils.FileUtils.uriToFile;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.encodeBase64;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.internName;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.objectToString;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.toLower;
 import static io.github.ntsd.stubby4gay.utils.StringUtils.trimIfSet;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.DESCRIPTION;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.FILE;
+import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.HEADERS;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.METHOD;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.REQUEST;
 import static io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty.RESPONSE;
@@ -153,7 +156,7 @@ public class YamlParser {
 
     private void parseStubbedRequestConfig(final StubHttpLifecycle.Builder stubBuilder, final Map<String, Object> requestProperties) {
         final StubRequest requestStub = buildReflectableStub(requestProperties, new StubRequest.Builder());
-        requestStub.compileRegexPatternsAndCache();
+        requestStub.compileMatcherPlan();
         stubBuilder.withRequest(requestStub);
     }
 
@@ -178,7 +181,9 @@ public class YamlParser {
             if (rawFieldName instanceof Map) {
                 final Map<String, String> rawHeaders = asCheckedLinkedHashMap(rawFieldName, String.class, String.class);
                 final Map<String, String> headers = configureAuthorizationHeader(rawHeaders);
-                stubTypeBuilder.stage(ofNullableProperty(stageableFieldName), of(headers));
+                // Stubbed request header names are matched lower cased, so they are lower cased before being shared
+                final boolean isRequestHeaders = HEADERS.isA(stageableFieldName) && stubTypeBuilder instanceof StubRequest.Builder;
+                stubTypeBuilder.stage(ofNullableProperty(stageableFieldName), of(internNames(headers, isRequestHeaders)));
                 continue;
             }
 
@@ -287,6 +292,17 @@ public class YamlParser {
         return headers;
     }
 
+    // Header and query param names repeat across stubs, every stub holds the one shared instance of each name
+    private Map<String, String> internNames(final Map<String, String> mappings, final boolean isLowerCased) {
+        final Map<String, String> interned = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : mappings.entrySet()) {
+            final String name = isLowerCased ? toLower(entry.getKey()) : entry.getKey();
+            interned.put(internName(name), entry.getValue());
+        }
+
+        return interned;
+    }
+
     private void checkStubbedProperty(String stageableFieldName) {
         if (isUnknownProperty(stageableFieldName)) {
             throw new IllegalStateException("An unknown property configured: " + stageableFieldName);
@@ -111,6 +111,94 @@ public class CommandLineIntepreterTest {
         assertThat(isSslDisabled).isTrue();
     }
 
+    @Test
+    public void testRecordingsDirectoryAndReplayOnlyWhenLongOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"--recordings", "build/recordings", "--replay_only"});
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+
+        assertThat(params.get(CommandLineInterpreter.OPTION_RECORDINGS)).isEqualTo("build/recordings");
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_REPLAY_ONLY)).isTrue();
+    }
+
+    @Test
+    public void testRecordingsDirectoryAndReplayOnlyWhenShortOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"-r", "build/recordings", "-ro"});
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+
+        assertThat(params.get(CommandLineInterpreter.OPTION_RECORDINGS)).isEqualTo("build/recordings");
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_REPLAY_ONLY)).isTrue();
+    }
+
+    @Test
+    public void testServerTuningWhenLongOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"--min_threads", "16", "--max_threads", "512", "--thread_queue", "2048",
+                "--acceptors", "2", "--selectors", "8", "--accept_queue", "1024", "--output_buffer", "65536", "--auto_tune"});
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+
+        assertThat(params.get(CommandLineInterpreter.OPTION_MIN_THREADS)).isEqualTo("16");
+        assertThat(params.get(CommandLineInterpreter.OPTION_MAX_THREADS)).isEqualTo("512");
+        assertThat(params.get(CommandLineInterpreter.OPTION_THREAD_QUEUE)).isEqualTo("2048");
+        assertThat(params.get(CommandLineInterpreter.OPTION_ACCEPTORS)).isEqualTo("2");
+        assertThat(params.get(CommandLineInterpreter.OPTION_SELECTORS)).isEqualTo("8");
+        assertThat(params.get(CommandLineInterpreter.OPTION_ACCEPT_QUEUE)).isEqualTo("1024");
+        assertThat(params.get(CommandLineInterpreter.OPTION_OUTPUT_BUFFER)).isEqualTo("65536");
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_AUTO_TUNE)).isTrue();
+    }
+
+    @Test
+    public void testServerTuningWhenShortOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"-mnt", "16", "-mxt", "512", "-tq", "2048",
+                "-ac", "2", "-sl", "8", "-aq", "1024", "-ob", "65536", "-at"});
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+
+        assertThat(params.get(CommandLineInterpreter.OPTION_MIN_THREADS)).isEqualTo("16");
+        assertThat(params.get(CommandLineInterpreter.OPTION_MAX_THREADS)).isEqualTo("512");
+        assertThat(params.get(CommandLineInterpreter.OPTION_THREAD_QUEUE)).isEqualTo("2048");
+        assertThat(params.get(CommandLineInterpreter.OPTION_ACCEPTORS)).isEqualTo("2");
+        assertThat(params.get(CommandLineInterpreter.OPTION_SELECTORS)).isEqualTo("8");
+        assertThat(params.get(CommandLineInterpreter.OPTION_ACCEPT_QUEUE)).isEqualTo("1024");
+        assertThat(params.get(CommandLineInterpreter.OPTION_OUTPUT_BUFFER)).isEqualTo("65536");
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_AUTO_TUNE)).isTrue();
+    }
+
+    @Test
+    public void testHttp2WhenShortOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"-h2", "-h2s", "1000", "-h2sw", "1048576", "-h2cw", "16777216"});
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_HTTP2)).isTrue();
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_HELP)).isFalse();
+        assertThat(params.get(CommandLineInterpreter.OPTION_HTTP2_MAX_STREAMS)).isEqualTo("1000");
+        assertThat(params.get(CommandLineInterpreter.OPTION_HTTP2_STREAM_WINDOW)).isEqualTo("1048576");
+        assertThat(params.get(CommandLineInterpreter.OPTION_HTTP2_SESSION_WINDOW)).isEqualTo("16777216");
+    }
+
+    @Test
+    public void testUnixSocketWhenOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"-us", "/tmp/stubby.sock"});
+        assertThat(commandLineInterpreter.getCommandlineParams().get(CommandLineInterpreter.OPTION_UNIX_SOCKET)).isEqualTo("/tmp/stubby.sock");
+
+        commandLineInterpreter.parseCommandLine(new String[]{"--unix_socket", "/tmp/stubby.sock"});
+        assertThat(commandLineInterpreter.getCommandlineParams().get(CommandLineInterpreter.OPTION_UNIX_SOCKET)).isEqualTo("/tmp/stubby.sock");
+    }
+
+    @Test
+    public void testCompressionWhenOptionsGiven() throws Exception {
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(new String[]{"-cms", "256", "-cl", "9", "-df"});
+
+        final Map<String, String> params = commandLineInterpreter.getCommandlineParams();
+        assertThat(params.get(CommandLineInterpreter.OPTION_COMPRESSION_MIN_SIZE)).isEqualTo("256");
+        assertThat(params.get(CommandLineInterpreter.OPTION_COMPRESSION_LEVEL)).isEqualTo("9");
+        assertThat(params.containsKey(CommandLineInterpreter.OPTION_DEFLATE)).isTrue();
+    }
+
     @Test
     public void testIsMuteWhenShortOptionGiven() throws Exception {
         final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
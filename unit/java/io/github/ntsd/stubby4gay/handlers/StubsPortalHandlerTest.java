@@ -3,6 +3,7 @@ package io.github.ntsd.stubby4gay.handlers;
 import io.github.ntsd.stubby4gay.cli.ANSITerminal;
 import io.github.ntsd.stubby4gay.handlers.StubsPortalHandler;
 import io.github.ntsd.stubby4gay.handlers.strategy.stubs.UnauthorizedResponseHandlingStrategy;
+import io.github.ntsd.stubby4gay.metrics.StubMetrics;
 import io.github.ntsd.stubby4gay.stubs.StubRepository;
 import io.github.ntsd.stubby4gay.stubs.StubRequest;
 import io.github.ntsd.stubby4gay.stubs.StubResponse;
@@ -17,6 +18,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
@@ -27,9 +29,18 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static io.github.ntsd.stubby4gay.handlers.strategy.stubs.UnauthorizedResponseHandlingStrategy.NO_AUTHORIZATION_HEADER;
+import static com.google.common.truth.Truth.assertThat;
+import static io.github.ntsd.stubby4gay.utils.ObjectUtils.isNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -62,6 +73,9 @@ public class StubsPortalHandlerTest {
     @Mock
     private Request mockRequest;
 
+    @Mock
+    private AsyncContext mockAsyncContext;
+
     @BeforeClass
     public static void beforeClass() throws Exception {
         ANSITerminal.muteConsole(true);
@@ -86,7 +100,6 @@ public class StubsPortalHandlerTest {
     @Test
     public void verifyBehaviourDuringHandlePostRequestWithNoResults() throws Exception {
 
-        final String postData = "postData";
         final String requestPathInfo = "/path/1";
 
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.POST.asString());
@@ -94,11 +107,10 @@ public class StubsPortalHandlerTest {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.NOT_FOUND);
         when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[] {});
 
-        final InputStream inputStream = new ByteArrayInputStream(postData.getBytes());
-        when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
-
         setUpStubSearchMockExpectations(requestPathInfo);
 
+        // The POST body is only read when a candidate stub needs it
+        verify(mockHttpServletRequest, never()).getInputStream();
         verify(mockHttpServletResponse).setStatus(HttpStatus.NOT_FOUND_404);
         verify(mockHttpServletResponse, never()).setStatus(HttpStatus.OK_200);
     }
@@ -127,11 +139,9 @@ public class StubsPortalHandlerTest {
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
 
-        final InputStream inputStream = new ByteArrayInputStream("".getBytes());
-        when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
-
         setUpStubSearchMockExpectations(requestPathInfo);
 
+        verify(mockHttpServletRequest, never()).getInputStream();
         verify(mockHttpServletResponse, never()).setStatus(HttpStatus.BAD_REQUEST_400);
         verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
     }
@@ -201,18 +211,15 @@ public class StubsPortalHandlerTest {
 
     @Test
     public void verifyBehaviourDuringHandlePostRequestWithMatch() throws Exception {
-        final String postData = "postData";
         final String requestPathInfo = "/path/1";
 
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.POST.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
         when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(null);
-        final InputStream inputStream = new ByteArrayInputStream(postData.getBytes());
-        when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
-
         setUpStubSearchMockExpectations(requestPathInfo);
 
+        verify(mockHttpServletRequest, never()).getInputStream();
         verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
     }
 
@@ -234,6 +241,170 @@ public class StubsPortalHandlerTest {
         verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
     }
 
+    @Test
+    public void verifyBehaviourDuringHandleGetRequestWithLatency_WhenRequestSuspended() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+        final long latency = 100L;
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        when(mockStubResponse.getLatency()).thenReturn(String.valueOf(latency));
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+
+        final AtomicLong resumedAt = new AtomicLong();
+        doAnswer(invocation -> {
+            resumedAt.set(System.currentTimeMillis());
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(mockAsyncContext).start(any(Runnable.class));
+
+        final long before = System.currentTimeMillis();
+        setUpStubSearchMockExpectations(requestPathInfo);
+        final long handledAt = System.currentTimeMillis();
+
+        assertThat(handledAt - before).isLessThan(latency);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.OK_200);
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        assertThat(resumedAt.get() - before).isAtLeast(latency);
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequestWithLatency_WhenHandlerRestarted() throws Exception {
+
+        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(mockAsyncContext).start(any(Runnable.class));
+
+        final StubsPortalHandler stubsPortalHandler = setUpDelayedStubSearchMockExpectations(10L);
+        stubsPortalHandler.start();
+        stubsPortalHandler.stop();
+        stubsPortalHandler.start();
+        stubsPortalHandler.handle("/path/1", mockRequest, mockHttpServletRequest, mockHttpServletResponse);
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+
+        stubsPortalHandler.stop();
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequestWithLatency_WhenHandlerStoppedBeforeLatencyElapsed() throws Exception {
+
+        final StubsPortalHandler stubsPortalHandler = setUpDelayedStubSearchMockExpectations(60000L);
+        stubsPortalHandler.start();
+        stubsPortalHandler.handle("/path/1", mockRequest, mockHttpServletRequest, mockHttpServletResponse);
+        verify(mockAsyncContext, never()).complete();
+
+        stubsPortalHandler.stop();
+
+        verify(mockHttpServletResponse).setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+        verify(mockAsyncContext).complete();
+        verify(mockAsyncContext, never()).start(any(Runnable.class));
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequestWithLatency_WhenHandledOnExecutor() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+        final long latency = 100L;
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        when(mockStubResponse.getLatency()).thenReturn(String.valueOf(latency));
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+
+        final AtomicReference<Thread> respondingThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            respondingThread.set(Thread.currentThread());
+            return null;
+        }).when(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+
+        final ExecutorService handlingExecutor = Executors.newSingleThreadExecutor();
+        final long before = System.currentTimeMillis();
+        setUpStubSearchMockExpectations(requestPathInfo, handlingExecutor);
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        assertThat(System.currentTimeMillis() - before).isAtLeast(latency);
+        assertThat(respondingThread.get()).isNotSameAs(Thread.currentThread());
+        // The executor thread sleeps through the latency, the request is not suspended a second time
+        verify(mockHttpServletRequest, times(1)).startAsync();
+        verify(mockAsyncContext, never()).start(any(Runnable.class));
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+
+        handlingExecutor.shutdownNow();
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequest_WhenHandlingExecutorIsShutDown() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+
+        when(mockStubRepository.getMetrics()).thenReturn(new StubMetrics());
+
+        final ExecutorService handlingExecutor = Executors.newSingleThreadExecutor();
+        handlingExecutor.shutdown();
+        final StubsPortalHandler stubsPortalHandler = new StubsPortalHandler(mockStubRepository, () -> handlingExecutor);
+        stubsPortalHandler.start();
+        stubsPortalHandler.handle(requestPathInfo, mockRequest, mockHttpServletRequest, mockHttpServletResponse);
+
+        verify(mockHttpServletResponse).setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+        verify(mockAsyncContext).complete();
+        verify(mockStubRepository, never()).search(mockHttpServletRequest);
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequest_WhenHandledOnExecutorAfterRestart() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+
+        when(mockStubRepository.toStubRequest(mockHttpServletRequest)).thenCallRealMethod();
+        final StubRequest assertionStubRequest = mockStubRepository.toStubRequest(mockHttpServletRequest);
+        when(mockStubRepository.search(mockHttpServletRequest)).thenReturn(mockStubSearchResult);
+        when(mockStubRepository.getMetrics()).thenReturn(new StubMetrics());
+        when(mockStubSearchResult.getInvariant()).thenReturn(assertionStubRequest);
+        when(mockStubSearchResult.getMatch()).thenReturn(mockStubResponse);
+
+        final StubsPortalHandler stubsPortalHandler = new StubsPortalHandler(mockStubRepository, Executors::newSingleThreadExecutor);
+        stubsPortalHandler.start();
+        stubsPortalHandler.stop();
+        stubsPortalHandler.start();
+        stubsPortalHandler.handle(requestPathInfo, mockRequest, mockHttpServletRequest, mockHttpServletResponse);
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+
+        stubsPortalHandler.stop();
+    }
+
     @Test
     public void verifyBehaviourDuringHandleGetRequestWithInvalidLatency() throws Exception {
         final String method = HttpMethod.GET.asString();
@@ -250,18 +421,61 @@ public class StubsPortalHandlerTest {
         verify(mockPrintWriter, never()).println(SOME_RESULTS_MESSAGE);
     }
 
+    @Test
+    public void verifyPostDataIsReadOnlyWhenNeeded() throws Exception {
+        final String postData = "postData";
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.POST.asString());
+        final InputStream inputStream = new ByteArrayInputStream(postData.getBytes());
+        when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
+        when(mockHttpServletRequest.getContentLength()).thenReturn(postData.length());
+
+        when(mockStubRepository.toStubRequest(mockHttpServletRequest)).thenCallRealMethod();
+        final StubRequest assertionStubRequest = mockStubRepository.toStubRequest(mockHttpServletRequest);
+        verify(mockHttpServletRequest, never()).getInputStream();
+
+        assertThat(assertionStubRequest.getPostBody()).isEqualTo(postData);
+        assertThat(assertionStubRequest.getPostBody()).isEqualTo(postData);
+        verify(mockHttpServletRequest, times(1)).getInputStream();
+    }
+
     private void setUpStubSearchMockExpectations(final String requestPathInfo) throws Exception {
+        setUpStubSearchMockExpectations(requestPathInfo, null);
+    }
+
+    private void setUpStubSearchMockExpectations(final String requestPathInfo, final ExecutorService handlingExecutor) throws Exception {
         when(mockStubRepository.toStubRequest(mockHttpServletRequest)).thenCallRealMethod();
         final StubRequest assertionStubRequest = mockStubRepository.toStubRequest(mockHttpServletRequest);
 
         when(mockStubRepository.search(mockHttpServletRequest)).thenReturn(mockStubSearchResult);
+        when(mockStubRepository.getMetrics()).thenReturn(new StubMetrics());
         when(mockStubSearchResult.getInvariant()).thenReturn(assertionStubRequest);
         when(mockStubSearchResult.getMatch()).thenReturn(mockStubResponse);
 
-        final StubsPortalHandler stubsPortalHandler = new StubsPortalHandler(mockStubRepository);
+        final StubsPortalHandler stubsPortalHandler =
+                new StubsPortalHandler(mockStubRepository, isNull(handlingExecutor) ? null : () -> handlingExecutor);
+        stubsPortalHandler.start();
         stubsPortalHandler.handle(requestPathInfo, mockRequest, mockHttpServletRequest, mockHttpServletResponse);
     }
 
+    private StubsPortalHandler setUpDelayedStubSearchMockExpectations(final long latency) throws Exception {
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        when(mockStubResponse.getLatency()).thenReturn(String.valueOf(latency));
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+
+        when(mockStubRepository.toStubRequest(mockHttpServletRequest)).thenCallRealMethod();
+        final StubRequest assertionStubRequest = mockStubRepository.toStubRequest(mockHttpServletRequest);
+
+        when(mockStubRepository.search(mockHttpServletRequest)).thenReturn(mockStubSearchResult);
+        when(mockStubRepository.getMetrics()).thenReturn(new StubMetrics());
+        when(mockStubSearchResult.getInvariant()).thenReturn(assertionStubRequest);
+        when(mockStubSearchResult.getMatch()).thenReturn(mockStubResponse);
+
+        return new StubsPortalHandler(mockStubRepository);
+    }
+
     private ServletInputStream getServletInputStream(final InputStream inputStream) {
         return new ServletInputStream() {
             @Override
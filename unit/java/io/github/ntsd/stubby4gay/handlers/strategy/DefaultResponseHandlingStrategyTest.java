@@ -20,7 +20,9 @@ import org.mockito.junit.MockitoJUnitRunner;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -83,35 +85,6 @@ public class DefaultResponseHandlingStrategyTest {
         verifyMainHeaders(mockHttpServletResponse);
     }
 
-    @Test
-    public void shouldVerifyBehaviourWhenHandlingDefaultResponseWithLatency() throws Exception {
-        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(EMPTY_BYTES);
-        when(mockStubResponse.getLatency()).thenReturn("100");
-        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
-
-        defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
-
-        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
-        verifyMainHeaders(mockHttpServletResponse);
-    }
-
-    @Test
-    public void shouldCheckLatencyDelayWhenHandlingDefaultResponseWithLatency() throws Exception {
-        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(getBytesUtf8(SOME_RESULTS_MESSAGE));
-        when(mockStubResponse.getLatency()).thenReturn("100");
-        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
-
-        long before = System.currentTimeMillis();
-        defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
-        long after = System.currentTimeMillis();
-
-        assertThat(after - before).isAtLeast(100L);
-
-        verifyMainHeaders(mockHttpServletResponse);
-    }
-
     @Test
     public void shouldReturnReplacedValueInResponseHeaderWhenRequestBodyHasDynamicToken() throws Exception {
         final String nonce = UUID.randomUUID().toString();
@@ -160,6 +133,40 @@ public class DefaultResponseHandlingStrategyTest {
 
     }
 
+    @Test
+    public void shouldWriteMappedFileContent_WhenResponseBodyIsBinaryFile() throws Exception {
+        final byte[] content = new byte[20000];
+        for (int idx = 0; idx < content.length; idx++) {
+            content[idx] = (byte) idx;
+        }
+        final ByteArrayOutputStream writtenContent = new ByteArrayOutputStream();
+
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getMappedFileContent()).thenReturn(ByteBuffer.wrap(content).asReadOnlyBuffer());
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+
+            @Override
+            public void write(final int i) throws IOException {
+                writtenContent.write(i);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+
+            }
+        });
+
+        defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
+
+        verify(mockStubResponse, times(0)).getResponseBodyAsBytes();
+        assertThat(writtenContent.toByteArray()).isEqualTo(content);
+    }
+
     private void verifyMainHeaders(final HttpServletResponse mockHttpServletResponse) throws Exception {
         verify(mockHttpServletResponse).setHeader(HttpHeader.SERVER.asString(), HandlerUtils.constructHeaderServerName());
         verify(mockHttpServletResponse).setHeader(HttpHeader.CONTENT_TYPE.asString(), "text/html;charset=UTF-8");
@@ -73,19 +73,6 @@ public class RedirectResponseHandlingStrategyTest {
         verifyMainHeaders(mockHttpServletResponse);
     }
 
-    @Test
-    public void shouldVerifyBehaviourWhenHandlingRedirectResponseWithLatency() throws Exception {
-        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.MOVED_PERMANENTLY);
-        when(mockStubResponse.getLatency()).thenReturn("100");
-
-        redirectResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
-
-        verify(mockHttpServletResponse).setStatus(HttpStatus.MOVED_PERMANENTLY_301);
-        verify(mockHttpServletResponse).setHeader(HttpHeader.LOCATION.asString(), mockStubResponse.getHeaders().get("location"));
-        verify(mockHttpServletResponse).setHeader(HttpHeader.CONNECTION.asString(), "close");
-        verifyMainHeaders(mockHttpServletResponse);
-    }
-
     @Test
     public void shouldReturnReplacedValueInLocationHeaderWhenQueryParamHasDynamicToken() throws Exception {
         String redirectUrlDomain = "test.com";
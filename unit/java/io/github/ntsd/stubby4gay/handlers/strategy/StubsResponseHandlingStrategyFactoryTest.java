@@ -17,15 +17,13 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class StubsResponseHandlingStrategyFactoryTest {
 
-    private static final byte[] EMPTY_BYTES = {};
-
     @Mock
     private StubResponse mockStubResponse;
 
     @Test
     public void shouldReturnNotFoundResponseHandlingStrategyWhen404ResponseHasNoBody() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(HttpStatus.Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(EMPTY_BYTES);
+        when(mockStubResponse.isResponseBodyEmpty()).thenReturn(true);
 
         StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse);
 
@@ -35,7 +33,7 @@ public class StubsResponseHandlingStrategyFactoryTest {
     @Test
     public void shouldReturnDefaultResponseHandlingStrategyWhen404ResponseHasNoBody() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(HttpStatus.Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn("something".getBytes());
+        when(mockStubResponse.isResponseBodyEmpty()).thenReturn(false);
 
         StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse);
 
@@ -0,0 +1,87 @@
+package io.github.ntsd.stubby4gay.metrics;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubMetricsTest {
+
+    @Test
+    public void shouldCountHitsPerStub_InResourceIdOrder() throws Exception {
+        final StubMetrics metrics = new StubMetrics();
+        metrics.recordMatch("10", "/ten", 1000L);
+        metrics.recordMatch("9", "/nine", 1000L);
+        metrics.recordMatch("9", "/nine", 1000L);
+        metrics.recordMatch(null, null, 1000L);
+
+        final Map<String, Long> stubHits = metrics.getStubHits();
+
+        assertThat(stubHits.keySet()).containsExactly("9", "10").inOrder();
+        assertThat(stubHits.get("9")).isEqualTo(2L);
+        assertThat(stubHits.get("10")).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldExposePrometheusText() throws Exception {
+        final StubMetrics metrics = new StubMetrics();
+        metrics.recordMatch("0", "/invoice/\"id\"", TimeUnit.MICROSECONDS.toNanos(20));
+        metrics.recordResponse("0", "GET", 200, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordMatch(null, null, TimeUnit.MICROSECONDS.toNanos(5));
+        metrics.recordResponse(null, "BREW", 404, TimeUnit.MICROSECONDS.toNanos(50));
+
+        final String text = metrics.toPrometheusText();
+
+        assertThat(text).contains("# TYPE stubby_requests_total counter\n");
+        assertThat(text).contains("stubby_requests_total{method=\"GET\",matched=\"true\"} 1\n");
+        assertThat(text).contains("stubby_requests_total{method=\"OTHER\",matched=\"false\"} 1\n");
+        assertThat(text).contains("stubby_responses_total{status=\"200\"} 1\n");
+        assertThat(text).contains("stubby_responses_total{status=\"404\"} 1\n");
+
+        assertThat(text).contains("# TYPE stubby_match_duration_seconds histogram\n");
+        assertThat(text).contains("stubby_match_duration_seconds_bucket{le=\"0.00001\"} 1\n");
+        assertThat(text).contains("stubby_match_duration_seconds_bucket{le=\"0.00005\"} 2\n");
+        assertThat(text).contains("stubby_match_duration_seconds_bucket{le=\"+Inf\"} 2\n");
+        assertThat(text).contains("stubby_match_duration_seconds_sum 0.000025\n");
+        assertThat(text).contains("stubby_match_duration_seconds_count 2\n");
+
+        assertThat(text).contains("stubby_stub_hits_total{stub=\"0\",url=\"/invoice/\\\"id\\\"\"} 1\n");
+        assertThat(text).contains("stubby_stub_responses_total{stub=\"0\",url=\"/invoice/\\\"id\\\"\",status=\"200\"} 1\n");
+        assertThat(text).contains("stubby_stub_handling_duration_seconds_bucket{stub=\"0\",url=\"/invoice/\\\"id\\\"\",le=\"0.001\"} 0\n");
+        assertThat(text).contains("stubby_stub_handling_duration_seconds_bucket{stub=\"0\",url=\"/invoice/\\\"id\\\"\",le=\"0.005\"} 1\n");
+        assertThat(text).contains("stubby_stub_handling_duration_seconds_count{stub=\"0\",url=\"/invoice/\\\"id\\\"\"} 1\n");
+    }
+
+    @Test
+    public void shouldExposeJson() throws Exception {
+        final StubMetrics metrics = new StubMetrics();
+        metrics.recordMatch("0", "/invoice", TimeUnit.MICROSECONDS.toNanos(20));
+        metrics.recordResponse("0", "POST", 201, TimeUnit.SECONDS.toNanos(20));
+        metrics.recordResponse(null, "GET", 404, TimeUnit.MICROSECONDS.toNanos(50));
+
+        final JSONObject json = new JSONObject(metrics.toJson());
+
+        final JSONObject requests = json.getJSONObject("requests");
+        assertThat(requests.getLong("total")).isEqualTo(2L);
+        assertThat(requests.getLong("matched")).isEqualTo(1L);
+        assertThat(requests.getLong("unmatched")).isEqualTo(1L);
+        assertThat(requests.getJSONObject("byMethod").getJSONObject("POST").getLong("matched")).isEqualTo(1L);
+        assertThat(json.getJSONObject("responses").getLong("404")).isEqualTo(1L);
+
+        final JSONObject stub = json.getJSONArray("stubs").getJSONObject(0);
+        assertThat(stub.getString("resourceId")).isEqualTo("0");
+        assertThat(stub.getString("url")).isEqualTo("/invoice");
+        assertThat(stub.getLong("hits")).isEqualTo(1L);
+        assertThat(stub.getJSONObject("responses").getLong("201")).isEqualTo(1L);
+
+        final JSONObject handlingTime = stub.getJSONObject("handlingTime");
+        assertThat(handlingTime.getLong("count")).isEqualTo(1L);
+        assertThat(handlingTime.getDouble("sumSeconds")).isEqualTo(20.0);
+        final JSONObject overflowBucket = handlingTime.getJSONArray("buckets").getJSONObject(LatencyHistogram.BUCKET_BOUNDS_NANOS.length);
+        assertThat(overflowBucket.getString("le")).isEqualTo("+Inf");
+        assertThat(overflowBucket.getLong("count")).isEqualTo(1L);
+    }
+}
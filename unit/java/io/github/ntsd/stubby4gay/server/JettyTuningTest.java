@@ -0,0 +1,109 @@
+package io.github.ntsd.stubby4gay.server;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class JettyTuningTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void shouldKeepJettyDefaults_WhenNoTuningOptionsGiven() throws Exception {
+        final JettyTuning jettyTuning = JettyTuning.fromCommandLineArgs(new HashMap<>());
+
+        assertThat(jettyTuning.getMinThreads()).isEqualTo(8);
+        assertThat(jettyTuning.getMaxThreads()).isEqualTo(200);
+        assertThat(jettyTuning.getThreadQueueCapacity()).isEqualTo(JettyTuning.JETTY_DEFAULT);
+        assertThat(jettyTuning.getAcceptors()).isEqualTo(JettyTuning.JETTY_DEFAULT);
+        assertThat(jettyTuning.getSelectors()).isEqualTo(JettyTuning.JETTY_DEFAULT);
+        assertThat(jettyTuning.getAcceptQueueSize()).isEqualTo(JettyTuning.JETTY_DEFAULT);
+        assertThat(jettyTuning.getOutputBufferSize()).isEqualTo(32768);
+        assertThat(jettyTuning.toCommandLineArgs()).containsExactly(
+                "--min_threads", "8", "--max_threads", "200", "--output_buffer", "32768").inOrder();
+    }
+
+    @Test
+    public void shouldSizeFromCores_WhenAutoProfileUsed() throws Exception {
+        final JettyTuning jettyTuning = JettyTuning.auto(64);
+
+        assertThat(jettyTuning.getAcceptors()).isEqualTo(8);
+        assertThat(jettyTuning.getSelectors()).isEqualTo(32);
+        assertThat(jettyTuning.getAcceptQueueSize()).isEqualTo(1024);
+        // 16 worker threads per core, on top of 2 stubs connectors of 40 threads each and the admin connector
+        assertThat(jettyTuning.getMaxThreads()).isEqualTo(64 * 16 + 2 * 40 + 8);
+        assertThat(jettyTuning.getMinThreads()).isEqualTo(64 + 2 * 40 + 8);
+    }
+
+    @Test
+    public void shouldNotGoBelowJettyDefaults_WhenAutoProfileUsedOnSingleCore() throws Exception {
+        final JettyTuning jettyTuning = JettyTuning.auto(1);
+
+        assertThat(jettyTuning.getAcceptors()).isEqualTo(1);
+        assertThat(jettyTuning.getSelectors()).isEqualTo(1);
+        assertThat(jettyTuning.getMinThreads()).isAtLeast(8);
+        assertThat(jettyTuning.getMaxThreads()).isAtLeast(200);
+    }
+
+    @Test
+    public void shouldOverrideAutoProfile_WhenTuningOptionsGiven() throws Exception {
+        final Map<String, String> commandLineArgs = new HashMap<>();
+        commandLineArgs.put(CommandLineInterpreter.OPTION_AUTO_TUNE, null);
+        commandLineArgs.put(CommandLineInterpreter.OPTION_ACCEPTORS, "3");
+        commandLineArgs.put(CommandLineInterpreter.OPTION_THREAD_QUEUE, "5000");
+        commandLineArgs.put(CommandLineInterpreter.OPTION_OUTPUT_BUFFER, "65536");
+
+        final JettyTuning jettyTuning = JettyTuning.fromCommandLineArgs(commandLineArgs);
+        final JettyTuning autoTuning = JettyTuning.auto(Runtime.getRuntime().availableProcessors());
+
+        assertThat(jettyTuning.getAcceptors()).isEqualTo(3);
+        assertThat(jettyTuning.getThreadQueueCapacity()).isEqualTo(5000);
+        assertThat(jettyTuning.getOutputBufferSize()).isEqualTo(65536);
+        assertThat(jettyTuning.getSelectors()).isEqualTo(autoTuning.getSelectors());
+        assertThat(jettyTuning.getMaxThreads()).isEqualTo(autoTuning.getMaxThreads());
+        assertThat(jettyTuning.getAcceptQueueSize()).isEqualTo(1024);
+    }
+
+    @Test
+    public void shouldRoundTripThroughCommandLineArgs() throws Exception {
+        final JettyTuning jettyTuning = new JettyTuning.Builder()
+                .withMinThreads(16)
+                .withMaxThreads(512)
+                .withThreadQueueCapacity(2048)
+                .withAcceptors(2)
+                .withSelectors(8)
+                .withAcceptQueueSize(4096)
+                .withOutputBufferSize(65536)
+                .withVirtualThreads(true)
+                .build();
+
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(jettyTuning.toCommandLineArgs().toArray(new String[0]));
+        final JettyTuning parsedTuning = JettyTuning.fromCommandLineArgs(commandLineInterpreter.getCommandlineParams());
+
+        assertThat(parsedTuning.isVirtualThreads()).isTrue();
+        assertThat(parsedTuning.toString()).isEqualTo(jettyTuning.toString());
+    }
+
+    @Test
+    public void shouldNotBuild_WhenMaxThreadsBelowMinThreads() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid thread pool size 16-8");
+
+        new JettyTuning.Builder().withMinThreads(16).withMaxThreads(8).build();
+    }
+
+    @Test
+    public void shouldNotBuild_WhenSelectorsIsZero() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+
+        new JettyTuning.Builder().withSelectors(0).build();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.ntsd.stubby4gay.server;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubsTransportTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void shouldServeHttp1OverTcpOnly_WhenNoTransportOptionsGiven() throws Exception {
+        final StubsTransport stubsTransport = StubsTransport.fromCommandLineArgs(new HashMap<>());
+
+        assertThat(stubsTransport.isHttp2()).isFalse();
+        assertThat(stubsTransport.getHttp2MaxConcurrentStreams()).isEqualTo(StubsTransport.JETTY_DEFAULT);
+        assertThat(stubsTransport.getUnixSocket()).isNull();
+        assertThat(stubsTransport.toCommandLineArgs()).isEmpty();
+        assertThat(stubsTransport.toString()).isEqualTo("HTTP/1.1");
+    }
+
+    @Test
+    public void shouldRoundTripThroughCommandLineArgs() throws Exception {
+        final StubsTransport stubsTransport = new StubsTransport.Builder()
+                .withHttp2(true)
+                .withHttp2MaxConcurrentStreams(1000)
+                .withHttp2InitialStreamRecvWindow(1048576)
+                .withHttp2InitialSessionRecvWindow(16777216)
+                .withUnixSocket("build/stubby.sock")
+                .build();
+
+        final CommandLineInterpreter commandLineInterpreter = new CommandLineInterpreter();
+        commandLineInterpreter.parseCommandLine(stubsTransport.toCommandLineArgs().toArray(new String[0]));
+        final StubsTransport parsedTransport = StubsTransport.fromCommandLineArgs(commandLineInterpreter.getCommandlineParams());
+
+        assertThat(parsedTransport.isHttp2()).isTrue();
+        assertThat(parsedTransport.getHttp2MaxConcurrentStreams()).isEqualTo(1000);
+        assertThat(parsedTransport.getUnixSocket()).isEqualTo("build/stubby.sock");
+        assertThat(parsedTransport.toString()).isEqualTo(
+                "HTTP/1.1 and HTTP/2 with max streams 1000, stream window 1048576, session window 16777216, also on unix socket build/stubby.sock");
+    }
+
+    @Test
+    public void shouldNotBuild_WhenHttp2WindowIsNegative() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid HTTP/2 max streams -1, stream window -2 or session window -1");
+
+        new StubsTransport.Builder().withHttp2(true).withHttp2InitialStreamRecvWindow(-2).build();
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONCompare;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class JsonTreeMatcherTest {
+
+    // A mismatching object or array is left to the escaped regex of the stubbed JSON, as JSONCompare fails to parse it
+    @Test
+    public void shouldNotMatch_WhenAssertingObjectHasExtraField() throws Exception {
+        final JsonTreeMatcher matcher = JsonTreeMatcher.compile("{\"name\": \"tod\"}");
+
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"name\": \"tod\"}"))).isTrue();
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"name\": \"tod\", \"age\": 32}"))).isNotEqualTo(Boolean.TRUE);
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{}"))).isNotEqualTo(Boolean.TRUE);
+    }
+
+    @Test
+    public void shouldMatch_WhenArrayElementsAreInDifferentOrder() throws Exception {
+        final JsonTreeMatcher matcher = JsonTreeMatcher.compile("{\"ids\": [1, 2, {\"id\": 3}]}");
+
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"ids\": [{\"id\": 3}, 2, 1]}"))).isTrue();
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"ids\": [{\"id\": 3}, 2]}"))).isNotEqualTo(Boolean.TRUE);
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"ids\": [{\"id\": 4}, 2, 1]}"))).isNotEqualTo(Boolean.TRUE);
+    }
+
+    @Test
+    public void shouldCompareJsonStringsAndNumbers() throws Exception {
+        assertThat(JsonTreeMatcher.compile("\"tod\"").matches(JsonTreeMatcher.parse("\"tod\""))).isTrue();
+        assertThat(JsonTreeMatcher.compile("42").matches(JsonTreeMatcher.parse("42"))).isTrue();
+        assertThat(JsonTreeMatcher.compile("42").matches(JsonTreeMatcher.parse("{\"id\": 42}"))).isFalse();
+    }
+
+    @Test
+    public void shouldRequireRegexFallback_WhenStubbedJsonIsNotComparable() throws Exception {
+        final JsonTreeMatcher matcher = JsonTreeMatcher.compile("{\"name\": \".*\"}");
+
+        assertThat(matcher.isStubbedJson()).isTrue();
+        assertThat(matcher.matches(JsonTreeMatcher.parse("{\"name\": \"tod\"}"))).isNull();
+        assertThat(JsonTreeMatcher.compile("not json").isStubbedJson()).isFalse();
+        assertThat(JsonTreeMatcher.parse("not json")).isSameAs(JsonTreeMatcher.UNPARSABLE);
+    }
+
+    @Test
+    public void shouldMatchTreesAsJsonCompareWould() throws Exception {
+        final String[] jsons = {
+                "{\"name\": \"tod\", \"ids\": [1, 2, 3]}",
+                "{\"ids\": [3, 2, 1], \"name\": \"tod\"}",
+                "{\"name\": \"tod\", \"ids\": [1, 2]}",
+                "{\"name\": \"tod\", \"ids\": [1, 2, 3], \"age\": 32}",
+                "{\"nested\": {\"a\": [{\"b\": 1}, {\"c\": [true, null]}]}}",
+                "{\"nested\": {\"a\": [{\"c\": [null, true]}, {\"b\": 1}]}}",
+                "{\"nested\": {\"a\": [{\"c\": [null, false]}, {\"b\": 1}]}}",
+                "[{\"id\": 1}, {\"id\": 2}]",
+                "[{\"id\": 2}, {\"id\": 1}]",
+                "[{\"id\": 2}, {\"id\": 2}]",
+                "[]",
+                "{}"
+        };
+
+        for (final String stubbedJson : jsons) {
+            final JsonTreeMatcher matcher = JsonTreeMatcher.compile(stubbedJson);
+            for (final String assertingJson : jsons) {
+                final boolean expected = JSONCompare.compareJSON(stubbedJson, assertingJson, JSONCompareMode.NON_EXTENSIBLE).passed();
+
+                final boolean actual = Boolean.TRUE.equals(matcher.matches(JsonTreeMatcher.parse(assertingJson)));
+
+                assertThat(actual).named(stubbedJson + " WITH " + assertingJson).isEqualTo(expected);
+            }
+        }
+    }
+}
@@ -46,6 +46,23 @@ public class RegexParserTest {
         assertThat(RegexParser.potentialRegex(Character.toString((char) (REGEX_CHARS[REGEX_CHARS.length - 1] + 1)))).isFalse();
     }
 
+    @Test
+    public void shouldExtractLiteralPrefix() throws Exception {
+        assertThat(RegexParser.literalPrefix("/invoice/123")).isEqualTo("/invoice/123");
+        assertThat(RegexParser.literalPrefix("^/invoice/.*$")).isEqualTo("/invoice/");
+        assertThat(RegexParser.literalPrefix("/invoice/([0-9]+)")).isEqualTo("/invoice/");
+        assertThat(RegexParser.literalPrefix("/invoices?")).isEqualTo("/invoice");
+        assertThat(RegexParser.literalPrefix("/invoice.json")).isEqualTo("/invoice");
+        assertThat(RegexParser.literalPrefix("^abc[xyz{*")).isEqualTo("^abc[xyz{*");
+
+        assertThat(RegexParser.literalPrefix("/invoice|/customer")).isEmpty();
+        assertThat(RegexParser.literalPrefix("(.*)/invoice")).isEmpty();
+        assertThat(RegexParser.literalPrefix("^[a-z]+")).isEmpty();
+        assertThat(RegexParser.literalPrefix("a+")).isEmpty();
+        assertThat(RegexParser.literalPrefix(" ")).isEmpty();
+        assertThat(RegexParser.literalPrefix(null)).isEmpty();
+    }
+
     @Test
     public void shouldNotMatchWhenRegexPatternWithSyntaxError() throws Exception {
         final String patternWithSyntaxError = "^abc[xyz{*";
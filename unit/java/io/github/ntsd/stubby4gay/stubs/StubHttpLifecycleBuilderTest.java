@@ -5,6 +5,7 @@ import io.github.ntsd.stubby4gay.stubs.StubRequest;
 import io.github.ntsd.stubby4gay.stubs.StubResponse;
 import io.github.ntsd.stubby4gay.stubs.StubTypes;
 import io.github.ntsd.stubby4gay.stubs.StubbableAuthorizationType;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
 import org.eclipse.jetty.http.HttpStatus.Code;
 import org.junit.Before;
 import org.junit.Rule;
@@ -387,4 +388,52 @@ public class StubHttpLifecycleBuilderTest {
 
         assertThat(expectedBody).isEqualTo(actualBody);
     }
+
+    @Test
+    public void shouldKeepYamlCompressed_AndDecodeItOnRead() throws Exception {
+        final StringBuilder requestAsYAML = new StringBuilder("request:\n");
+        for (int idx = 0; idx < 50; idx++) {
+            requestAsYAML.append("   headers:\n      x-header-").append(idx).append(": some value\n");
+        }
+        final String responseAsYAML = "response:\n   status: 200\n   body: ünïcödé";
+        final String completeYAML = "- " + requestAsYAML + responseAsYAML;
+
+        final StubHttpLifecycle stubHttpLifecycle = httpCycleBuilder
+                .withCompleteYAML(completeYAML)
+                .withRequestAsYAML(requestAsYAML.toString())
+                .withResponseAsYAML(responseAsYAML)
+                .build();
+
+        assertThat(stubHttpLifecycle.getCompleteYaml()).isEqualTo(completeYAML);
+        assertThat(stubHttpLifecycle.getRequestAsYAML()).isEqualTo(requestAsYAML.toString());
+        assertThat(stubHttpLifecycle.getResponseAsYAML()).isEqualTo(responseAsYAML);
+
+        final CompressedYaml compressedYaml = CompressedYaml.of(completeYAML, requestAsYAML.toString(), responseAsYAML);
+        assertThat(compressedYaml.getDeflatedLength()).isLessThan(completeYAML.length());
+    }
+
+    @Test
+    public void shouldReturnNullYaml_WhenYamlNotSet() throws Exception {
+        final StubHttpLifecycle stubHttpLifecycle = httpCycleBuilder.withRequestAsYAML("request:").build();
+
+        assertThat(stubHttpLifecycle.getCompleteYaml()).isNull();
+        assertThat(stubHttpLifecycle.getRequestAsYAML()).isEqualTo("request:");
+        assertThat(stubHttpLifecycle.getResponseAsYAML()).isNull();
+        assertThat(httpCycleBuilder.build().getCompleteYaml()).isNull();
+    }
+
+    @Test
+    public void shouldNotCountInternedHeaderNames_WhenEstimatingRetainedSize() throws Exception {
+        final String sharedName = StringUtils.internName(new String("x-retained-size-header"));
+        final String privateName = new String("x-retained-size-header");
+        final StubHttpLifecycle withPrivateName = httpCycleBuilder
+                .withRequest(requestBuilder.withUrl(SOME_RESOURCE_URI).withHeader(privateName, "value").build())
+                .build();
+        final StubHttpLifecycle withSharedName = httpCycleBuilder
+                .withRequest(requestBuilder.withUrl(SOME_RESOURCE_URI).withHeader(sharedName, "value").build())
+                .build();
+
+        assertThat(withPrivateName.estimateRetainedSize()).isGreaterThan(0L);
+        assertThat(withSharedName.estimateRetainedSize()).isLessThan(withPrivateName.estimateRetainedSize());
+    }
 }
@@ -0,0 +1,57 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubMappingsMatcherTest {
+
+    @Test
+    public void shouldMatchAnything_WhenNothingStubbed() throws Exception {
+        final StubMappingsMatcher matcher = StubMappingsMatcher.compile(new HashMap<>(), "query");
+
+        assertThat(matcher.isEmpty()).isTrue();
+        assertThat(matcher.matches(new HashMap<>(), new HashMap<>())).isTrue();
+    }
+
+    @Test
+    public void shouldRequireEveryStubbedName_WithMatchingValue() throws Exception {
+        final Map<String, String> stubbed = new LinkedHashMap<>();
+        stubbed.put("content-type", "application/json");
+        stubbed.put("x-id", "(\\d+)");
+        final StubMappingsMatcher matcher = StubMappingsMatcher.compile(stubbed, "headers");
+
+        final Map<String, String> asserting = new HashMap<>();
+        asserting.put("content-type", "application/json");
+        assertThat(matcher.matches(asserting, new HashMap<>())).isFalse();
+
+        asserting.put("x-id", "abc");
+        assertThat(matcher.matches(asserting, new HashMap<>())).isFalse();
+
+        asserting.put("x-id", "123");
+        final Map<String, String> regexGroups = new HashMap<>();
+        assertThat(matcher.matches(asserting, regexGroups)).isTrue();
+        assertThat(regexGroups.get("headers.x-id.1")).isEqualTo("123");
+        assertThat(matcher.getNames()).containsExactly("content-type", "x-id").inOrder();
+    }
+
+    @Test
+    public void shouldMatchAnyValue_WhenStubbedValueNotSet() throws Exception {
+        final Map<String, String> stubbed = new HashMap<>();
+        stubbed.put("x-id", "");
+        final StubMappingsMatcher matcher = StubMappingsMatcher.compile(stubbed, "headers");
+
+        final Map<String, String> asserting = new HashMap<>();
+        asserting.put("x-id", null);
+        assertThat(matcher.matches(asserting, new HashMap<>())).isTrue();
+
+        asserting.clear();
+        asserting.put("x-other", "123");
+        assertThat(matcher.matches(asserting, new HashMap<>())).isFalse();
+    }
+}
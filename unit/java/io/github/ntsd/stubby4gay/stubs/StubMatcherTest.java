@@ -270,6 +270,18 @@ public class StubMatcherTest {
         assertThat(isBodiesMatch).isTrue();
     }
 
+    @Test
+    public void postBodiesMatch_ShouldReturnTrue_WhenXmlElementsAreReorderedAndTheirValuesDiffer() {
+        StubRequest request = new StubRequest.Builder()
+                .withPost("<a><c>1</c><b>2</b></a>")
+                .withHeaderContentType("application/xml")
+                .build();
+
+        final boolean isBodiesMatch = stubMatcher.postBodiesMatch(true, "<a><b>2</b><c>999</c></a>", request);
+
+        assertThat(isBodiesMatch).isTrue();
+    }
+
     @Test
     public void postBodiesMatch_ShouldReturnTrue_WhenEquivalentXmlWithAttributes() {
 
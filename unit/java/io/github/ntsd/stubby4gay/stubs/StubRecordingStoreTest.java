@@ -0,0 +1,86 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubRecordingStoreTest {
+
+    private static final String FINGERPRINT = "GET 31:http://127.0.0.1:8888/search?q=1;~;";
+    private static final String RECORDING_SOURCE = "http://127.0.0.1:8888/search?q=1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldNotPersistAnything_WhenDisabled() throws Exception {
+        final StubRecordingStore stubRecordingStore = StubRecordingStore.disabled();
+        stubRecordingStore.save(FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(200, "recorded"));
+
+        assertThat(stubRecordingStore.isEnabled()).isFalse();
+        assertThat(stubRecordingStore.load(FINGERPRINT).isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldReplayRecording_WhenStoreIsReopened() throws Exception {
+        final File directory = new File(temporaryFolder.getRoot(), "recordings");
+        final StubRecordingStore stubRecordingStore = StubRecordingStore.open(directory, false);
+        stubRecordingStore.save(FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(201, "{\"name\": \"stubby\"}\n"));
+        stubRecordingStore.save("POST " + FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(500, "Server Error"));
+
+        assertThat(new File(directory, StubRecordingStore.INDEX_FILE_NAME).isFile()).isTrue();
+        assertThat(directory.list((dir, name) -> name.endsWith(".body"))).hasLength(2);
+
+        final StubRecordingStore reopenedStore = StubRecordingStore.open(directory, true);
+        final Optional<StubbyResponse> replayedResponse = reopenedStore.load(FINGERPRINT);
+
+        assertThat(reopenedStore.isReplayOnly()).isTrue();
+        assertThat(replayedResponse.isPresent()).isTrue();
+        assertThat(replayedResponse.get().getResponseCode()).isEqualTo(201);
+        assertThat(replayedResponse.get().getContent()).isEqualTo("{\"name\": \"stubby\"}\n");
+        assertThat(reopenedStore.load("POST " + FINGERPRINT).get().getResponseCode()).isEqualTo(500);
+        assertThat(reopenedStore.load("PUT " + FINGERPRINT).isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldOverwriteRecording_WhenSameCallIsRecordedAgain() throws Exception {
+        final File directory = temporaryFolder.newFolder();
+        final StubRecordingStore stubRecordingStore = StubRecordingStore.open(directory, false);
+        stubRecordingStore.save(FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(200, "first recording"));
+        stubRecordingStore.save(FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(200, "second recording"));
+
+        assertThat(directory.list((dir, name) -> name.endsWith(".body"))).hasLength(1);
+        assertThat(indexEntries(directory)).isEqualTo(2);
+        assertThat(StubRecordingStore.open(directory, false).load(FINGERPRINT).get().getContent()).isEqualTo("second recording");
+        assertThat(indexEntries(directory)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAppendToIndex_InsteadOfRewritingIt() throws Exception {
+        final File directory = temporaryFolder.newFolder();
+        final File indexFile = new File(directory, StubRecordingStore.INDEX_FILE_NAME);
+        final StubRecordingStore stubRecordingStore = StubRecordingStore.open(directory, false);
+        stubRecordingStore.save(FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(200, "recorded"));
+        final String firstIndex = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+
+        stubRecordingStore.save("POST " + FINGERPRINT, RECORDING_SOURCE, new StubbyResponse(201, "recorded"));
+
+        assertThat(new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8)).startsWith(firstIndex);
+        assertThat(indexEntries(directory)).isEqualTo(2);
+        assertThat(StubRecordingStore.open(directory, true).load("POST " + FINGERPRINT).get().getResponseCode()).isEqualTo(201);
+    }
+
+    private static int indexEntries(final File directory) throws Exception {
+        final List<String> lines = Files.readAllLines(new File(directory, StubRecordingStore.INDEX_FILE_NAME).toPath(), StandardCharsets.UTF_8);
+        return (int) lines.stream().filter(line -> line.startsWith("- ")).count();
+    }
+}
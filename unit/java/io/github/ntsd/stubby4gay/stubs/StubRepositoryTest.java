@@ -3,6 +3,7 @@ package io.github.ntsd.stubby4gay.stubs;
 import com.google.api.client.http.HttpMethods;
 import io.github.ntsd.stubby4gay.client.StubbyResponse;
 import io.github.ntsd.stubby4gay.common.Common;
+import io.github.ntsd.stubby4gay.handlers.strategy.stubs.StubsResponseHandlingStrategyFactory;
 import io.github.ntsd.stubby4gay.http.StubbyHttpTransport;
 import io.github.ntsd.stubby4gay.stubs.StubHttpLifecycle;
 import io.github.ntsd.stubby4gay.stubs.StubRepository;
@@ -11,6 +12,8 @@ import io.github.ntsd.stubby4gay.stubs.StubResponse;
 import io.github.ntsd.stubby4gay.stubs.StubSearchResult;
 import io.github.ntsd.stubby4gay.yaml.YamlParseResultSet;
 import io.github.ntsd.stubby4gay.yaml.YamlParser;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpStatus.Code;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -22,14 +25,18 @@ import org.mockito.Mock;
 import org.mockito.internal.util.reflection.FieldSetter;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -37,7 +44,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -66,6 +75,12 @@ public class StubRepositoryTest {
     @Mock
     private YamlParser mockYamlParser;
 
+    @Mock
+    private HttpServletResponse mockHttpServletResponse;
+
+    @Mock
+    private ServletOutputStream mockServletOutputStream;
+
 
     @Captor
     private ArgumentCaptor<String> stringCaptor;
@@ -87,8 +102,8 @@ public class StubRepositoryTest {
         responseBuilder = new StubResponse.Builder();
 
         final StubRepository stubRepository = new StubRepository(CONFIG_FILE, YAML_PARSE_RESULT_SET_FUTURE);
-        final Field stubbyHttpTransportField = stubRepository.getClass().getDeclaredField("stubbyHttpTransport");
-        FieldSetter.setField(stubRepository, stubbyHttpTransportField, mockStubbyHttpTransport);
+        final Field stubResponseRecorderField = stubRepository.getClass().getDeclaredField("stubResponseRecorder");
+        FieldSetter.setField(stubRepository, stubResponseRecorderField, new StubResponseRecorder(mockStubbyHttpTransport));
 
         spyStubRepository = spy(stubRepository);
     }
@@ -179,6 +194,60 @@ public class StubRepositoryTest {
         spyStubRepository.deleteStubByIndex(9999);
     }
 
+    @Test
+    public void shouldNotModifyPublishedStubs_WhenTheirResourceIdChanges() throws Exception {
+        final YamlParseResultSet yamlParseResultSetOne = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        final YamlParseResultSet yamlParseResultSetTwo = parseYaml("/resource/item/2", STUB_UUID_TWO);
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<StubHttpLifecycle>() {{
+            addAll(yamlParseResultSetOne.getStubs());
+            addAll(yamlParseResultSetTwo.getStubs());
+        }}, new HashMap<>()));
+
+        final StubHttpLifecycle publishedStub = spyStubRepository.getStubs().get(1);
+        final StubResponse publishedResponse = publishedStub.getResponse(false);
+        final StubResponseHead publishedResponseHead = publishedResponse.getResponseHead();
+        assertThat(publishedStub.getResourceId()).isEqualTo("1");
+
+        spyStubRepository.deleteStubByIndex(0);
+
+        final StubHttpLifecycle shiftedStub = spyStubRepository.getStubs().get(0);
+        assertThat(shiftedStub).isNotSameAs(publishedStub);
+        assertThat(shiftedStub.getResourceId()).isEqualTo("0");
+        assertThat(shiftedStub.getUrl()).isEqualTo("/resource/item/2");
+        assertThat(spyStubRepository.getStubYamlByUuid(STUB_UUID_TWO)).isEqualTo(publishedStub.getCompleteYaml());
+
+        assertThat(publishedStub.getResourceId()).isEqualTo("1");
+        assertThat(publishedResponse.getResponseHead()).isSameAs(publishedResponseHead);
+    }
+
+    @Test
+    public void shouldCompressOnlyStubsNotPublishedYet() throws Exception {
+        final YamlParseResultSet yamlParseResultSetOne = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        final YamlParseResultSet yamlParseResultSetTwo = parseYaml("/resource/item/2", STUB_UUID_TWO);
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<StubHttpLifecycle>() {{
+            addAll(yamlParseResultSetOne.getStubs());
+            addAll(yamlParseResultSetTwo.getStubs());
+        }}, new HashMap<>()));
+
+        final StubHttpLifecycle publishedStub = spyStubRepository.getStubs().get(0);
+        final StubResponse publishedResponse = publishedStub.getResponse(false);
+        final StubResponseHead publishedResponseHead = publishedResponse.getResponseHead();
+        assertThat(publishedResponseHead.getCompression()).isNotNull();
+
+        final StubHttpLifecycle newStub = parseYaml("/resource/item/3", STUB_UUID_THREE).getStubs().get(0);
+        spyStubRepository.updateStubByIndex(1, newStub);
+
+        assertThat(spyStubRepository.getStubs().get(0)).isSameAs(publishedStub);
+        assertThat(publishedResponse.getResponseHead()).isSameAs(publishedResponseHead);
+        assertThat(spyStubRepository.getStubs().get(1).getResponse(false).getResponseHead().getCompression()).isNotNull();
+
+        spyStubRepository.deleteStubByIndex(0);
+
+        final StubHttpLifecycle shiftedStub = spyStubRepository.getStubs().get(0);
+        assertThat(shiftedStub).isNotSameAs(newStub);
+        assertThat(shiftedStub.getResponse(false).getResponseHead().getCompression()).isNotNull();
+    }
+
     @Test
     public void shouldDeleteStubsByUuid() throws Exception {
         final YamlParseResultSet yamlParseResultSetOne = parseYaml("/resource/item/1", STUB_UUID_ONE);
@@ -412,7 +481,7 @@ public class StubRepositoryTest {
     }
 
     @Test
-    public void shouldUpdateStubResponseBody_WhenResponseIsRecordable() throws Exception {
+    public void shouldServeRecordedResponseBody_WithoutUpdatingStubResponse_WhenResponseIsRecordable() throws Exception {
         final String sourceToRecord = "http://google.com";
         final String expectedOriginalUrl = "/resource/item/1";
         final YamlParseResultSet yamlParseResultSet = parseYaml(expectedOriginalUrl, responseBuilder.emptyWithBody(sourceToRecord).build(), STUB_UUID_ONE);
@@ -433,14 +502,61 @@ public class StubRepositoryTest {
             final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
             final StubResponse recordedResponse = stubSearchResult.getMatch();
 
+            assertThat(recordedResponse).isNotSameAs(stubbedResponse);
             assertThat(recordedResponse.getBody()).isEqualTo(actualResponseText);
             assertThat(recordedResponse.isRecordingRequired()).isFalse();
-            assertThat(stubbedResponse.getBody()).isEqualTo(recordedResponse.getBody());
-            assertThat(stubbedResponse.isRecordingRequired()).isFalse();
+            assertThat(stubbedResponse.getBody()).isEqualTo(sourceToRecord);
+            assertThat(stubbedResponse.isRecordingRequired()).isTrue();
         }
         verify(mockStubbyHttpTransport).fetchRecordableHTTPResponse(eq(stubbedRequest), anyString());
     }
 
+    @Test
+    public void shouldNeverAnswerNotModified_WhenResponseIsRecorded() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", responseBuilder.emptyWithBody("http://google.com").build(), STUB_UUID_ONE);
+        final StubRequest stubbedRequest = yamlParseResultSet.getStubs().get(0).getRequest();
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(eq(stubbedRequest), anyString())).thenReturn(new StubbyResponse(200, "recorded response text"));
+
+        final StubRequest incomingRequest =
+                requestBuilder
+                        .withUrl("/resource/item/1")
+                        .withMethodGet()
+                        .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                        .withHeader("if-none-match", "*")
+                        .build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final StubResponse recordedResponse = spyStubRepository.search(mockHttpServletRequest).getMatch();
+        assertThat(recordedResponse.getEntityTag()).isNull();
+        assertThat(recordedResponse.getResponseHead()).isNull();
+
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(mockServletOutputStream);
+        StubsResponseHandlingStrategyFactory.getStrategy(recordedResponse).handle(mockHttpServletResponse, incomingRequest);
+
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.NOT_MODIFIED_304);
+    }
+
+    @Test
+    public void shouldRecordAgain_WhenStubsAreReset() throws Exception {
+        final String sourceToRecord = "http://google.com";
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", responseBuilder.emptyWithBody(sourceToRecord).build(), STUB_UUID_ONE);
+        final StubRequest stubbedRequest = yamlParseResultSet.getStubs().get(0).getRequest();
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(eq(stubbedRequest), anyString()))
+                .thenReturn(new StubbyResponse(200, "first recording"))
+                .thenReturn(new StubbyResponse(200, "second recording"));
+        doReturn(stubbedRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getBody()).isEqualTo("first recording");
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getBody()).isEqualTo("first recording");
+
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getBody()).isEqualTo("second recording");
+        verify(mockStubbyHttpTransport, times(2)).fetchRecordableHTTPResponse(eq(stubbedRequest), anyString());
+    }
+
     @Test
     public void shouldNotUpdateStubResponseBody_WhenResponseIsNotRecordable() throws Exception {
         final String recordingSource = "htt://google.com";  //makes it non recordable
@@ -511,7 +627,7 @@ public class StubRepositoryTest {
         assertThat(expectedResponse.getBody()).isEqualTo(recordingSource);
 
         final StubRequest matchedRequest = spyStubRepository.getStubs().get(0).getRequest();
-        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(eq(matchedRequest), anyString())).thenThrow(Exception.class);
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(eq(matchedRequest), anyString())).thenThrow(IOException.class);
 
         final List<StubHttpLifecycle> stubs = yamlParseResultSet.getStubs();
         doReturn(stubs.get(0).getRequest()).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
@@ -522,6 +638,96 @@ public class StubRepositoryTest {
         assertThat(actualResponse.getBody()).isEqualTo(recordingSource);
     }
 
+    @Test
+    public void shouldMatchStub_WhileAdminWriteHoldsRepositoryLock() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final StubRequest stubbedRequest = spyStubRepository.getStubs().get(0).getRequest();
+        doReturn(stubbedRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final CountDownLatch lockAcquired = new CountDownLatch(1);
+        final CountDownLatch lockReleased = new CountDownLatch(1);
+        final Thread adminWriter = new Thread(() -> {
+            synchronized (spyStubRepository) {
+                lockAcquired.countDown();
+                try {
+                    lockReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        adminWriter.start();
+        lockAcquired.await();
+
+        try {
+            final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+            assertThat(stubSearchResult.getMatch().getHttpStatusCode()).isEqualTo(Code.OK);
+        } finally {
+            lockReleased.countDown();
+            adminWriter.join();
+        }
+    }
+
+    @Test
+    public void shouldNotModifyPreviouslyReturnedStubs_WhenStubIsDeleted() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final List<StubHttpLifecycle> stubsBeforeDelete = spyStubRepository.getStubs();
+        spyStubRepository.deleteStubByIndex(0);
+
+        assertThat(stubsBeforeDelete.size()).isEqualTo(1);
+        assertThat(spyStubRepository.getStubs()).isEmpty();
+        assertThat(spyStubRepository.matchStubByIndex(0).isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldMatchStubsSharingUrl_WhenAlternatingRequestsDifferByBody() throws Exception {
+        final StubHttpLifecycle stubOne = new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().withPost("one").build())
+                .withResponse(new StubResponse.Builder().withHttpStatusCode(Code.OK).withBody("first").build())
+                .build();
+        final StubHttpLifecycle stubTwo = new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().withPost("two").build())
+                .withResponse(new StubResponse.Builder().withHttpStatusCode(Code.CREATED).withBody("second").build())
+                .build();
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<StubHttpLifecycle>() {{
+            add(stubOne);
+            add(stubTwo);
+        }}, new HashMap<>()));
+
+        for (int idx = 0; idx < 3; idx++) {
+            doReturn(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().withPost("one").build())
+                    .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+            assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getBody()).isEqualTo("first");
+
+            doReturn(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().withPost("two").build())
+                    .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+            assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getBody()).isEqualTo("second");
+        }
+    }
+
+    @Test
+    public void shouldMatchNewlyLoadedStub_WhenSameRequestPreviouslyDidNotMatch() throws Exception {
+        spyStubRepository.resetStubsCache(parseYaml("/resource/item/1", STUB_UUID_ONE));
+
+        final StubRequest incomingRequest = requestBuilder
+                .withUrl("/resource/item/2")
+                .withMethodGet()
+                .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                .build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(Code.NOT_FOUND);
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(Code.NOT_FOUND);
+
+        spyStubRepository.resetStubsCache(parseYaml("/resource/item/2", STUB_UUID_TWO));
+
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(Code.OK);
+    }
+
     @Test
     public void stubbedRequestEqualsAssertingRequest_WhenQueryParamArrayHasElementsWithinUrlEncodedQuotes() throws Exception {
 
@@ -0,0 +1,68 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubRequestBodyIndexTest {
+
+    private static final int[] ALL_CANDIDATES = {0, 1, 2, 3, 4};
+
+    @Test
+    public void shouldDropIndexedStubs_WhenLiteralPostBodyDiffers() throws Exception {
+        final StubRequestBodyIndex bodyIndex = new StubRequestBodyIndex(stubs(
+                stub("/invoice", "POST", "one"),
+                stub("/invoice", "POST", "two"),
+                stub("/invoice", "POST", "^t.*$"),
+                stub("/invoice", "GET", null),
+                stub("/invoice", "PUT", "one")));
+
+        assertThat(bodyIndex.filter(ALL_CANDIDATES, request("/invoice", "POST", "two", null))).asList().containsExactly(1, 2, 3).inOrder();
+        assertThat(bodyIndex.filter(ALL_CANDIDATES, request("/invoice", "PUT", "one", null))).asList().containsExactly(2, 3, 4).inOrder();
+        assertThat(bodyIndex.filter(ALL_CANDIDATES, request("/other", "POST", "one", null))).asList().containsExactly(2, 3).inOrder();
+        assertThat(bodyIndex.filter(ALL_CANDIDATES, request("/invoice", "POST", null, null))).asList().containsExactly(2, 3).inOrder();
+    }
+
+    @Test
+    public void shouldIndexAnchoredLiterals_UnderBothTheLiteralAndTheStubbedValue() throws Exception {
+        final StubRequestBodyIndex bodyIndex = new StubRequestBodyIndex(stubs(stub("^/invoice$", "POST", "^one$")));
+
+        assertThat(bodyIndex.filter(new int[]{0}, request("/invoice", "POST", "one", null))).asList().containsExactly(0);
+        assertThat(bodyIndex.filter(new int[]{0}, request("^/invoice$", "POST", "^one$", null))).asList().containsExactly(0);
+        assertThat(bodyIndex.filter(new int[]{0}, request("/invoice", "POST", "two", null))).asList().isEmpty();
+    }
+
+    @Test
+    public void shouldKeepAllCandidates_WhenPostBodyIsMatchedAsJsonOrXml() throws Exception {
+        final StubRequestBodyIndex bodyIndex = new StubRequestBodyIndex(stubs(
+                stub("/invoice", "POST", "id=1"),
+                stub("/invoice", "POST", "<id>1</id>")));
+
+        assertThat(bodyIndex.filter(new int[]{0, 1}, request("/invoice", "POST", "{\"id\":1}", "application/json"))).asList().containsExactly(0, 1).inOrder();
+        assertThat(bodyIndex.filter(new int[]{0, 1}, request("/invoice", "POST", "<id> 1 </id>", "text/xml"))).asList().containsExactly(0, 1).inOrder();
+        assertThat(bodyIndex.filter(new int[]{0, 1}, request("/invoice", "POST", "id=2", "text/plain"))).asList().isEmpty();
+    }
+
+    private static StubRequest request(final String url, final String method, final String post, final String contentType) {
+        final StubRequest.Builder builder = new StubRequest.Builder().withUrl(url).withMethod(method).withPost(post);
+        if (contentType != null) {
+            builder.withHeaderContentType(contentType);
+        }
+        return builder.build();
+    }
+
+    private static StubRequest stub(final String url, final String method, final String post) {
+        return new StubRequest.Builder().withUrl(url).withMethod(method).withPost(post).build();
+    }
+
+    private static List<StubHttpLifecycle> stubs(final StubRequest... stubbedRequests) {
+        final List<StubHttpLifecycle> stubs = new LinkedList<>();
+        for (final StubRequest stubbedRequest : stubbedRequests) {
+            stubs.add(new StubHttpLifecycle.Builder().withRequest(stubbedRequest).build());
+        }
+        return stubs;
+    }
+}
@@ -5,7 +5,6 @@ import io.github.ntsd.stubby4gay.stubs.StubRequest;
 import io.github.ntsd.stubby4gay.stubs.StubResponse;
 import io.github.ntsd.stubby4gay.utils.FileUtils;
 import io.github.ntsd.stubby4gay.yaml.ConfigurableYAMLProperty;
-import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,11 +33,6 @@ public class StubRequestBuilderTest {
         builder = new StubRequest.Builder();
     }
 
-    @After
-    public void cleanup() throws Exception {
-        RegexParser.REGEX_PATTERN_CACHE.clear();
-    }
-
     @Test
     public void shouldStage_WhenConfigurablePropertyAndFieldValuePresent() throws Exception {
         final String expectedFieldValue = "Hello!";
@@ -369,6 +363,30 @@ public class StubRequestBuilderTest {
         assertThat(expectedRequest.getMethod()).containsExactly("GET", "HEAD");
     }
 
+    @Test
+    public void shouldUpperCaseMethodsOnce_AndShareSingleKnownMethod() throws Exception {
+
+        final StubRequest firstRequest = builder.withMethod("get").build();
+        final StubRequest secondRequest = builder.withMethod("GET").build();
+
+        assertThat(firstRequest.getMethod()).containsExactly("GET");
+        assertThat(firstRequest.getMethod()).isSameAs(firstRequest.getMethod());
+        assertThat(firstRequest.getMethod()).isSameAs(secondRequest.getMethod());
+        assertThat(firstRequest.getMethodMask()).isEqualTo(secondRequest.getMethodMask());
+    }
+
+    @Test
+    public void shouldSetUnknownMethodBit_WhenMethodIsNotKnown() throws Exception {
+
+        final StubRequest expectedRequest = builder
+                .withMethod("propfind")
+                .withMethod("head").build();
+
+        assertThat(expectedRequest.getMethod()).containsExactly("PROPFIND", "HEAD");
+        assertThat(expectedRequest.getMethodMask() & StubRequest.UNKNOWN_METHOD_BIT).isEqualTo(StubRequest.UNKNOWN_METHOD_BIT);
+        assertThat(builder.build().getMethodMask()).isEqualTo(0);
+    }
+
     @Test
     public void shouldGetPostBody_WhenPostProvided_ButFileIsNull() throws Exception {
 
@@ -1365,9 +1383,15 @@ public class StubRequestBuilderTest {
                         .withMethodPost()
                         .withApplicationJsonContentType()
                         .withPost(post).build();
-        stubRequest.compileRegexPatternsAndCache();
-
-        assertThat(RegexParser.REGEX_PATTERN_CACHE.size().get()).isEqualTo(3);
+        stubRequest.compileMatcherPlan();
+
+        final StubMatcherPlan matcherPlan = stubRequest.getMatcherPlan();
+        assertThat(matcherPlan.getUrl().getValue()).isEqualTo(url);
+        assertThat(matcherPlan.isPostBodyStubbed()).isTrue();
+        assertThat(matcherPlan.getPost().getValue()).isEqualTo(post);
+        assertThat(matcherPlan.getHeaders().getNames()).contains("content-type");
+        assertThat(matcherPlan.getQuery().isEmpty()).isTrue();
+        assertThat(stubRequest.getMatcherPlan()).isSameAs(matcherPlan);
     }
 
     @Test
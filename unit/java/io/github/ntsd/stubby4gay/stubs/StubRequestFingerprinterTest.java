@@ -0,0 +1,111 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubRequestFingerprinterTest {
+
+    private StubRequestFingerprinter fingerprinter;
+
+    @Before
+    public void beforeEach() throws Exception {
+        final List<StubHttpLifecycle> stubs = new LinkedList<>();
+        stubs.add(new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder()
+                        .withUrl("/resource/item")
+                        .withMethodPost()
+                        .withHeader("x-custom", "value")
+                        .withQuery("page", "1")
+                        .withPost("body")
+                        .build())
+                .build());
+
+        fingerprinter = new StubRequestFingerprinter(stubs);
+    }
+
+    @Test
+    public void shouldIgnoreHeadersAndQueryParams_WhenNotReferencedByStubs() throws Exception {
+        final StubRequest one = new StubRequest.Builder()
+                .withUrl("/resource/item")
+                .withMethodPost()
+                .withHeader("x-custom", "value")
+                .withHeader("user-agent", "one")
+                .withQuery("page", "1")
+                .withQuery("cache-buster", "1")
+                .build();
+        final StubRequest two = new StubRequest.Builder()
+                .withUrl("/resource/item")
+                .withMethodPost()
+                .withHeader("x-custom", "value")
+                .withHeader("user-agent", "two")
+                .withQuery("page", "1")
+                .withQuery("cache-buster", "2")
+                .build();
+
+        assertThat(fingerprinter.fingerprint(one)).isEqualTo(fingerprinter.fingerprint(two));
+    }
+
+    @Test
+    public void shouldDifferentiateMatchableParts() throws Exception {
+        final String base = fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withHeader("x-custom", "value").withPost("body").build());
+
+        assertThat(fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPut().withHeader("x-custom", "value").withPost("body").build())).isNotEqualTo(base);
+        assertThat(fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/other").withMethodPost().withHeader("x-custom", "value").withPost("body").build())).isNotEqualTo(base);
+        assertThat(fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withHeader("x-custom", "other").withPost("body").build())).isNotEqualTo(base);
+        assertThat(fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withHeader("x-custom", "value").withPost("other").build())).isNotEqualTo(base);
+        assertThat(fingerprinter.fingerprint(new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withHeader("x-custom", "value").withApplicationJsonContentType().withPost("body").build())).isNotEqualTo(base);
+    }
+
+    @Test
+    public void shouldDifferentiateAbsentFromEmptyValues() throws Exception {
+        final StubRequest absent = new StubRequest.Builder().withUrl("/resource/item").withMethodPost().build();
+        final StubRequest empty = new StubRequest.Builder().withUrl("/resource/item").withMethodPost().withHeader("x-custom", "").build();
+
+        assertThat(fingerprinter.fingerprint(absent)).isNotEqualTo(fingerprinter.fingerprint(empty));
+    }
+
+    @Test
+    public void shouldKeyShortPostBodyAsIs_AndHashLongPostBody() throws Exception {
+        final String shortBody = new String(new char[StubRequestFingerprinter.MAX_KEYED_POST_BODY_LENGTH]).replace('\0', 'a');
+        final String longBody = shortBody + "a";
+        final StubRequest shortBodyRequest = new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withPost(shortBody).build();
+        final StubRequest longBodyRequest = new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withPost(longBody).build();
+
+        assertThat(fingerprinter.fingerprint(shortBodyRequest)).contains(shortBody);
+        assertThat(fingerprinter.isComplete(shortBodyRequest)).isTrue();
+        assertThat(fingerprinter.fingerprint(longBodyRequest)).doesNotContain(shortBody);
+        assertThat(fingerprinter.isComplete(longBodyRequest)).isFalse();
+        assertThat(fingerprinter.isComplete(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().build())).isTrue();
+    }
+
+    @Test
+    public void shouldIgnorePostBodyAndContentType_WhenNoStubHasPostBody() throws Exception {
+        final List<StubHttpLifecycle> stubs = new LinkedList<>();
+        stubs.add(new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item").withMethodPost().build())
+                .build());
+        final StubRequestFingerprinter withoutPostBodies = new StubRequestFingerprinter(stubs);
+
+        final StubRequest one = new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withApplicationJsonContentType().withPost("one").build();
+        final StubRequest two = new StubRequest.Builder()
+                .withUrl("/resource/item").withMethodPost().withApplicationXmlContentType().withPost("two").build();
+
+        assertThat(withoutPostBodies.fingerprint(one)).isEqualTo(withoutPostBodies.fingerprint(two));
+        assertThat(withoutPostBodies.isComplete(one)).isTrue();
+    }
+}
@@ -9,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.Optional;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -239,4 +241,184 @@ public class StubResponseBuilderTest {
 
         assertThat(stubResponse.isBodyContainsTemplateTokens()).isFalse();
     }
+
+    @Test
+    public void shouldMapLargeBinaryFile_InsteadOfLoadingItIntoHeap() throws Exception {
+
+        final byte[] expectedContent = largeBinaryContent((byte) 0xCA);
+        final File binaryFile = tempBinaryFile(expectedContent);
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withBody("something")
+                .withFile(binaryFile)
+                .build();
+
+        final ByteBuffer mappedFileContent = stubResponse.getMappedFileContent();
+        assertThat(mappedFileContent.isDirect()).isTrue();
+        assertThat(mappedFileContent.isReadOnly()).isTrue();
+        assertThat(mappedFileContent.remaining()).isEqualTo(expectedContent.length);
+
+        // Every caller gets an independent view of the content
+        mappedFileContent.get(new byte[expectedContent.length]);
+        assertThat(stubResponse.getMappedFileContent().remaining()).isEqualTo(expectedContent.length);
+
+        assertThat(stubResponse.getResponseBodyAsBytes()).isEqualTo(expectedContent);
+        assertThat(stubResponse.getResponseHead()).isNotNull();
+        assertThat(stubResponse.isBodyContainsTemplateTokens()).isFalse();
+        assertThat(stubResponse.isResponseBodyEmpty()).isFalse();
+    }
+
+    @Test
+    public void shouldLoadSmallBinaryFileIntoHeap() throws Exception {
+
+        final byte[] expectedContent = {(byte) 0xCA, (byte) 0xFE, 0x00, (byte) 0xBA, (byte) 0xBE, '<', '%', ' '};
+        final File binaryFile = tempBinaryFile(expectedContent);
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(binaryFile)
+                .build();
+        // Edits made after loading are not picked up, as for the character files
+        Files.write(binaryFile.toPath(), new byte[]{0x01});
+
+        assertThat(stubResponse.getMappedFileContent()).isNull();
+        assertThat(stubResponse.getResponseBodyAsBytes()).isEqualTo(expectedContent);
+        assertThat(stubResponse.getResponseHead().getBody()).isEqualTo(expectedContent);
+    }
+
+    @Test
+    public void shouldReadFileFromDisk_WhenMappedFileIsTruncatedAfterLoading() throws Exception {
+
+        final File binaryFile = tempBinaryFile(largeBinaryContent((byte) 0xCA));
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(binaryFile)
+                .build();
+        final byte[] truncatedContent = {(byte) 0xCA, (byte) 0xFE};
+        Files.write(binaryFile.toPath(), truncatedContent);
+
+        assertThat(stubResponse.getMappedFileContent()).isNull();
+        assertThat(stubResponse.getResponseHead()).isNull();
+        assertThat(stubResponse.getResponseBodyAsBytes()).isEqualTo(truncatedContent);
+        assertThat(stubResponse.getFile()).isEqualTo(truncatedContent);
+    }
+
+    @Test
+    public void shouldReadFileFromDisk_WhenMappedFileIsModifiedAfterLoading() throws Exception {
+
+        final File binaryFile = tempBinaryFile(largeBinaryContent((byte) 0xCA));
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(binaryFile)
+                .build();
+        final byte[] modifiedContent = largeBinaryContent((byte) 0xFE);
+        Files.write(binaryFile.toPath(), modifiedContent);
+        assertThat(binaryFile.setLastModified(binaryFile.lastModified() + 1000)).isTrue();
+
+        assertThat(stubResponse.getMappedFileContent()).isNull();
+        assertThat(stubResponse.getResponseHead()).isNull();
+        assertThat(stubResponse.getResponseBodyAsBytes()).isEqualTo(modifiedContent);
+    }
+
+    @Test
+    public void shouldShareMappedFileContent_WhenCopiedPerRequest() throws Exception {
+
+        final byte[] expectedContent = largeBinaryContent((byte) 0xCA);
+        final File binaryFile = tempBinaryFile(expectedContent);
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(binaryFile)
+                .build();
+        // The copies would map the replacement file, which passes as the mapped one, if they mapped the file again
+        final long lastModified = binaryFile.lastModified();
+        assertThat(binaryFile.delete()).isTrue();
+        Files.write(binaryFile.toPath(), largeBinaryContent((byte) 0xFE));
+        assertThat(binaryFile.setLastModified(lastModified)).isTrue();
+
+        final StubResponse redirectResponse = StubResponse.redirectResponse(Optional.of(stubResponse));
+        final StubResponse recordedResponse = StubResponse.recordedResponse(stubResponse, "recorded body");
+
+        assertThat(redirectResponse.getMappedFileContent()).isEqualTo(ByteBuffer.wrap(expectedContent));
+        assertThat(recordedResponse.getMappedFileContent()).isEqualTo(ByteBuffer.wrap(expectedContent));
+    }
+
+    @Test
+    public void shouldNotMapCharacterFile() throws Exception {
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(tempFileFromString("file content"))
+                .build();
+
+        assertThat(stubResponse.getMappedFileContent()).isNull();
+    }
+
+    @Test
+    public void shouldPrerenderResponseHead_WhenResponseIsStatic() throws Exception {
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withBody("some body")
+                .build();
+
+        assertThat(stubResponse.getResponseHead()).isNotNull();
+        assertThat(stubResponse.getResponseHead().getBody()).isEqualTo(StringUtils.getBytesUtf8("some body"));
+    }
+
+    @Test
+    public void shouldDeriveEntityTagFromBody_WhenResponseIsStatic() throws Exception {
+
+        final StubResponse stubResponse = builder.withBody("some body").build();
+        final StubResponse sameBodyResponse = builder.withBody("some body").build();
+        final StubResponse otherBodyResponse = builder.withBody("some other body").build();
+
+        assertThat(stubResponse.getEntityTag()).matches("\"[0-9a-f]{32}\"");
+        assertThat(stubResponse.getEntityTag()).isEqualTo(sameBodyResponse.getEntityTag());
+        assertThat(stubResponse.getEntityTag()).isNotEqualTo(otherBodyResponse.getEntityTag());
+        assertThat(builder.withBody("some <% url.1 %> body").build().getEntityTag()).isNull();
+    }
+
+    @Test
+    public void shouldDeriveEntityTagFromMappedContent_WhenBodyIsBinaryFile() throws Exception {
+
+        final File binaryFile = tempBinaryFile(largeBinaryContent((byte) 0xCA));
+
+        final StubResponse stubResponse = builder.withFile(binaryFile).build();
+
+        assertThat(stubResponse.getEntityTag()).isNotNull();
+        assertThat(stubResponse.getMappedFileContent().position()).isEqualTo(0);
+        assertThat(stubResponse.getResponseHead().isNotModified(stubResponse.getEntityTag(), null)).isTrue();
+    }
+
+    @Test
+    public void shouldNotPrerenderResponseHead_WhenResponseDependsOnRequest() throws Exception {
+
+        assertThat(builder.withBody("some <% url.1 %> body").build().getResponseHead()).isNull();
+        assertThat(builder.withBody("http://localhost:8080").build().getResponseHead()).isNull();
+
+        final StubResponse stubResponse = builder.withBody("some body").build();
+        stubResponse.getHeaders().put("location", "/path/<% url.1 %>");
+        stubResponse.addResourceIDHeader(1);
+        assertThat(stubResponse.getResponseHead()).isNull();
+    }
+
+    private static byte[] largeBinaryContent(final byte firstByte) {
+        final byte[] content = new byte[(int) StubResponse.MIN_MAPPED_FILE_SIZE];
+        content[0] = firstByte;
+        content[1] = 0x00;
+
+        return content;
+    }
+
+    private static File tempBinaryFile(final byte[] content) throws Exception {
+        final File binaryFile = File.createTempFile("tmp", ".bin");
+        binaryFile.deleteOnExit();
+        Files.write(binaryFile.toPath(), content);
+
+        return binaryFile;
+    }
 }
@@ -0,0 +1,97 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.cli.CommandLineInterpreter;
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.getBytesUtf8;
+
+public class StubResponseCompressionTest {
+
+    private static final String BODY = new String(new char[100]).replace("\0", "{\"name\": \"stubby4gay\"}");
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void shouldUseDefaults_WhenNoCompressionOptionsGiven() throws Exception {
+        final StubResponseCompression compression = StubResponseCompression.fromCommandLineArgs(new HashMap<>());
+
+        assertThat(compression.getMinSize()).isEqualTo(1024);
+        assertThat(compression.getLevel()).isEqualTo(6);
+        assertThat(compression.isDeflate()).isFalse();
+    }
+
+    @Test
+    public void shouldUseCompressionOptions_WhenGiven() throws Exception {
+        final Map<String, String> commandLineArgs = new HashMap<>();
+        commandLineArgs.put(CommandLineInterpreter.OPTION_COMPRESSION_MIN_SIZE, "256");
+        commandLineArgs.put(CommandLineInterpreter.OPTION_COMPRESSION_LEVEL, "9");
+        commandLineArgs.put(CommandLineInterpreter.OPTION_DEFLATE, null);
+
+        final StubResponseCompression compression = StubResponseCompression.fromCommandLineArgs(commandLineArgs);
+
+        assertThat(compression.toString()).isEqualTo("minSize=256, level=9, deflate=true");
+    }
+
+    @Test
+    public void shouldNotConstruct_WhenLevelOptionIsNotAnInteger() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid value 'max' of command line option '--compression_level', an integer is expected");
+
+        final Map<String, String> commandLineArgs = new HashMap<>();
+        commandLineArgs.put(CommandLineInterpreter.OPTION_COMPRESSION_LEVEL, "max");
+
+        StubResponseCompression.fromCommandLineArgs(commandLineArgs);
+    }
+
+    @Test
+    public void shouldNotConstruct_WhenLevelOutOfRange() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid compression min size 1024 or level 10");
+
+        StubResponseCompression.of(1024, 10, false);
+    }
+
+    @Test
+    public void shouldCompressOnlyTextualContentFromMinSize() throws Exception {
+        final StubResponseCompression compression = StubResponseCompression.of(1024, 6, false);
+
+        assertThat(compression.isCompressible("application/json", 1024)).isTrue();
+        assertThat(compression.isCompressible("Text/HTML; charset=UTF-8", 4096)).isTrue();
+        assertThat(compression.isCompressible("application/json", 1023)).isFalse();
+        assertThat(compression.isCompressible("image/png", 4096)).isFalse();
+        assertThat(compression.isCompressible(null, 4096)).isFalse();
+        assertThat(StubResponseCompression.of(0, 6, false).isCompressible("text/plain", 0)).isFalse();
+    }
+
+    @Test
+    public void shouldGzipAndDeflateLosslessly() throws Exception {
+        final StubResponseCompression compression = StubResponseCompression.of(1024, 9, true);
+        final byte[] body = getBytesUtf8(BODY);
+
+        final byte[] gzipBody = compression.gzip(body);
+        final byte[] deflateBody = compression.deflate(body);
+
+        assertThat(gzipBody.length).isLessThan(body.length);
+        assertThat(deflateBody.length).isLessThan(gzipBody.length);
+        assertThat(inflate(new GZIPInputStream(new ByteArrayInputStream(gzipBody)))).isEqualTo(BODY);
+        assertThat(inflate(new InflaterInputStream(new ByteArrayInputStream(deflateBody)))).isEqualTo(BODY);
+    }
+
+    private static String inflate(final InputStream inputStream) throws Exception {
+        try (final InputStream closeable = inputStream) {
+            return StringUtils.inputStreamToString(closeable);
+        }
+    }
+}
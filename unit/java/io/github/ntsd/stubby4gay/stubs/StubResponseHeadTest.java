@@ -0,0 +1,197 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.HandlerUtils;
+import org.eclipse.jetty.http.HttpHeader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.github.ntsd.stubby4gay.utils.StringUtils.getBytesUtf8;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StubResponseHeadTest {
+
+    private static final String ENTITY_TAG = "\"0123456789abcdef\"";
+    private static final String LARGE_BODY = new String(new char[100]).replace("\0", "<p>stubby4gay</p>");
+
+    @Mock
+    private HttpServletResponse mockHttpServletResponse;
+
+    @Test
+    public void shouldApplyMainHeaders_WhenNoHeadersStubbed() throws Exception {
+        final byte[] body = getBytesUtf8("OK");
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length);
+
+        responseHead.apply(mockHttpServletResponse);
+
+        assertThat(responseHead.getBody()).isEqualTo(body);
+        verify(mockHttpServletResponse).setCharacterEncoding("UTF-8");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.SERVER.asString(), HandlerUtils.constructHeaderServerName());
+        verify(mockHttpServletResponse).setHeader(HttpHeader.CONTENT_TYPE.asString(), "text/html;charset=UTF-8");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.CACHE_CONTROL.asString(), "no-cache, no-stage, must-revalidate");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.PRAGMA.asString(), "no-cache");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.EXPIRES.asString(), "Thu, 01 Jan 1970 00:00:00 GMT");
+        verify(mockHttpServletResponse).setHeader(eq(HttpHeader.DATE.asString()), anyString());
+        verify(mockHttpServletResponse).setContentLengthLong(2L);
+    }
+
+    @Test
+    public void shouldOverrideMainHeaders_WhenSameHeadersStubbed() throws Exception {
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>();
+        stubbedHeaders.put("content-type", "application/json");
+        stubbedHeaders.put("cache-control", "max-age=60");
+        stubbedHeaders.put("pragma", null);
+        stubbedHeaders.put("date", "Sun, 06 Nov 1994 08:49:37 GMT");
+        stubbedHeaders.put("x-stubby-resource-id", "7");
+
+        final StubResponseHead responseHead = StubResponseHead.of(stubbedHeaders, null, 1024);
+
+        responseHead.apply(mockHttpServletResponse);
+
+        assertThat(responseHead.getBody()).isNull();
+        verify(mockHttpServletResponse).setHeader(HttpHeader.CONTENT_TYPE.asString(), "application/json");
+        verify(mockHttpServletResponse).setHeader("cache-control", "max-age=60");
+        verify(mockHttpServletResponse).setHeader("date", "Sun, 06 Nov 1994 08:49:37 GMT");
+        verify(mockHttpServletResponse).setHeader("x-stubby-resource-id", "7");
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.PRAGMA.asString()), anyString());
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.CACHE_CONTROL.asString()), anyString());
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.DATE.asString()), anyString());
+        verify(mockHttpServletResponse).setContentLengthLong(1024L);
+    }
+
+    @Test
+    public void shouldApplyStubbedContentLength_WhenContentLengthStubbed() throws Exception {
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>();
+        stubbedHeaders.put("Content-Length", "5");
+
+        StubResponseHead.of(stubbedHeaders, getBytesUtf8("Hello"), 5).apply(mockHttpServletResponse);
+
+        verify(mockHttpServletResponse).setHeader(HttpHeader.CONTENT_LENGTH.asString(), "5");
+        verify(mockHttpServletResponse, never()).setContentLengthLong(5L);
+    }
+
+    @Test
+    public void shouldNegotiatePreCompressedBody_WhenCompressed() throws Exception {
+        final byte[] body = getBytesUtf8(LARGE_BODY);
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length)
+                .compress(StubResponseCompression.of(1024, 6, true));
+
+        assertThat(responseHead.negotiateEncoding(null)).isNull();
+        assertThat(responseHead.negotiateEncoding("identity")).isNull();
+        assertThat(responseHead.negotiateEncoding("br")).isNull();
+        assertThat(responseHead.negotiateEncoding("gzip, deflate, br")).isEqualTo("gzip");
+        assertThat(responseHead.negotiateEncoding("gzip;q=0.5, deflate")).isEqualTo("deflate");
+        assertThat(responseHead.negotiateEncoding("gzip;q=0, *")).isEqualTo("deflate");
+        assertThat(responseHead.getBody("gzip").length).isLessThan(body.length);
+        assertThat(responseHead.getBody(null)).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldApplyContentEncoding_WhenPreCompressedBodyNegotiated() throws Exception {
+        final byte[] body = getBytesUtf8(LARGE_BODY);
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length)
+                .compress(StubResponseCompression.defaults());
+
+        responseHead.apply(mockHttpServletResponse, "gzip");
+
+        verify(mockHttpServletResponse).setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+        verify(mockHttpServletResponse).setContentLengthLong(responseHead.getBody("gzip").length);
+        assertThat(responseHead.getBody("deflate")).isNull();
+    }
+
+    @Test
+    public void shouldNotCompress_WhenContentEncodingStubbed() throws Exception {
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>();
+        stubbedHeaders.put("content-encoding", "br");
+        final byte[] body = getBytesUtf8(LARGE_BODY);
+
+        final StubResponseHead responseHead = StubResponseHead.of(stubbedHeaders, body, body.length)
+                .compress(StubResponseCompression.defaults());
+
+        assertThat(responseHead.negotiateEncoding("gzip")).isNull();
+        assertThat(responseHead.getCompression()).isNotNull();
+    }
+
+    @Test
+    public void shouldNotCompress_WhenBodyBelowMinSize() throws Exception {
+        final byte[] body = getBytesUtf8("OK");
+
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length)
+                .compress(StubResponseCompression.defaults());
+        responseHead.apply(mockHttpServletResponse, responseHead.negotiateEncoding("gzip"));
+
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.CONTENT_ENCODING.asString()), anyString());
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.VARY.asString()), anyString());
+        verify(mockHttpServletResponse).setContentLengthLong(2L);
+    }
+
+    @Test
+    public void shouldApplyValidators_WhenEntityTagAndLastModifiedGiven() throws Exception {
+        final byte[] body = getBytesUtf8(LARGE_BODY);
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length, ENTITY_TAG, 784111777000L)
+                .compress(StubResponseCompression.defaults());
+
+        responseHead.apply(mockHttpServletResponse, "gzip");
+
+        verify(mockHttpServletResponse).setHeader(HttpHeader.ETAG.asString(), "\"0123456789abcdef--gzip\"");
+        verify(mockHttpServletResponse).setHeader(HttpHeader.LAST_MODIFIED.asString(), "Sun, 06 Nov 1994 08:49:37 GMT");
+    }
+
+    @Test
+    public void shouldEvaluateConditionalHeaders() throws Exception {
+        final byte[] body = getBytesUtf8("OK");
+        final StubResponseHead responseHead = StubResponseHead.of(new LinkedHashMap<>(), body, body.length, ENTITY_TAG, 784111777000L);
+
+        assertThat(responseHead.isNotModified(null, null)).isFalse();
+        assertThat(responseHead.isNotModified(ENTITY_TAG, null)).isTrue();
+        assertThat(responseHead.isNotModified("W/\"0123456789abcdef--gzip\"", null)).isTrue();
+        assertThat(responseHead.isNotModified("\"fedcba9876543210\", \"0123456789abcdef\"", null)).isTrue();
+        assertThat(responseHead.isNotModified("*", null)).isTrue();
+        assertThat(responseHead.isNotModified("\"fedcba9876543210\"", "Sun, 06 Nov 1994 08:49:37 GMT")).isFalse();
+        assertThat(responseHead.isNotModified(null, "Sun, 06 Nov 1994 08:49:37 GMT")).isTrue();
+        assertThat(responseHead.isNotModified(null, "Sun, 06 Nov 1994 08:49:36 GMT")).isFalse();
+        assertThat(responseHead.isNotModified(null, "not a date")).isFalse();
+    }
+
+    @Test
+    public void shouldApplyStubbedEntityTagAsIs_WhenEntityTagStubbed() throws Exception {
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>();
+        stubbedHeaders.put("ETag", "\"v1\"");
+        final byte[] body = getBytesUtf8(LARGE_BODY);
+
+        final StubResponseHead responseHead = StubResponseHead.of(stubbedHeaders, body, body.length, ENTITY_TAG, -1)
+                .compress(StubResponseCompression.defaults());
+        responseHead.applyNotModified(mockHttpServletResponse, "gzip");
+
+        assertThat(responseHead.isNotModified("\"v1\"", null)).isTrue();
+        assertThat(responseHead.isNotModified(ENTITY_TAG, null)).isFalse();
+        verify(mockHttpServletResponse).setHeader("ETag", "\"v1\"");
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.CONTENT_ENCODING.asString()), anyString());
+        verify(mockHttpServletResponse, never()).setContentLengthLong(anyLong());
+    }
+
+    @Test
+    public void shouldReplaceNoCachePolicy_WhenCacheControlStubbed() throws Exception {
+        final Map<String, String> stubbedHeaders = new LinkedHashMap<>();
+        stubbedHeaders.put("Cache-Control", "public, max-age=3600");
+
+        StubResponseHead.of(stubbedHeaders, getBytesUtf8("OK"), 2).apply(mockHttpServletResponse);
+
+        assertThat(StubResponseHead.isCacheControlStubbed(stubbedHeaders)).isTrue();
+        verify(mockHttpServletResponse).setHeader("Cache-Control", "public, max-age=3600");
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.PRAGMA.asString()), anyString());
+        verify(mockHttpServletResponse, never()).setHeader(eq(HttpHeader.EXPIRES.asString()), anyString());
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.client.StubbyResponse;
+import io.github.ntsd.stubby4gay.http.StubbyHttpTransport;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StubResponseRecorderTest {
+
+    private static final String RECORDING_SOURCE = "http://127.0.0.1:8888/search";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private StubbyHttpTransport mockStubbyHttpTransport;
+
+    private StubResponseRecorder stubResponseRecorder;
+    private StubRequest stubbedRequest;
+
+    @Before
+    public void beforeEach() throws Exception {
+        stubResponseRecorder = new StubResponseRecorder(mockStubbyHttpTransport);
+        stubbedRequest = new StubRequest.Builder()
+                .withUrl("/search")
+                .withMethodPost()
+                .withPost("{\"name\": \"stubby\"}")
+                .withHeader("content-type", "application/json")
+                .build();
+    }
+
+    @Test
+    public void shouldRecordOnce_WhenCallIsRepeated() throws Exception {
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE))
+                .thenReturn(new StubbyResponse(200, "recorded"));
+
+        for (int idx = 0; idx < 3; idx++) {
+            assertThat(stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE).getContent()).isEqualTo("recorded");
+        }
+        verify(mockStubbyHttpTransport).fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE);
+    }
+
+    @Test
+    public void shouldRecordEveryRecordingSource() throws Exception {
+        final String otherRecordingSource = RECORDING_SOURCE + "?page=2";
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(eq(stubbedRequest), any()))
+                .thenReturn(new StubbyResponse(200, "first page"))
+                .thenReturn(new StubbyResponse(200, "second page"));
+
+        assertThat(stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE).getContent()).isEqualTo("first page");
+        assertThat(stubResponseRecorder.record(stubbedRequest, otherRecordingSource).getContent()).isEqualTo("second page");
+        assertThat(stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE).getContent()).isEqualTo("first page");
+    }
+
+    @Test
+    public void shouldRecordAgain_WhenCleared() throws Exception {
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE))
+                .thenReturn(new StubbyResponse(200, "recorded"));
+
+        stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE);
+        stubResponseRecorder.clear();
+        stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE);
+
+        verify(mockStubbyHttpTransport, times(2)).fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE);
+    }
+
+    @Test
+    public void shouldNotCacheFailedRecording() throws Exception {
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE))
+                .thenThrow(new IOException("Connection refused"))
+                .thenReturn(new StubbyResponse(200, "recorded"));
+
+        try {
+            stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE);
+            fail("IOException was expected");
+        } catch (final IOException e) {
+            assertThat(e.getMessage()).isEqualTo("Connection refused");
+        }
+
+        assertThat(stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE).getContent()).isEqualTo("recorded");
+    }
+
+    @Test
+    public void shouldReplayPersistedRecording_WithoutContactingRecordingSource() throws Exception {
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE))
+                .thenReturn(new StubbyResponse(200, "recorded"));
+
+        final File directory = temporaryFolder.newFolder();
+        new StubResponseRecorder(mockStubbyHttpTransport, StubRecordingStore.open(directory, false)).record(stubbedRequest, RECORDING_SOURCE);
+
+        final StubResponseRecorder restartedRecorder = new StubResponseRecorder(mockStubbyHttpTransport, StubRecordingStore.open(directory, true));
+        assertThat(restartedRecorder.record(stubbedRequest, RECORDING_SOURCE).getContent()).isEqualTo("recorded");
+
+        verify(mockStubbyHttpTransport).fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE);
+    }
+
+    @Test
+    public void shouldNotRecordMissingRecording_WhenReplayOnly() throws Exception {
+        final StubResponseRecorder replayingRecorder = new StubResponseRecorder(mockStubbyHttpTransport, StubRecordingStore.open(temporaryFolder.newFolder(), true));
+
+        try {
+            replayingRecorder.record(stubbedRequest, RECORDING_SOURCE);
+            fail("IOException was expected");
+        } catch (final IOException e) {
+            assertThat(e.getMessage()).contains(RECORDING_SOURCE);
+        }
+
+        verify(mockStubbyHttpTransport, never()).fetchRecordableHTTPResponse(any(), any());
+    }
+
+    @Test
+    public void shouldCollapseConcurrentIdenticalRecordings() throws Exception {
+        final int threads = 8;
+        final CountDownLatch upstreamCalled = new CountDownLatch(1);
+        final CountDownLatch upstreamRelease = new CountDownLatch(1);
+        when(mockStubbyHttpTransport.fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE)).thenAnswer(invocation -> {
+            upstreamCalled.countDown();
+            upstreamRelease.await(5, TimeUnit.SECONDS);
+            return new StubbyResponse(200, "recorded");
+        });
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<StubbyResponse>> recordings = new ArrayList<>();
+            for (int idx = 0; idx < threads; idx++) {
+                recordings.add(executorService.submit(() -> stubResponseRecorder.record(stubbedRequest, RECORDING_SOURCE)));
+            }
+
+            assertThat(upstreamCalled.await(5, TimeUnit.SECONDS)).isTrue();
+            // Gives the other threads a chance to join the pending call before it completes
+            Thread.sleep(100);
+            upstreamRelease.countDown();
+
+            for (final Future<StubbyResponse> recording : recordings) {
+                assertThat(recording.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("recorded");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        verify(mockStubbyHttpTransport).fetchRecordableHTTPResponse(stubbedRequest, RECORDING_SOURCE);
+    }
+}
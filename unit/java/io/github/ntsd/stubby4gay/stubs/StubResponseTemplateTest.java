@@ -0,0 +1,55 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import io.github.ntsd.stubby4gay.utils.StringUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubResponseTemplateTest {
+
+    @Test
+    public void shouldRenderTokensInOnePass() throws Exception {
+        final Map<String, String> regexGroups = new HashMap<>();
+        regexGroups.put("url.1", "ALEX");
+        regexGroups.put("query.name.1", "JOHN");
+
+        final StubResponseTemplate template = StubResponseTemplate.compile("Hello <% url.1 %>, <%query.name.1%> and <% url.1%>!");
+        assertThat(template.isTokenized()).isTrue();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        template.render(outputStream, regexGroups);
+
+        assertThat(StringUtils.newStringUtf8(outputStream.toByteArray())).isEqualTo("Hello ALEX, JOHN and ALEX!");
+    }
+
+    @Test
+    public void shouldRenderTokensAsIs_WhenNoValueCaptured() throws Exception {
+        final StubResponseTemplate template = StubResponseTemplate.compile("Hello <% url.2 %> and <% <% url.1 %> %>");
+
+        final Map<String, String> regexGroups = new HashMap<>();
+        regexGroups.put("url.1", "ALEX");
+
+        assertThat(template.renderToString(regexGroups)).isEqualTo("Hello <% url.2 %> and <% ALEX %>");
+    }
+
+    @Test
+    public void shouldRenderValuesLiterally() throws Exception {
+        final Map<String, String> regexGroups = new HashMap<>();
+        regexGroups.put("url.1", "$1 \\ ünïcödé");
+
+        assertThat(StubResponseTemplate.compile("[<% url.1 %>]").renderToString(regexGroups)).isEqualTo("[$1 \\ ünïcödé]");
+    }
+
+    @Test
+    public void shouldNotBeTokenized_WhenNoCompleteTokenPresent() throws Exception {
+        assertThat(StubResponseTemplate.compile("no tokens here").isTokenized()).isFalse();
+        assertThat(StubResponseTemplate.compile("unterminated <% url.1").isTokenized()).isFalse();
+        assertThat(StubResponseTemplate.compile("").renderToString(new HashMap<>())).isEmpty();
+        assertThat(StubResponseTemplate.literal(StringUtils.getBytesUtf8("<% url.1 %>")).isTokenized()).isFalse();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class StubUrlIndexTest {
+
+    @Test
+    public void shouldReturnOnlyStubsWithMatchingLiteralPrefix() throws Exception {
+        final StubUrlIndex stubUrlIndex = new StubUrlIndex(stubsWithUrls(
+                "/invoice/123",
+                "/invoice/456",
+                "/customer/123",
+                "/invoice"));
+
+        assertThat(stubUrlIndex.candidates("/invoice/123")).asList().containsExactly(0, 3).inOrder();
+        assertThat(stubUrlIndex.candidates("/customer/123")).asList().containsExactly(2);
+        assertThat(stubUrlIndex.candidates("/unknown")).asList().isEmpty();
+    }
+
+    @Test
+    public void shouldKeepDeclarationOrder_WhenFallbackBucketAndTrieCandidatesInterleave() throws Exception {
+        final StubUrlIndex stubUrlIndex = new StubUrlIndex(stubsWithUrls(
+                "/invoice/.*",
+                "^(.*)/invoice$",
+                "/invoice/123",
+                null,
+                "/inv"));
+
+        assertThat(stubUrlIndex.candidates("/invoice/123")).asList().containsExactly(0, 1, 2, 3, 4).inOrder();
+        assertThat(stubUrlIndex.candidates("/something/else")).asList().containsExactly(1, 3).inOrder();
+    }
+
+    @Test
+    public void shouldReturnFallbackBucket_WhenIncomingUriNotSet() throws Exception {
+        final StubUrlIndex stubUrlIndex = new StubUrlIndex(stubsWithUrls("/invoice/123", "[a-z]+"));
+
+        assertThat(stubUrlIndex.candidates(null)).asList().containsExactly(1);
+        assertThat(stubUrlIndex.candidates("")).asList().containsExactly(1);
+    }
+
+    @Test
+    public void shouldSplitTrieNodes_WhenPrefixesDiverge() throws Exception {
+        final StubUrlIndex stubUrlIndex = new StubUrlIndex(stubsWithUrls(
+                "/account/settings",
+                "/account/s",
+                "/accounts",
+                "/account"));
+
+        assertThat(stubUrlIndex.candidates("/account/settings")).asList().containsExactly(0, 1, 3).inOrder();
+        assertThat(stubUrlIndex.candidates("/accounts")).asList().containsExactly(2, 3).inOrder();
+        assertThat(stubUrlIndex.candidates("/account/")).asList().containsExactly(3);
+    }
+
+    private static List<StubHttpLifecycle> stubsWithUrls(final String... urls) {
+        final List<StubHttpLifecycle> stubs = new LinkedList<>();
+        for (final String url : urls) {
+            final StubRequest stubRequest = new StubRequest.Builder().withUrl(url).withMethodGet().build();
+            stubs.add(new StubHttpLifecycle.Builder().withRequest(stubRequest).build());
+        }
+        return stubs;
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubValueMatcherTest {
+
+    @Test
+    public void shouldMatchAnything_WhenStubbedValueNotSet() throws Exception {
+        final StubValueMatcher matcher = StubValueMatcher.compile(null, "url");
+
+        assertThat(matcher.matchesAny()).isTrue();
+        assertThat(matcher.matches(null, new HashMap<>())).isTrue();
+        assertThat(matcher.matches("/anything", new HashMap<>())).isTrue();
+    }
+
+    @Test
+    public void shouldNotMatch_WhenAssertingValueNotSet() throws Exception {
+        final StubValueMatcher matcher = StubValueMatcher.compile("/resource", "url");
+
+        assertThat(matcher.matches(null, new HashMap<>())).isFalse();
+        assertThat(matcher.matches("", new HashMap<>())).isFalse();
+    }
+
+    @Test
+    public void shouldMatchLiterally_WhenStubbedValueIsNotValidRegex() throws Exception {
+        final StubValueMatcher matcher = StubValueMatcher.compile("{\"name\": [\"tod\"", "post");
+
+        assertThat(matcher.matches("{\"name\": [\"tod\"", new HashMap<>())).isTrue();
+        assertThat(matcher.matches("{\"name\": [\"bob\"", new HashMap<>())).isFalse();
+    }
+
+    @Test
+    public void shouldCaptureRegexGroups_WhenMatcherIsReused() throws Exception {
+        final StubValueMatcher matcher = StubValueMatcher.compile("^/resource/(\\d+)$", "url");
+
+        final Map<String, String> firstGroups = new HashMap<>();
+        assertThat(matcher.matches("/resource/123", firstGroups)).isTrue();
+        assertThat(firstGroups.get("url.0")).isEqualTo("/resource/123");
+        assertThat(firstGroups.get("url.1")).isEqualTo("123");
+
+        final Map<String, String> secondGroups = new HashMap<>();
+        assertThat(matcher.matches("/resource/abc", secondGroups)).isFalse();
+        assertThat(secondGroups).isEmpty();
+
+        final Map<String, String> thirdGroups = new HashMap<>();
+        assertThat(matcher.matches("/resource/456", thirdGroups)).isTrue();
+        assertThat(thirdGroups.get("url.1")).isEqualTo("456");
+    }
+
+    @Test
+    public void shouldMatchAcrossLines_WhenDotAllRequired() throws Exception {
+        final StubValueMatcher matcher = StubValueMatcher.compile(".*(\"id\": \"123\").*", "post");
+
+        final Map<String, String> regexGroups = new HashMap<>();
+        assertThat(matcher.matches("{\n\"id\": \"123\"\n}", regexGroups)).isTrue();
+        assertThat(regexGroups.get("post.1")).isEqualTo("\"id\": \"123\"");
+    }
+
+    @Test
+    public void shouldClassifyStubbedValues() throws Exception {
+        assertThat(StubValueMatcher.compile("/resource/item", "url").getKind()).isEqualTo(StubValueMatcher.Kind.LITERAL);
+        assertThat(StubValueMatcher.compile("^/resource/item$", "url").getKind()).isEqualTo(StubValueMatcher.Kind.LITERAL);
+        assertThat(StubValueMatcher.compile("^/resource/.*", "url").getKind()).isEqualTo(StubValueMatcher.Kind.PREFIX);
+        assertThat(StubValueMatcher.compile(".*/item$", "url").getKind()).isEqualTo(StubValueMatcher.Kind.SUFFIX);
+        assertThat(StubValueMatcher.compile(".*resource.*", "url").getKind()).isEqualTo(StubValueMatcher.Kind.CONTAINS);
+        assertThat(StubValueMatcher.compile("^/resource/(\\d+)$", "url").getKind()).isEqualTo(StubValueMatcher.Kind.REGEX);
+        assertThat(StubValueMatcher.compile("/resource.item", "url").getKind()).isEqualTo(StubValueMatcher.Kind.REGEX);
+        assertThat(StubValueMatcher.compile(".*(resource).*", "url").getKind()).isEqualTo(StubValueMatcher.Kind.REGEX);
+    }
+
+    @Test
+    public void shouldMatchClassifiedValuesAsRegexWould() throws Exception {
+        final String[] stubbedValues = {
+                "/resource/item", "^/resource/item$", "^/resource/.*", ".*/item$", ".*resource.*", ".*", "^.*.*$", "$"
+        };
+        final String[] assertingValues = {
+                "/resource/item", "/resource/", "/resource/item\n/other", "/other/item", "/resource", "item",
+                "^/resource/item$", "$", ".*", "\n/resource/item"
+        };
+
+        for (final String stubbedValue : stubbedValues) {
+            for (final String assertingValue : assertingValues) {
+                final Map<String, String> expectedGroups = new HashMap<>();
+                final boolean expected = RegexParser.INSTANCE.match(stubbedValue, assertingValue, "url", expectedGroups) ||
+                        stubbedValue.equals(assertingValue);
+
+                final Map<String, String> actualGroups = new HashMap<>();
+                final boolean actual = StubValueMatcher.compile(stubbedValue, "url").matches(assertingValue, actualGroups);
+
+                assertThat(actual).named(stubbedValue + " WITH " + assertingValue).isEqualTo(expected);
+                assertThat(actualGroups).named(stubbedValue + " WITH " + assertingValue).isEqualTo(expectedGroups);
+            }
+        }
+    }
+}
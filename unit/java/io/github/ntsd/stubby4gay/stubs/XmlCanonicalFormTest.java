@@ -0,0 +1,99 @@
+package io.github.ntsd.stubby4gay.stubs;
+
+import org.junit.Test;
+import org.xmlunit.builder.DiffBuilder;
+import org.xmlunit.builder.Input;
+import org.xmlunit.diff.ComparisonControllers;
+import org.xmlunit.diff.DefaultNodeMatcher;
+import org.xmlunit.diff.ElementSelectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class XmlCanonicalFormTest {
+
+    @Test
+    public void shouldBeIdentical_WhenBodiesDifferOnlyInWhitespaceCommentsAndCdata() throws Exception {
+        final XmlCanonicalForm stubbed = XmlCanonicalForm.of("<xml><a b='1'  c='2'><![CDATA[tod]]></a></xml>");
+        final XmlCanonicalForm asserting = XmlCanonicalForm.of("<xml>\n  <!-- person -->\n  <a c=\"2\" b=\"1\">  tod </a>\n</xml>");
+
+        assertThat(stubbed.isIdenticalTo(asserting)).isTrue();
+    }
+
+    @Test
+    public void shouldNotBeIdentical_WhenSiblingsAreReordered() throws Exception {
+        final XmlCanonicalForm stubbed = XmlCanonicalForm.of("<xml><a>a</a><b>b</b></xml>");
+        final XmlCanonicalForm asserting = XmlCanonicalForm.of("<xml><b>b</b><a>a</a></xml>");
+
+        assertThat(stubbed.isIdenticalTo(asserting)).isFalse();
+    }
+
+    @Test
+    public void shouldNotBeIdentical_WhenTextDiffers() throws Exception {
+        final XmlCanonicalForm stubbed = XmlCanonicalForm.of("<xml><a>one</a></xml>");
+        final XmlCanonicalForm asserting = XmlCanonicalForm.of("<xml><a>two</a></xml>");
+
+        assertThat(stubbed.isIdenticalTo(asserting)).isFalse();
+    }
+
+    @Test
+    public void shouldNotParse_WhenBodyIsNotXml() throws Exception {
+        assertThat(XmlCanonicalForm.of("{\"name\": \"tod\"}").isParsed()).isFalse();
+        assertThat(XmlCanonicalForm.of("<xml><a></xml>").isParsed()).isFalse();
+        assertThat(XmlCanonicalForm.of("").isParsed()).isFalse();
+    }
+
+    @Test
+    public void shouldNeverContradictXmlUnit() throws Exception {
+        final String[] xmls = {
+                "<xml><a>a</a><b>b</b></xml>",
+                "<xml><b>b</b><a>a</a></xml>",
+                "<xml><a>1</a><a>2</a></xml>",
+                "<xml><a>2</a><a>1</a></xml>",
+                "<xml><a>a<!-- c -->  b</a></xml>",
+                "<xml><a>a b</a></xml>",
+                "<xml><a><![CDATA[a]]> b</a></xml>",
+                "<xml><a>a<!-- c --><![CDATA[ b]]></a></xml>",
+                "<xml><a><![CDATA[a]]>b</a></xml>",
+                "<xml><a>ab</a></xml>",
+                "<xml><a>a</a><!-- c --><b>b</b></xml>",
+                "<xml><a>a</a>text<b>b</b></xml>",
+                "<xml>text<b>b</b><a>a</a></xml>",
+                "<x:xml xmlns:x='urn:x'><x:a id='1'/></x:xml>",
+                "<y:xml xmlns:y='urn:x'><y:a id='1'/></y:xml>",
+                "<xml xmlns='urn:x'><a id='1'/></xml>",
+                "<xml><a id='1'/></xml>",
+                "<xml><a id=' 1 '/></xml>",
+                "<xml><a id='2'/></xml>",
+                "<?xml version='1.0' encoding='UTF-8'?><xml><a>a</a><b>b</b></xml>",
+                "<xml><?pi data?><a>a</a><b>b</b></xml>",
+                "<xml><a><c>c</c><d/></a><b>b</b></xml>",
+                "<xml><b>b</b><a><d/><c>c</c></a></xml>",
+                "<a><c>1</c><b>2</b></a>",
+                "<a><b>2</b><c>999</c></a>",
+                "<xml>.*</xml>"
+        };
+
+        for (final String stubbedXml : xmls) {
+            final XmlCanonicalForm stubbed = XmlCanonicalForm.of(stubbedXml);
+            for (final String assertingXml : xmls) {
+                final XmlCanonicalForm asserting = XmlCanonicalForm.of(assertingXml);
+                final boolean similar = !DiffBuilder
+                        .compare(Input.fromString(stubbedXml))
+                        .checkForSimilar()
+                        .normalizeWhitespace()
+                        .ignoreComments()
+                        .withNodeMatcher(new DefaultNodeMatcher(ElementSelectors.byNameAndAllAttributes))
+                        .withTest(Input.fromString(assertingXml))
+                        .withComparisonController(ComparisonControllers.StopWhenSimilar)
+                        .build()
+                        .hasDifferences();
+
+                final String description = stubbedXml + " WITH " + assertingXml;
+                if (stubbed.isIdenticalTo(asserting)) {
+                    assertThat(similar).named(description).isTrue();
+                }
+            }
+        }
+    }
+}
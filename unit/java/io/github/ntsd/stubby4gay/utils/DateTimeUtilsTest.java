@@ -32,4 +32,14 @@ public class DateTimeUtilsTest {
 
         assertThat(localNow).isEqualTo(systemDefault);
     }
+
+    @Test
+    public void cachedSystemDefault() throws Exception {
+        final String cachedSystemDefault = DateTimeUtils.cachedSystemDefault();
+        final String systemDefault = DateTimeUtils.systemDefault();
+
+        // Unless the second has changed in between, both are the same
+        assertThat(cachedSystemDefault).isAnyOf(systemDefault, DATE_TIME_FORMATTER.format(Instant.now().minusSeconds(1)));
+        assertThat(DateTimeUtils.cachedSystemDefault()).isSameAs(DateTimeUtils.cachedSystemDefault());
+    }
 }
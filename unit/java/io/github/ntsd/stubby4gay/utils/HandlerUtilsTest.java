@@ -5,7 +5,15 @@ import io.github.ntsd.stubby4gay.utils.StringUtils;
 import org.eclipse.jetty.http.HttpScheme;
 import org.junit.Test;
 
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class HandlerUtilsTest {
 
@@ -26,6 +34,32 @@ public class HandlerUtilsTest {
         assertThat(actualEscaped).isEqualTo(expectedEscaped);
     }
 
+    @Test
+    public void shouldExtractPostRequestBody_WhenBodyIsLargerThanBuffer() throws Exception {
+        final StringBuilder body = new StringBuilder("  ");
+        for (int idx = 0; idx < 10000; idx++) {
+            body.append("{\"url\": \"\\/path\\/").append(idx).append("\", \"name\": \"ünïcödé\"}");
+        }
+        body.append("\n");
+
+        final String expectedBody = body.toString().trim().replace("\\/", "/");
+
+        assertThat(HandlerUtils.extractPostRequestBody(mockPostRequest(body.toString()), "test")).isEqualTo(expectedBody);
+        assertThat(HandlerUtils.extractPostRequestBody(mockPostRequest("short"), "test")).isEqualTo("short");
+        assertThat(HandlerUtils.extractPostRequestBody(mockPostRequest(""), "test")).isEmpty();
+    }
+
+    @Test
+    public void shouldExtractPostRequestBody_WhenContentLengthIsUnknownOrBogus() throws Exception {
+        final StringBuilder body = new StringBuilder();
+        for (int idx = 0; idx < 10000; idx++) {
+            body.append("{\"name\": \"ünïcödé\"}");
+        }
+
+        assertThat(HandlerUtils.extractPostRequestBody(mockPostRequest(body.toString(), -1), "test")).isEqualTo(body.toString());
+        assertThat(HandlerUtils.extractPostRequestBody(mockPostRequest("short", Integer.MAX_VALUE), "test")).isEqualTo("short");
+    }
+
     @Test
     public void shouldLinkifyUriString() throws Exception {
 
@@ -79,4 +113,43 @@ public class HandlerUtilsTest {
 
         assertThat(actualUpTime).isEqualTo("2 days, 0 hours, 0 mins, 1 sec");
     }
+
+    private static HttpServletRequest mockPostRequest(final String body) throws IOException {
+        return mockPostRequest(body, StringUtils.getBytesUtf8(body).length);
+    }
+
+    private static HttpServletRequest mockPostRequest(final String body, final int contentLength) throws IOException {
+        final ByteArrayInputStream inputStream = new ByteArrayInputStream(StringUtils.getBytesUtf8(body));
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(contentLength);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return inputStream.read();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                return inputStream.read(buffer, offset, length);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return inputStream.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(final ReadListener readListener) {
+
+            }
+        });
+
+        return request;
+    }
 }
@@ -35,6 +35,19 @@ public class StringUtilsTest {
         assertThat(StringUtils.isNumeric("888")).isTrue();
     }
 
+    @Test
+    public void shouldReturnSharedInstance_WhenNameInterned() throws Exception {
+        final String name = new String("x-interned-name");
+        final String sameName = new String("x-interned-name");
+
+        assertThat(StringUtils.isInternedName(name)).isFalse();
+        assertThat(StringUtils.internName(name)).isSameAs(name);
+        assertThat(StringUtils.internName(sameName)).isSameAs(name);
+        assertThat(StringUtils.isInternedName(name)).isTrue();
+        assertThat(StringUtils.isInternedName(sameName)).isFalse();
+        assertThat(StringUtils.internName(null)).isNull();
+    }
+
     @Test
     public void shouldConvertObjectToString_WhenObjectIsNotNull() throws Exception {
 
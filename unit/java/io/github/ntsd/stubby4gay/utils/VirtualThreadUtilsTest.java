@@ -0,0 +1,47 @@
+package io.github.ntsd.stubby4gay.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadUtilsTest {
+
+    @Test
+    public void shouldBeSupported_OnlyFromJdk21() throws Exception {
+        assertThat(VirtualThreadUtils.isSupported()).isEqualTo(javaFeatureVersion() >= 21);
+    }
+
+    @Test
+    public void shouldRunTasksOnVirtualThreads_WhenSupported() throws Exception {
+        if (!VirtualThreadUtils.isSupported()) {
+            try {
+                VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+                fail("UnsupportedOperationException was expected");
+            } catch (final UnsupportedOperationException e) {
+                assertThat(e.getMessage()).contains("JDK 21");
+            }
+            return;
+        }
+
+        final ExecutorService executorService = VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+        try {
+            final Object isVirtual = executorService.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+                    .get(5, TimeUnit.SECONDS);
+            assertThat(isVirtual).isEqualTo(Boolean.TRUE);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static int javaFeatureVersion() {
+        final String specificationVersion = System.getProperty("java.specification.version");
+        // Up to Java 8, the specification version is 1.x
+        return specificationVersion.startsWith("1.") ?
+                Integer.parseInt(specificationVersion.substring(2)) :
+                Integer.parseInt(specificationVersion);
+    }
+}